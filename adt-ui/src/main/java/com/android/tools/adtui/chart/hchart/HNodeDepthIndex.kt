@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart
+
+import com.android.tools.adtui.model.HNode
+
+/**
+ * All nodes of an [HNode] tree grouped by depth, each depth sorted by start, so that the nodes of a depth intersecting an x interval
+ * can be found by binary search instead of walking the whole tree.
+ *
+ * The index is a snapshot of the tree when it was built; [HTreeChart.treeChanged] rebuilds it if nodes are added or their ranges change.
+ */
+internal class HNodeDepthIndex<N : HNode<N>>(root: N?) {
+  private val rows: List<Row<N>>
+
+  /** Depth of the shallowest node, i.e. of row 0. */
+  val minDepth: Int
+
+  /** Depth of the deepest node, or `minDepth - 1` if the tree is empty. */
+  val maxDepth: Int
+    get() = minDepth + rows.size - 1
+
+  val nodeCount: Int
+
+  init {
+    val byDepth = sortedMapOf<Int, ArrayList<N>>()
+    var count = 0
+    if (root != null) {
+      val queue = ArrayDeque<N>()
+      queue.addLast(root)
+      while (queue.isNotEmpty()) {
+        val node = queue.removeFirst()
+        byDepth.getOrPut(node.depth) { ArrayList() }.add(node)
+        count++
+        for (i in 0 until node.childCount) {
+          queue.addLast(node.getChildAt(i))
+        }
+      }
+    }
+    minDepth = if (byDepth.isEmpty()) 0 else byDepth.firstKey()
+    val lastDepth = if (byDepth.isEmpty()) -1 else byDepth.lastKey()
+    rows = (minDepth..lastDepth).map { depth -> Row(byDepth[depth] ?: ArrayList()) }
+    nodeCount = count
+  }
+
+  /** Returns the nodes at [depth], sorted by start. */
+  fun nodesAt(depth: Int): List<N> = rowAt(depth)?.nodes ?: emptyList()
+
+  /**
+   * Returns the index within [nodesAt] of the first node at [depth] which ends at or after [x], or the number of nodes at that depth if
+   * there is none. Every node before the returned index ends before [x].
+   */
+  fun firstEndingAtOrAfter(depth: Int, x: Double): Int {
+    val row = rowAt(depth) ?: return 0
+    var low = 0
+    var high = row.maxEnd.size
+    while (low < high) {
+      val mid = (low + high) ushr 1
+      if (row.maxEnd[mid] < x) low = mid + 1 else high = mid
+    }
+    return low
+  }
+
+  private fun rowAt(depth: Int): Row<N>? = rows.getOrNull(depth - minDepth)
+
+  private class Row<N : HNode<N>>(val nodes: ArrayList<N>) {
+    /** `maxEnd[i]` is the largest end of `nodes[0..i]`, so it is sorted even if nodes at the same depth overlap. */
+    val maxEnd = LongArray(nodes.size)
+
+    init {
+      // Breadth-first order is usually sorted already; the sort is stable so ties keep that order.
+      nodes.sortBy { it.start }
+      var max = Long.MIN_VALUE
+      for (i in nodes.indices) {
+        max = maxOf(max, nodes[i].end)
+        maxEnd[i] = max
+      }
+    }
+  }
+}
@@ -36,10 +36,9 @@ import java.awt.event.MouseEvent
 import java.awt.event.MouseWheelEvent
 import java.awt.geom.Rectangle2D
 import java.awt.image.BufferedImage
-import java.util.LinkedList
-import java.util.Queue
 import javax.swing.AbstractAction
 import javax.swing.KeyStroke
+import kotlin.math.floor
 import kotlin.math.max
 import kotlin.math.min
 
@@ -60,8 +59,7 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
    */
   private val globalXRange = builder.globalXRange
   val yRange: Range = Range(INITIAL_Y_POSITION.toDouble(), INITIAL_Y_POSITION.toDouble())
-  private val rectangles = ArrayList<Rectangle2D.Float>()
-  private val nodes = ArrayList<N>()
+  private var index = HNodeDepthIndex(root)
   private val rootVisible = builder.rootVisible
 
   /**
@@ -91,6 +89,13 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
 
   private val drawnRectangles = ArrayList<Rectangle2D.Float>()
   private val drawnNodes = ArrayList<N>()
+
+  /**
+   * Indices into [drawnNodes] where each drawn depth begins. Drawn nodes are ordered by depth and then by x, which lets [getNodeAt]
+   * binary search for the row and then for the node within it.
+   */
+  private val drawnRowStarts = ArrayList<Int>()
+  private var visitedNodeCount = 0
   private val reducer = builder.reducer
   private var canvas: Image? = null
 
@@ -133,6 +138,7 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
   }
 
   private fun rootChanged() {
+    index = HNodeDepthIndex(root)
     maximumHeight = calculateMaximumHeight()
     // Update preferred size using calculated height to make sure containers of this chart account for the height change during layout.
     preferredSize = Dimension(preferredSize.width, maximumHeight)
@@ -142,16 +148,11 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
   override fun draw(g: Graphics2D, dim: Dimension) {
     val startTime = System.nanoTime()
 
-    // If the selection changed, a call to updateNodesAndClearCanvas is unnecessary as it reconstructs all nodes and rectangles.
-    // All we need to do is null out the canvas to trigger another render pass with the preserved node and rectangle data.
-    if (selectionUpdated) {
+    // Nulling out the canvas will trigger a render pass, below. The visible nodes are collected from the index on every render pass,
+    // which is cheap as it only visits what fits in the viewport.
+    if (selectionUpdated || dataUpdated) {
       canvas = null
       selectionUpdated = false
-    }
-
-    if (dataUpdated) {
-      // Nulling out the canvas will trigger a render pass, below
-      updateNodesAndClearCanvas()
       dataUpdated = false
     }
     g.font = font
@@ -170,7 +171,8 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     }
     UIUtil.drawImage(g, canvas!!, 0, 0, null)
     addDebugInfo("Draw time %.2fms", (System.nanoTime() - startTime) / 1e6)
-    addDebugInfo("# of nodes %d", nodes.size)
+    addDebugInfo("# of nodes %d", index.nodeCount)
+    addDebugInfo("# of visited nodes %d", visitedNodeCount)
     addDebugInfo("# of reduced nodes %d", drawnNodes.size)
   }
 
@@ -189,23 +191,15 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     g.composite = AlphaComposite.Src
     UISettings.setupAntialiasing(g)
     g.font = font
-    drawnNodes.clear()
-    drawnNodes.addAll(nodes)
-    drawnRectangles.clear()
-    // Transform
-    for (rect in rectangles) {
-      val newRect = Rectangle2D.Float()
-      newRect.x = rect.x * dim.getWidth().toFloat()
-      newRect.y = rect.y
-      newRect.width = max(0f, rect.width * dim.getWidth().toFloat() - nodeXPaddingPx)
-      newRect.height = rect.height
-      if (orientation == Orientation.BOTTOM_UP) {
-        newRect.y = (dim.getHeight() - newRect.y - newRect.getHeight()).toFloat()
-      }
-      drawnRectangles.add(newRect)
-    }
+    collectVisibleNodes(dim)
     reducer.reduce(drawnRectangles, drawnNodes)
     assert(drawnRectangles.size == drawnNodes.size)
+    drawnRowStarts.clear()
+    for (i in drawnNodes.indices) {
+      if (i == 0 || drawnNodes[i].depth != drawnNodes[i - 1].depth) {
+        drawnRowStarts.add(i)
+      }
+    }
     for (i in drawnNodes.indices) {
       val node = drawnNodes[i]
       val drawingArea = drawnRectangles[i]
@@ -225,43 +219,67 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     g.dispose()
   }
 
-  private fun updateNodesAndClearCanvas() {
-    nodes.clear()
-    rectangles.clear()
-    canvas = null
-    if (root == null) {
+  /**
+   * Fills [drawnNodes] and [drawnRectangles] with the nodes that intersect the visible area, in pixel coordinates, ordered by depth and
+   * then by x. Only depths within the visible y range are visited, and within a depth only the nodes that intersect the x range, found by
+   * binary search. Consecutive nodes narrower than a pixel are combined into one rectangle by skipping ahead to the first node ending in a
+   * later pixel, so the cost is bounded by the size of the viewport rather than the size of the tree.
+   */
+  private fun collectVisibleNodes(dim: Dimension) {
+    drawnNodes.clear()
+    drawnRectangles.clear()
+    visitedNodeCount = 0
+    if (root == null || index.nodeCount == 0) {
       return
     }
-    if (inRange(root!!)) {
-      nodes.add(root!!)
-      rectangles.add(createRectangle(root!!))
-    }
-    var head = 0
-    while (head < nodes.size) {
-      val curNode = nodes[head++]
-      for (i in 0 until curNode.childCount) {
-        val child = curNode.getChildAt(i)
-        if (inRange(child)) {
-          nodes.add(child)
-          rectangles.add(createRectangle(child))
+    val rowHeight = nodeHeight + nodeYPaddingPx
+    val firstDepth = max(index.minDepth, floor(yRange.min / rowHeight).toInt())
+    val lastDepth = min(index.maxDepth, floor((yRange.min + dim.height) / rowHeight).toInt())
+    val pxPerUnit = dim.getWidth() / xRange.length
+    for (depth in firstDepth..lastDepth) {
+      val row = index.nodesAt(depth)
+      val y = (rowHeight * depth - yRange.min).toFloat()
+      var i = index.firstEndingAtOrAfter(depth, xRange.min)
+      while (i < row.size) {
+        val node = row[i]
+        if (node.start > xRange.max) {
+          break
         }
+        visitedNodeCount++
+        if (node === root && !rootVisible) {
+          i++
+          continue
+        }
+        val rect = createRectangle(node, y, pxPerUnit)
+        i++
+        if (floor(rect.minX) >= floor(rect.maxX)) {
+          // The node fits within a single pixel; merge it with the following nodes which end in the same pixel without visiting them.
+          val pixel = floor(rect.maxX)
+          val last = max(i, index.firstEndingAtOrAfter(depth, xRange.min + (pixel + 1 + nodeXPaddingPx) / pxPerUnit)) - 1
+          if (last >= i) {
+            val lastRect = createRectangle(row[last], y, pxPerUnit)
+            if (floor(lastRect.maxX) == pixel) {
+              rect.width = (lastRect.maxX - rect.minX).toFloat()
+              i = last + 1
+            }
+          }
+        }
+        if (orientation == Orientation.BOTTOM_UP) {
+          rect.y = (dim.getHeight() - rect.y - rect.getHeight()).toFloat()
+        }
+        drawnNodes.add(node)
+        drawnRectangles.add(rect)
       }
     }
-    if (!rootVisible && nodes.isNotEmpty()) {
-      nodes.removeAt(0)
-      rectangles.removeAt(0)
-    }
   }
 
-  private fun inRange(node: N) = node.start <= xRange.max && node.end >= xRange.min
-
-  private fun createRectangle(node: N): Rectangle2D.Float {
-    val left = ((node.start - xRange.min) / xRange.length).toFloat()
-    val right = ((node.end - xRange.min) / xRange.length).toFloat()
+  private fun createRectangle(node: N, y: Float, pxPerUnit: Double): Rectangle2D.Float {
+    val left = ((node.start - xRange.min) * pxPerUnit).toFloat()
+    val right = ((node.end - xRange.min) * pxPerUnit).toFloat()
     return Rectangle2D.Float().apply {
       x = left
-      y = ((nodeHeight + nodeYPaddingPx) * node.depth - yRange.min).toFloat()
-      width = right - left
+      this.y = y
+      width = max(0f, right - left - nodeXPaddingPx)
       height = nodeHeight.toFloat()
     }
   }
@@ -273,7 +291,26 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     rootChanged()
   }
 
-  fun getNodeAt(point: Point): N? = (drawnNodes zip drawnRectangles).find { (_, rect) -> point in rect }?.first
+  /**
+   * Must be called after the displayed tree is changed in place, i.e. nodes are added or removed, or their ranges or depths change,
+   * as the nodes drawn are looked up in an index of the tree rather than by walking it.
+   */
+  fun treeChanged() = rootChanged()
+
+  fun getNodeAt(point: Point): N? {
+    // Rows are ordered by depth, which is top to bottom for TOP_DOWN and bottom to top for BOTTOM_UP.
+    val rowIndex = binarySearchLast(drawnRowStarts.size) { row ->
+      val y = drawnRectangles[drawnRowStarts[row]].y
+      if (orientation == Orientation.TOP_DOWN) y <= point.y else y + nodeHeight > point.y
+    }
+    if (rowIndex < 0) {
+      return null
+    }
+    val rowStart = drawnRowStarts[rowIndex]
+    val rowEnd = if (rowIndex + 1 < drawnRowStarts.size) drawnRowStarts[rowIndex + 1] else drawnNodes.size
+    val i = rowStart + binarySearchLast(rowEnd - rowStart) { drawnRectangles[rowStart + it].x <= point.x }
+    return if (i >= rowStart && point in drawnRectangles[i]) drawnNodes[i] else null
+  }
 
   private fun initializeInputMap() {
     fun bindKey(key: Int, action: String) = inputMap.put(KeyStroke.getKeyStroke(key, 0), action)
@@ -379,19 +416,7 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     if (root == null) {
       return 0
     }
-    var maxDepth = -1
-    val queue: Queue<N> = LinkedList()
-    queue.add(root)
-    while (!queue.isEmpty()) {
-      val n = queue.poll()!!
-      if (n.depth > maxDepth) {
-        maxDepth = n.depth
-      }
-      for (i in 0 until n.childCount) {
-        queue.add(n.getChildAt(i))
-      }
-    }
-    maxDepth += 1
+    val maxDepth = max(index.maxDepth, -1) + 1
     // The HEIGHT_PADDING is for the chart's toe (the innermost frame on call stacks).
     // We have this because the padding near the chart's head (the outermost frame on call stacks)
     // is there because the root node of the tree is invisible.
@@ -471,5 +496,16 @@ class HTreeChart<N : HNode<N>> private constructor(builder: Builder<N>) : Animat
     const val HEIGHT_PADDING = 15
     private const val MOUSE_WHEEL_SCROLL_FACTOR = 8
     //private operator fun Rectangle2D.contains(p: Point) = p.getX() in minX..maxX && p.getY() in minY .. maxY
+
+    /** Returns the last index in `[0, size)` for which [predicate] holds, given that it holds for a prefix, or -1 if it holds for none. */
+    private inline fun binarySearchLast(size: Int, predicate: (Int) -> Boolean): Int {
+      var low = 0
+      var high = size
+      while (low < high) {
+        val mid = (low + high) ushr 1
+        if (predicate(mid)) low = mid + 1 else high = mid
+      }
+      return low - 1
+    }
   }
 }
\ No newline at end of file
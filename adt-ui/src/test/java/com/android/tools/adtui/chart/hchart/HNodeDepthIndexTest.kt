@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.chart.hchart
+
+import com.android.tools.adtui.model.DefaultHNode
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class HNodeDepthIndexTest {
+
+  private fun node(name: String, start: Long, end: Long, depth: Int, vararg children: DefaultHNode<String>) =
+    DefaultHNode(name, start, end).apply {
+      this.depth = depth
+      children.forEach { addChild(it) }
+    }
+
+  private val tree = node("root", 0, 100, 0,
+                          node("a", 0, 40, 1,
+                               node("a1", 0, 10, 2),
+                               node("a2", 20, 30, 2)),
+                          node("b", 50, 100, 1,
+                               node("b1", 60, 70, 2),
+                               node("b2", 80, 90, 2)))
+
+  @Test
+  fun groupsNodesByDepthSortedByStart() {
+    val index = HNodeDepthIndex(tree)
+    assertThat(index.minDepth).isEqualTo(0)
+    assertThat(index.maxDepth).isEqualTo(2)
+    assertThat(index.nodeCount).isEqualTo(7)
+    assertThat(index.nodesAt(1).map { it.data }).containsExactly("a", "b").inOrder()
+    assertThat(index.nodesAt(2).map { it.data }).containsExactly("a1", "a2", "b1", "b2").inOrder()
+    assertThat(index.nodesAt(3)).isEmpty()
+  }
+
+  @Test
+  fun firstEndingAtOrAfter() {
+    val index = HNodeDepthIndex(tree)
+    assertThat(index.firstEndingAtOrAfter(2, 0.0)).isEqualTo(0)
+    assertThat(index.firstEndingAtOrAfter(2, 10.0)).isEqualTo(0)
+    assertThat(index.firstEndingAtOrAfter(2, 10.5)).isEqualTo(1)
+    assertThat(index.firstEndingAtOrAfter(2, 75.0)).isEqualTo(3)
+    assertThat(index.firstEndingAtOrAfter(2, 95.0)).isEqualTo(4)
+    assertThat(index.firstEndingAtOrAfter(5, 0.0)).isEqualTo(0)
+  }
+
+  @Test
+  fun overlappingNodesAtSameDepthAreNotSkipped() {
+    // "long" starts first and ends last, so a node ending before x may still be followed by one ending after it.
+    val root = node("root", 0, 100, 0,
+                    node("long", 0, 100, 1),
+                    node("short", 10, 20, 1))
+    val index = HNodeDepthIndex(root)
+    assertThat(index.firstEndingAtOrAfter(1, 50.0)).isEqualTo(0)
+  }
+
+  @Test
+  fun emptyTree() {
+    val index = HNodeDepthIndex<DefaultHNode<String>>(null)
+    assertThat(index.nodeCount).isEqualTo(0)
+    assertThat(index.maxDepth).isLessThan(index.minDepth)
+    assertThat(index.nodesAt(0)).isEmpty()
+  }
+}
@@ -25,6 +25,7 @@ import org.junit.Test
 import java.awt.Color
 import java.awt.Dimension
 import java.awt.FontMetrics
+import java.awt.Point
 import java.awt.event.KeyEvent.VK_CONTROL
 import java.awt.event.KeyEvent.VK_META
 import java.awt.geom.Rectangle2D
@@ -349,6 +350,58 @@ class HTreeChartTest {
     assertThat(myChart.yRange.max).isWithin(EPSILON).of(18.0)
   }
 
+  @Test
+  fun testGetNodeAtFindsDrawnNode() {
+    val root = DefaultHNode("root", 0, 100)
+    val left = DefaultHNode("left", 0, 40).apply { depth = 1 }
+    val right = DefaultHNode("right", 50, 100).apply { depth = 1 }
+    val leaf = DefaultHNode("leaf", 60, 70).apply { depth = 2 }
+    root.addChild(left)
+    root.addChild(right)
+    right.addChild(leaf)
+    for (orientation in HTreeChart.Orientation.values()) {
+      val range = Range(0.0, 100.0)
+      val chart = HTreeChart.Builder(root, range, FakeRenderer()).setOrientation(orientation).build()
+      chart.size = Dimension(100, myViewHeight)
+      FakeUi(chart).render()
+      val rowHeight = chart.defaultFontMetrics.height + HTreeChart.PADDING
+      fun yOf(depth: Int) = when (orientation) {
+        HTreeChart.Orientation.TOP_DOWN -> rowHeight * depth + 1
+        HTreeChart.Orientation.BOTTOM_UP -> myViewHeight - rowHeight * depth - 2
+      }
+      assertThat(chart.getNodeAt(Point(10, yOf(0)))).isSameAs(root)
+      assertThat(chart.getNodeAt(Point(10, yOf(1)))).isSameAs(left)
+      assertThat(chart.getNodeAt(Point(45, yOf(1)))).isNull()
+      assertThat(chart.getNodeAt(Point(55, yOf(1)))).isSameAs(right)
+      assertThat(chart.getNodeAt(Point(65, yOf(2)))).isSameAs(leaf)
+      assertThat(chart.getNodeAt(Point(10, yOf(2)))).isNull()
+    }
+  }
+
+  @Test
+  fun testTreeChangedFindsAddedNode() {
+    val root = DefaultHNode("root", 0, 100)
+    val child = DefaultHNode("child", 0, 40).apply { depth = 1 }
+    root.addChild(child)
+    val chart = HTreeChart.Builder(root, Range(0.0, 100.0), FakeRenderer()).setOrientation(HTreeChart.Orientation.TOP_DOWN).build()
+    chart.size = Dimension(100, myViewHeight)
+    val ui = FakeUi(chart)
+    ui.render()
+    val rowHeight = chart.defaultFontMetrics.height + HTreeChart.PADDING
+    assertThat(chart.maximumHeight).isEqualTo(rowHeight * 2 + HTreeChart.HEIGHT_PADDING)
+
+    val added = DefaultHNode("added", 50, 100).apply { depth = 1 }
+    val leaf = DefaultHNode("leaf", 60, 70).apply { depth = 2 }
+    root.addChild(added)
+    added.addChild(leaf)
+    chart.treeChanged()
+    ui.render()
+
+    assertThat(chart.maximumHeight).isEqualTo(rowHeight * 3 + HTreeChart.HEIGHT_PADDING)
+    assertThat(chart.getNodeAt(Point(55, rowHeight + 1))).isSameAs(added)
+    assertThat(chart.getNodeAt(Point(65, rowHeight * 2 + 1))).isSameAs(leaf)
+  }
+
   class FakeRenderer : DefaultHRenderer<String>() {
     override fun getFillColor(nodeData: String) = Color.white
 
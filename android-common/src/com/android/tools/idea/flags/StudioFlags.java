@@ -319,6 +319,11 @@ public final class StudioFlags {
     "If enabled, the surface displays background class preloading progress",
     false);
 
+  public static final Flag<Boolean> NELE_PERSISTENT_CLASS_CACHE = new BooleanFlag(
+    NELE, "persistent.class.cache", "Persist transformed library classes",
+    "If enabled, the library classes transformed for layoutlib are stored on disk and reused after restarting Studio",
+    true);
+
   public static final Flag<Boolean> NELE_NEW_COMPONENT_TREE = new BooleanFlag(
     NELE, "use.component.tree.builder", "Use the Component Tree builder",
     "If enabled, use the Component Tree builder for the Nele component tree",
@@ -485,6 +490,13 @@ public final class StudioFlags {
     "Changing the value of this flag requires restarting Android Studio.",
     true);
 
+  public static final Flag<Integer> DEVICE_EXPLORER_TRANSFER_CONCURRENCY = new IntFlag(
+    RUNDEBUG,
+    "adb.device.explorer.transfer.concurrency",
+    "Number of concurrent file transfers in the \"Device Explorer\" tool window",
+    "Maximum number of files the \"Device Explorer\" tool window transfers at the same time when downloading or uploading directories",
+    4);
+
   public static final Flag<Boolean> ADBLIB_MIGRATION_WIFI_PAIRING = new BooleanFlag(
     RUNDEBUG,
     "adblib.migration.wifi.pairing",
@@ -1002,6 +1014,10 @@ public final class StudioFlags {
     EMBEDDED_EMULATOR, "screenshot.statistics.interval", "Aggregation Interval for Screenshot Statistics",
     "Aggregation interval in seconds for statistics of received Emulator screenshots",
     120);
+  public static final Flag<Boolean> EMBEDDED_EMULATOR_SHARED_MEMORY_SCREENSHOTS = new BooleanFlag(
+    EMBEDDED_EMULATOR, "screenshot.shared.memory", "Receive Emulator Screenshots Through Shared Memory",
+    "Receives Emulator screenshots through a memory-mapped file instead of gRPC messages",
+    false);
   public static final Flag<Boolean> EMBEDDED_EMULATOR_TRACE_GRPC_CALLS = new BooleanFlag(
     EMBEDDED_EMULATOR, "trace.grpc.calls", "Enable Emulator gRPC Tracing",
     "Enables tracing of most Emulator gRPC calls",
@@ -1240,6 +1256,28 @@ public final class StudioFlags {
     true
   );
 
+  public static final Flag<Boolean> LINT_EDITOR_SESSION = new BooleanFlag(
+    EDITOR, "lint.editor.session",
+    "Reuse editor lint results",
+    "If enabled, the lint results of a file are reused by the next editor pass when nothing in the project changed since.",
+    true
+  );
+
+  public static final Flag<Boolean> LINT_EDITOR_DETECTOR_TIMING = new BooleanFlag(
+    EDITOR, "lint.editor.detector.timing",
+    "Record editor lint timing per detector",
+    "If enabled, editor lint passes run each detector again separately and log the detectors that take the longest. " +
+    "This makes the passes much slower and is only meant to find slow detectors.",
+    false
+  );
+
+  public static final Flag<Boolean> LINT_CACHED_XML_DOM = new BooleanFlag(
+    EDITOR, "lint.cached.xml.dom",
+    "Cache the lint DOM of XML files",
+    "If enabled, the DOM tree lint creates for an XML file is kept until the file changes instead of being created on every lint pass.",
+    true
+  );
+
   //endregion
 
   //region Essentials Mode
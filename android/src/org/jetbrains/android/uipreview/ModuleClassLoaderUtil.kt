@@ -222,6 +222,8 @@ internal class ModuleClassLoaderImpl(module: Module,
   }
 
   init {
+    // The library paths must match the ones recorded when loading classes, see createNonProjectLoader
+    binaryCache.setDependencies(externalLibraries.map { FileUtil.toSystemIndependentName(it.toString()) })
     val nonProjectLoader = createNonProjectLoader(nonProjectTransforms,
                                                   binaryCache,
                                                   { _nonProjectLoadedClassNames.add(it) },
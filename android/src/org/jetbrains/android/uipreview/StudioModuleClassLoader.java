@@ -180,7 +180,7 @@ public final class StudioModuleClassLoader extends ModuleClassLoader implements
                           @NotNull ClassTransform nonProjectTransformations,
                           @NotNull ModuleClassLoaderDiagnosticsWrite diagnostics) {
     this(parent, renderContext, projectTransformations, nonProjectTransformations,
-         ClassBinaryCacheManager.getInstance().getCache(renderContext.getModule()),
+         ClassBinaryCacheManager.getInstance().getCache(renderContext.getModule(), StudioFlags.NELE_PERSISTENT_CLASS_CACHE.get()),
          diagnostics);
   }
 
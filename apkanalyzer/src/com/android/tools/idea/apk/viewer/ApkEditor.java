@@ -206,6 +206,7 @@ public class ApkEditor extends UserDataHolderBase implements FileEditor, ApkView
     DialogBuilder builder = new DialogBuilder(myProject);
     builder.setTitle(oldApk.getName() + " (old) vs " + myRoot.getName() + " (new)");
     ApkDiffPanel panel = new ApkDiffPanel(oldApk, myRoot);
+    Disposer.register(builder, panel);
     builder.setCenterPanel(panel.getContainer());
     builder.setPreferredFocusComponent(panel.getPreferredFocusedComponent());
     builder.addCloseButton();
@@ -38,11 +38,11 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.intellij.openapi.diagnostic.Logger;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.ide.PooledThreadExecutor;
@@ -57,6 +57,8 @@ public class ApkParser {
   @Nullable private ListenableFuture<ArchiveNode> myTreeStructureWithDownloadSizes;
   @Nullable private ListenableFuture<Long> myRawFullApkSize;
   @Nullable private ListenableFuture<Long> myCompressedFullApkSize;
+  @Nullable private ListenableFuture<Map<String, Long>> myRawSizePerFile;
+  @Nullable private ListenableFuture<Map<String, Long>> myDownloadSizePerFile;
 
   public ApkParser(@NotNull ArchiveContext archiveContext, @NotNull ApkSizeCalculator sizeCalculator) {
     myArchiveContext = archiveContext;
@@ -73,7 +75,9 @@ public class ApkParser {
       myTreeStructureWithDownloadSizes,
       myTreeStructure,
       myRawFullApkSize,
-      myCompressedFullApkSize
+      myCompressedFullApkSize,
+      myRawSizePerFile,
+      myDownloadSizePerFile
     };
     for (ListenableFuture future : futures) {
       if (future != null) {
@@ -82,10 +86,21 @@ public class ApkParser {
     }
   }
 
+  /**
+   * Returns the tree of the archive with the raw file sizes. The sizes are read from the archive while the
+   * tree is being built, and the download sizes, which take the longest, start being computed at the same time.
+   */
   @NotNull
   public synchronized ListenableFuture<ArchiveNode> constructTreeStructure() {
     if (myTreeStructure == null) {
-      myTreeStructure = ourExecutorService.submit(this::createTreeNode);
+      ListenableFuture<ArchiveNode> tree = ourExecutorService.submit(() -> ArchiveTreeStructure.create(myArchiveContext));
+      ListenableFuture<Map<String, Long>> rawSizes = getRawSizePerFile();
+      getDownloadSizePerFile();
+      myTreeStructure = Futures.whenAllSucceed(tree, rawSizes).call(() -> {
+        ArchiveNode node = Futures.getDone(tree);
+        ArchiveTreeStructure.updateRawFileSizes(node, new PrecomputedSizeCalculator(myApkSizeCalculator, getArchive().getPath(), Futures.getDone(rawSizes), null));
+        return node;
+      }, PooledThreadExecutor.INSTANCE);
     }
 
     return myTreeStructure;
@@ -94,14 +109,34 @@ public class ApkParser {
   @NotNull
   public synchronized ListenableFuture<ArchiveNode> updateTreeWithDownloadSizes() {
     if (myTreeStructureWithDownloadSizes == null) {
-      myTreeStructureWithDownloadSizes = Futures.transform(constructTreeStructure(), input -> {
-        ArchiveTreeStructure.updateDownloadFileSizes(input, myApkSizeCalculator);
-        return input;
+      ListenableFuture<ArchiveNode> tree = constructTreeStructure();
+      ListenableFuture<Map<String, Long>> downloadSizes = getDownloadSizePerFile();
+      myTreeStructureWithDownloadSizes = Futures.whenAllSucceed(tree, downloadSizes).call(() -> {
+        ArchiveNode node = Futures.getDone(tree);
+        ArchiveTreeStructure.updateDownloadFileSizes(node, new PrecomputedSizeCalculator(myApkSizeCalculator, getArchive().getPath(), null, Futures.getDone(downloadSizes)));
+        return node;
       }, PooledThreadExecutor.INSTANCE);
     }
     return myTreeStructureWithDownloadSizes;
   }
 
+  @NotNull
+  private synchronized ListenableFuture<Map<String, Long>> getRawSizePerFile() {
+    if (myRawSizePerFile == null) {
+      myRawSizePerFile = ourExecutorService.submit(() -> myApkSizeCalculator.getRawSizePerFile(myArchiveContext.getArchive().getPath()));
+    }
+    return myRawSizePerFile;
+  }
+
+  @NotNull
+  private synchronized ListenableFuture<Map<String, Long>> getDownloadSizePerFile() {
+    if (myDownloadSizePerFile == null) {
+      myDownloadSizePerFile =
+        ourExecutorService.submit(() -> myApkSizeCalculator.getDownloadSizePerFile(myArchiveContext.getArchive().getPath()));
+    }
+    return myDownloadSizePerFile;
+  }
+
   @NotNull
   public synchronized ListenableFuture<AndroidApplicationInfo> getApplicationInfo(@NotNull Path pathToAapt, @Nullable ArchiveEntry entry) {
     return ourExecutorService.submit(() -> getAppInfo(pathToAapt, entry));
@@ -124,13 +159,6 @@ public class ApkParser {
     return myCompressedFullApkSize;
   }
 
-  @NotNull
-  private ArchiveNode createTreeNode() throws IOException {
-    ArchiveNode node = ArchiveTreeStructure.create(myArchiveContext);
-    ArchiveTreeStructure.updateRawFileSizes(node, myApkSizeCalculator);
-    return node;
-  }
-
   @NotNull
   public static AndroidApplicationInfo getAppInfo(@NonNull Path pathToAapt, @Nullable Archive archive) {
     if (archive == null){
@@ -193,4 +221,47 @@ public class ApkParser {
     List<String> xmlTree = invoker.getXmlTree(archiveFile, entryPath);
     return AndroidApplicationInfo.parse(xmlTree);
   }
+
+  /**
+   * An {@link ApkSizeCalculator} returning the per file sizes computed ahead of time, so that {@link ArchiveTreeStructure}
+   * can apply them to a tree without reading the archive again. Other archives are delegated to the real calculator.
+   */
+  private static class PrecomputedSizeCalculator implements ApkSizeCalculator {
+    @NotNull private final ApkSizeCalculator myDelegate;
+    @NotNull private final Path myArchivePath;
+    @Nullable private final Map<String, Long> myRawSizePerFile;
+    @Nullable private final Map<String, Long> myDownloadSizePerFile;
+
+    private PrecomputedSizeCalculator(@NotNull ApkSizeCalculator delegate,
+                                      @NotNull Path archivePath,
+                                      @Nullable Map<String, Long> rawSizePerFile,
+                                      @Nullable Map<String, Long> downloadSizePerFile) {
+      myDelegate = delegate;
+      myArchivePath = archivePath;
+      myRawSizePerFile = rawSizePerFile;
+      myDownloadSizePerFile = downloadSizePerFile;
+    }
+
+    @Override
+    public long getFullApkDownloadSize(@NonNull Path apk) {
+      return myDelegate.getFullApkDownloadSize(apk);
+    }
+
+    @Override
+    public long getFullApkRawSize(@NonNull Path apk) {
+      return myDelegate.getFullApkRawSize(apk);
+    }
+
+    @NonNull
+    @Override
+    public Map<String, Long> getDownloadSizePerFile(@NonNull Path apk) {
+      return myDownloadSizePerFile != null && apk.equals(myArchivePath) ? myDownloadSizePerFile : myDelegate.getDownloadSizePerFile(apk);
+    }
+
+    @NonNull
+    @Override
+    public Map<String, Long> getRawSizePerFile(@NonNull Path apk) {
+      return myRawSizePerFile != null && apk.equals(myArchivePath) ? myRawSizePerFile : myDelegate.getRawSizePerFile(apk);
+    }
+  }
 }
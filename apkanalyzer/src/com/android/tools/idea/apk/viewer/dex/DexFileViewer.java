@@ -32,6 +32,7 @@ import com.android.tools.proguard.ProguardMap;
 import com.android.tools.proguard.ProguardSeedsMap;
 import com.android.tools.proguard.ProguardUsagesMap;
 import com.android.tools.smali.dexlib2.dexbacked.DexBackedDexFile;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
@@ -121,7 +122,8 @@ public class DexFileViewer extends UserDataHolderBase implements ApkFileEditorCo
 
   @Nullable private ProguardMappings myProguardMappings;
   private boolean myDeobfuscateNames;
-  private ListenableFuture<DexReferences> myDexReferences;
+  @Nullable private ListenableFuture<Map<Path, DexBackedDexFile>> myLoadedDexFiles;
+  @Nullable private ListenableFuture<DexReferences> myDexReferences;
 
   @NotNull public static final NotificationGroup LOGGING_NOTIFICATION =
     NotificationGroup.logOnlyGroup("APK Analyzer (Info)", PluginId.getId("org.jetbrains.android"));
@@ -332,13 +334,7 @@ public class DexFileViewer extends UserDataHolderBase implements ApkFileEditorCo
 
   public void initDex() {
     ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
-    ListenableFuture<Map<Path, DexBackedDexFile>> dexFileFuture = pooledThreadExecutor.submit(() -> {
-      Map<Path, DexBackedDexFile> dexFiles = Maps.newHashMapWithExpectedSize(myDexFiles.length);
-      for (int i = 0; i < myDexFiles.length; i++) {
-        dexFiles.put(myDexFiles[i], DexFiles.getDexFile(myDexFiles[i]));
-      }
-      return dexFiles;
-    });
+    ListenableFuture<Map<Path, DexBackedDexFile>> dexFileFuture = loadDexFiles();
 
     ListenableFuture<DexPackageNode> treeNodeFuture =
       Futures.transform(dexFileFuture, new Function<Map<Path, DexBackedDexFile>, DexPackageNode>() {
@@ -385,24 +381,28 @@ public class DexFileViewer extends UserDataHolderBase implements ApkFileEditorCo
       }
     }, EdtExecutorService.getInstance());
 
-    ListenableFuture<DexFileStats> dexStatsFuture =
-      Futures.transform(dexFileFuture, new Function<Map<Path, DexBackedDexFile>, DexFileStats>() {
-        @NotNull
-        @Override
-        public DexFileStats apply(@Nullable Map<Path, DexBackedDexFile> input) {
-          assert input != null;
-          return DexFileStats.create(input.values());
-        }
-      }, pooledThreadExecutor);
-
     //this will never change for a given dex file, regardless of proguard mappings
     //so it doesn't make sense to recompute every time
-    if (((BorderLayout)myTopPanel.getLayout()).getLayoutComponent(BorderLayout.EAST) == null) {
+    if (((BorderLayout)myTopPanel.getLayout()).getLayoutComponent(BorderLayout.EAST) != null) {
+      releaseWhenDone(dexFileFuture, treeNodeFuture);
+    }
+    else {
+      ListenableFuture<DexFileStats> dexStatsFuture =
+        Futures.transform(dexFileFuture, new Function<Map<Path, DexBackedDexFile>, DexFileStats>() {
+          @NotNull
+          @Override
+          public DexFileStats apply(@Nullable Map<Path, DexBackedDexFile> input) {
+            assert input != null;
+            return DexFileStats.create(input.values());
+          }
+        }, pooledThreadExecutor);
+
       SimpleColoredComponent titleComponent = new SimpleColoredComponent();
       titleComponent.setIcon(AllIcons.Actions.Refresh);
       titleComponent.append("Loading dex stats");
       myTopPanel.add(titleComponent, BorderLayout.EAST);
 
+      releaseWhenDone(dexFileFuture, treeNodeFuture, dexStatsFuture);
       Futures.addCallback(dexStatsFuture, new FutureCallback<DexFileStats>() {
         @Override
         public void onSuccess(DexFileStats result) {
@@ -487,6 +487,14 @@ public class DexFileViewer extends UserDataHolderBase implements ApkFileEditorCo
 
   @Override
   public void dispose() {
+    if (myDexReferences != null) {
+      myDexReferences.cancel(true);
+    }
+    if (myLoadedDexFiles != null) {
+      myLoadedDexFiles.cancel(true);
+    }
+    myLoadedDexFiles = null;
+    myDexReferences = null;
     Disposer.dispose(myDisposable);
   }
 
@@ -499,24 +507,63 @@ public class DexFileViewer extends UserDataHolderBase implements ApkFileEditorCo
     return myDeobfuscateNames;
   }
 
+  /**
+   * Returns the parsed dex files, reading them in parallel if they are not loaded already. The package tree and the
+   * stats share the same parsed files, which are released once they are done with them; see {@link #releaseWhenDone}.
+   */
+  @NotNull
+  private ListenableFuture<Map<Path, DexBackedDexFile>> loadDexFiles() {
+    if (myLoadedDexFiles == null) {
+      myLoadedDexFiles = loadDexFiles(myDexFiles, MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE));
+    }
+    return myLoadedDexFiles;
+  }
+
+  /** Reads the given dex files, one task per file, into a map with the same order as {@code dexFiles}. */
+  @VisibleForTesting
+  @NotNull
+  static ListenableFuture<Map<Path, DexBackedDexFile>> loadDexFiles(@NotNull Path[] dexFiles,
+                                                                    @NotNull ListeningExecutorService executor) {
+    List<ListenableFuture<DexBackedDexFile>> files = new ArrayList<>(dexFiles.length);
+    for (Path dexFile : dexFiles) {
+      files.add(executor.submit(() -> DexFiles.getDexFile(dexFile)));
+    }
+    return Futures.transform(Futures.allAsList(files), input -> {
+      Map<Path, DexBackedDexFile> result = Maps.newLinkedHashMapWithExpectedSize(dexFiles.length);
+      for (int i = 0; i < dexFiles.length; i++) {
+        result.put(dexFiles[i], input.get(i));
+      }
+      return result;
+    }, MoreExecutors.directExecutor());
+  }
+
+  /**
+   * Drops the parsed dex files once the given consumers are done with them, so they are not kept in memory while the
+   * viewer is open. A later request, such as showing references or applying Proguard mappings, reads them again.
+   */
+  private void releaseWhenDone(@NotNull ListenableFuture<Map<Path, DexBackedDexFile>> dexFiles,
+                               @NotNull ListenableFuture<?>... consumers) {
+    Futures.whenAllComplete(consumers).run(() -> {
+      if (myLoadedDexFiles == dexFiles) {
+        myLoadedDexFiles = null;
+      }
+    }, EdtExecutorService.getInstance());
+  }
+
+  /** Returns the index of references between the dex files, building it the first time it is requested. */
   @Nullable
   ListenableFuture<DexReferences> getDexReferences() {
     if (myDexReferences == null) {
       ListeningExecutorService pooledThreadExecutor = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
-      ListenableFuture<DexBackedDexFile[]> dexFileFuture = pooledThreadExecutor.submit(() -> {
-        DexBackedDexFile[] files = new DexBackedDexFile[myDexFiles.length];
-        for (int i = 0; i < files.length; i++) {
-          files[i] = DexFiles.getDexFile(myDexFiles[i]);
-        }
-        return files;
-      });
-      myDexReferences = Futures.transform(dexFileFuture, new Function<DexBackedDexFile[], DexReferences>() {
+      ListenableFuture<Map<Path, DexBackedDexFile>> dexFiles = loadDexFiles();
+      myDexReferences = Futures.transform(dexFiles, new Function<Map<Path, DexBackedDexFile>, DexReferences>() {
         @Override
-        public DexReferences apply(@Nullable DexBackedDexFile[] inputs) {
+        public DexReferences apply(@Nullable Map<Path, DexBackedDexFile> inputs) {
           assert inputs != null;
-          return new DexReferences(inputs);
+          return new DexReferences(inputs.values().toArray(new DexBackedDexFile[0]));
         }
       }, pooledThreadExecutor);
+      releaseWhenDone(dexFiles, myDexReferences);
     }
 
     return myDexReferences;
@@ -30,17 +30,22 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.ColoredTreeCellRenderer;
 import com.intellij.ui.LoadingNode;
+import com.intellij.ui.SimpleTextAttributes;
 import com.intellij.ui.TreeSpeedSearch;
 import com.intellij.ui.treeStructure.Tree;
 import com.intellij.util.Function;
 import com.intellij.util.concurrency.EdtExecutorService;
 import com.intellij.util.containers.Convertor;
 import com.intellij.util.ui.JBUI;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import javax.swing.JCheckBox;
 import javax.swing.JComponent;
 import javax.swing.JPanel;
@@ -50,9 +55,10 @@ import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.ide.PooledThreadExecutor;
 
-public class ApkDiffPanel {
+public class ApkDiffPanel implements Disposable {
 
   private static final ListeningExecutorService ourExecutorService = MoreExecutors.listeningDecorator(PooledThreadExecutor.INSTANCE);
 
@@ -68,6 +74,7 @@ public class ApkDiffPanel {
   private DefaultTreeModel myTreeModel;
 
   private final AtomicReference<DefaultMutableTreeNode> myFbfDiffTreeNode = new AtomicReference<>(null);
+  @NotNull private final ListenableFuture<ArchiveEntryComparison> myEntryComparison;
 
   private static final int TEXT_RENDERER_HORIZ_PADDING = 6;
   private static final int TEXT_RENDERER_VERT_PADDING = 4;
@@ -76,6 +83,18 @@ public class ApkDiffPanel {
     myOldApk = oldApk;
     myNewApk = newApk;
 
+    // Find the entries that changed from the central directories, to highlight them once known. The classes that
+    // changed in a dex file are only compared once its row is shown.
+    myEntryComparison = ArchiveEntryComparison.compare(VfsUtilCore.virtualToIoFile(myOldApk).toPath(),
+                                                       VfsUtilCore.virtualToIoFile(myNewApk).toPath(),
+                                                       ourExecutorService);
+    Futures.addCallback(myEntryComparison, new FutureCallBackAdapter<>() {
+      @Override
+      public void onSuccess(ArchiveEntryComparison result) {
+        myTree.repaint();
+      }
+    }, EdtExecutorService.getInstance());
+
     myCalculateFileByFileCheckBox.addItemListener(e -> {
       if (myCalculateFileByFileCheckBox.isSelected()) {
         myCalculateFileByFileCheckBox.setEnabled(false);
@@ -97,16 +116,22 @@ public class ApkDiffPanel {
     }
 
     FileByFileProgressDialog dialog = new FileByFileProgressDialog();
-    ListenableFuture<DefaultMutableTreeNode> future = ourExecutorService.submit(() -> {
+    // Cancelling the dialog must not cancel the comparison, which is shared with the diff tree. If the comparison
+    // fails, the archives are diffed file by file as if they had changes.
+    ListenableFuture<ArchiveEntryComparison> entryComparison = Futures.catching(
+      Futures.nonCancellationPropagating(myEntryComparison), Exception.class, e -> null, MoreExecutors.directExecutor());
+    ListenableFuture<DefaultMutableTreeNode> future = Futures.transformAsync(entryComparison, comparison -> ourExecutorService.submit(() -> {
       Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
       try (ArchiveContext context1 = Archives.open(VfsUtilCore.virtualToIoFile(myOldApk).toPath());
            ArchiveContext context2 = Archives.open(VfsUtilCore.virtualToIoFile(myNewApk).toPath())) {
+        if (comparison != null && !comparison.hasChanges()) {
+          // The patch of identical archives is empty, no need to compute it file by file
+          return ApkDiffParser.createTreeNode(context1, context2);
+        }
         return ApkFileByFileDiffParser.createTreeNode(context1, context2, dialog::onUpdate);
       }
-      finally {
-        dialog.closeDialog();
-      }
-    });
+    }), MoreExecutors.directExecutor());
+    future.addListener(dialog::closeDialog, MoreExecutors.directExecutor());
 
     Futures.addCallback(
       future,
@@ -169,7 +194,7 @@ public class ApkDiffPanel {
                    .setPreferredWidth(600)
                    .setHeaderAlignment(SwingConstants.LEADING)
                    .setHeaderBorder(JBUI.Borders.empty(TEXT_RENDERER_VERT_PADDING, TEXT_RENDERER_HORIZ_PADDING))
-                   .setRenderer(new NameRenderer()))
+                   .setRenderer(new NameRenderer(this::getEntryComparison, () -> myTree.repaint())))
       .addColumn(new ColumnTreeBuilder.ColumnBuilder()
                    .setName("Old Size")
                    .setPreferredWidth(150)
@@ -191,6 +216,30 @@ public class ApkDiffPanel {
     myColumnTreePane = builder.build();
   }
 
+  @Nullable
+  private ArchiveEntryComparison getEntryComparison() {
+    // Null while the form creates the tree, before the constructor runs
+    //noinspection ConstantValue
+    if (myEntryComparison == null || !myEntryComparison.isDone() || myEntryComparison.isCancelled()) {
+      return null;
+    }
+    try {
+      return Futures.getDone(myEntryComparison);
+    }
+    catch (ExecutionException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void dispose() {
+    myEntryComparison.cancel(true);
+    ArchiveEntryComparison comparison = getEntryComparison();
+    if (comparison != null) {
+      comparison.cancelDexDeltas();
+    }
+  }
+
   @NotNull
   public JComponent getContainer() {
     return myContainer;
@@ -242,8 +291,13 @@ public class ApkDiffPanel {
   }
 
   static class NameRenderer extends ColoredTreeCellRenderer {
+    @NotNull private final Supplier<ArchiveEntryComparison> myEntryComparison;
+    @NotNull private final Runnable myRepaint;
 
-    NameRenderer() { }
+    NameRenderer(@NotNull Supplier<ArchiveEntryComparison> entryComparison, @NotNull Runnable repaint) {
+      myEntryComparison = entryComparison;
+      myRepaint = repaint;
+    }
 
     @Override
     public void customizeCellRenderer(@NotNull JTree tree,
@@ -260,7 +314,44 @@ public class ApkDiffPanel {
         return;
       }
 
-      append(entry.getName());
+      ArchiveEntryComparison comparison = myEntryComparison.get();
+      if (comparison == null) {
+        append(entry.getName());
+        return;
+      }
+
+      String path = entry.getPath().toString();
+      ArchiveEntryComparison.Status status = comparison.getStatus(path);
+      append(entry.getName(), status == ArchiveEntryComparison.Status.UNCHANGED
+                              ? SimpleTextAttributes.GRAYED_ATTRIBUTES
+                              : SimpleTextAttributes.REGULAR_ATTRIBUTES);
+
+      ListenableFuture<ArchiveEntryComparison.DexDelta> deltaFuture = comparison.getDexDelta(path);
+      if (deltaFuture == null) {
+        return;
+      }
+      if (!deltaFuture.isDone()) {
+        deltaFuture.addListener(myRepaint, EdtExecutorService.getInstance());
+        return;
+      }
+      ArchiveEntryComparison.DexDelta delta = getDone(deltaFuture);
+      if (delta != null) {
+        append(String.format(Locale.US, " (%1$d classes added, %2$d removed, %3$d changed)", delta.addedClasses.size(),
+                             delta.removedClasses.size(), delta.changedClasses.size()), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+      }
+    }
+
+    @Nullable
+    private static ArchiveEntryComparison.DexDelta getDone(@NotNull ListenableFuture<ArchiveEntryComparison.DexDelta> delta) {
+      if (delta.isCancelled()) {
+        return null;
+      }
+      try {
+        return Futures.getDone(delta);
+      }
+      catch (ExecutionException e) {
+        return null;
+      }
     }
   }
 }
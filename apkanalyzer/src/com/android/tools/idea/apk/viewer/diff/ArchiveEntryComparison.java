@@ -0,0 +1,451 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import com.android.SdkConstants;
+import com.android.tools.apk.analyzer.dex.DexFiles;
+import com.android.tools.smali.dexlib2.dexbacked.DexBackedClassDef;
+import com.android.tools.smali.dexlib2.dexbacked.DexBackedDexFile;
+import com.android.tools.smali.dexlib2.dexbacked.DexBackedField;
+import com.android.tools.smali.dexlib2.dexbacked.DexBackedMethod;
+import com.android.tools.smali.dexlib2.iface.Annotation;
+import com.android.tools.smali.dexlib2.iface.AnnotationElement;
+import com.android.tools.smali.dexlib2.iface.ExceptionHandler;
+import com.android.tools.smali.dexlib2.iface.MethodImplementation;
+import com.android.tools.smali.dexlib2.iface.TryBlock;
+import com.android.tools.smali.dexlib2.iface.debug.DebugItem;
+import com.android.tools.smali.dexlib2.iface.debug.EndLocal;
+import com.android.tools.smali.dexlib2.iface.debug.LineNumber;
+import com.android.tools.smali.dexlib2.iface.debug.LocalInfo;
+import com.android.tools.smali.dexlib2.iface.debug.RestartLocal;
+import com.android.tools.smali.dexlib2.iface.debug.SetSourceFile;
+import com.android.tools.smali.dexlib2.iface.debug.StartLocal;
+import com.android.tools.smali.dexlib2.iface.instruction.DualReferenceInstruction;
+import com.android.tools.smali.dexlib2.iface.instruction.FiveRegisterInstruction;
+import com.android.tools.smali.dexlib2.iface.instruction.Instruction;
+import com.android.tools.smali.dexlib2.iface.instruction.OffsetInstruction;
+import com.android.tools.smali.dexlib2.iface.instruction.OneRegisterInstruction;
+import com.android.tools.smali.dexlib2.iface.instruction.ReferenceInstruction;
+import com.android.tools.smali.dexlib2.iface.instruction.RegisterRangeInstruction;
+import com.android.tools.smali.dexlib2.iface.instruction.SwitchElement;
+import com.android.tools.smali.dexlib2.iface.instruction.SwitchPayload;
+import com.android.tools.smali.dexlib2.iface.instruction.ThreeRegisterInstruction;
+import com.android.tools.smali.dexlib2.iface.instruction.TwoRegisterInstruction;
+import com.android.tools.smali.dexlib2.iface.instruction.WideLiteralInstruction;
+import com.android.tools.smali.dexlib2.iface.instruction.formats.ArrayPayload;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Compares the entries of two archives without decompressing the ones that are known to be identical.
+ * <p>
+ * The size and CRC of every entry are read from the central directories of both archives. Entries whose
+ * sizes or CRCs differ have changed and entries with the same size and CRC have not. Only the entries for which
+ * the central directory is not conclusive, because a CRC is missing, are decompressed and hashed, in parallel.
+ * For the dex files that changed, the classes that were added, removed or changed are listed on demand, one dex
+ * file at a time.
+ */
+final class ArchiveEntryComparison {
+  enum Status { ADDED, REMOVED, CHANGED, UNCHANGED }
+
+  /** The classes of a dex file that changed between the two archives, by type descriptor. */
+  static final class DexDelta {
+    @NotNull final Set<String> addedClasses;
+    @NotNull final Set<String> removedClasses;
+    @NotNull final Set<String> changedClasses;
+
+    DexDelta(@NotNull Set<String> addedClasses, @NotNull Set<String> removedClasses, @NotNull Set<String> changedClasses) {
+      this.addedClasses = addedClasses;
+      this.removedClasses = removedClasses;
+      this.changedClasses = changedClasses;
+    }
+  }
+
+  /** Reads an entry of one of the archives, by name, after the archives were compared. */
+  @FunctionalInterface
+  private interface EntryReader {
+    @NotNull
+    byte[] read(@NotNull String name) throws IOException;
+  }
+
+  @NotNull private final Map<String, Status> myStatuses;
+  @NotNull private final EntryReader myOldReader;
+  @NotNull private final EntryReader myNewReader;
+  /** Runs the dex comparisons one at a time, since each of them holds both dex files in memory. */
+  @NotNull private final Executor myDexDeltaExecutor;
+  @NotNull private final Map<String, ListenableFuture<DexDelta>> myDexDeltas = new ConcurrentHashMap<>();
+
+  private ArchiveEntryComparison(@NotNull Map<String, Status> statuses,
+                                 @NotNull EntryReader oldReader,
+                                 @NotNull EntryReader newReader,
+                                 @NotNull Executor executor) {
+    myStatuses = statuses;
+    myOldReader = oldReader;
+    myNewReader = newReader;
+    myDexDeltaExecutor = MoreExecutors.newSequentialExecutor(executor);
+  }
+
+  /**
+   * Returns the status of the entry at the given path, or null if the path is not an entry of either archive
+   * (such as a directory).
+   */
+  @Nullable
+  Status getStatus(@NotNull String path) {
+    return myStatuses.get(normalize(path));
+  }
+
+  /**
+   * Returns the class level changes of the dex file at the given path, or null if it is not a dex file that changed.
+   * They are computed the first time they are asked for; the future holds null if either dex file cannot be read.
+   */
+  @Nullable
+  ListenableFuture<DexDelta> getDexDelta(@NotNull String path) {
+    String name = normalize(path);
+    if (myStatuses.get(name) != Status.CHANGED || !name.endsWith(SdkConstants.DOT_DEX)) {
+      return null;
+    }
+    return myDexDeltas.computeIfAbsent(name, key -> Futures.submit(() -> computeDexDelta(key), myDexDeltaExecutor));
+  }
+
+  /** Cancels the dex comparisons that are still pending or running. */
+  void cancelDexDeltas() {
+    myDexDeltas.values().forEach(delta -> delta.cancel(true));
+  }
+
+  /** Returns the status of every entry of the two archives, by entry name. */
+  @NotNull
+  Map<String, Status> getStatuses() {
+    return Collections.unmodifiableMap(myStatuses);
+  }
+
+  boolean hasChanges() {
+    return myStatuses.values().stream().anyMatch(status -> status != Status.UNCHANGED);
+  }
+
+  @NotNull
+  private static String normalize(@NotNull String path) {
+    return path.startsWith("/") ? path.substring(1) : path;
+  }
+
+  /**
+   * Compares the archives at the given paths, running the comparisons of the individual entries on the given executor.
+   * The archives are only open while their entries are compared, and are opened again to compute a dex delta.
+   */
+  @NotNull
+  static ListenableFuture<ArchiveEntryComparison> compare(@NotNull Path oldArchive,
+                                                          @NotNull Path newArchive,
+                                                          @NotNull ListeningExecutorService executor) {
+    ListenableFuture<ZipFile> oldZip = executor.submit(() -> new ZipFile(oldArchive.toFile()));
+    ListenableFuture<ZipFile> newZip = executor.submit(() -> new ZipFile(newArchive.toFile()));
+    ListenableFuture<ArchiveEntryComparison> comparison = Futures.whenAllSucceed(oldZip, newZip).callAsync(
+      () -> compare(Futures.getDone(oldZip), Futures.getDone(newZip), name -> readEntry(oldArchive, name),
+                    name -> readEntry(newArchive, name), executor), MoreExecutors.directExecutor());
+    comparison.addListener(() -> {
+      closeQuietly(oldZip);
+      closeQuietly(newZip);
+    }, MoreExecutors.directExecutor());
+    return comparison;
+  }
+
+  /** Compares two open archives, which must stay open for as long as dex deltas are asked for. */
+  @VisibleForTesting
+  @NotNull
+  static ListenableFuture<ArchiveEntryComparison> compare(@NotNull ZipFile oldZip,
+                                                          @NotNull ZipFile newZip,
+                                                          @NotNull ListeningExecutorService executor) {
+    return compare(oldZip, newZip, name -> readEntry(oldZip, name), name -> readEntry(newZip, name), executor);
+  }
+
+  @NotNull
+  private static ListenableFuture<ArchiveEntryComparison> compare(@NotNull ZipFile oldZip,
+                                                                  @NotNull ZipFile newZip,
+                                                                  @NotNull EntryReader oldReader,
+                                                                  @NotNull EntryReader newReader,
+                                                                  @NotNull ListeningExecutorService executor) {
+    Map<String, ZipEntry> oldEntries = getEntries(oldZip);
+    Map<String, ZipEntry> newEntries = getEntries(newZip);
+
+    Map<String, Status> statuses = new LinkedHashMap<>();
+    Map<String, ListenableFuture<Boolean>> ambiguousEntries = new HashMap<>();
+    for (ZipEntry oldEntry : oldEntries.values()) {
+      ZipEntry newEntry = newEntries.get(oldEntry.getName());
+      if (newEntry == null) {
+        statuses.put(oldEntry.getName(), Status.REMOVED);
+      }
+      else if (oldEntry.getSize() != newEntry.getSize() ||
+               (oldEntry.getCrc() != -1 && newEntry.getCrc() != -1 && oldEntry.getCrc() != newEntry.getCrc())) {
+        statuses.put(oldEntry.getName(), Status.CHANGED);
+      }
+      else if (oldEntry.getCrc() != -1 && newEntry.getCrc() != -1 && oldEntry.getSize() != -1) {
+        statuses.put(oldEntry.getName(), Status.UNCHANGED);
+      }
+      else {
+        ambiguousEntries.put(oldEntry.getName(), executor.submit(
+          () -> hash(oldZip, oldEntry).equals(hash(newZip, newEntry))));
+      }
+    }
+    for (String name : newEntries.keySet()) {
+      if (!oldEntries.containsKey(name)) {
+        statuses.put(name, Status.ADDED);
+      }
+    }
+
+    return Futures.whenAllSucceed(ambiguousEntries.values()).call(() -> {
+      for (Map.Entry<String, ListenableFuture<Boolean>> entry : ambiguousEntries.entrySet()) {
+        statuses.put(entry.getKey(), Futures.getDone(entry.getValue()) ? Status.UNCHANGED : Status.CHANGED);
+      }
+      return new ArchiveEntryComparison(statuses, oldReader, newReader, executor);
+    }, MoreExecutors.directExecutor());
+  }
+
+  @NotNull
+  private static Map<String, ZipEntry> getEntries(@NotNull ZipFile zip) {
+    Map<String, ZipEntry> entries = new LinkedHashMap<>(zip.size());
+    zip.stream().filter(entry -> !entry.isDirectory()).forEach(entry -> entries.put(entry.getName(), entry));
+    return entries;
+  }
+
+  @NotNull
+  private static HashCode hash(@NotNull ZipFile zip, @NotNull ZipEntry entry) throws IOException {
+    try (HashingInputStream stream = new HashingInputStream(Hashing.sha256(), zip.getInputStream(entry))) {
+      ByteStreams.exhaust(stream);
+      return stream.hash();
+    }
+  }
+
+  /** Returns the classes that changed between two versions of a dex file, or null if either of them cannot be read. */
+  @Nullable
+  private DexDelta computeDexDelta(@NotNull String name) {
+    Map<String, HashCode> oldClasses;
+    Map<String, HashCode> newClasses;
+    try {
+      oldClasses = hashClasses(DexFiles.getDexFile(myOldReader.read(name)));
+      newClasses = hashClasses(DexFiles.getDexFile(myNewReader.read(name)));
+    }
+    catch (Exception e) {
+      Logger.getInstance(ArchiveEntryComparison.class).warn("Unable to compare the classes of " + name, e);
+      return null;
+    }
+
+    Set<String> added = new TreeSet<>();
+    Set<String> changed = new TreeSet<>();
+    for (Map.Entry<String, HashCode> entry : newClasses.entrySet()) {
+      HashCode oldHash = oldClasses.get(entry.getKey());
+      if (oldHash == null) {
+        added.add(entry.getKey());
+      }
+      else if (!oldHash.equals(entry.getValue())) {
+        changed.add(entry.getKey());
+      }
+    }
+    Set<String> removed = new TreeSet<>(oldClasses.keySet());
+    removed.removeAll(newClasses.keySet());
+    return new DexDelta(added, removed, changed);
+  }
+
+  @NotNull
+  private static byte[] readEntry(@NotNull Path archive, @NotNull String name) throws IOException {
+    try (ZipFile zip = new ZipFile(archive.toFile())) {
+      return readEntry(zip, name);
+    }
+  }
+
+  @NotNull
+  private static byte[] readEntry(@NotNull ZipFile zip, @NotNull String name) throws IOException {
+    ZipEntry entry = zip.getEntry(name);
+    if (entry == null) {
+      throw new IOException("No entry " + name + " in " + zip.getName());
+    }
+    try (InputStream stream = zip.getInputStream(entry)) {
+      return ByteStreams.toByteArray(stream);
+    }
+  }
+
+  /**
+   * Hashes each class: its superclass, interfaces, annotations, fields with their initial values and annotations, method
+   * signatures and annotations, and the instructions, try blocks and debug info of its methods with their operands.
+   * References are hashed by what they refer to rather than by their index, and offsets into the dex file are left
+   * out, since both change whenever anything else in the dex file changes.
+   */
+  @NotNull
+  private static Map<String, HashCode> hashClasses(@NotNull DexBackedDexFile dexFile) {
+    Map<String, HashCode> classes = new HashMap<>();
+    for (DexBackedClassDef classDef : dexFile.getClasses()) {
+      Hasher hasher = Hashing.murmur3_128().newHasher();
+      hasher.putInt(classDef.getAccessFlags());
+      hasher.putString(Objects.toString(classDef.getSuperclass()), StandardCharsets.UTF_8);
+      classDef.getInterfaces().forEach(type -> hasher.putString(type, StandardCharsets.UTF_8));
+      hasher.putString(Objects.toString(classDef.getSourceFile()), StandardCharsets.UTF_8);
+      hashAnnotations(hasher, classDef.getAnnotations());
+      for (DexBackedField field : classDef.getFields()) {
+        hasher.putString(field.toString(), StandardCharsets.UTF_8).putInt(field.getAccessFlags());
+        hasher.putString(Objects.toString(field.getInitialValue()), StandardCharsets.UTF_8);
+        hashAnnotations(hasher, field.getAnnotations());
+      }
+      for (DexBackedMethod method : classDef.getMethods()) {
+        hasher.putString(method.toString(), StandardCharsets.UTF_8).putInt(method.getAccessFlags());
+        hashAnnotations(hasher, method.getAnnotations());
+        for (Set<? extends Annotation> parameterAnnotations : method.getParameterAnnotations()) {
+          hashAnnotations(hasher, parameterAnnotations);
+        }
+        MethodImplementation implementation = method.getImplementation();
+        if (implementation != null) {
+          hasher.putInt(implementation.getRegisterCount());
+          for (Instruction instruction : implementation.getInstructions()) {
+            hashInstruction(hasher, instruction);
+          }
+          for (TryBlock<? extends ExceptionHandler> tryBlock : implementation.getTryBlocks()) {
+            // Code addresses are relative to the method, like instruction offsets
+            hasher.putInt(tryBlock.getStartCodeAddress()).putInt(tryBlock.getCodeUnitCount());
+            for (ExceptionHandler handler : tryBlock.getExceptionHandlers()) {
+              hasher.putString(Objects.toString(handler.getExceptionType()), StandardCharsets.UTF_8);
+              hasher.putInt(handler.getHandlerCodeAddress());
+            }
+          }
+          for (DebugItem debugItem : implementation.getDebugItems()) {
+            hashDebugItem(hasher, debugItem);
+          }
+        }
+      }
+      classes.put(classDef.getType(), hasher.hash());
+    }
+    return classes;
+  }
+
+  private static void hashAnnotations(@NotNull Hasher hasher, @NotNull Set<? extends Annotation> annotations) {
+    // Annotation sets are sorted by type in a dex file, whatever order they were written in
+    hasher.putInt(annotations.size());
+    for (Annotation annotation : annotations) {
+      hasher.putInt(annotation.getVisibility()).putString(annotation.getType(), StandardCharsets.UTF_8);
+      for (AnnotationElement element : annotation.getElements()) {
+        hasher.putString(element.getName(), StandardCharsets.UTF_8);
+        hasher.putString(element.getValue().toString(), StandardCharsets.UTF_8);
+      }
+    }
+  }
+
+  private static void hashDebugItem(@NotNull Hasher hasher, @NotNull DebugItem debugItem) {
+    hasher.putInt(debugItem.getDebugItemType()).putInt(debugItem.getCodeAddress());
+    if (debugItem instanceof LineNumber) {
+      hasher.putInt(((LineNumber)debugItem).getLineNumber());
+    }
+    if (debugItem instanceof SetSourceFile) {
+      hasher.putString(Objects.toString(((SetSourceFile)debugItem).getSourceFile()), StandardCharsets.UTF_8);
+    }
+    if (debugItem instanceof StartLocal) {
+      hasher.putInt(((StartLocal)debugItem).getRegister());
+    }
+    if (debugItem instanceof EndLocal) {
+      hasher.putInt(((EndLocal)debugItem).getRegister());
+    }
+    if (debugItem instanceof RestartLocal) {
+      hasher.putInt(((RestartLocal)debugItem).getRegister());
+    }
+    if (debugItem instanceof LocalInfo) {
+      LocalInfo local = (LocalInfo)debugItem;
+      hasher.putString(Objects.toString(local.getName()), StandardCharsets.UTF_8)
+        .putString(Objects.toString(local.getType()), StandardCharsets.UTF_8)
+        .putString(Objects.toString(local.getSignature()), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static void hashInstruction(@NotNull Hasher hasher, @NotNull Instruction instruction) {
+    hasher.putInt(instruction.getOpcode().ordinal());
+    if (instruction instanceof ReferenceInstruction) {
+      hasher.putString(((ReferenceInstruction)instruction).getReference().toString(), StandardCharsets.UTF_8);
+    }
+    if (instruction instanceof DualReferenceInstruction) {
+      hasher.putString(((DualReferenceInstruction)instruction).getReference2().toString(), StandardCharsets.UTF_8);
+    }
+    if (instruction instanceof WideLiteralInstruction) {
+      hasher.putLong(((WideLiteralInstruction)instruction).getWideLiteral());
+    }
+    if (instruction instanceof OffsetInstruction) {
+      // Relative to the instruction, so it only changes with the method
+      hasher.putInt(((OffsetInstruction)instruction).getCodeOffset());
+    }
+    if (instruction instanceof OneRegisterInstruction) {
+      hasher.putInt(((OneRegisterInstruction)instruction).getRegisterA());
+    }
+    if (instruction instanceof TwoRegisterInstruction) {
+      hasher.putInt(((TwoRegisterInstruction)instruction).getRegisterB());
+    }
+    if (instruction instanceof ThreeRegisterInstruction) {
+      hasher.putInt(((ThreeRegisterInstruction)instruction).getRegisterC());
+    }
+    if (instruction instanceof FiveRegisterInstruction) {
+      FiveRegisterInstruction registers = (FiveRegisterInstruction)instruction;
+      hasher.putInt(registers.getRegisterCount())
+        .putInt(registers.getRegisterC())
+        .putInt(registers.getRegisterD())
+        .putInt(registers.getRegisterE())
+        .putInt(registers.getRegisterF())
+        .putInt(registers.getRegisterG());
+    }
+    if (instruction instanceof RegisterRangeInstruction) {
+      RegisterRangeInstruction range = (RegisterRangeInstruction)instruction;
+      hasher.putInt(range.getStartRegister()).putInt(range.getRegisterCount());
+    }
+    if (instruction instanceof SwitchPayload) {
+      for (SwitchElement element : ((SwitchPayload)instruction).getSwitchElements()) {
+        hasher.putInt(element.getKey()).putInt(element.getOffset());
+      }
+    }
+    if (instruction instanceof ArrayPayload) {
+      ArrayPayload payload = (ArrayPayload)instruction;
+      hasher.putInt(payload.getElementWidth());
+      payload.getArrayElements().forEach(element -> hasher.putLong(element.longValue()));
+    }
+  }
+
+  private static void closeQuietly(@NotNull ListenableFuture<ZipFile> zip) {
+    try {
+      if (zip.isDone() && !zip.isCancelled()) {
+        Futures.getDone(zip).close();
+      }
+    }
+    catch (ExecutionException | IOException e) {
+      // Nothing to close, or nothing more to do
+    }
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.apk.viewer;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -22,13 +23,22 @@ import com.android.ide.common.util.PathString;
 import com.android.testutils.TestResources;
 import com.android.tools.apk.analyzer.ArchiveContext;
 import com.android.tools.apk.analyzer.ArchiveNode;
+import com.android.tools.apk.analyzer.ArchiveTreeStructure;
 import com.android.tools.apk.analyzer.Archives;
 import com.android.tools.apk.analyzer.internal.GzipSizeCalculator;
 import com.android.utils.StdLogger;
 import com.google.common.util.concurrent.ListenableFuture;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import org.jetbrains.annotations.NotNull;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class ApkParserTest {
   /**
@@ -37,6 +47,8 @@ public class ApkParserTest {
    */
   private static final long TIMEOUT_SECONDS = 120;
 
+  @Rule public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
   @Test
   public void parserWorksForApk() throws Exception {
     PathString archivePath = getArchivePath("test.apk");
@@ -55,6 +67,46 @@ public class ApkParserTest {
     checkArchive(archivePath);
   }
 
+  @Test
+  public void parserComputesSameSizesAsSequentialPasses() throws Exception {
+    File apk = myTemporaryFolder.newFile("large.apk");
+    Random random = new Random(0);
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(apk))) {
+      for (int i = 0; i < 2000; i++) {
+        zip.setLevel(i % 3 == 0 ? 0 : 9);
+        zip.putNextEntry(new ZipEntry("res/dir" + (i % 20) + "/file" + i + ".xml"));
+        byte[] bytes = new byte[random.nextInt(4096)];
+        random.nextBytes(bytes);
+        zip.write(bytes);
+        zip.write(("<resource id=\"" + i + "\"/>").repeat(20).getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+      }
+    }
+
+    GzipSizeCalculator calculator = new GzipSizeCalculator();
+    try (ArchiveContext archiveContext = Archives.open(apk.toPath(), new StdLogger(StdLogger.Level.VERBOSE));
+         ArchiveContext sequentialContext = Archives.open(apk.toPath(), new StdLogger(StdLogger.Level.VERBOSE))) {
+      ApkParser parser = new ApkParser(archiveContext, calculator);
+      ArchiveNode tree = parser.updateTreeWithDownloadSizes().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+      ArchiveNode expected = ArchiveTreeStructure.create(sequentialContext);
+      ArchiveTreeStructure.updateRawFileSizes(expected, calculator);
+      ArchiveTreeStructure.updateDownloadFileSizes(expected, calculator);
+
+      assertSameSizes(expected, tree);
+    }
+  }
+
+  private static void assertSameSizes(@NotNull ArchiveNode expected, @NotNull ArchiveNode actual) {
+    assertEquals(expected.getData().getPath().toString(), actual.getData().getPath().toString());
+    assertEquals(expected.getData().getRawFileSize(), actual.getData().getRawFileSize());
+    assertEquals(expected.getData().getDownloadFileSize(), actual.getData().getDownloadFileSize());
+    assertEquals(expected.getChildren().size(), actual.getChildren().size());
+    for (int i = 0; i < expected.getChildren().size(); i++) {
+      assertSameSizes(expected.getChildren().get(i), actual.getChildren().get(i));
+    }
+  }
+
   private static void checkArchive(@NotNull PathString archivePath) throws Exception {
     try (ArchiveContext archiveContext = Archives.open(archivePath.toPath(), new StdLogger(StdLogger.Level.VERBOSE))) {
       ApkParser parser = new ApkParser(archiveContext, new GzipSizeCalculator());
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.dex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.android.tools.apk.analyzer.dex.DexFiles;
+import com.android.tools.smali.dexlib2.AccessFlags;
+import com.android.tools.smali.dexlib2.Opcodes;
+import com.android.tools.smali.dexlib2.dexbacked.DexBackedClassDef;
+import com.android.tools.smali.dexlib2.dexbacked.DexBackedDexFile;
+import com.android.tools.smali.dexlib2.immutable.ImmutableClassDef;
+import com.android.tools.smali.dexlib2.writer.io.FileDataStore;
+import com.android.tools.smali.dexlib2.writer.pool.DexPool;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DexFileViewerTest {
+  private static final long TIMEOUT_SECONDS = 120;
+
+  @Rule public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  private final ListeningExecutorService myExecutor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(4));
+
+  @After
+  public void tearDown() {
+    myExecutor.shutdownNow();
+  }
+
+  @Test
+  public void parallelLoadMatchesSequentialLoad() throws Exception {
+    Path[] dexFiles = new Path[8];
+    for (int i = 0; i < dexFiles.length; i++) {
+      dexFiles[i] = createDexFile("classes" + i + ".dex", 10 * i + 1);
+    }
+
+    Map<Path, DexBackedDexFile> loaded = DexFileViewer.loadDexFiles(dexFiles, myExecutor).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+    assertArrayEquals(dexFiles, loaded.keySet().toArray(new Path[0]));
+    for (Path dexFile : dexFiles) {
+      assertEquals(getClassTypes(DexFiles.getDexFile(dexFile)), getClassTypes(loaded.get(dexFile)));
+    }
+  }
+
+  @NotNull
+  private static List<String> getClassTypes(@NotNull DexBackedDexFile dexFile) {
+    List<String> types = new ArrayList<>();
+    for (DexBackedClassDef classDef : dexFile.getClasses()) {
+      types.add(classDef.getType());
+    }
+    return types;
+  }
+
+  @NotNull
+  private Path createDexFile(@NotNull String name, int classCount) throws Exception {
+    DexPool pool = new DexPool(Opcodes.getDefault());
+    for (int i = 0; i < classCount; i++) {
+      String type = "L" + name.replace('.', '_') + "/Class" + i + ";";
+      pool.internClass(new ImmutableClassDef(type, AccessFlags.PUBLIC.getValue(), "Ljava/lang/Object;", null, null, null, null, null));
+    }
+    File file = myTemporaryFolder.newFile(name);
+    pool.writeTo(new FileDataStore(file));
+    return file.toPath();
+  }
+}
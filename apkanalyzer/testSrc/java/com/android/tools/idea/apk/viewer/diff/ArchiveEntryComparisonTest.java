@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.apk.viewer.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.idea.apk.viewer.diff.ArchiveEntryComparison.DexDelta;
+import com.android.tools.idea.apk.viewer.diff.ArchiveEntryComparison.Status;
+import com.android.tools.smali.dexlib2.AccessFlags;
+import com.android.tools.smali.dexlib2.Opcode;
+import com.android.tools.smali.dexlib2.Opcodes;
+import com.android.tools.smali.dexlib2.iface.ClassDef;
+import com.android.tools.smali.dexlib2.immutable.ImmutableClassDef;
+import com.android.tools.smali.dexlib2.immutable.ImmutableMethod;
+import com.android.tools.smali.dexlib2.immutable.ImmutableMethodImplementation;
+import com.android.tools.smali.dexlib2.immutable.debug.ImmutableLineNumber;
+import com.android.tools.smali.dexlib2.immutable.instruction.ImmutableInstruction11n;
+import com.android.tools.smali.dexlib2.immutable.instruction.ImmutableInstruction11x;
+import com.android.tools.smali.dexlib2.writer.io.FileDataStore;
+import com.android.tools.smali.dexlib2.writer.pool.DexPool;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArchiveEntryComparisonTest {
+  private static final long TIMEOUT_SECONDS = 120;
+
+  @Rule public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  private final ListeningExecutorService myExecutor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(4));
+
+  @After
+  public void tearDown() {
+    myExecutor.shutdownNow();
+  }
+
+  @Test
+  public void compareEntries() throws Exception {
+    Map<String, String> oldEntries = new LinkedHashMap<>();
+    oldEntries.put("res/same.xml", "<same/>");
+    oldEntries.put("res/changed.xml", "<old/>");
+    oldEntries.put("res/resized.xml", "<small/>");
+    oldEntries.put("res/removed.xml", "<removed/>");
+    Map<String, String> newEntries = new LinkedHashMap<>();
+    newEntries.put("res/same.xml", "<same/>");
+    newEntries.put("res/changed.xml", "<new/>");
+    newEntries.put("res/resized.xml", "<larger/>");
+    newEntries.put("res/added.xml", "<added/>");
+
+    ArchiveEntryComparison comparison = compare(createArchive("old.apk", oldEntries), createArchive("new.apk", newEntries));
+
+    assertTrue(comparison.hasChanges());
+    Map<String, Status> expected = new LinkedHashMap<>();
+    expected.put("res/same.xml", Status.UNCHANGED);
+    expected.put("res/changed.xml", Status.CHANGED);
+    expected.put("res/resized.xml", Status.CHANGED);
+    expected.put("res/removed.xml", Status.REMOVED);
+    expected.put("res/added.xml", Status.ADDED);
+    assertEquals(expected, comparison.getStatuses());
+    // Archive tree paths start with a slash
+    assertEquals(Status.UNCHANGED, comparison.getStatus("/res/same.xml"));
+    assertNull(comparison.getStatus("/res"));
+    assertNull(comparison.getDexDelta("/res/changed.xml"));
+  }
+
+  @Test
+  public void compareLargeArchives() throws Exception {
+    Map<String, String> oldEntries = new LinkedHashMap<>();
+    for (int i = 0; i < 5000; i++) {
+      oldEntries.put("res/dir" + (i % 50) + "/file" + i + ".xml", "<resource id=\"" + i + "\"/>");
+    }
+    File oldArchive = createArchive("old.apk", oldEntries);
+    Map<String, String> newEntries = new LinkedHashMap<>(oldEntries);
+    newEntries.put("res/dir1/file1.xml", "<resource id=\"X\"/>");
+
+    ArchiveEntryComparison identical = compare(oldArchive, createArchive("copy.apk", oldEntries));
+    assertFalse(identical.hasChanges());
+
+    ArchiveEntryComparison comparison = compare(oldArchive, createArchive("new.apk", newEntries));
+    assertTrue(comparison.hasChanges());
+    assertEquals(1, comparison.getStatuses().values().stream().filter(status -> status != Status.UNCHANGED).count());
+    assertEquals(Status.CHANGED, comparison.getStatus("res/dir1/file1.xml"));
+  }
+
+  @Test
+  public void compareDexFiles() throws Exception {
+    File oldArchive = createDexArchive("old.apk", classDef("LChanged;", 1), classDef("LSame;", 1), classDef("LRemoved;", 1));
+    File newArchive = createDexArchive("new.apk", classDef("LChanged;", 2), classDef("LSame;", 1), classDef("LAdded;", 1));
+
+    ArchiveEntryComparison comparison = compare(oldArchive, newArchive);
+
+    assertEquals(Status.CHANGED, comparison.getStatus("/classes.dex"));
+    assertDexDelta(getDexDelta(comparison, "/classes.dex"));
+  }
+
+  @Test
+  public void compareEntriesWithoutCrc() throws Exception {
+    Map<String, String> oldEntries = new LinkedHashMap<>();
+    oldEntries.put("res/same.xml", "<same/>");
+    oldEntries.put("res/changed.xml", "<old/>");
+    Map<String, String> newEntries = new LinkedHashMap<>();
+    newEntries.put("res/same.xml", "<same/>");
+    newEntries.put("res/changed.xml", "<new/>");
+    File oldDex = createDexArchive("old.apk", classDef("LChanged;", 1), classDef("LSame;", 1), classDef("LRemoved;", 1));
+    File newDex = createDexArchive("new.apk", classDef("LChanged;", 2), classDef("LSame;", 1), classDef("LAdded;", 1));
+
+    // Entries of the same size whose CRCs are unknown are compared by content
+    try (ZipFile oldZip = new CrcLessZipFile(createArchive("old-res.apk", oldEntries));
+         ZipFile newZip = new CrcLessZipFile(createArchive("new-res.apk", newEntries))) {
+      ArchiveEntryComparison comparison = ArchiveEntryComparison.compare(oldZip, newZip, myExecutor).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      assertEquals(Status.UNCHANGED, comparison.getStatus("res/same.xml"));
+      assertEquals(Status.CHANGED, comparison.getStatus("res/changed.xml"));
+    }
+    try (ZipFile oldZip = new CrcLessZipFile(oldDex); ZipFile newZip = new CrcLessZipFile(newDex)) {
+      ArchiveEntryComparison comparison = ArchiveEntryComparison.compare(oldZip, newZip, myExecutor).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      assertEquals(Status.CHANGED, comparison.getStatus("classes.dex"));
+      assertDexDelta(getDexDelta(comparison, "classes.dex"));
+    }
+  }
+
+  @Test
+  public void compareDexFilesWithChangedDebugInfo() throws Exception {
+    File oldArchive = createDexArchive("old.apk", classDef("LChanged;", 1, 10), classDef("LSame;", 1, 10));
+    File newArchive = createDexArchive("new.apk", classDef("LChanged;", 1, 20), classDef("LSame;", 1, 10));
+
+    DexDelta delta = getDexDelta(compare(oldArchive, newArchive), "classes.dex");
+
+    assertNotNull(delta);
+    assertEquals(ImmutableSet.of("LChanged;"), delta.changedClasses);
+  }
+
+  @Nullable
+  private static DexDelta getDexDelta(@NotNull ArchiveEntryComparison comparison, @NotNull String path) throws Exception {
+    ListenableFuture<DexDelta> delta = comparison.getDexDelta(path);
+    assertNotNull(delta);
+    return delta.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  private static void assertDexDelta(@Nullable DexDelta delta) {
+    assertNotNull(delta);
+    assertEquals(ImmutableSet.of("LAdded;"), delta.addedClasses);
+    assertEquals(ImmutableSet.of("LRemoved;"), delta.removedClasses);
+    // Only the operand of an instruction changed
+    assertEquals(ImmutableSet.of("LChanged;"), delta.changedClasses);
+  }
+
+  /** A zip file whose entries don't have a CRC, as if it was not known from the central directory. */
+  private static class CrcLessZipFile extends ZipFile {
+    CrcLessZipFile(@NotNull File file) throws IOException {
+      super(file);
+    }
+
+    @Override
+    public Stream<? extends ZipEntry> stream() {
+      return super.stream().map(entry -> {
+        ZipEntry copy = new ZipEntry(entry.getName());
+        copy.setSize(entry.getSize());
+        return copy;
+      });
+    }
+
+    @Override
+    public InputStream getInputStream(ZipEntry entry) throws IOException {
+      return super.getInputStream(getEntry(entry.getName()));
+    }
+  }
+
+  /** Returns a class with a single method returning the given literal. */
+  @NotNull
+  private static ClassDef classDef(@NotNull String type, int literal) {
+    return classDef(type, literal, 1);
+  }
+
+  /** Returns a class with a single method returning the given literal from the given source line. */
+  @NotNull
+  private static ClassDef classDef(@NotNull String type, int literal, int line) {
+    ImmutableMethodImplementation implementation = new ImmutableMethodImplementation(
+      1, ImmutableList.of(new ImmutableInstruction11n(Opcode.CONST_4, 0, literal), new ImmutableInstruction11x(Opcode.RETURN, 0)),
+      null, ImmutableList.of(new ImmutableLineNumber(0, line)));
+    ImmutableMethod method = new ImmutableMethod(
+      type, "value", null, "I", AccessFlags.PUBLIC.getValue() | AccessFlags.STATIC.getValue(), null, null, implementation);
+    return new ImmutableClassDef(
+      type, AccessFlags.PUBLIC.getValue(), "Ljava/lang/Object;", null, null, null, null, ImmutableList.of(method));
+  }
+
+  @NotNull
+  private File createDexArchive(@NotNull String name, @NotNull ClassDef... classes) throws Exception {
+    DexPool pool = new DexPool(Opcodes.getDefault());
+    for (ClassDef classDef : classes) {
+      pool.internClass(classDef);
+    }
+    File dexFile = myTemporaryFolder.newFile(name + ".dex");
+    pool.writeTo(new FileDataStore(dexFile));
+    Map<String, byte[]> entries = new LinkedHashMap<>();
+    entries.put("classes.dex", Files.readAllBytes(dexFile.toPath()));
+    return createZip(name, entries);
+  }
+
+  @NotNull
+  private ArchiveEntryComparison compare(@NotNull File oldArchive, @NotNull File newArchive) throws Exception {
+    return ArchiveEntryComparison.compare(oldArchive.toPath(), newArchive.toPath(), myExecutor).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  @NotNull
+  private File createArchive(@NotNull String name, @NotNull Map<String, String> entries) throws Exception {
+    Map<String, byte[]> contents = new LinkedHashMap<>();
+    entries.forEach((entryName, content) -> contents.put(entryName, content.getBytes(StandardCharsets.UTF_8)));
+    return createZip(name, contents);
+  }
+
+  @NotNull
+  private File createZip(@NotNull String name, @NotNull Map<String, byte[]> entries) throws Exception {
+    File archive = myTemporaryFolder.newFile(name);
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+      for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+        zip.putNextEntry(new ZipEntry(entry.getKey()));
+        zip.write(entry.getValue());
+        zip.closeEntry();
+      }
+    }
+    return archive;
+  }
+}
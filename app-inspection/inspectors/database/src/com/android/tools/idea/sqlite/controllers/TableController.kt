@@ -122,6 +122,8 @@ class TableController(
   }
 
   override fun refreshData(): ListenableFuture<Unit> {
+    // cached rows are dropped even if a refresh is in flight, so that paging after it shows the new data.
+    invalidateResultSet()
     if (!refreshDataFuture.isDone) return refreshDataFuture
     view.startTableLoading()
     refreshDataFuture = fetchAndDisplayTableData()
@@ -129,6 +131,8 @@ class TableController(
   }
 
   override fun notifyDataMightBeStale() {
+    // cached rows are dropped even if live updates are off, so that paging shows the new data.
+    invalidateResultSet()
     // refresh the table, without showing a loading screen.
     if (liveUpdatesEnabled && refreshDataFuture.isDone) {
       refreshDataFuture = fetchAndDisplayTableData()
@@ -141,6 +145,12 @@ class TableController(
     view.removeListener(listener)
   }
 
+  private fun invalidateResultSet() {
+    if (::resultSet.isInitialized) {
+      resultSet.invalidate()
+    }
+  }
+
   /**
    * Gets columns and rows from [resultSet] and updates the view.
    *
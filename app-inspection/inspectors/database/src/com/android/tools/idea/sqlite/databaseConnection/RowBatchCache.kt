@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.sqlite.databaseConnection
+
+import com.android.annotations.concurrency.GuardedBy
+import com.android.tools.idea.sqlite.model.SqliteQueryResult
+import com.google.common.util.concurrent.Futures
+import com.google.common.util.concurrent.ListenableFuture
+import com.google.common.util.concurrent.MoreExecutors.directExecutor
+import java.util.concurrent.ExecutionException
+import kotlin.math.max
+
+/**
+ * Largest batch kept by [RowBatchCache]. Larger batches, like the ones used to export a whole
+ * table, are always fetched.
+ */
+private const val MAX_CACHED_BATCH_SIZE = 1000
+private const val MAX_CACHED_BATCHES = 16
+
+/**
+ * Caches the row batches and the row count of a paged [SqliteResultSet].
+ *
+ * Paged result sets run `SELECT * FROM (query) LIMIT offset, size` for every batch, so SQLite steps
+ * over `offset` rows each time and going back to a page runs the query again. This keeps the most
+ * recently used batches, already decoded, and prefetches the batches before and after the one
+ * requested, so paging back and forth does not wait for a query.
+ *
+ * Futures are cached rather than results, so asking for a batch that is being prefetched waits for
+ * that query instead of running another one. Failed and cancelled futures are dropped.
+ */
+internal class RowBatchCache {
+  @GuardedBy("this")
+  private val batches =
+    object : LinkedHashMap<Batch, ListenableFuture<SqliteQueryResult>>(16, 0.75f, true) {
+      override fun removeEldestEntry(
+        eldest: MutableMap.MutableEntry<Batch, ListenableFuture<SqliteQueryResult>>
+      ) = size > MAX_CACHED_BATCHES
+    }
+
+  @GuardedBy("this") private var rowCount: ListenableFuture<Int>? = null
+
+  /** Incremented by [invalidate], so that batches fetched before it are not cached. */
+  @GuardedBy("this") private var generation = 0
+
+  /**
+   * Returns the batch of [rowBatchSize] rows starting at [rowOffset], calling [fetch] if it is not
+   * cached.
+   */
+  fun getRowBatch(
+    rowOffset: Int,
+    rowBatchSize: Int,
+    fetch: (rowOffset: Int, rowBatchSize: Int) -> ListenableFuture<SqliteQueryResult>,
+  ): ListenableFuture<SqliteQueryResult> {
+    if (rowBatchSize > MAX_CACHED_BATCH_SIZE) {
+      return fetch(rowOffset, rowBatchSize)
+    }
+    val future = getOrFetch(Batch(rowOffset, rowBatchSize), fetch)
+    future.addListener(
+      {
+        if (!future.hasFailed()) {
+          prefetchNeighbours(rowOffset, rowBatchSize, Futures.getDone(future).rows.size, fetch)
+        }
+      },
+      directExecutor(),
+    )
+    // The future is shared, don't let one caller cancel it for the others
+    return Futures.nonCancellationPropagating(future)
+  }
+
+  /** Returns the row count, calling [fetch] if it is not cached. */
+  fun getRowCount(fetch: () -> ListenableFuture<Int>): ListenableFuture<Int> {
+    val future =
+      synchronized(this) {
+        rowCount
+          ?: fetch().also { future ->
+            rowCount = future
+            future.addListener(
+              {
+                if (future.hasFailed()) {
+                  synchronized(this) {
+                    if (rowCount === future) {
+                      rowCount = null
+                    }
+                  }
+                }
+              },
+              directExecutor(),
+            )
+          }
+      }
+    return Futures.nonCancellationPropagating(future)
+  }
+
+  /** Drops all the cached batches and the row count. */
+  @Synchronized
+  fun invalidate() {
+    batches.clear()
+    rowCount = null
+    generation++
+  }
+
+  private fun prefetchNeighbours(
+    rowOffset: Int,
+    rowBatchSize: Int,
+    rowsFetched: Int,
+    fetch: (rowOffset: Int, rowBatchSize: Int) -> ListenableFuture<SqliteQueryResult>,
+  ) {
+    if (rowsFetched == rowBatchSize && rowOffset.toLong() + rowBatchSize <= Int.MAX_VALUE) {
+      getOrFetch(Batch(rowOffset + rowBatchSize, rowBatchSize), fetch)
+    }
+    if (rowOffset > 0) {
+      getOrFetch(Batch(max(0, rowOffset - rowBatchSize), rowBatchSize), fetch)
+    }
+  }
+
+  private fun getOrFetch(
+    batch: Batch,
+    fetch: (rowOffset: Int, rowBatchSize: Int) -> ListenableFuture<SqliteQueryResult>,
+  ): ListenableFuture<SqliteQueryResult> {
+    val fetchGeneration =
+      synchronized(this) {
+        batches[batch]?.let {
+          return it
+        }
+        generation
+      }
+    val future = fetch(batch.rowOffset, batch.rowBatchSize)
+    synchronized(this) {
+      // The cache was invalidated while the query was being started, so the rows might be stale
+      if (generation != fetchGeneration) {
+        return future
+      }
+      // Another thread might have fetched the same batch in the meantime
+      batches[batch]?.let {
+        future.cancel(true)
+        return it
+      }
+      batches[batch] = future
+    }
+    future.addListener(
+      {
+        if (future.hasFailed()) {
+          synchronized(this) { batches.remove(batch, future) }
+        }
+      },
+      directExecutor(),
+    )
+    return future
+  }
+
+  private data class Batch(val rowOffset: Int, val rowBatchSize: Int)
+}
+
+private fun ListenableFuture<*>.hasFailed(): Boolean {
+  if (isCancelled) {
+    return true
+  }
+  return try {
+    Futures.getDone(this)
+    false
+  } catch (e: ExecutionException) {
+    true
+  }
+}
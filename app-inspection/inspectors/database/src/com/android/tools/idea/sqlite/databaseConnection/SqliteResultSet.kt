@@ -56,6 +56,12 @@ interface SqliteResultSet : Disposable {
    * @param rowBatchSize The maximum amount of rows returned. Must be > 0
    */
   fun getRowBatch(rowOffset: Int, rowBatchSize: Int): ListenableFuture<SqliteQueryResult>
+
+  /**
+   * Drops the rows and the row count this result set might have cached. Called when the data in
+   * the database might have changed.
+   */
+  fun invalidate() {}
 }
 
 /** Checks that [rowOffset] is >= 0 and [rowBatchSize] is > 0. */
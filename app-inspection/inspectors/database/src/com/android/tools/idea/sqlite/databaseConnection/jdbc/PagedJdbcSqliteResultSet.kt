@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.sqlite.databaseConnection.jdbc
 
+import com.android.tools.idea.sqlite.databaseConnection.RowBatchCache
 import com.android.tools.idea.sqlite.databaseConnection.checkOffsetAndSize
 import com.android.tools.idea.sqlite.model.SqliteQueryResult
 import com.android.tools.idea.sqlite.model.SqliteRow
@@ -28,16 +29,33 @@ class PagedJdbcSqliteResultSet(
   connection: Connection,
   private val sqliteStatement: SqliteStatement,
 ) : JdbcSqliteResultSet(taskExecutor, connection, sqliteStatement) {
+  private val rowBatchCache = RowBatchCache()
+
   override val totalRowCount: ListenableFuture<Int>
     get() =
-      getRowCount(sqliteStatement.toRowCountStatement()) {
-        it.next()
-        val count = it.getInt(1)
-        count
+      rowBatchCache.getRowCount {
+        getRowCount(sqliteStatement.toRowCountStatement()) {
+          it.next()
+          val count = it.getInt(1)
+          count
+        }
       }
 
   override fun getRowBatch(rowOffset: Int, rowBatchSize: Int): ListenableFuture<SqliteQueryResult> {
     checkOffsetAndSize(rowOffset, rowBatchSize)
+    return rowBatchCache.getRowBatch(rowOffset, rowBatchSize, ::fetchRowBatch)
+  }
+
+  override fun invalidate() {
+    rowBatchCache.invalidate()
+  }
+
+  override fun dispose() {
+    super.dispose()
+    rowBatchCache.invalidate()
+  }
+
+  private fun fetchRowBatch(rowOffset: Int, rowBatchSize: Int): ListenableFuture<SqliteQueryResult> {
     return getRowBatch(sqliteStatement.toSelectLimitOffset(rowOffset, rowBatchSize)) {
       resultSet,
       columns ->
@@ -17,6 +17,7 @@ package com.android.tools.idea.sqlite.databaseConnection.live
 
 import com.android.tools.idea.concurrency.transform
 import com.android.tools.idea.sqlite.DatabaseInspectorMessenger
+import com.android.tools.idea.sqlite.databaseConnection.RowBatchCache
 import com.android.tools.idea.sqlite.databaseConnection.checkOffsetAndSize
 import com.android.tools.idea.sqlite.model.ResultSetSqliteColumn
 import com.android.tools.idea.sqlite.model.SqliteQueryResult
@@ -31,15 +32,18 @@ class PagedLiveSqliteResultSet(
   connectionId: Int,
   private val taskExecutor: Executor,
 ) : LiveSqliteResultSet(sqliteStatement, messenger, connectionId, taskExecutor) {
+  private val rowBatchCache = RowBatchCache()
 
   override val columns: ListenableFuture<List<ResultSetSqliteColumn>>
     get() = sendQueryCommand(sqliteStatement.toSelectLimitOffset(0, 1)).mapToColumns(taskExecutor)
 
   override val totalRowCount: ListenableFuture<Int>
     get() =
-      sendQueryCommand(sqliteStatement.toRowCountStatement()).transform(taskExecutor) { response ->
-        // TODO(b/157652844): remove the cast to Int since it's possible to go over the 2^31 limit
-        response.query.rowsList.firstOrNull()?.valuesList?.firstOrNull()?.longValue?.toInt() ?: 0
+      rowBatchCache.getRowCount {
+        sendQueryCommand(sqliteStatement.toRowCountStatement()).transform(taskExecutor) { response ->
+          // TODO(b/157652844): remove the cast to Int since it's possible to go over the 2^31 limit
+          response.query.rowsList.firstOrNull()?.valuesList?.firstOrNull()?.longValue?.toInt() ?: 0
+        }
       }
 
   override fun getRowBatch(
@@ -48,6 +52,29 @@ class PagedLiveSqliteResultSet(
     responseSizeByteLimitHint: Long?,
   ): ListenableFuture<SqliteQueryResult> {
     checkOffsetAndSize(rowOffset, rowBatchSize)
+    // Responses limited in size might be truncated, don't share them with other callers
+    if (responseSizeByteLimitHint != null) {
+      return fetchRowBatch(rowOffset, rowBatchSize, responseSizeByteLimitHint)
+    }
+    return rowBatchCache.getRowBatch(rowOffset, rowBatchSize) { offset, size ->
+      fetchRowBatch(offset, size, null)
+    }
+  }
+
+  override fun invalidate() {
+    rowBatchCache.invalidate()
+  }
+
+  override fun dispose() {
+    super.dispose()
+    rowBatchCache.invalidate()
+  }
+
+  private fun fetchRowBatch(
+    rowOffset: Int,
+    rowBatchSize: Int,
+    responseSizeByteLimitHint: Long?,
+  ): ListenableFuture<SqliteQueryResult> {
     return sendQueryCommand(
         sqliteStatement.toSelectLimitOffset(rowOffset, rowBatchSize),
         responseSizeByteLimitHint,
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.sqlite.databaseConnection
+
+import com.android.tools.idea.sqlite.model.SqliteColumnValue
+import com.android.tools.idea.sqlite.model.SqliteQueryResult
+import com.android.tools.idea.sqlite.model.SqliteRow
+import com.android.tools.idea.sqlite.model.SqliteValue
+import com.google.common.truth.Truth.assertThat
+import com.google.common.util.concurrent.Futures
+import com.google.common.util.concurrent.ListenableFuture
+import com.google.common.util.concurrent.SettableFuture
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.JUnit4
+
+private const val TABLE_SIZE = 100
+
+/** Tests for [RowBatchCache] */
+@RunWith(JUnit4::class)
+class RowBatchCacheTest {
+  private val cache = RowBatchCache()
+  private val fetched = mutableListOf<Pair<Int, Int>>()
+
+  private fun fetch(rowOffset: Int, rowBatchSize: Int): ListenableFuture<SqliteQueryResult> {
+    fetched.add(rowOffset to rowBatchSize)
+    val rows =
+      (rowOffset until minOf(rowOffset + rowBatchSize, TABLE_SIZE)).map {
+        SqliteRow(listOf(SqliteColumnValue("id", SqliteValue.fromAny(it))))
+      }
+    return Futures.immediateFuture(SqliteQueryResult(rows))
+  }
+
+  @Test
+  fun getRowBatch_prefetchesNeighbours() {
+    val result = cache.getRowBatch(20, 10, ::fetch).get()
+
+    assertThat(result.rows.firstId()).isEqualTo(20)
+    assertThat(fetched).containsExactly(20 to 10, 30 to 10, 10 to 10).inOrder()
+  }
+
+  @Test
+  fun getRowBatch_servesPagingFromCache() {
+    cache.getRowBatch(0, 10, ::fetch).get()
+    fetched.clear()
+
+    val next = cache.getRowBatch(10, 10, ::fetch).get()
+    val previous = cache.getRowBatch(0, 10, ::fetch).get()
+
+    assertThat(next.rows.firstId()).isEqualTo(10)
+    assertThat(previous.rows.firstId()).isEqualTo(0)
+    // Only the batch after the next one is fetched, to be ready for the next page
+    assertThat(fetched).containsExactly(20 to 10)
+  }
+
+  @Test
+  fun getRowBatch_doesNotPrefetchPastLastRow() {
+    cache.getRowBatch(95, 10, ::fetch).get()
+
+    assertThat(fetched).containsExactly(95 to 10, 85 to 10).inOrder()
+  }
+
+  @Test
+  fun getRowBatch_evictsLeastRecentlyUsedBatches() {
+    for (offset in 0 until TABLE_SIZE step 5) {
+      cache.getRowBatch(offset, 5, ::fetch).get()
+    }
+    fetched.clear()
+
+    cache.getRowBatch(TABLE_SIZE - 5, 5, ::fetch).get()
+    assertThat(fetched).isEmpty()
+
+    cache.getRowBatch(0, 5, ::fetch).get()
+    assertThat(fetched.first()).isEqualTo(0 to 5)
+  }
+
+  @Test
+  fun getRowBatch_doesNotCacheLargeBatches() {
+    cache.getRowBatch(0, Int.MAX_VALUE, ::fetch).get()
+    cache.getRowBatch(0, Int.MAX_VALUE, ::fetch).get()
+
+    assertThat(fetched).containsExactly(0 to Int.MAX_VALUE, 0 to Int.MAX_VALUE)
+  }
+
+  @Test
+  fun getRowBatch_dropsFailedBatches() {
+    val failed = SettableFuture.create<SqliteQueryResult>()
+    val result = cache.getRowBatch(0, 10) { _, _ -> failed }
+    failed.setException(IllegalStateException())
+
+    assertThat(result.isDone).isTrue()
+    assertThat(cache.getRowBatch(0, 10, ::fetch).get().rows.firstId()).isEqualTo(0)
+    assertThat(fetched).contains(0 to 10)
+  }
+
+  @Test
+  fun getRowBatch_cancellingResultDoesNotCancelSharedFuture() {
+    val pending = SettableFuture.create<SqliteQueryResult>()
+    val first = cache.getRowBatch(0, 10) { _, _ -> pending }
+    val second = cache.getRowBatch(0, 10, ::fetch)
+
+    first.cancel(true)
+    pending.set(SqliteQueryResult(emptyList()))
+
+    assertThat(pending.isCancelled).isFalse()
+    assertThat(second.get().rows).isEmpty()
+    assertThat(fetched).isEmpty()
+  }
+
+  @Test
+  fun getRowCount_isCachedUntilInvalidated() {
+    var countQueries = 0
+    val count = {
+      countQueries++
+      Futures.immediateFuture(TABLE_SIZE)
+    }
+
+    assertThat(cache.getRowCount(count).get()).isEqualTo(TABLE_SIZE)
+    assertThat(cache.getRowCount(count).get()).isEqualTo(TABLE_SIZE)
+    assertThat(countQueries).isEqualTo(1)
+
+    cache.invalidate()
+
+    assertThat(cache.getRowCount(count).get()).isEqualTo(TABLE_SIZE)
+    assertThat(countQueries).isEqualTo(2)
+  }
+
+  @Test
+  fun invalidate_dropsBatches() {
+    cache.getRowBatch(0, 10, ::fetch).get()
+
+    cache.invalidate()
+    fetched.clear()
+    cache.getRowBatch(0, 10, ::fetch).get()
+
+    assertThat(fetched).containsExactly(0 to 10, 10 to 10).inOrder()
+  }
+
+  @Test
+  fun invalidate_dropsBatchesFetchedBeforeIt() {
+    val stale =
+      cache.getRowBatch(0, 10) { rowOffset, rowBatchSize ->
+        fetch(rowOffset, rowBatchSize).also { cache.invalidate() }
+      }
+
+    assertThat(stale.get().rows.firstId()).isEqualTo(0)
+    fetched.clear()
+    cache.getRowBatch(0, 10, ::fetch).get()
+
+    assertThat(fetched).contains(0 to 10)
+  }
+}
+
+private fun List<SqliteRow>.firstId() =
+  (first().values.first().value as SqliteValue.StringValue).value.toInt()
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.appinspection.inspectors.network.model
+
+import com.android.tools.idea.appinspection.inspectors.network.model.connections.ConnectionData
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap
+
+private const val INITIAL_CAPACITY = 64
+
+/**
+ * Connections indexed by the time interval `[requestStartTimeUs, updateTimeUs]` they span.
+ *
+ * Connections are kept in the order they were first added, which is close to the order of their
+ * start times. They are the leaves of a segment tree where each node holds the earliest start and
+ * the latest end of the connections below it, so a range query only descends into nodes that can
+ * intersect the range and costs `O(log n + k)` rather than a scan of every connection ever seen.
+ *
+ * [ConnectionData] is immutable and replaced on every event, so [put] updates the interval of a
+ * connection that is already indexed.
+ *
+ * This class is not thread safe.
+ */
+internal class ConnectionIntervalIndex<T : ConnectionData> {
+  private val positions = Long2IntOpenHashMap().apply { defaultReturnValue(-1) }
+  private val connections = ArrayList<T>()
+
+  /** Number of leaves of the tree. Always a power of 2. */
+  private var capacity = 0
+  private var minStart = LongArray(0)
+  private var maxEnd = LongArray(0)
+
+  val size: Int
+    get() = connections.size
+
+  operator fun get(id: Long): T? = positions.get(id).takeIf { it >= 0 }?.let { connections[it] }
+
+  /** Adds [data], or replaces the connection with the same id. */
+  fun put(data: T) {
+    var position = positions.get(data.id)
+    if (position < 0) {
+      position = connections.size
+      positions.put(data.id, position)
+      connections.add(data)
+      if (position == capacity) {
+        grow()
+        return
+      }
+    } else {
+      connections[position] = data
+    }
+    update(position)
+  }
+
+  /**
+   * Returns the connections whose interval intersects `[minUs, maxUs]`, in the order they were
+   * added.
+   */
+  fun intersecting(minUs: Long, maxUs: Long): List<T> {
+    val result = ArrayList<T>()
+    if (connections.isNotEmpty()) {
+      collect(1, minUs, maxUs, result)
+    }
+    return result
+  }
+
+  fun clear() {
+    positions.clear()
+    connections.clear()
+    capacity = 0
+    minStart = LongArray(0)
+    maxEnd = LongArray(0)
+  }
+
+  private fun collect(node: Int, minUs: Long, maxUs: Long, result: MutableList<T>) {
+    if (minStart[node] > maxUs || maxEnd[node] < minUs) {
+      return
+    }
+    if (node >= capacity) {
+      result.add(connections[node - capacity])
+      return
+    }
+    collect(2 * node, minUs, maxUs, result)
+    collect(2 * node + 1, minUs, maxUs, result)
+  }
+
+  private fun update(position: Int) {
+    var node = capacity + position
+    val data = connections[position]
+    minStart[node] = data.requestStartTimeUs
+    maxEnd[node] = data.updateTimeUs
+    node /= 2
+    while (node >= 1) {
+      minStart[node] = minOf(minStart[2 * node], minStart[2 * node + 1])
+      maxEnd[node] = maxOf(maxEnd[2 * node], maxEnd[2 * node + 1])
+      node /= 2
+    }
+  }
+
+  /** Doubles the capacity and rebuilds the tree from [connections]. */
+  private fun grow() {
+    capacity = if (capacity == 0) INITIAL_CAPACITY else capacity * 2
+    minStart = LongArray(2 * capacity) { Long.MAX_VALUE }
+    maxEnd = LongArray(2 * capacity) { Long.MIN_VALUE }
+    connections.forEachIndexed { i, data ->
+      minStart[capacity + i] = data.requestStartTimeUs
+      maxEnd[capacity + i] = data.updateTimeUs
+    }
+    for (node in capacity - 1 downTo 1) {
+      minStart[node] = minOf(minStart[2 * node], minStart[2 * node + 1])
+      maxEnd[node] = maxOf(maxEnd[2 * node], maxEnd[2 * node + 1])
+    }
+  }
+}
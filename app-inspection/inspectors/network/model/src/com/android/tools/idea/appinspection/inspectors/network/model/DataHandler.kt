@@ -24,9 +24,7 @@ import com.android.tools.idea.appinspection.inspectors.network.model.connections
 import com.android.tools.idea.flags.StudioFlags
 import com.intellij.openapi.diagnostic.debug
 import com.intellij.openapi.diagnostic.thisLogger
-import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap
-import java.util.concurrent.CopyOnWriteArrayList
 import java.util.concurrent.TimeUnit.NANOSECONDS
 import kotlin.Boolean
 import kotlin.Long
@@ -58,15 +56,18 @@ import studio.network.inspection.NetworkInspectorProtocol.SpeedEvent
  * 'HttpConnectionEvent's are assembled into [HttpData] objects and 'SpeedEvent's are collected to a
  * list.
  *
+ * Connections are kept in a [ConnectionIntervalIndex] and speed events are appended in timestamp
+ * order, so range queries from the timeline do not scan the whole session.
+ *
  * The functions [handleSpeedEvent] and [handleHttpConnectionEvent] return a [Result] object
  * containing hints to the caller.
  */
 internal class DataHandler(private val usageTracker: NetworkInspectorTracker) {
   private val logger = thisLogger()
 
-  private val speedData = CopyOnWriteArrayList<Event>()
-  @GuardedBy("itself") private val httpDataMap = Long2ObjectLinkedOpenHashMap<HttpData>()
-  @GuardedBy("itself") private val grpcDataMap = Long2ObjectLinkedOpenHashMap<GrpcData>()
+  @GuardedBy("itself") private val speedData = ArrayList<Event>()
+  @GuardedBy("itself") private val httpDataIndex = ConnectionIntervalIndex<HttpData>()
+  @GuardedBy("itself") private val grpcDataIndex = ConnectionIntervalIndex<GrpcData>()
 
   /**
    * A collection of all the currently active connections. This is used to determine if a
@@ -86,7 +87,7 @@ internal class DataHandler(private val usageTracker: NetworkInspectorTracker) {
   private val activeConnections: MutableMap<Long, ActiveConnection> = Long2ObjectOpenHashMap()
 
   fun handleSpeedEvent(event: Event): Result {
-    speedData.add(event)
+    synchronized(speedData) { speedData.add(event) }
     return Result(shouldUpdateTimeline(event))
   }
 
@@ -96,12 +97,15 @@ internal class DataHandler(private val usageTracker: NetworkInspectorTracker) {
 
     val id = httpConnectionEvent.connectionId
     val data =
-      synchronized(httpDataMap) {
-        httpDataMap.getOrPut(id) {
-          activeConnections[id] = ActiveConnection(event.timestamp)
-          logger.debug { "HTTP Connection added: id=$id time=${event.timestamp.nanosToSeconds()}" }
-          HttpData.createHttpData(id)
-        }
+      synchronized(httpDataIndex) {
+        httpDataIndex[id]
+          ?: HttpData.createHttpData(id).also {
+            activeConnections[id] = ActiveConnection(event.timestamp)
+            logger.debug {
+              "HTTP Connection added: id=$id time=${event.timestamp.nanosToSeconds()}"
+            }
+            httpDataIndex.put(it)
+          }
       }
 
     val newData =
@@ -124,7 +128,7 @@ internal class DataHandler(private val usageTracker: NetworkInspectorTracker) {
       activeConnections.getValue(id).endNs = event.timestamp
       logger.debug { "Connection ended: id=$id time=${event.timestamp.nanosToSeconds()}" }
     }
-    synchronized(httpDataMap) { httpDataMap[id] = newData }
+    synchronized(httpDataIndex) { httpDataIndex.put(newData) }
     return Result(updateTimeline = true)
   }
 
@@ -139,12 +143,15 @@ internal class DataHandler(private val usageTracker: NetworkInspectorTracker) {
 
     val id = grpcEvent.connectionId
     val data =
-      synchronized(grpcDataMap) {
-        grpcDataMap.getOrPut(id) {
-          activeConnections[id] = ActiveConnection(event.timestamp)
-          logger.debug { "gRPC Connection added: id=$id time=${event.timestamp.nanosToSeconds()}" }
-          GrpcData.createGrpcData(id)
-        }
+      synchronized(grpcDataIndex) {
+        grpcDataIndex[id]
+          ?: GrpcData.createGrpcData(id).also {
+            activeConnections[id] = ActiveConnection(event.timestamp)
+            logger.debug {
+              "gRPC Connection added: id=$id time=${event.timestamp.nanosToSeconds()}"
+            }
+            grpcDataIndex.put(it)
+          }
       }
 
     val newData =
@@ -166,23 +173,27 @@ internal class DataHandler(private val usageTracker: NetworkInspectorTracker) {
       activeConnections.getValue(id).endNs = event.timestamp
       logger.debug { "Connection ended: id=$id time=${event.timestamp.nanosToSeconds()}" }
     }
-    synchronized(grpcDataMap) { grpcDataMap[id] = newData }
+    synchronized(grpcDataIndex) { grpcDataIndex.put(newData) }
     return Result(updateTimeline = true)
   }
 
-  fun getSpeedForRange(range: Range) = speedData.searchRange(range)
+  fun getSpeedForRange(range: Range) = synchronized(speedData) { speedData.searchRange(range) }
 
   fun getHttpDataForRange(range: Range) =
-    synchronized(httpDataMap) { httpDataMap.values.filter { it.intersectsRange(range) } }
+    synchronized(httpDataIndex) {
+      httpDataIndex.intersecting(range.min.toLong(), range.max.toLong())
+    }
 
   fun getGrpcDataForRange(range: Range) =
-    synchronized(grpcDataMap) { grpcDataMap.values.filter { it.intersectsRange(range) } }
+    synchronized(grpcDataIndex) {
+      grpcDataIndex.intersecting(range.min.toLong(), range.max.toLong())
+    }
 
   fun reset() {
-    speedData.clear()
+    synchronized(speedData) { speedData.clear() }
     activeConnections.clear()
-    synchronized(httpDataMap) { httpDataMap.clear() }
-    synchronized(grpcDataMap) { grpcDataMap.clear() }
+    synchronized(httpDataIndex) { httpDataIndex.clear() }
+    synchronized(grpcDataIndex) { grpcDataIndex.clear() }
   }
 
   private fun shouldUpdateTimeline(event: Event): Boolean {
@@ -15,7 +15,6 @@
  */
 package com.android.tools.idea.appinspection.inspectors.network.model.connections
 
-import com.android.tools.adtui.model.Range
 import com.android.tools.idea.protobuf.ByteString
 import java.util.TreeMap
 import java.util.concurrent.TimeUnit
@@ -143,14 +142,6 @@ private constructor(
     return copy(id = id, updateTimeUs = timestamp, threads = threads + event.toJavaThread())
   }
 
-  internal fun intersectsRange(range: Range): Boolean {
-    val start = requestStartTimeUs
-    val end = updateTimeUs
-    val min = range.min.toLong()
-    val max = range.max.toLong()
-    return start <= max && end >= min
-  }
-
   companion object {
     fun createGrpcData(
       id: Long,
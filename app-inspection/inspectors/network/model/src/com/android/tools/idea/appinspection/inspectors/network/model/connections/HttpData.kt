@@ -15,7 +15,6 @@
  */
 package com.android.tools.idea.appinspection.inspectors.network.model.connections
 
-import com.android.tools.adtui.model.Range
 import com.android.tools.idea.protobuf.ByteString
 import com.intellij.util.io.URLUtil
 import java.io.ByteArrayInputStream
@@ -181,14 +180,6 @@ data class HttpData(
     return copy(updateTimeUs = timestamp, connectionEndTimeUs = timestamp)
   }
 
-  internal fun intersectsRange(range: Range): Boolean {
-    val start = requestStartTimeUs
-    val end = updateTimeUs
-    val min = range.min.toLong()
-    val max = range.max.toLong()
-    return start <= max && end >= min
-  }
-
   fun getRequestContentType() = ContentType(requestHeaders[CONTENT_TYPE]?.firstOrNull() ?: "")
 
   fun getResponseContentType() = ContentType(responseHeaders[CONTENT_TYPE]?.firstOrNull() ?: "")
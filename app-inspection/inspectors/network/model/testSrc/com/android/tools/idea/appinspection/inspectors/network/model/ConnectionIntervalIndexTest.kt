@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.appinspection.inspectors.network.model
+
+import com.android.tools.idea.appinspection.inspectors.network.model.connections.HttpData
+import com.google.common.truth.Truth.assertThat
+import kotlin.random.Random
+import org.junit.Test
+
+/** Tests for [ConnectionIntervalIndex] */
+class ConnectionIntervalIndexTest {
+  private val index = ConnectionIntervalIndex<HttpData>()
+
+  @Test
+  fun intersecting_inclusiveBoundaries() {
+    index.put(connection(id = 1, start = 10, end = 20))
+
+    assertThat(index.intersecting(0, 9)).isEmpty()
+    assertThat(index.intersecting(0, 10).ids()).containsExactly(1L)
+    assertThat(index.intersecting(20, 30).ids()).containsExactly(1L)
+    assertThat(index.intersecting(21, 30)).isEmpty()
+    assertThat(index.intersecting(12, 15).ids()).containsExactly(1L)
+  }
+
+  @Test
+  fun put_replacesConnectionWithSameId() {
+    index.put(connection(id = 1, start = 10, end = 20))
+
+    index.put(connection(id = 1, start = 10, end = 40))
+
+    assertThat(index.size).isEqualTo(1)
+    assertThat(index[1]?.updateTimeUs).isEqualTo(40)
+    assertThat(index.intersecting(30, 35).ids()).containsExactly(1L)
+  }
+
+  @Test
+  fun intersecting_matchesLinearScan() {
+    val random = Random(1)
+    val connections = LinkedHashMap<Long, HttpData>()
+    // Enough connections to grow the tree a few times, with updates of earlier connections
+    repeat(1000) { i ->
+      val id = if (i > 10 && random.nextInt(4) == 0) random.nextLong(i.toLong()) else i.toLong()
+      val start = connections[id]?.requestStartTimeUs ?: (i * 10L + random.nextLong(50))
+      val data = connection(id, start, start + random.nextLong(500))
+      connections[id] = data
+      index.put(data)
+    }
+
+    repeat(200) {
+      val min = random.nextLong(10_000)
+      val max = min + random.nextLong(1000)
+      val expected =
+        connections.values.filter { it.requestStartTimeUs <= max && it.updateTimeUs >= min }
+      assertThat(index.intersecting(min, max)).containsExactlyElementsIn(expected).inOrder()
+    }
+  }
+
+  @Test
+  fun clear() {
+    index.put(connection(id = 1, start = 10, end = 20))
+
+    index.clear()
+
+    assertThat(index.size).isEqualTo(0)
+    assertThat(index[1]).isNull()
+    assertThat(index.intersecting(0, 100)).isEmpty()
+  }
+}
+
+private fun connection(id: Long, start: Long, end: Long) =
+  HttpData.createHttpData(id, updateTimeUs = end, requestStartTimeUs = start)
+
+private fun List<HttpData>.ids() = map { it.id }
@@ -15,16 +15,21 @@
  */
 package com.google.idea.blaze.base.filecache;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.idea.blaze.base.command.buildresult.LocalFileArtifact;
 import com.google.idea.blaze.base.command.buildresult.RemoteOutputArtifact;
+import com.google.idea.blaze.base.io.FileAttributeJournal;
 import com.google.idea.blaze.base.io.ModifiedTimeScanner;
 import com.google.idea.blaze.base.model.RemoteOutputArtifacts;
 import com.google.idea.blaze.common.artifact.ArtifactState;
 import com.google.idea.blaze.common.artifact.BlazeArtifact;
+import com.google.idea.blaze.common.artifact.OutputArtifact;
 import java.io.File;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
@@ -47,10 +52,22 @@ public final class FileCacheDiffer {
       RemoteOutputArtifacts previousOutputs)
       throws InterruptedException, ExecutionException {
     ImmutableMap<File, Long> timestamps = readTimestamps(newOutputs, cachedFiles);
-    return newOutputs.entrySet().stream()
-        .filter(
-            e -> shouldUpdate(e.getKey(), e.getValue(), previousOutputs, timestamps, cachedFiles))
-        .collect(toImmutableMap(Map.Entry::getKey, Map.Entry::getValue));
+    ImmutableMap<String, O> updated =
+        newOutputs.entrySet().stream()
+            .filter(
+                e ->
+                    shouldUpdate(e.getKey(), e.getValue(), previousOutputs, timestamps, cachedFiles))
+            .collect(toImmutableMap(Map.Entry::getKey, Map.Entry::getValue));
+    if (FileAttributeJournal.isEnabled()) {
+      // The caller rewrites the cached copies of the updated outputs without VFS events
+      FileAttributeJournal.getInstance()
+          .invalidate(
+              updated.keySet().stream()
+                  .map(cachedFiles::get)
+                  .filter(Objects::nonNull)
+                  .collect(toImmutableList()));
+    }
+    return updated;
   }
 
   private static ImmutableMap<File, Long> readTimestamps(
@@ -61,20 +78,39 @@ public final class FileCacheDiffer {
     if (!timestampsRequired) {
       return ImmutableMap.of();
     }
-    Set<File> relevantFiles = new HashSet<>();
+    Set<File> outputFiles = new HashSet<>();
+    Map<File, String> outputDigests = new HashMap<>();
+    Set<File> cachedCopies = new HashSet<>();
     for (Map.Entry<String, ? extends BlazeArtifact> entry : newOutputs.entrySet()) {
       BlazeArtifact newOutput = entry.getValue();
       boolean needsTimestamp = newOutput instanceof LocalFileArtifact;
       if (!needsTimestamp) {
         continue;
       }
-      relevantFiles.add(((LocalFileArtifact) newOutput).getFile());
+      File file = ((LocalFileArtifact) newOutput).getFile();
+      outputFiles.add(file);
+      if (newOutput instanceof OutputArtifact
+          && !Strings.isNullOrEmpty(((OutputArtifact) newOutput).getDigest())) {
+        outputDigests.put(file, ((OutputArtifact) newOutput).getDigest());
+      }
       File cached = cachedFiles.get(entry.getKey());
       if (cached != null) {
-        relevantFiles.add(cached);
+        cachedCopies.add(cached);
       }
     }
-    return ModifiedTimeScanner.readTimestamps(relevantFiles);
+    if (!FileAttributeJournal.isEnabled()) {
+      outputFiles.addAll(cachedCopies);
+      return ModifiedTimeScanner.readTimestamps(outputFiles);
+    }
+    // Build outputs are written by blaze without VFS events, so they are journalled by digest, and
+    // only those blaze reported no digest for are read every time
+    FileAttributeJournal journal = FileAttributeJournal.getInstance();
+    cachedCopies.removeAll(outputFiles);
+    outputFiles.removeAll(outputDigests.keySet());
+    Map<File, Long> timestamps = new HashMap<>(ModifiedTimeScanner.readTimestamps(outputFiles));
+    timestamps.putAll(journal.readOutputTimestamps(outputDigests));
+    timestamps.putAll(journal.readTimestamps(cachedCopies));
+    return ImmutableMap.copyOf(timestamps);
   }
 
   private static boolean shouldUpdate(
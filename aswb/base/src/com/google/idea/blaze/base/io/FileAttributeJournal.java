@@ -0,0 +1,409 @@
+/*
+ * Copyright 2025 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.io;
+
+import static com.intellij.openapi.util.io.FileUtil.toSystemDependentName;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.idea.common.experiments.BoolExperiment;
+import com.google.idea.common.experiments.IntExperiment;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+
+/**
+ * A persistent journal of file modified times, keyed by absolute path.
+ *
+ * <p>Entries are dropped when VFS events or a VCS sync indicate the file may have changed. Reads
+ * are answered from the journal where possible, and only a random sample of the journalled files
+ * is verified against the file system. If any sampled file disagrees with the journal, every
+ * journalled file in the request is re-read. This keeps a no-op sync to O(changed files) stats,
+ * which matters on network-backed workspaces.
+ *
+ * <p>Build outputs are written by blaze without VFS events, so they are journalled separately,
+ * together with the digest blaze reported for them: an output whose digest is unchanged is not read
+ * again, see {@link #readOutputTimestamps}. Callers must {@link #invalidate(Collection) invalidate}
+ * the files they write themselves. The journal is written to disk periodically and on shutdown.
+ */
+public class FileAttributeJournal implements Disposable {
+
+  private static final Logger logger = Logger.getInstance(FileAttributeJournal.class);
+
+  private static final BoolExperiment enabled =
+      new BoolExperiment("blaze.file.attribute.journal.enabled", true);
+
+  private static final IntExperiment verificationSamplePercent =
+      new IntExperiment("blaze.file.attribute.journal.sample.percent", 2);
+
+  /** The minimum number of journalled files re-read from disk per request. */
+  @VisibleForTesting static final int MIN_VERIFICATION_SAMPLE_SIZE = 16;
+
+  private static final int FORMAT_VERSION = 2;
+
+  private static final long FLUSH_INTERVAL_MINUTES = 5;
+
+  public static FileAttributeJournal getInstance() {
+    return ApplicationManager.getApplication().getService(FileAttributeJournal.class);
+  }
+
+  /** Returns true if the journal should be consulted in place of a full timestamp scan. */
+  public static boolean isEnabled() {
+    return enabled.getValue() && getInstance() != null;
+  }
+
+  private final File journalFile;
+  // Sorted, so the files under a directory can be dropped without scanning every entry
+  private final ConcurrentNavigableMap<String, Long> timestamps = new ConcurrentSkipListMap<>();
+  private final ConcurrentNavigableMap<String, OutputEntry> outputs = new ConcurrentSkipListMap<>();
+  private final Object loadLock = new Object();
+  private volatile boolean loaded = false;
+  @Nullable private ScheduledFuture<?> periodicFlush;
+  private final AtomicBoolean dirty = new AtomicBoolean(false);
+  private final Random random = new Random();
+
+  FileAttributeJournal() {
+    this(new File(PathManager.getSystemPath(), "blaze/file_attribute_journal.dat"));
+    ApplicationManager.getApplication()
+        .getMessageBus()
+        .connect(this)
+        .subscribe(
+            VirtualFileManager.VFS_CHANGES,
+            new BulkFileListener() {
+              @Override
+              public void after(List<? extends VFileEvent> events) {
+                events.forEach(FileAttributeJournal.this::invalidate);
+              }
+            });
+    periodicFlush =
+        AppExecutorUtil.getAppScheduledExecutorService()
+            .scheduleWithFixedDelay(
+                this::flush, FLUSH_INTERVAL_MINUTES, FLUSH_INTERVAL_MINUTES, TimeUnit.MINUTES);
+  }
+
+  @VisibleForTesting
+  FileAttributeJournal(File journalFile) {
+    this.journalFile = journalFile;
+  }
+
+  /**
+   * Returns the modified times of the given files, as {@link ModifiedTimeScanner#readTimestamps}
+   * would, but reading from the file system only for files not already in the journal plus a
+   * verification sample.
+   */
+  public ImmutableMap<File, Long> readTimestamps(Collection<File> files)
+      throws InterruptedException, ExecutionException {
+    if (files.isEmpty()) {
+      return ImmutableMap.of();
+    }
+    ensureLoaded();
+
+    Map<File, Long> result = new HashMap<>();
+    List<File> journalled = new ArrayList<>();
+    List<File> toRead = new ArrayList<>();
+    for (File file : files) {
+      Long timestamp = timestamps.get(file.getPath());
+      if (timestamp != null) {
+        result.put(file, timestamp);
+        journalled.add(file);
+      } else {
+        toRead.add(file);
+      }
+    }
+
+    if (!journalled.isEmpty()) {
+      List<File> sample = selectVerificationSample(journalled);
+      ImmutableMap<File, Long> verified = ModifiedTimeScanner.readTimestamps(sample);
+      boolean stale =
+          sample.stream().anyMatch(f -> !Objects.equals(verified.get(f), result.get(f)));
+      if (stale) {
+        logger.info(
+            String.format(
+                "File attribute journal out of date; re-reading %d files", journalled.size()));
+        journalled.forEach(result::remove);
+        toRead.addAll(journalled);
+      }
+    }
+
+    ImmutableMap<File, Long> read = ModifiedTimeScanner.readTimestamps(toRead);
+    for (File file : toRead) {
+      Long timestamp = read.get(file);
+      if (timestamp != null) {
+        result.put(file, timestamp);
+        timestamps.put(file.getPath(), timestamp);
+      } else {
+        result.remove(file);
+        timestamps.remove(file.getPath());
+      }
+    }
+    if (!toRead.isEmpty()) {
+      dirty.set(true);
+    }
+    return ImmutableMap.copyOf(result);
+  }
+
+  /**
+   * Returns the modified times of the given build outputs, keyed by the digest blaze reported for
+   * each of them. An output is only read from the file system if its digest differs from the one
+   * journalled when it was last read, so unchanged outputs cost no file system calls.
+   */
+  public ImmutableMap<File, Long> readOutputTimestamps(Map<File, String> digests)
+      throws InterruptedException, ExecutionException {
+    if (digests.isEmpty()) {
+      return ImmutableMap.of();
+    }
+    ensureLoaded();
+
+    Map<File, Long> result = new HashMap<>();
+    List<File> toRead = new ArrayList<>();
+    for (Map.Entry<File, String> entry : digests.entrySet()) {
+      OutputEntry journalled = outputs.get(entry.getKey().getPath());
+      if (journalled != null && journalled.digest.equals(entry.getValue())) {
+        result.put(entry.getKey(), journalled.timestamp);
+      } else {
+        toRead.add(entry.getKey());
+      }
+    }
+
+    ImmutableMap<File, Long> read = ModifiedTimeScanner.readTimestamps(toRead);
+    for (File file : toRead) {
+      Long timestamp = read.get(file);
+      if (timestamp != null) {
+        result.put(file, timestamp);
+        outputs.put(file.getPath(), new OutputEntry(digests.get(file), timestamp));
+      } else {
+        outputs.remove(file.getPath());
+      }
+    }
+    if (!toRead.isEmpty()) {
+      dirty.set(true);
+    }
+    return ImmutableMap.copyOf(result);
+  }
+
+  /** Drops all journal entries, forcing the next read of every file to hit the file system. */
+  public void invalidateAll() {
+    if (!timestamps.isEmpty() || !outputs.isEmpty()) {
+      timestamps.clear();
+      outputs.clear();
+      dirty.set(true);
+    }
+  }
+
+  /** Drops the journal entries for the given file, and any files under it. */
+  public void invalidate(String path) {
+    boolean removed = invalidate(timestamps, path) | invalidate(outputs, path);
+    if (removed) {
+      dirty.set(true);
+    }
+  }
+
+  private static boolean invalidate(ConcurrentNavigableMap<String, ?> entries, String path) {
+    boolean removed = entries.remove(path) != null;
+    String prefix = path.endsWith(File.separator) ? path : path + File.separator;
+    Map<String, ?> children = entries.subMap(prefix, prefix + '\uffff');
+    if (!children.isEmpty()) {
+      children.clear();
+      removed = true;
+    }
+    return removed;
+  }
+
+  /** Drops the journal entries for the given files, for instance after writing them. */
+  public void invalidate(Collection<File> files) {
+    for (File file : files) {
+      if (timestamps.remove(file.getPath()) != null | outputs.remove(file.getPath()) != null) {
+        dirty.set(true);
+      }
+    }
+  }
+
+  private void invalidate(VFileEvent event) {
+    if (timestamps.isEmpty() && outputs.isEmpty()) {
+      return;
+    }
+    if (event instanceof VFileContentChangeEvent) {
+      // content changes never affect anything below the file, so skip the prefix scan
+      String path = toSystemDependentName(event.getPath());
+      if (timestamps.remove(path) != null | outputs.remove(path) != null) {
+        dirty.set(true);
+      }
+      return;
+    }
+    invalidate(toSystemDependentName(event.getPath()));
+    if (event instanceof VFileMoveEvent) {
+      invalidate(toSystemDependentName(((VFileMoveEvent) event).getOldPath()));
+    } else if (event instanceof VFilePropertyChangeEvent
+        && ((VFilePropertyChangeEvent) event).getPropertyName().equals(VirtualFile.PROP_NAME)) {
+      invalidate(toSystemDependentName(((VFilePropertyChangeEvent) event).getOldPath()));
+    }
+  }
+
+  private List<File> selectVerificationSample(List<File> journalled) {
+    int sampleSize =
+        Math.max(
+            MIN_VERIFICATION_SAMPLE_SIZE,
+            (int) ((long) journalled.size() * verificationSamplePercent.getValue() / 100));
+    if (sampleSize >= journalled.size()) {
+      return journalled;
+    }
+    List<File> shuffled = new ArrayList<>(journalled);
+    Collections.shuffle(shuffled, random);
+    return shuffled.subList(0, sampleSize);
+  }
+
+  private void ensureLoaded() {
+    if (loaded) {
+      return;
+    }
+    // Other callers wait for the journal to be loaded rather than seeing it empty
+    synchronized (loadLock) {
+      if (!loaded) {
+        load();
+        loaded = true;
+      }
+    }
+  }
+
+  private void load() {
+    if (!journalFile.exists()) {
+      return;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(journalFile.toPath())))) {
+      if (in.readInt() != FORMAT_VERSION) {
+        logger.info("Discarding file attribute journal with an unknown format version");
+        return;
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        String path = in.readUTF();
+        long timestamp = in.readLong();
+        timestamps.putIfAbsent(path, timestamp);
+      }
+      int outputCount = in.readInt();
+      for (int i = 0; i < outputCount; i++) {
+        String path = in.readUTF();
+        String digest = in.readUTF();
+        long timestamp = in.readLong();
+        outputs.putIfAbsent(path, new OutputEntry(digest, timestamp));
+      }
+    } catch (IOException e) {
+      logger.warn("Failed to read file attribute journal", e);
+      timestamps.clear();
+      outputs.clear();
+    }
+  }
+
+  /** Writes the journal to disk, if it has changed since it was last written. */
+  public synchronized void flush() {
+    if (!dirty.compareAndSet(true, false)) {
+      return;
+    }
+    File parent = journalFile.getParentFile();
+    if (parent != null && !parent.exists() && !parent.mkdirs()) {
+      logger.warn("Could not create directory for file attribute journal: " + parent);
+      return;
+    }
+    File tmp = new File(journalFile.getPath() + ".tmp");
+    Map<String, Long> snapshot = new HashMap<>(timestamps);
+    Map<String, OutputEntry> outputsSnapshot = new HashMap<>(outputs);
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(snapshot.size());
+      for (Map.Entry<String, Long> entry : snapshot.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeLong(entry.getValue());
+      }
+      out.writeInt(outputsSnapshot.size());
+      for (Map.Entry<String, OutputEntry> entry : outputsSnapshot.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeUTF(entry.getValue().digest);
+        out.writeLong(entry.getValue().timestamp);
+      }
+    } catch (IOException e) {
+      logger.warn("Failed to write file attribute journal", e);
+      return;
+    }
+    try {
+      Files.move(
+          tmp.toPath(),
+          journalFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      logger.warn("Failed to replace file attribute journal", e);
+    }
+  }
+
+  @Override
+  public void dispose() {
+    if (periodicFlush != null) {
+      periodicFlush.cancel(false);
+    }
+    flush();
+  }
+
+  @VisibleForTesting
+  @Nullable
+  Long getJournalledTimestamp(File file) {
+    return timestamps.get(file.getPath());
+  }
+
+  /** The modified time of a build output, and the digest blaze reported for it at the time. */
+  private static final class OutputEntry {
+    final String digest;
+    final long timestamp;
+
+    OutputEntry(String digest, long timestamp) {
+      this.digest = digest;
+      this.timestamp = timestamp;
+    }
+  }
+}
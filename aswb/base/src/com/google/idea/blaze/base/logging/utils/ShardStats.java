@@ -41,6 +41,7 @@ public abstract class ShardStats {
     PARTITION_WITHOUT_EXPANDING,
     BUILD_TARGET_BATCHING_SERVICE,
     LEXICOGRAPHIC_TARGET_SHARDER,
+    COST_AWARE_TARGET_SHARDER,
     ERROR
   }
 }
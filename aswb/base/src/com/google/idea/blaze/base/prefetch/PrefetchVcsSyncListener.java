@@ -15,6 +15,7 @@
  */
 package com.google.idea.blaze.base.prefetch;
 
+import com.google.idea.blaze.base.io.FileAttributeJournal;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.projectview.ProjectViewManager;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
@@ -24,14 +25,25 @@ import com.google.idea.blaze.base.vcs.VcsSyncListener;
 import com.google.idea.common.experiments.BoolExperiment;
 import com.intellij.openapi.project.Project;
 
-/** Kicks off a prefetch task when the base VCS revision/commit/CL/whatever changes. */
+/**
+ * Kicks off a prefetch task when the base VCS revision/commit/CL/whatever changes.
+ *
+ * <p>Also drops the {@link FileAttributeJournal}, since a VCS sync can touch files without
+ * generating VFS events.
+ */
 class PrefetchVcsSyncListener implements VcsSyncListener {
 
   private static final BoolExperiment enabled = new BoolExperiment("prefetch.on.vcs.sync", true);
 
   @Override
   public void onVcsSync(Project project) {
-    if (!Blaze.isBlazeProject(project) || !enabled.getValue()) {
+    if (!Blaze.isBlazeProject(project)) {
+      return;
+    }
+    if (FileAttributeJournal.isEnabled()) {
+      FileAttributeJournal.getInstance().invalidateAll();
+    }
+    if (!enabled.getValue()) {
       return;
     }
     BlazeProjectData projectData =
@@ -22,6 +22,9 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
 import com.google.idea.blaze.base.bazel.BuildSystem;
 import com.google.idea.blaze.base.logging.utils.querysync.BuildDepsStatsScope;
 import com.google.idea.blaze.base.logging.utils.querysync.SyncQueryStatsScope;
@@ -53,6 +56,7 @@ import com.google.idea.blaze.qsync.QuerySyncProjectSnapshot;
 import com.google.idea.blaze.qsync.SnapshotBuilder;
 import com.google.idea.blaze.qsync.SnapshotHolder;
 import com.google.idea.blaze.qsync.deps.ArtifactTracker;
+import com.google.idea.blaze.qsync.project.ExternalQuerySummary;
 import com.google.idea.blaze.qsync.project.PostQuerySyncData;
 import com.google.idea.blaze.qsync.project.ProjectDefinition;
 import com.google.idea.blaze.qsync.project.ProjectPath;
@@ -60,6 +64,10 @@ import com.google.idea.blaze.qsync.project.ProjectProtoTransform;
 import com.google.idea.blaze.qsync.project.SnapshotDeserializer;
 import com.google.idea.blaze.qsync.project.SnapshotSerializer;
 import com.google.idea.blaze.qsync.project.TargetsToBuild;
+import com.google.idea.blaze.qsync.query.QuerySummaryFile;
+import com.google.idea.blaze.qsync.query.QuerySummaryView;
+import com.google.idea.common.experiments.BoolExperiment;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
@@ -68,13 +76,17 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
 
 /**
  * Encapsulates a loaded querysync project and it's dependencies.
@@ -84,6 +96,15 @@ import java.util.zip.GZIPOutputStream;
  */
 public class QuerySyncProject {
 
+  private static final Logger logger = Logger.getInstance(QuerySyncProject.class);
+
+  /**
+   * Store the query summary in a separate memory-mapped file rather than inside the snapshot, so
+   * that reopening a project doesn't need to parse it all up front.
+   */
+  private static final BoolExperiment MAPPED_QUERY_SUMMARY =
+      new BoolExperiment("querysync.mapped.query.summary", true);
+
   private final Path snapshotFilePath;
   private final Project project;
   private final SnapshotHolder snapshotHolder;
@@ -113,6 +134,11 @@ public class QuerySyncProject {
 
   private volatile QuerySyncProjectData projectData;
 
+  /** The query summary last written to or read from a separate file, and that file. */
+  @Nullable private QuerySummaryView writtenQuerySummary;
+
+  @Nullable private volatile ExternalQuerySummary writtenQuerySummaryFile;
+
   public QuerySyncProject(
       Project project,
       Path snapshotFilePath,
@@ -481,9 +507,18 @@ public class QuerySyncProject {
       return Optional.empty();
     }
     try (InputStream in = new GZIPInputStream(new FileInputStream(f))) {
-      return new SnapshotDeserializer()
-          .readFrom(in, context)
-          .map(SnapshotDeserializer::getSyncData);
+      Optional<SnapshotDeserializer> deserializer =
+          new SnapshotDeserializer().readFrom(in, snapshotFilePath.getParent(), context);
+      if (deserializer.isEmpty()) {
+        return Optional.empty();
+      }
+      PostQuerySyncData data = deserializer.get().getSyncData();
+      Optional<ExternalQuerySummary> summaryFile = deserializer.get().getExternalQuerySummary();
+      if (summaryFile.isPresent()) {
+        writtenQuerySummary = data.querySummaryView();
+        writtenQuerySummaryFile = summaryFile.get();
+      }
+      return Optional.of(data);
     }
   }
 
@@ -556,13 +591,100 @@ public class QuerySyncProject {
         .orElse(ImmutableSet.of());
   }
 
+  private Path querySummaryFilePath(ExternalQuerySummary summaryFile) {
+    return snapshotFilePath.resolveSibling(summaryFile.fileName());
+  }
+
   private void writeToDisk(QuerySyncProjectSnapshot snapshot) throws IOException {
+    ExternalQuerySummary summaryFile = null;
+    if (MAPPED_QUERY_SUMMARY.getValue()) {
+      summaryFile = writeQuerySummaryFile(snapshot.queryData());
+    }
     try (AtomicFileWriter writer = AtomicFileWriter.create(snapshotFilePath)) {
       try (OutputStream zip = new GZIPOutputStream(writer.getOutputStream())) {
-        new SnapshotSerializer().visit(snapshot.queryData()).toProto().writeTo(zip);
+        SnapshotSerializer serializer = new SnapshotSerializer();
+        if (summaryFile != null) {
+          serializer.visitWithExternalQuerySummary(snapshot.queryData(), summaryFile);
+        } else {
+          serializer.visit(snapshot.queryData());
+        }
+        serializer.toProto().writeTo(zip);
       }
       writer.onWriteComplete();
     }
+    deleteStaleQuerySummaryFiles(summaryFile);
+  }
+
+  /**
+   * Writes the query summary to a memory-mappable file next to the snapshot, so that it can be
+   * loaded lazily when the project is reopened. Returns the file written, or null if it could not
+   * be written and the summary should be embedded in the snapshot instead.
+   *
+   * <p>Most new snapshots keep the query summary of the previous one, in which case the file
+   * written for it is reused as is: this avoids decoding a summary that was loaded from such a
+   * file. A new summary is written to a new file named after its content, so a file that may still
+   * be mapped by an earlier snapshot is never overwritten.
+   */
+  @Nullable
+  private ExternalQuerySummary writeQuerySummaryFile(PostQuerySyncData queryData) {
+    if (queryData.querySummaryView() == writtenQuerySummary
+        && writtenQuerySummaryFile != null
+        && Files.exists(querySummaryFilePath(writtenQuerySummaryFile))) {
+      return writtenQuerySummaryFile;
+    }
+    Path tmp = snapshotFilePath.resolveSibling(snapshotFilePath.getFileName() + ".summary.tmp");
+    try {
+      HashCode sha256;
+      try (HashingOutputStream out =
+          new HashingOutputStream(Hashing.sha256(), Files.newOutputStream(tmp))) {
+        QuerySummaryFile.write(queryData.querySummary(), out);
+        sha256 = out.hash();
+      }
+      ExternalQuerySummary summaryFile =
+          ExternalQuerySummary.create(
+              snapshotFilePath.getFileName() + ".summary." + sha256, Files.size(tmp), sha256);
+      Path target = querySummaryFilePath(summaryFile);
+      if (Files.exists(target)) {
+        // Same name, so same content: keep the existing file, which may be mapped.
+        Files.delete(tmp);
+      } else {
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+      }
+      writtenQuerySummary = queryData.querySummaryView();
+      writtenQuerySummaryFile = summaryFile;
+      return summaryFile;
+    } catch (IOException e) {
+      logger.warn("Failed to write query summary file " + tmp, e);
+      try {
+        Files.deleteIfExists(tmp);
+      } catch (IOException ignored) {
+        // best effort
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Deletes the query summary files next to the snapshot other than {@code current}. Files that
+   * are still mapped can't be deleted on Windows; they are retried after the next write.
+   */
+  private void deleteStaleQuerySummaryFiles(@Nullable ExternalQuerySummary current) {
+    String prefix = snapshotFilePath.getFileName() + ".summary";
+    try (DirectoryStream<Path> files =
+        Files.newDirectoryStream(snapshotFilePath.getParent(), prefix + "*")) {
+      for (Path file : files) {
+        if (current != null && file.getFileName().toString().equals(current.fileName())) {
+          continue;
+        }
+        try {
+          Files.deleteIfExists(file);
+        } catch (IOException e) {
+          logger.debug("Could not delete stale query summary file " + file, e);
+        }
+      }
+    } catch (IOException e) {
+      logger.warn("Failed to list query summary files", e);
+    }
   }
 
   private void onNewSnapshot(BlazeContext context, QuerySyncProjectSnapshot newSnapshot)
@@ -577,8 +699,12 @@ public class QuerySyncProject {
   }
 
   public Iterable<Path> getBugreportFiles() {
-    return ImmutableList.<Path>builder()
-        .add(snapshotFilePath)
+    ImmutableList.Builder<Path> files = ImmutableList.<Path>builder().add(snapshotFilePath);
+    if (writtenQuerySummaryFile != null
+        && Files.exists(querySummaryFilePath(writtenQuerySummaryFile))) {
+      files.add(querySummaryFilePath(writtenQuerySummaryFile));
+    }
+    return files
         .addAll(artifactTracker.getBugreportFiles())
         .build();
   }
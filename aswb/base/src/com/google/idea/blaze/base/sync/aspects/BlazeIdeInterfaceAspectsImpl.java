@@ -85,6 +85,8 @@ import com.google.idea.blaze.base.sync.aspects.strategy.AspectStrategy.OutputGro
 import com.google.idea.blaze.base.sync.projectview.ImportRoots;
 import com.google.idea.blaze.base.sync.projectview.LanguageSupport;
 import com.google.idea.blaze.base.sync.projectview.WorkspaceLanguageSettings;
+import com.google.idea.blaze.base.sync.sharding.BuildCostHistory;
+import com.google.idea.blaze.base.sync.sharding.CostAwareTargetSharder;
 import com.google.idea.blaze.base.sync.sharding.ShardedBuildProgressTracker;
 import com.google.idea.blaze.base.sync.sharding.ShardedTargetList;
 import com.google.idea.blaze.base.toolwindow.Task;
@@ -102,6 +104,7 @@ import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.pom.NavigatableAdapter;
 import java.io.File;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -633,6 +636,11 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
 
                   setupToolWindow(project, childContext, workspaceRoot, task);
                   progressTracker.onBuildStarted(context);
+                  BuildCostHistory costHistory =
+                      CostAwareTargetSharder.isEnabled() ? BuildCostHistory.getInstance() : null;
+                  Duration predicted =
+                      costHistory != null ? costHistory.estimateShardDuration(targets) : null;
+                  long startNanos = System.nanoTime();
 
                   try {
                     BlazeBuildOutputs result =
@@ -654,6 +662,10 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
                               result.getBuildIds().stream().findFirst().orElse(null)));
                     }
                     printShardFinishedSummary(context, task.getName(), result, invoker);
+                    if (costHistory != null && result.buildResult.status == Status.SUCCESS) {
+                      costHistory.recordShard(
+                          targets, Duration.ofNanos(System.nanoTime() - startNanos), result);
+                    }
                     synchronized (combinedResult) {
                       combinedResult.set(
                           combinedResult.isNull()
@@ -665,7 +677,8 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
                     context.handleException("Failed to build targets", e);
                     return BuildResult.FATAL_ERROR;
                   } finally {
-                    progressTracker.onBuildCompleted(context);
+                    progressTracker.onBuildCompleted(
+                        context, predicted, Duration.ofNanos(System.nanoTime() - startNanos));
                   }
                 });
     BuildResult buildResult =
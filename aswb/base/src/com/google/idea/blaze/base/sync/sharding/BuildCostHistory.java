@@ -0,0 +1,210 @@
+/*
+ * Copyright 2025 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.sharding;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.model.primitives.TargetExpression;
+import com.google.idea.blaze.base.sync.aspects.BlazeBuildOutputs;
+import com.google.idea.blaze.common.artifact.OutputArtifact;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.RoamingType;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import javax.annotation.Nullable;
+
+/**
+ * Per-package build cost estimates, learned from the wall-clock time and output sizes of previous
+ * build shards.
+ *
+ * <p>Blaze doesn't report per-target build times, so each shard's duration is attributed to its
+ * targets in proportion to their current estimate, weighted by the size of their outputs. Repeated
+ * syncs with different shard compositions converge on a reasonable relative cost per package.
+ */
+@State(
+    name = "BlazeBuildCostHistory",
+    storages = {@Storage(value = "blaze.build.cost.history.xml", roamingType = RoamingType.DISABLED)})
+public class BuildCostHistory implements PersistentStateComponent<BuildCostHistory.State> {
+
+  /** Weight given to the newest observation when updating a package's estimate. */
+  private static final double SMOOTHING_FACTOR = 0.5;
+
+  /** Upper bound on the number of packages remembered; the least recently built are evicted. */
+  @VisibleForTesting static final int MAX_PACKAGES = 50_000;
+
+  /** Serialized cost of a single package. */
+  public static class PackageCost {
+    public double millisPerTarget;
+    public long outputBytesPerTarget;
+    public long lastUpdatedMillis;
+  }
+
+  /** Persisted state: package path to cost. */
+  public static class State {
+    public Map<String, PackageCost> packages = new HashMap<>();
+  }
+
+  private State state = new State();
+
+  @Nullable
+  public static BuildCostHistory getInstance() {
+    return ApplicationManager.getApplication().getService(BuildCostHistory.class);
+  }
+
+  @Override
+  public synchronized State getState() {
+    // copied, since the state is serialized on another thread while shards are being recorded
+    State copy = new State();
+    state.packages.forEach((key, cost) -> copy.packages.put(key, copy(cost)));
+    return copy;
+  }
+
+  @Override
+  public synchronized void loadState(State state) {
+    this.state = state;
+  }
+
+  private static PackageCost copy(PackageCost cost) {
+    PackageCost copy = new PackageCost();
+    copy.millisPerTarget = cost.millisPerTarget;
+    copy.outputBytesPerTarget = cost.outputBytesPerTarget;
+    copy.lastUpdatedMillis = cost.lastUpdatedMillis;
+    return copy;
+  }
+
+  /** Returns the estimated build time of a single target, if its package has been built before. */
+  public synchronized OptionalDouble estimateMillis(Label target) {
+    PackageCost cost = state.packages.get(packageKey(target));
+    return cost != null ? OptionalDouble.of(cost.millisPerTarget) : OptionalDouble.empty();
+  }
+
+  /**
+   * Returns the estimated wall-clock time to build the given shard, or null if none of its targets
+   * have any build history.
+   */
+  @Nullable
+  public synchronized Duration estimateShardDuration(List<? extends TargetExpression> targets) {
+    double known = 0;
+    int knownCount = 0;
+    int labelCount = 0;
+    for (TargetExpression target : targets) {
+      if (!(target instanceof Label)) {
+        continue;
+      }
+      labelCount++;
+      PackageCost cost = state.packages.get(packageKey((Label) target));
+      if (cost != null) {
+        known += cost.millisPerTarget;
+        knownCount++;
+      }
+    }
+    if (knownCount == 0) {
+      return null;
+    }
+    // assume unknown targets cost the same as the average known target in this shard
+    return Duration.ofMillis(Math.round(known / knownCount * labelCount));
+  }
+
+  /** Updates the history from a completed build shard. */
+  public synchronized void recordShard(
+      List<? extends TargetExpression> targets, Duration elapsed, BlazeBuildOutputs outputs) {
+    Map<Label, Long> outputBytes = new HashMap<>();
+    for (TargetExpression target : targets) {
+      if (target instanceof Label) {
+        long bytes =
+            outputs.artifactsForTarget(target.toString()).stream()
+                .mapToLong(OutputArtifact::getLength)
+                .sum();
+        outputBytes.put((Label) target, bytes);
+      }
+    }
+    recordShard(outputBytes, elapsed, System.currentTimeMillis());
+  }
+
+  @VisibleForTesting
+  synchronized void recordShard(Map<Label, Long> outputBytes, Duration elapsed, long nowMillis) {
+    if (outputBytes.isEmpty()) {
+      return;
+    }
+    Map<Label, Double> weights = new HashMap<>();
+    double totalWeight = 0;
+    for (Map.Entry<Label, Long> entry : outputBytes.entrySet()) {
+      PackageCost previous = state.packages.get(packageKey(entry.getKey()));
+      double estimate = previous != null ? Math.max(previous.millisPerTarget, 1) : 1;
+      // log-scale output size, so a single huge artifact doesn't swallow the whole shard
+      double weight = estimate * (1 + Math.log1p(entry.getValue()));
+      weights.put(entry.getKey(), weight);
+      totalWeight += weight;
+    }
+
+    // aggregate per package before smoothing, so every package gets exactly one update per shard
+    Map<String, double[]> perPackage = new HashMap<>();
+    for (Map.Entry<Label, Double> entry : weights.entrySet()) {
+      double millis = elapsed.toMillis() * entry.getValue() / totalWeight;
+      double[] sums = perPackage.computeIfAbsent(packageKey(entry.getKey()), k -> new double[3]);
+      sums[0] += millis;
+      sums[1] += outputBytes.get(entry.getKey());
+      sums[2]++;
+    }
+    for (Map.Entry<String, double[]> entry : perPackage.entrySet()) {
+      double[] sums = entry.getValue();
+      double millisPerTarget = sums[0] / sums[2];
+      long bytesPerTarget = Math.round(sums[1] / sums[2]);
+      PackageCost cost = state.packages.get(entry.getKey());
+      if (cost == null) {
+        cost = new PackageCost();
+        cost.millisPerTarget = millisPerTarget;
+        state.packages.put(entry.getKey(), cost);
+      } else {
+        cost.millisPerTarget =
+            SMOOTHING_FACTOR * millisPerTarget + (1 - SMOOTHING_FACTOR) * cost.millisPerTarget;
+      }
+      cost.outputBytesPerTarget = bytesPerTarget;
+      cost.lastUpdatedMillis = nowMillis;
+    }
+    evictIfNeeded();
+  }
+
+  private void evictIfNeeded() {
+    int excess = state.packages.size() - MAX_PACKAGES;
+    if (excess <= 0) {
+      return;
+    }
+    state.packages.entrySet().stream()
+        .sorted(
+            Comparator.comparingLong(
+                (Map.Entry<String, PackageCost> e) -> e.getValue().lastUpdatedMillis))
+        .limit(excess)
+        .map(Map.Entry::getKey)
+        .collect(toImmutableList())
+        .forEach(state.packages::remove);
+  }
+
+  /** Returns the package of a label, including its external workspace. */
+  static String packageKey(Label label) {
+    String labelStr = label.toString();
+    return labelStr.substring(0, labelStr.lastIndexOf(':'));
+  }
+}
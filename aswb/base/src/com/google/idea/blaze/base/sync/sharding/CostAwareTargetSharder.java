@@ -0,0 +1,185 @@
+/*
+ * Copyright 2025 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.sharding;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.idea.blaze.base.sync.sharding.ShardedTargetList.remoteConcurrentSyncs;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.bazel.BuildSystem.SyncStrategy;
+import com.google.idea.blaze.base.logging.utils.ShardStats.ShardingApproach;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.common.experiments.BoolExperiment;
+import com.google.idea.common.experiments.IntExperiment;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * A target batcher which balances the estimated wall-clock time of each shard, using the build
+ * times recorded in {@link BuildCostHistory}.
+ *
+ * <p>Shard sizes are chosen exactly as {@link LexicographicTargetSharder} would; only the
+ * assignment of targets to shards differs. Packages are placed most-expensive first into the shard
+ * with the lowest estimated total (longest-processing-time bin packing). A package is kept in one
+ * shard, as lexicographic sharding mostly does, unless it is more expensive than an even share of
+ * the total, so a single expensive package no longer turns one shard into a straggler.
+ *
+ * <p>Only applies to parallel builds with enough history to be useful; otherwise returns null so
+ * the next {@link BuildBatchingService} is used.
+ */
+public class CostAwareTargetSharder implements BuildBatchingService {
+
+  @VisibleForTesting
+  static final BoolExperiment enabled = new BoolExperiment("cost.aware.sharder.enabled", false);
+
+  /** Returns whether shards are balanced by cost, and build costs should be recorded. */
+  public static boolean isEnabled() {
+    return enabled.getValue();
+  }
+
+  /** The minimum percentage of targets whose package has build history. */
+  @VisibleForTesting
+  static final IntExperiment minimumHistoryCoveragePercent =
+      new IntExperiment("cost.aware.sharder.minimum.coverage.percent", 50);
+
+  @Nullable
+  @Override
+  public ImmutableList<ImmutableList<Label>> calculateTargetBatches(
+      Set<Label> targets, SyncStrategy syncStrategy, int suggestedShardSize) {
+    if (!isEnabled() || syncStrategy == SyncStrategy.SERIAL) {
+      return null;
+    }
+    BuildCostHistory history = BuildCostHistory.getInstance();
+    if (history == null) {
+      return null;
+    }
+    int shardSize =
+        LexicographicTargetSharder.computeParallelShardSize(
+            targets.size(),
+            LexicographicTargetSharder.parallelThreshold.getValue(),
+            remoteConcurrentSyncs.getValue(),
+            LexicographicTargetSharder.minimumRemoteShardSize.getValue(),
+            LexicographicTargetSharder.maximumRemoteShardSize.getValue(),
+            suggestedShardSize);
+    int shardCount = (targets.size() + shardSize - 1) / shardSize;
+    if (shardCount <= 1) {
+      return null;
+    }
+
+    Map<Label, Double> costs = new HashMap<>();
+    double knownTotal = 0;
+    for (Label target : targets) {
+      OptionalDouble estimate = history.estimateMillis(target);
+      if (estimate.isPresent()) {
+        costs.put(target, estimate.getAsDouble());
+        knownTotal += estimate.getAsDouble();
+      }
+    }
+    if (costs.size() * 100L < (long) targets.size() * minimumHistoryCoveragePercent.getValue()) {
+      return null;
+    }
+    double defaultCost = knownTotal / costs.size();
+    for (Label target : targets) {
+      costs.putIfAbsent(target, defaultCost);
+    }
+    return binPack(costs, shardCount, shardSize);
+  }
+
+  /**
+   * Assigns targets to {@code shardCount} shards of at most {@code shardSize} targets each,
+   * minimizing the largest per-shard total cost. The targets of a package stay in the same shard,
+   * unless the package costs more than {@code 1 / shardCount} of the total or has more than {@code
+   * shardSize} targets, or no shard has room left for all of them. Each shard is sorted
+   * lexicographically.
+   */
+  @VisibleForTesting
+  static ImmutableList<ImmutableList<Label>> binPack(
+      Map<Label, Double> costs, int shardCount, int shardSize) {
+    double budget = costs.values().stream().mapToDouble(Double::doubleValue).sum() / shardCount;
+    Map<String, List<Label>> packages = new TreeMap<>();
+    for (Label target : costs.keySet()) {
+      packages
+          .computeIfAbsent(BuildCostHistory.packageKey(target), k -> new ArrayList<>())
+          .add(target);
+    }
+    List<List<Label>> items = new ArrayList<>();
+    for (List<Label> targets : packages.values()) {
+      if (targets.size() > shardSize || totalCost(costs, targets) > budget) {
+        targets.forEach(target -> items.add(ImmutableList.of(target)));
+      } else {
+        items.add(targets);
+      }
+    }
+    items.sort(
+        Comparator.comparing((List<Label> item) -> totalCost(costs, item))
+            .reversed()
+            .thenComparing(item -> item.get(0).toString()));
+
+    List<List<Label>> shards = new ArrayList<>(shardCount);
+    double[] totals = new double[shardCount];
+    for (int i = 0; i < shardCount; i++) {
+      shards.add(new ArrayList<>());
+    }
+    for (List<Label> item : items) {
+      int shard = cheapestShardWithRoom(shards, totals, shardSize, item.size());
+      if (shard >= 0) {
+        shards.get(shard).addAll(item);
+        totals[shard] += totalCost(costs, item);
+        continue;
+      }
+      // No shard has room for the whole package; the shards have room for every target though
+      for (Label target : item) {
+        shard = cheapestShardWithRoom(shards, totals, shardSize, 1);
+        shards.get(shard).add(target);
+        totals[shard] += costs.get(target);
+      }
+    }
+    return shards.stream()
+        .filter(s -> !s.isEmpty())
+        .map(s -> ImmutableList.sortedCopyOf(Comparator.comparing(Label::toString), s))
+        .collect(toImmutableList());
+  }
+
+  /** Returns the cheapest shard with room for {@code count} more targets, or -1 if there is none. */
+  private static int cheapestShardWithRoom(
+      List<List<Label>> shards, double[] totals, int shardSize, int count) {
+    int cheapest = -1;
+    for (int i = 0; i < shards.size(); i++) {
+      if (shards.get(i).size() + count <= shardSize
+          && (cheapest < 0 || totals[i] < totals[cheapest])) {
+        cheapest = i;
+      }
+    }
+    return cheapest;
+  }
+
+  private static double totalCost(Map<Label, Double> costs, List<Label> targets) {
+    return targets.stream().mapToDouble(costs::get).sum();
+  }
+
+  @Override
+  public ShardingApproach getShardingApproach() {
+    return ShardingApproach.COST_AWARE_TARGET_SHARDER;
+  }
+}
@@ -17,17 +17,26 @@ package com.google.idea.blaze.base.sync.sharding;
 
 import com.google.errorprone.annotations.concurrent.GuardedBy;
 import com.google.idea.blaze.base.scope.BlazeContext;
+import com.google.idea.blaze.base.scope.output.PrintOutput;
 import com.google.idea.blaze.base.scope.output.StateUpdate;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.text.StringUtil;
+import java.time.Duration;
+import javax.annotation.Nullable;
 
 /**
  * Tracks the state of a sharded build.
  *
  * <p>Keep track of the number of completed & in progress builds, and send a StateOutput to the
  * context whenever it changes.
+ *
+ * <p>Where a shard's duration was predicted up front, also reports the predicted versus actual
+ * duration of each shard, and of the slowest shard once all are complete.
  */
 public final class ShardedBuildProgressTracker {
 
+  private static final Logger logger = Logger.getInstance(ShardedBuildProgressTracker.class);
+
   private final int totalShards;
 
   @GuardedBy("this")
@@ -36,6 +45,14 @@ public final class ShardedBuildProgressTracker {
   @GuardedBy("this")
   private int buildsCompleted;
 
+  @GuardedBy("this")
+  private Duration slowestActual = Duration.ZERO;
+
+  /** The predicted duration of the shard that actually took {@link #slowestActual}. */
+  @GuardedBy("this")
+  @Nullable
+  private Duration slowestPredicted;
+
   public ShardedBuildProgressTracker(int totalShards) {
     this.totalShards = totalShards;
   }
@@ -51,6 +68,38 @@ public final class ShardedBuildProgressTracker {
     sendUpdate(context);
   }
 
+  /**
+   * Records a completed shard along with its actual duration and, if known, the duration predicted
+   * when the shards were created.
+   */
+  public synchronized void onBuildCompleted(
+      BlazeContext context, @Nullable Duration predicted, Duration actual) {
+    if (predicted != null) {
+      String message =
+          String.format(
+              "Shard completed in %s (predicted %s)",
+              formatDuration(actual), formatDuration(predicted));
+      context.output(PrintOutput.log(message));
+      if (slowestPredicted == null || actual.compareTo(slowestActual) > 0) {
+        slowestActual = actual;
+        slowestPredicted = predicted;
+      }
+    }
+    onBuildCompleted(context);
+    if (buildsCompleted == totalShards && slowestPredicted != null) {
+      String summary =
+          String.format(
+              "Slowest of %d shards took %s (predicted %s)",
+              totalShards, formatDuration(slowestActual), formatDuration(slowestPredicted));
+      logger.info(summary);
+      context.output(PrintOutput.log(summary));
+    }
+  }
+
+  private static String formatDuration(Duration duration) {
+    return StringUtil.formatDuration(duration.toMillis());
+  }
+
   private synchronized void sendUpdate(BlazeContext context) {
     context.output(
         new StateUpdate(makeStateString(totalShards, buildsCompleted, buildsInProgress)));
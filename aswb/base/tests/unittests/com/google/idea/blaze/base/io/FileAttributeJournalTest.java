@@ -0,0 +1,219 @@
+/*
+ * Copyright 2025 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.io;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.common.experiments.ExperimentService;
+import com.google.idea.common.experiments.MockExperimentService;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link FileAttributeJournal} */
+@RunWith(JUnit4.class)
+public class FileAttributeJournalTest extends BlazeTestCase {
+
+  private static final int FILE_COUNT = 200;
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private CountingFileOperationProvider fileOperationProvider;
+  private File journalFile;
+  private List<File> files;
+
+  private static class CountingFileOperationProvider extends FileOperationProvider {
+    final Map<File, Long> times = new ConcurrentHashMap<>();
+    final AtomicInteger reads = new AtomicInteger();
+
+    @Override
+    public long getFileModifiedTime(File file) {
+      reads.incrementAndGet();
+      return times.getOrDefault(file, 0L);
+    }
+  }
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    applicationServices.register(ExperimentService.class, new MockExperimentService());
+
+    fileOperationProvider = new CountingFileOperationProvider();
+    applicationServices.register(FileOperationProvider.class, fileOperationProvider);
+
+    journalFile = new File(tempFolder.getRoot(), "journal.dat");
+    files = new ArrayList<>();
+    for (int i = 0; i < FILE_COUNT; i++) {
+      File file = new File("/workspace/out/file" + i);
+      files.add(file);
+      fileOperationProvider.times.put(file, 100L + i);
+    }
+  }
+
+  @Test
+  public void readTimestamps_firstRead_readsEveryFile() throws Exception {
+    FileAttributeJournal journal = new FileAttributeJournal(journalFile);
+
+    Map<File, Long> timestamps = journal.readTimestamps(files);
+
+    assertThat(timestamps).containsExactlyEntriesIn(fileOperationProvider.times);
+    assertThat(fileOperationProvider.reads.get()).isEqualTo(FILE_COUNT);
+  }
+
+  @Test
+  public void readTimestamps_unchangedFiles_readsOnlySample() throws Exception {
+    FileAttributeJournal journal = new FileAttributeJournal(journalFile);
+    journal.readTimestamps(files);
+    fileOperationProvider.reads.set(0);
+
+    Map<File, Long> timestamps = journal.readTimestamps(files);
+
+    assertThat(timestamps).containsExactlyEntriesIn(fileOperationProvider.times);
+    assertThat(fileOperationProvider.reads.get())
+        .isEqualTo(FileAttributeJournal.MIN_VERIFICATION_SAMPLE_SIZE);
+  }
+
+  @Test
+  public void readTimestamps_invalidatedFile_isReadAgain() throws Exception {
+    FileAttributeJournal journal = new FileAttributeJournal(journalFile);
+    journal.readTimestamps(files);
+    File changed = files.get(7);
+    fileOperationProvider.times.put(changed, 5000L);
+    journal.invalidate(changed.getPath());
+
+    Map<File, Long> timestamps = journal.readTimestamps(files);
+
+    assertThat(timestamps).containsEntry(changed, 5000L);
+    assertThat(journal.getJournalledTimestamp(changed)).isEqualTo(5000L);
+  }
+
+  @Test
+  public void invalidate_directory_dropsFilesUnderIt() throws Exception {
+    FileAttributeJournal journal = new FileAttributeJournal(journalFile);
+    File inside = new File("/workspace/dir/a");
+    File nested = new File("/workspace/dir/sub/c");
+    File outside = new File("/workspace/dir2/b");
+    fileOperationProvider.times.put(inside, 1L);
+    fileOperationProvider.times.put(nested, 3L);
+    fileOperationProvider.times.put(outside, 2L);
+    journal.readTimestamps(List.of(inside, nested, outside));
+
+    journal.invalidate(new File("/workspace/dir").getPath());
+
+    assertThat(journal.getJournalledTimestamp(inside)).isNull();
+    assertThat(journal.getJournalledTimestamp(nested)).isNull();
+    assertThat(journal.getJournalledTimestamp(outside)).isEqualTo(2L);
+  }
+
+  @Test
+  public void invalidate_files_dropsOnlyThoseFiles() throws Exception {
+    FileAttributeJournal journal = new FileAttributeJournal(journalFile);
+    journal.readTimestamps(files);
+
+    journal.invalidate(files.subList(0, 10));
+
+    assertThat(journal.getJournalledTimestamp(files.get(0))).isNull();
+    assertThat(journal.getJournalledTimestamp(files.get(9))).isNull();
+    assertThat(journal.getJournalledTimestamp(files.get(10))).isNotNull();
+  }
+
+  @Test
+  public void readTimestamps_staleSample_rereadsAllJournalledFiles() throws Exception {
+    FileAttributeJournal journal = new FileAttributeJournal(journalFile);
+    journal.readTimestamps(files);
+    // changed outside of the VFS, so the journal is not told about it
+    files.forEach(f -> fileOperationProvider.times.compute(f, (k, v) -> v + 1));
+    fileOperationProvider.reads.set(0);
+
+    Map<File, Long> timestamps = journal.readTimestamps(files);
+
+    assertThat(timestamps).containsExactlyEntriesIn(fileOperationProvider.times);
+    assertThat(fileOperationProvider.reads.get())
+        .isEqualTo(FILE_COUNT + FileAttributeJournal.MIN_VERIFICATION_SAMPLE_SIZE);
+  }
+
+  @Test
+  public void flush_persistsJournalAcrossInstances() throws Exception {
+    FileAttributeJournal journal = new FileAttributeJournal(journalFile);
+    journal.readTimestamps(files);
+    journal.flush();
+    fileOperationProvider.reads.set(0);
+
+    FileAttributeJournal reloaded = new FileAttributeJournal(journalFile);
+    Map<File, Long> timestamps = reloaded.readTimestamps(files);
+
+    assertThat(timestamps).containsExactlyEntriesIn(fileOperationProvider.times);
+    assertThat(fileOperationProvider.reads.get())
+        .isEqualTo(FileAttributeJournal.MIN_VERIFICATION_SAMPLE_SIZE);
+  }
+
+  @Test
+  public void readOutputTimestamps_unchangedDigests_readsNothing() throws Exception {
+    FileAttributeJournal journal = new FileAttributeJournal(journalFile);
+    Map<File, String> digests = new HashMap<>();
+    files.forEach(f -> digests.put(f, "digest-" + f.getName()));
+    journal.readOutputTimestamps(digests);
+    fileOperationProvider.reads.set(0);
+
+    Map<File, Long> timestamps = journal.readOutputTimestamps(digests);
+
+    assertThat(timestamps).containsExactlyEntriesIn(fileOperationProvider.times);
+    assertThat(fileOperationProvider.reads.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void readOutputTimestamps_changedDigest_readsOnlyThatOutput() throws Exception {
+    FileAttributeJournal journal = new FileAttributeJournal(journalFile);
+    Map<File, String> digests = new HashMap<>();
+    files.forEach(f -> digests.put(f, "digest-" + f.getName()));
+    journal.readOutputTimestamps(digests);
+    File rebuilt = files.get(3);
+    fileOperationProvider.times.put(rebuilt, 5000L);
+    digests.put(rebuilt, "new-digest");
+    fileOperationProvider.reads.set(0);
+
+    Map<File, Long> timestamps = journal.readOutputTimestamps(digests);
+
+    assertThat(timestamps).containsEntry(rebuilt, 5000L);
+    assertThat(fileOperationProvider.reads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void flush_persistsOutputsAcrossInstances() throws Exception {
+    FileAttributeJournal journal = new FileAttributeJournal(journalFile);
+    Map<File, String> digests = new HashMap<>();
+    files.forEach(f -> digests.put(f, "digest-" + f.getName()));
+    journal.readOutputTimestamps(digests);
+    journal.flush();
+    fileOperationProvider.reads.set(0);
+
+    FileAttributeJournal reloaded = new FileAttributeJournal(journalFile);
+    Map<File, Long> timestamps = reloaded.readOutputTimestamps(digests);
+
+    assertThat(timestamps).containsExactlyEntriesIn(fileOperationProvider.times);
+    assertThat(fileOperationProvider.reads.get()).isEqualTo(0);
+  }
+}
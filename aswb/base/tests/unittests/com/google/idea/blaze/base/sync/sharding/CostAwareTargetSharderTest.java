@@ -0,0 +1,204 @@
+/*
+ * Copyright 2025 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.sharding;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.idea.blaze.base.sync.sharding.LexicographicTargetSharder.maximumRemoteShardSize;
+import static com.google.idea.blaze.base.sync.sharding.LexicographicTargetSharder.minimumRemoteShardSize;
+import static com.google.idea.blaze.base.sync.sharding.LexicographicTargetSharder.parallelThreshold;
+import static com.google.idea.blaze.base.sync.sharding.LexicographicTargetSharder.useLegacySharding;
+import static com.google.idea.blaze.base.sync.sharding.ShardedTargetList.remoteConcurrentSyncs;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.bazel.BuildSystem.SyncStrategy;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.common.experiments.ExperimentService;
+import com.google.idea.common.experiments.MockExperimentService;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link CostAwareTargetSharder} and {@link BuildCostHistory}. */
+@RunWith(JUnit4.class)
+public class CostAwareTargetSharderTest extends BlazeTestCase {
+
+  private static final Label SLOW_ONE = Label.create("//java/com/google/slow:one");
+  private static final Label SLOW_TWO = Label.create("//java/com/google/slow:two");
+  private static final Label FAST_ONE = Label.create("//java/com/google/fast:one");
+  private static final Label FAST_TWO = Label.create("//java/com/google/fast:two");
+  private static final Label UNKNOWN = Label.create("//java/com/google/unknown:one");
+
+  private final CostAwareTargetSharder sharder = new CostAwareTargetSharder();
+  private final MockExperimentService mockExperimentService = new MockExperimentService();
+  private BuildCostHistory history;
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    applicationServices.register(ExperimentService.class, mockExperimentService);
+    history = new BuildCostHistory();
+    applicationServices.register(BuildCostHistory.class, history);
+  }
+
+  @Before
+  public void setUp() {
+    mockExperimentService.setExperiment(CostAwareTargetSharder.enabled, true);
+    mockExperimentService.setExperimentInt(parallelThreshold, 1);
+    mockExperimentService.setExperimentInt(remoteConcurrentSyncs, 2);
+    mockExperimentService.setExperimentInt(minimumRemoteShardSize, 1);
+    mockExperimentService.setExperimentInt(maximumRemoteShardSize, 1000);
+    mockExperimentService.setExperiment(useLegacySharding, false);
+  }
+
+  @Test
+  public void calculateTargetBatches_noHistory_defersToNextSharder() {
+    ImmutableList<ImmutableList<Label>> shards =
+        sharder.calculateTargetBatches(
+            ImmutableSet.of(SLOW_ONE, SLOW_TWO, FAST_ONE, FAST_TWO), SyncStrategy.PARALLEL, 1000);
+    assertThat(shards).isNull();
+  }
+
+  @Test
+  public void calculateTargetBatches_serial_defersToNextSharder() {
+    recordHistory();
+    ImmutableList<ImmutableList<Label>> shards =
+        sharder.calculateTargetBatches(
+            ImmutableSet.of(SLOW_ONE, SLOW_TWO, FAST_ONE, FAST_TWO), SyncStrategy.SERIAL, 2);
+    assertThat(shards).isNull();
+  }
+
+  @Test
+  public void calculateTargetBatches_disabled_defersToNextSharder() {
+    mockExperimentService.setExperiment(CostAwareTargetSharder.enabled, false);
+    recordHistory();
+    ImmutableList<ImmutableList<Label>> shards =
+        sharder.calculateTargetBatches(
+            ImmutableSet.of(SLOW_ONE, SLOW_TWO, FAST_ONE, FAST_TWO), SyncStrategy.PARALLEL, 1000);
+    assertThat(shards).isNull();
+  }
+
+  @Test
+  public void calculateTargetBatches_withHistory_separatesExpensivePackage() {
+    recordHistory();
+    ImmutableList<ImmutableList<Label>> shards =
+        sharder.calculateTargetBatches(
+            ImmutableSet.of(SLOW_ONE, SLOW_TWO, FAST_ONE, FAST_TWO), SyncStrategy.PARALLEL, 1000);
+
+    // lexicographic sharding would put both slow targets in the same shard. The slow package costs
+    // more than half of the total so it is split, and the fast package no longer fits in one shard.
+    assertThat(shards).hasSize(2);
+    assertThat(shards.get(0)).containsExactly(FAST_ONE, SLOW_ONE).inOrder();
+    assertThat(shards.get(1)).containsExactly(FAST_TWO, SLOW_TWO).inOrder();
+  }
+
+  @Test
+  public void binPack_respectsShardSizeAndBalancesCost() {
+    Map<Label, Double> costs = new HashMap<>();
+    for (int i = 0; i < 20; i++) {
+      costs.put(Label.create("//pkg:t" + i), (double) (i + 1));
+    }
+
+    ImmutableList<ImmutableList<Label>> shards = CostAwareTargetSharder.binPack(costs, 4, 5);
+
+    assertThat(shards).hasSize(4);
+    double total = costs.values().stream().mapToDouble(Double::doubleValue).sum();
+    for (List<Label> shard : shards) {
+      assertThat(shard.size()).isAtMost(5);
+      double shardCost = shard.stream().mapToDouble(costs::get).sum();
+      assertThat(shardCost).isWithin(total / 4 * 0.1).of(total / 4);
+    }
+  }
+
+  @Test
+  public void binPack_keepsPackagesTogether() {
+    Map<Label, Double> costs = new HashMap<>();
+    for (int i = 0; i < 3; i++) {
+      costs.put(Label.create("//a:t" + i), 1.0);
+      costs.put(Label.create("//b:t" + i), 1.0);
+    }
+    costs.put(Label.create("//c:t0"), 4.0);
+
+    ImmutableList<ImmutableList<Label>> shards = CostAwareTargetSharder.binPack(costs, 3, 6);
+
+    assertThat(shards).hasSize(3);
+    for (String pkg : ImmutableList.of("//a", "//b")) {
+      long shardsWithPackage =
+          shards.stream()
+              .filter(shard -> shard.stream().anyMatch(l -> l.toString().startsWith(pkg + ":")))
+              .count();
+      assertThat(shardsWithPackage).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void binPack_splitsOnlyPackagesOverBudget() {
+    Map<Label, Double> costs = new HashMap<>();
+    for (int i = 0; i < 4; i++) {
+      costs.put(Label.create("//big:t" + i), 5.0);
+    }
+    costs.put(Label.create("//small:one"), 1.0);
+    costs.put(Label.create("//small:two"), 1.0);
+
+    ImmutableList<ImmutableList<Label>> shards = CostAwareTargetSharder.binPack(costs, 2, 4);
+
+    assertThat(shards).hasSize(2);
+    assertThat(shards.get(0))
+        .containsExactly(
+            Label.create("//big:t0"),
+            Label.create("//big:t2"),
+            Label.create("//small:one"),
+            Label.create("//small:two"))
+        .inOrder();
+    assertThat(shards.get(1))
+        .containsExactly(Label.create("//big:t1"), Label.create("//big:t3"))
+        .inOrder();
+  }
+
+  @Test
+  public void estimateShardDuration_unknownTargets_useAverageOfKnown() {
+    recordHistory();
+    Duration slowOnly = history.estimateShardDuration(ImmutableList.of(SLOW_ONE));
+    Duration withUnknown = history.estimateShardDuration(ImmutableList.of(SLOW_ONE, UNKNOWN));
+
+    assertThat(slowOnly).isNotNull();
+    assertThat(withUnknown).isEqualTo(slowOnly.multipliedBy(2));
+    assertThat(history.estimateShardDuration(ImmutableList.of(UNKNOWN))).isNull();
+  }
+
+  @Test
+  public void getState_returnsCopy() {
+    recordHistory();
+    BuildCostHistory.State state = history.getState();
+    state.packages.clear();
+
+    assertThat(history.estimateMillis(SLOW_ONE).isPresent()).isTrue();
+    assertThat(history.getState().packages).hasSize(2);
+  }
+
+  private void recordHistory() {
+    history.recordShard(
+        ImmutableMap.of(SLOW_ONE, 0L, SLOW_TWO, 0L), Duration.ofMinutes(10), /* nowMillis= */ 1);
+    history.recordShard(
+        ImmutableMap.of(FAST_ONE, 0L, FAST_TWO, 0L), Duration.ofSeconds(10), /* nowMillis= */ 1);
+  }
+}
@@ -34,7 +34,7 @@ import com.google.idea.blaze.qsync.project.ProjectTarget.SourceType;
 import com.google.idea.blaze.qsync.project.QuerySyncLanguage;
 import com.google.idea.blaze.qsync.query.Query;
 import com.google.idea.blaze.qsync.query.Query.Rule;
-import com.google.idea.blaze.qsync.query.QuerySummary;
+import com.google.idea.blaze.qsync.query.QuerySummaryView;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -66,7 +66,7 @@ public class BlazeQueryParser {
   private final Context<?> context;
   private final SetView<String> alwaysBuildRuleKinds;
 
-  private final QuerySummary query;
+  private final QuerySummaryView query;
 
   private final BuildGraphData.Builder graphBuilder = BuildGraphData.builder();
 
@@ -77,7 +77,7 @@ public class BlazeQueryParser {
   private final Set<Label> javaDeps = new HashSet<>();
 
   public BlazeQueryParser(
-      QuerySummary query, Context<?> context, ImmutableSet<String> handledRuleKinds) {
+      QuerySummaryView query, Context<?> context, ImmutableSet<String> handledRuleKinds) {
     this.context = context;
     this.alwaysBuildRuleKinds = Sets.difference(ALWAYS_BUILD_RULE_KINDS, handledRuleKinds);
     this.query = query;
@@ -88,8 +88,7 @@ public class BlazeQueryParser {
 
     long now = System.nanoTime();
 
-    for (Map.Entry<Label, Query.SourceFile> sourceFileEntry :
-        query.getSourceFilesMap().entrySet()) {
+    for (Map.Entry<Label, Query.SourceFile> sourceFileEntry : query.sourceFiles()) {
       if (sourceFileEntry.getKey().getWorkspaceName().isEmpty()) {
         graphBuilder
             .locationsBuilder()
@@ -100,7 +99,7 @@ public class BlazeQueryParser {
                 "Skipping unsupported non-root workspace source: " + sourceFileEntry.getValue()));
       }
     }
-    for (Map.Entry<Label, Query.Rule> ruleEntry : query.getRulesMap().entrySet()) {
+    for (Map.Entry<Label, Query.Rule> ruleEntry : query.rules()) {
       String ruleClass = ruleEntry.getValue().getRuleClass();
 
       ProjectTarget.Builder targetBuilder = ProjectTarget.builder();
@@ -140,11 +139,11 @@ public class BlazeQueryParser {
 
       graphBuilder.targetMapBuilder().put(ruleEntry.getKey(), target);
     }
-    int nTargets = query.proto().getRulesCount();
+    int nTargets = query.ruleCount();
 
     // Calculate all the dependencies outside the project.
     for (Label dep : javaDeps) {
-      if (!query.getRulesMap().containsKey(dep)) {
+      if (!query.containsRule(dep)) {
         projectDeps.add(dep);
       }
     }
@@ -217,7 +216,7 @@ public class BlazeQueryParser {
 
   /** Require build step for targets with generated sources. */
   private void addProjectTargetsToBuildIfGenerated(Label label, Label source) {
-    if (!query.getSourceFilesMap().containsKey(source)) {
+    if (!query.containsSourceFile(source)) {
       projectTargetsToBuild.add(label);
     }
   }
@@ -239,7 +238,7 @@ public class BlazeQueryParser {
     Set<Label> visited = Sets.newHashSet();
     ImmutableSet.Builder<Label> result = ImmutableSet.builder();
 
-    for (String source : requireNonNull(query.getRulesMap().get(label)).getSourcesList()) {
+    for (String source : requireNonNull(query.getRule(label)).getSourcesList()) {
       Label asLabel = Label.of(source);
       if (visited.add(asLabel)) {
         result.addAll(expandSourceLabel(asLabel));
@@ -250,7 +249,7 @@ public class BlazeQueryParser {
   }
 
   private boolean shouldExpandSourceLabel(Label label) {
-    Rule rule = query.getRulesMap().get(label);
+    Rule rule = query.getRule(label);
     if (rule == null) {
       return false;
     }
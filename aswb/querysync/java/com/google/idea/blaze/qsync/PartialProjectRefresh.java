@@ -99,8 +99,7 @@ class PartialProjectRefresh implements RefreshOperation {
   QuerySummary applyDelta(QuerySummary partialQuery) {
     // copy all unaffected rules / source files to result:
     Map<Label, SourceFile> newSourceFiles = Maps.newHashMap();
-    for (Map.Entry<Label, SourceFile> sfEntry :
-        previousState.querySummary().getSourceFilesMap().entrySet()) {
+    for (Map.Entry<Label, SourceFile> sfEntry : previousState.querySummaryView().sourceFiles()) {
       Path buildPackage = sfEntry.getKey().getPackage();
       if (!(deletedPackages.contains(buildPackage)
           || partialQuery.getPackages().contains(buildPackage))) {
@@ -108,8 +107,7 @@ class PartialProjectRefresh implements RefreshOperation {
       }
     }
     Map<Label, Query.Rule> newRules = Maps.newHashMap();
-    for (Map.Entry<Label, Query.Rule> ruleEntry :
-        previousState.querySummary().getRulesMap().entrySet()) {
+    for (Map.Entry<Label, Query.Rule> ruleEntry : previousState.querySummaryView().rules()) {
       Path buildPackage = ruleEntry.getKey().getPackage();
       if (!(deletedPackages.contains(buildPackage)
           || partialQuery.getPackages().contains(buildPackage))) {
@@ -91,7 +91,7 @@ public abstract class QuerySyncProjectSnapshot {
    * <p>The packages are workspace relative paths that contain a BUILD file.
    */
   public PackageSet getPackages() {
-    return queryData().querySummary().getPackages();
+    return queryData().querySummaryView().getPackages();
   }
 
   /**
@@ -56,7 +56,7 @@ public class RefreshParameters {
   }
 
   boolean requiresFullUpdate(Context<?> context) {
-    if (!currentProject.querySummary().isCompatibleWithCurrentPluginVersion()) {
+    if (!currentProject.querySummaryView().isCompatibleWithCurrentPluginVersion()) {
       context.output(PrintOutput.output("IDE has updated since last sync; performing full query"));
       return true;
     }
@@ -26,7 +26,7 @@ import com.google.idea.blaze.qsync.project.BuildGraphData;
 import com.google.idea.blaze.qsync.project.PostQuerySyncData;
 import com.google.idea.blaze.qsync.project.ProjectProto.Project;
 import com.google.idea.blaze.qsync.project.ProjectProtoTransform;
-import com.google.idea.blaze.qsync.query.QuerySummary;
+import com.google.idea.blaze.qsync.query.QuerySummaryView;
 import java.nio.file.Path;
 import java.util.function.Supplier;
 
@@ -82,7 +82,7 @@ public class SnapshotBuilder {
             executor,
             useNewResDirLogic,
             guessAndroidResPackages);
-    QuerySummary querySummary = postQuerySyncData.querySummary();
+    QuerySummaryView querySummary = postQuerySyncData.querySummaryView();
     BuildGraphData graph = new BlazeQueryParser(querySummary, context, handledRuleKinds).parse();
     Project project =
         projectProtoTransform.apply(graphToProjectConverter.createProject(graph), graph, context);
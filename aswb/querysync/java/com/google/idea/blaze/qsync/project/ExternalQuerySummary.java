@@ -0,0 +1,53 @@
+/*
+ * Copyright 2025 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.qsync.project;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A query summary stored in a {@link com.google.idea.blaze.qsync.query.QuerySummaryFile} next to
+ * the snapshot that refers to it.
+ *
+ * <p>Summary files are named after their content and never modified once written, so a snapshot
+ * can only be paired with the summary it was written with.
+ */
+@AutoValue
+public abstract class ExternalQuerySummary {
+
+  /** The name of the summary file, relative to the directory containing the snapshot. */
+  public abstract String fileName();
+
+  public abstract long size();
+
+  public abstract HashCode sha256();
+
+  public static ExternalQuerySummary create(String fileName, long size, HashCode sha256) {
+    return new AutoValue_ExternalQuerySummary(fileName, size, sha256);
+  }
+
+  /** Returns whether {@code file} exists and has the size and content recorded here. */
+  public boolean matches(Path file) throws IOException {
+    return Files.exists(file)
+        && Files.size(file) == size()
+        && MoreFiles.asByteSource(file).hash(Hashing.sha256()).equals(sha256());
+  }
+}
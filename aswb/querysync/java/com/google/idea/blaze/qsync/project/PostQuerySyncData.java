@@ -16,12 +16,14 @@
 package com.google.idea.blaze.qsync.project;
 
 import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.idea.blaze.common.vcs.VcsState;
 import com.google.idea.blaze.qsync.query.Query;
 import com.google.idea.blaze.qsync.query.QuerySummary;
+import com.google.idea.blaze.qsync.query.QuerySummaryView;
 import java.util.Optional;
 
 /**
@@ -57,8 +59,17 @@ public abstract class PostQuerySyncData {
   /** The version of bazel that the query was run. */
   public abstract Optional<String> bazelVersion();
 
+  /**
+   * The summarised output from the query. When restored from disk this may be decoded lazily, so
+   * prefer it over {@link #querySummary()} where the whole summary isn't needed.
+   */
+  public abstract QuerySummaryView querySummaryView();
+
   /** The summarised output from the query. */
-  public abstract QuerySummary querySummary();
+  @Memoized
+  public QuerySummary querySummary() {
+    return querySummaryView().toQuerySummary();
+  }
 
   public static Builder builder() {
     return new AutoValue_PostQuerySyncData.Builder();
@@ -77,7 +88,12 @@ public abstract class PostQuerySyncData {
 
     public abstract Builder setBazelVersion(Optional<String> value);
 
-    public abstract Builder setQuerySummary(QuerySummary value);
+    public abstract Builder setQuerySummaryView(QuerySummaryView value);
+
+    @CanIgnoreReturnValue
+    public Builder setQuerySummary(QuerySummary value) {
+      return setQuerySummaryView(value);
+    }
 
     @CanIgnoreReturnValue
     public Builder setQuerySummary(Query.Summary value) {
@@ -19,6 +19,7 @@ import static com.google.common.collect.ImmutableSet.toImmutableSet;
 
 import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.idea.blaze.common.Context;
 import com.google.idea.blaze.common.PrintOutput;
@@ -26,11 +27,14 @@ import com.google.idea.blaze.common.vcs.VcsState;
 import com.google.idea.blaze.common.vcs.WorkspaceFileChange;
 import com.google.idea.blaze.common.vcs.WorkspaceFileChange.Operation;
 import com.google.idea.blaze.qsync.query.Query;
+import com.google.idea.blaze.qsync.query.QuerySummaryFile;
+import com.google.idea.blaze.qsync.query.QuerySummaryView;
 import com.google.protobuf.ExtensionRegistry;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.Optional;
+import javax.annotation.Nullable;
 
 /** Deserializes a {@link PostQuerySyncData} instance from an input stream. */
 public class SnapshotDeserializer {
@@ -39,6 +43,7 @@ public class SnapshotDeserializer {
       OP_MAP = SnapshotSerializer.OP_MAP.inverse();
 
   private final PostQuerySyncData.Builder snapshot;
+  private Optional<ExternalQuerySummary> externalQuerySummary = Optional.empty();
 
   public SnapshotDeserializer() {
     snapshot = PostQuerySyncData.builder();
@@ -47,6 +52,16 @@ public class SnapshotDeserializer {
   @CanIgnoreReturnValue
   public Optional<SnapshotDeserializer> readFrom(InputStream in, Context<?> context)
       throws IOException {
+    return readFrom(in, null, context);
+  }
+
+  /**
+   * Reads a snapshot, loading the query summary from {@code snapshotDirectory} if the snapshot was
+   * written with {@link SnapshotSerializer#visitWithExternalQuerySummary}.
+   */
+  @CanIgnoreReturnValue
+  public Optional<SnapshotDeserializer> readFrom(
+      InputStream in, @Nullable Path snapshotDirectory, Context<?> context) throws IOException {
     SnapshotProto.Snapshot proto =
         SnapshotProto.Snapshot.parseFrom(in, ExtensionRegistry.getEmptyRegistry());
     if (proto.getVersion() != SnapshotSerializer.PROTO_VERSION) {
@@ -60,10 +75,37 @@ public class SnapshotDeserializer {
     if (!proto.getBazelVersion().isEmpty()) {
       snapshot.setBazelVersion(Optional.of(proto.getBazelVersion()));
     }
-    visitQuerySummay(proto.getQuerySummary());
+    if (proto.getExternalQuerySummarySize() != 0) {
+      ExternalQuerySummary querySummary =
+          ExternalQuerySummary.create(
+              proto.getExternalQuerySummaryFile(),
+              proto.getExternalQuerySummarySize(),
+              HashCode.fromBytes(proto.getExternalQuerySummarySha256().toByteArray()));
+      if (snapshotDirectory == null
+          || querySummary.fileName().isEmpty()
+          || !querySummary.matches(snapshotDirectory.resolve(querySummary.fileName()))) {
+        context.output(PrintOutput.output("Query summary missing or stale; performing full sync"));
+        return Optional.empty();
+      }
+      QuerySummaryView summary =
+          QuerySummaryFile.read(snapshotDirectory.resolve(querySummary.fileName()));
+      if (!summary.isCompatibleWithCurrentPluginVersion()) {
+        context.output(PrintOutput.output("IDE has updated since last sync; performing full sync"));
+        return Optional.empty();
+      }
+      snapshot.setQuerySummaryView(summary);
+      externalQuerySummary = Optional.of(querySummary);
+    } else {
+      visitQuerySummay(proto.getQuerySummary());
+    }
     return Optional.of(this);
   }
 
+  /** Returns the separate query summary file that the snapshot was read with, if any. */
+  public Optional<ExternalQuerySummary> getExternalQuerySummary() {
+    return externalQuerySummary;
+  }
+
   public PostQuerySyncData getSyncData() {
     return snapshot.build();
   }
@@ -24,6 +24,7 @@ import com.google.idea.blaze.common.vcs.WorkspaceFileChange.Operation;
 import com.google.idea.blaze.qsync.project.SnapshotProto.WorkspaceSnapshot;
 import com.google.idea.blaze.qsync.query.QuerySummary;
 import com.google.protobuf.AbstractMessageLite;
+import com.google.protobuf.ByteString;
 import java.nio.file.Path;
 
 /** Serializes a {@link PostQuerySyncData} instance to a proto message. */
@@ -56,6 +57,25 @@ public class SnapshotSerializer {
     return this;
   }
 
+  /**
+   * Like {@link #visit(PostQuerySyncData)}, but omits the query summary, which the caller has
+   * written separately using {@link com.google.idea.blaze.qsync.query.QuerySummaryFile}.
+   *
+   * @param querySummary the separate summary file, recorded so that it can be found and checked
+   *     when the snapshot is loaded.
+   */
+  @CanIgnoreReturnValue
+  public SnapshotSerializer visitWithExternalQuerySummary(
+      PostQuerySyncData snapshot, ExternalQuerySummary querySummary) {
+    visitProjectDefinition(snapshot.projectDefinition());
+    snapshot.vcsState().ifPresent(this::visitVcsState);
+    proto
+        .setExternalQuerySummarySize(querySummary.size())
+        .setExternalQuerySummaryFile(querySummary.fileName())
+        .setExternalQuerySummarySha256(ByteString.copyFrom(querySummary.sha256().asBytes()));
+    return this;
+  }
+
   public AbstractMessageLite<?, ?> toProto() {
     return proto.build();
   }
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2025 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.qsync.query;
+
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.idea.blaze.common.Label;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link QuerySummaryView} backed by a buffer in the {@link QuerySummaryFile} format.
+ *
+ * <p>Labels are compared in place in the buffer, so lookups and {@code contains} checks don't
+ * decode anything. Rules and source files are decoded each time they are accessed and not retained,
+ * so the heap cost of the summary stays that of the entries in use. The full {@link QuerySummary}
+ * is only built if {@link #toQuerySummary()} is called.
+ */
+final class MappedQuerySummary implements QuerySummaryView {
+
+  private final int protoVersion;
+  private final List<String> packagesWithErrors;
+  private final Section<Query.Rule> rules;
+  private final Section<Query.SourceFile> sourceFiles;
+
+  private final Supplier<QuerySummary> summary = Suppliers.memoize(this::buildSummary);
+  private final Supplier<PackageSet> packages = Suppliers.memoize(this::buildPackages);
+
+  MappedQuerySummary(
+      int protoVersion,
+      List<String> packagesWithErrors,
+      Section<Query.Rule> rules,
+      Section<Query.SourceFile> sourceFiles) {
+    this.protoVersion = protoVersion;
+    this.packagesWithErrors = packagesWithErrors;
+    this.rules = rules;
+    this.sourceFiles = sourceFiles;
+  }
+
+  @Override
+  public boolean isCompatibleWithCurrentPluginVersion() {
+    return protoVersion == QuerySummary.PROTO_VERSION;
+  }
+
+  @Override
+  public int ruleCount() {
+    return rules.size();
+  }
+
+  @Override
+  public boolean containsRule(Label label) {
+    return rules.contains(label);
+  }
+
+  @Override
+  @Nullable
+  public Query.Rule getRule(Label label) {
+    return rules.get(label);
+  }
+
+  @Override
+  public Iterable<Map.Entry<Label, Query.Rule>> rules() {
+    return rules;
+  }
+
+  @Override
+  public boolean containsSourceFile(Label label) {
+    return sourceFiles.contains(label);
+  }
+
+  @Override
+  public Iterable<Map.Entry<Label, Query.SourceFile>> sourceFiles() {
+    return sourceFiles;
+  }
+
+  @Override
+  public PackageSet getPackages() {
+    return packages.get();
+  }
+
+  @Override
+  public QuerySummary toQuerySummary() {
+    return summary.get();
+  }
+
+  private PackageSet buildPackages() {
+    // Only the labels of the source files are needed, so nothing is decoded.
+    return new PackageSet(
+        Stream.concat(
+                IntStream.range(0, sourceFiles.size())
+                    .mapToObj(sourceFiles::labelAt)
+                    .map(Label::getPackage)
+                    .distinct(),
+                packagesWithErrors.stream().map(Label::of).map(Label::getPackage))
+            .collect(toImmutableSet()));
+  }
+
+  private QuerySummary buildSummary() {
+    Query.Summary.Builder proto =
+        Query.Summary.newBuilder()
+            .setVersion(protoVersion)
+            .addAllPackagesWithErrors(packagesWithErrors);
+    for (Map.Entry<Label, Query.Rule> rule : rules) {
+      proto.putRules(rule.getKey().toString(), rule.getValue());
+    }
+    for (Map.Entry<Label, Query.SourceFile> sourceFile : sourceFiles) {
+      proto.putSourceFiles(sourceFile.getKey().toString(), sourceFile.getValue());
+    }
+    return QuerySummary.create(proto.build());
+  }
+
+  /** One section of a {@link QuerySummaryFile}: a sorted table of labels and encoded values. */
+  static final class Section<V extends MessageLite> implements Iterable<Map.Entry<Label, V>> {
+    private final ByteBuffer buffer;
+    private final int recordsStart;
+    private final int size;
+    private final Parser<V> parser;
+
+    Section(ByteBuffer buffer, int start, Parser<V> parser) {
+      this.buffer = buffer;
+      this.size = buffer.getInt(start);
+      this.recordsStart = start + Integer.BYTES;
+      this.parser = parser;
+    }
+
+    /** Returns the offset of the first byte after this section. */
+    int end() {
+      if (size == 0) {
+        return recordsStart;
+      }
+      int lastRecord = recordOffset(size - 1);
+      return buffer.getInt(lastRecord + 8) + buffer.getInt(lastRecord + 12);
+    }
+
+    int size() {
+      return size;
+    }
+
+    boolean contains(Label label) {
+      return indexOf(label) >= 0;
+    }
+
+    @Nullable
+    V get(Label label) {
+      int index = indexOf(label);
+      return index >= 0 ? decode(index) : null;
+    }
+
+    @Override
+    public Iterator<Map.Entry<Label, V>> iterator() {
+      return new Iterator<>() {
+        private int next = 0;
+
+        @Override
+        public boolean hasNext() {
+          return next < size;
+        }
+
+        @Override
+        public Map.Entry<Label, V> next() {
+          if (next >= size) {
+            throw new NoSuchElementException();
+          }
+          int index = next++;
+          return new SimpleImmutableEntry<>(labelAt(index), decode(index));
+        }
+      };
+    }
+
+    private int recordOffset(int index) {
+      return recordsStart + index * QuerySummaryFile.RECORD_SIZE;
+    }
+
+    private int indexOf(Label label) {
+      byte[] key = label.toString().getBytes(UTF_8);
+      int low = 0;
+      int high = size - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int cmp = compareLabelAt(mid, key);
+        if (cmp < 0) {
+          low = mid + 1;
+        } else if (cmp > 0) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Compares the label at {@code index} with {@code key} in {@link QuerySummaryFile#LABEL_ORDER},
+     * reading the label directly from the buffer.
+     */
+    private int compareLabelAt(int index, byte[] key) {
+      int record = recordOffset(index);
+      int offset = buffer.getInt(record);
+      int length = buffer.getInt(record + 4);
+      int common = Math.min(length, key.length);
+      for (int i = 0; i < common; i++) {
+        int cmp = Byte.toUnsignedInt(buffer.get(offset + i)) - Byte.toUnsignedInt(key[i]);
+        if (cmp != 0) {
+          return cmp;
+        }
+      }
+      return length - key.length;
+    }
+
+    private Label labelAt(int index) {
+      int record = recordOffset(index);
+      byte[] bytes = new byte[buffer.getInt(record + 4)];
+      buffer.get(buffer.getInt(record), bytes);
+      return Label.of(new String(bytes, UTF_8));
+    }
+
+    private V decode(int index) {
+      int record = recordOffset(index);
+      ByteBuffer value = buffer.slice(buffer.getInt(record + 8), buffer.getInt(record + 12));
+      try {
+        return parser.parseFrom(value);
+      } catch (InvalidProtocolBufferException e) {
+        throw new IllegalStateException("Corrupt query summary entry: " + labelAt(index), e);
+      }
+    }
+  }
+}
@@ -46,6 +46,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 
 /**
  * Summaries the output from a {@code query} invocation into just the data needed by the rest of
@@ -64,7 +65,7 @@ import java.util.stream.Stream;
  * be added to it unnecessarily.
  */
 @AutoValue
-public abstract class QuerySummary {
+public abstract class QuerySummary implements QuerySummaryView {
 
   /**
    * The current version of the Query.Summary proto that this is compatible with. Any persisted
@@ -120,6 +121,7 @@ public abstract class QuerySummary {
 
   public abstract Query.Summary proto();
 
+  @Override
   public boolean isCompatibleWithCurrentPluginVersion() {
     return proto().getVersion() == PROTO_VERSION;
   }
@@ -255,6 +257,42 @@ public abstract class QuerySummary {
         .collect(toImmutableMap(e -> Label.of(e.getKey()), Map.Entry::getValue));
   }
 
+  @Override
+  public int ruleCount() {
+    return proto().getRulesCount();
+  }
+
+  @Override
+  public boolean containsRule(Label label) {
+    return getRulesMap().containsKey(label);
+  }
+
+  @Override
+  @Nullable
+  public Query.Rule getRule(Label label) {
+    return getRulesMap().get(label);
+  }
+
+  @Override
+  public Iterable<Map.Entry<Label, Query.Rule>> rules() {
+    return getRulesMap().entrySet();
+  }
+
+  @Override
+  public boolean containsSourceFile(Label label) {
+    return getSourceFilesMap().containsKey(label);
+  }
+
+  @Override
+  public Iterable<Map.Entry<Label, SourceFile>> sourceFiles() {
+    return getSourceFilesMap().entrySet();
+  }
+
+  @Override
+  public QuerySummary toQuerySummary() {
+    return this;
+  }
+
   @Memoized
   public ImmutableSet<Path> getPackagesWithErrors() {
     return proto().getPackagesWithErrorsList().stream()
@@ -268,6 +306,7 @@ public abstract class QuerySummary {
    *
    * <p>The packages are workspace relative paths that contain a BUILD file.
    */
+  @Override
   @Memoized
   public PackageSet getPackages() {
     return new PackageSet(
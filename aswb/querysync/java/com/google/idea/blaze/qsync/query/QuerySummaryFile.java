@@ -0,0 +1,200 @@
+/*
+ * Copyright 2025 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.qsync.query;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.primitives.UnsignedBytes;
+import com.google.idea.blaze.common.Label;
+import com.google.protobuf.MessageLite;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact on-disk format for a {@link QuerySummary}, designed to be memory mapped and decoded
+ * lazily.
+ *
+ * <p>Restoring a project from a snapshot used to parse the whole {@link Query.Summary} proto at
+ * startup. With this format, only the header is read up front: rules and source files are looked
+ * up by binary search over a sorted label table and decoded on first access.
+ *
+ * <p>Layout (all integers big-endian):
+ *
+ * <pre>
+ *   int     MAGIC
+ *   int     FORMAT_VERSION
+ *   int     QuerySummary.PROTO_VERSION at the time of writing
+ *   int     length of packages-with-errors proto, followed by that many bytes
+ *   section rules
+ *   section source files
+ *
+ * section:
+ *   int     entry count N
+ *   N x     record { int labelOffset, int labelLength, int valueOffset, int valueLength }
+ *   bytes   UTF-8 labels and serialized values, referenced by absolute file offset
+ * </pre>
+ *
+ * <p>Records within a section are sorted by the unsigned bytes of the label.
+ */
+public final class QuerySummaryFile {
+
+  @VisibleForTesting static final int MAGIC = 0x51534d46; // "QSMF"
+
+  /**
+   * Version of the file layout itself. Changes to the content of the summary are covered by {@link
+   * QuerySummary#PROTO_VERSION} instead.
+   */
+  @VisibleForTesting static final int FORMAT_VERSION = 1;
+
+  static final int RECORD_SIZE = 4 * Integer.BYTES;
+
+  static final Comparator<byte[]> LABEL_ORDER = UnsignedBytes.lexicographicalComparator();
+
+  private QuerySummaryFile() {}
+
+  /** Writes {@code summary} to {@code out} in the mapped summary format. */
+  public static void write(QuerySummary summary, OutputStream out) throws IOException {
+    byte[] packagesWithErrors =
+        Query.Summary.newBuilder()
+            .setVersion(summary.proto().getVersion())
+            .addAllPackagesWithErrors(summary.proto().getPackagesWithErrorsList())
+            .build()
+            .toByteArray();
+    List<Entry> rules = toSortedEntries(summary.getRulesMap());
+    List<Entry> sourceFiles = toSortedEntries(summary.getSourceFilesMap());
+
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+    data.writeInt(MAGIC);
+    data.writeInt(FORMAT_VERSION);
+    data.writeInt(summary.proto().getVersion());
+    data.writeInt(packagesWithErrors.length);
+    data.write(packagesWithErrors);
+    long offset = 4L * Integer.BYTES + packagesWithErrors.length;
+    offset = writeSection(data, rules, offset);
+    writeSection(data, sourceFiles, offset);
+    data.flush();
+  }
+
+  /** Writes {@code summary} to a new file at {@code path}, replacing any existing file. */
+  public static void write(QuerySummary summary, Path path) throws IOException {
+    try (OutputStream out = Files.newOutputStream(path)) {
+      write(summary, out);
+    }
+  }
+
+  /**
+   * Memory maps the summary stored at {@code path}. Rules and source files are decoded lazily, so
+   * this is cheap regardless of the size of the summary.
+   *
+   * <p>The caller should check {@link QuerySummaryView#isCompatibleWithCurrentPluginVersion()}
+   * before using the result.
+   */
+  public static QuerySummaryView read(Path path) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Query summary file too large: " + path);
+      }
+      buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+    }
+    return read(buffer);
+  }
+
+  @VisibleForTesting
+  static QuerySummaryView read(ByteBuffer buffer) throws IOException {
+    try {
+      if (buffer.getInt(0) != MAGIC) {
+        throw new IOException("Not a query summary file");
+      }
+      if (buffer.getInt(Integer.BYTES) != FORMAT_VERSION) {
+        throw new IOException("Unsupported query summary file version");
+      }
+      int protoVersion = buffer.getInt(2 * Integer.BYTES);
+      int packagesLength = buffer.getInt(3 * Integer.BYTES);
+      int packagesStart = 4 * Integer.BYTES;
+      Query.Summary packagesWithErrors =
+          Query.Summary.parseFrom(buffer.slice(packagesStart, packagesLength));
+      MappedQuerySummary.Section<Query.Rule> rules =
+          new MappedQuerySummary.Section<>(
+              buffer, packagesStart + packagesLength, Query.Rule.parser());
+      MappedQuerySummary.Section<Query.SourceFile> sourceFiles =
+          new MappedQuerySummary.Section<>(buffer, rules.end(), Query.SourceFile.parser());
+      return new MappedQuerySummary(
+          protoVersion, packagesWithErrors.getPackagesWithErrorsList(), rules, sourceFiles);
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Truncated query summary file", e);
+    }
+  }
+
+  private static long writeSection(DataOutputStream out, List<Entry> entries, long offset)
+      throws IOException {
+    long dataOffset = offset + Integer.BYTES + (long) entries.size() * RECORD_SIZE;
+    out.writeInt(entries.size());
+    for (Entry entry : entries) {
+      out.writeInt(checkedOffset(dataOffset));
+      out.writeInt(entry.label.length);
+      dataOffset += entry.label.length;
+      out.writeInt(checkedOffset(dataOffset));
+      out.writeInt(entry.value.length);
+      dataOffset += entry.value.length;
+    }
+    for (Entry entry : entries) {
+      out.write(entry.label);
+      out.write(entry.value);
+    }
+    return checkedOffset(dataOffset);
+  }
+
+  private static int checkedOffset(long offset) throws IOException {
+    if (offset > Integer.MAX_VALUE) {
+      throw new IOException("Query summary too large for mapped format");
+    }
+    return (int) offset;
+  }
+
+  private static List<Entry> toSortedEntries(Map<Label, ? extends MessageLite> map) {
+    List<Entry> entries = new ArrayList<>(map.size());
+    for (Map.Entry<Label, ? extends MessageLite> e : map.entrySet()) {
+      entries.add(new Entry(e.getKey().toString().getBytes(UTF_8), e.getValue().toByteArray()));
+    }
+    entries.sort(Comparator.comparing(e -> e.label, LABEL_ORDER));
+    return entries;
+  }
+
+  private static class Entry {
+    final byte[] label;
+    final byte[] value;
+
+    Entry(byte[] label, byte[] value) {
+      this.label = label;
+      this.value = value;
+    }
+  }
+}
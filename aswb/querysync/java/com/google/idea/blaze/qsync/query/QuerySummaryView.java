@@ -0,0 +1,58 @@
+/*
+ * Copyright 2025 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.qsync.query;
+
+import com.google.idea.blaze.common.Label;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Read access to the rules and source files of a query summary.
+ *
+ * <p>Unlike {@link QuerySummary}, implementations need not hold the whole summary in memory: the
+ * summary restored from a {@link QuerySummaryFile} decodes entries as they are accessed. Code that
+ * only needs to visit or look up entries should accept this interface, and call {@link
+ * #toQuerySummary()} only when the full summary is required.
+ */
+public interface QuerySummaryView {
+
+  boolean isCompatibleWithCurrentPluginVersion();
+
+  /** Returns the number of rules in the summary, without decoding them. */
+  int ruleCount();
+
+  /** Returns whether the summary contains a rule with the given label, without decoding it. */
+  boolean containsRule(Label label);
+
+  /** Returns the rule with the given label, or null if there is none. */
+  @Nullable
+  Query.Rule getRule(Label label);
+
+  /** Returns all rules in the summary. */
+  Iterable<Map.Entry<Label, Query.Rule>> rules();
+
+  /** Returns whether the summary contains a source file with the given label. */
+  boolean containsSourceFile(Label label);
+
+  /** Returns all source files in the summary. */
+  Iterable<Map.Entry<Label, Query.SourceFile>> sourceFiles();
+
+  /** Returns the set of build packages in the query output. */
+  PackageSet getPackages();
+
+  /** Returns the whole summary, decoding it if necessary. */
+  QuerySummary toQuerySummary();
+}
@@ -25,12 +25,18 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.truth.Truth8;
 import com.google.idea.blaze.common.vcs.VcsState;
 import com.google.idea.blaze.common.vcs.WorkspaceFileChange;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import com.google.idea.blaze.qsync.query.QuerySummaryFile;
 import com.google.idea.blaze.qsync.query.QuerySummaryTestUtil;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Optional;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
@@ -39,6 +45,8 @@ import static com.google.common.truth.Truth8.assertThat;
 @RunWith(JUnit4.class)
 public class SnapshotSerializationTest {
 
+  @Rule public final TemporaryFolder tempDir = new TemporaryFolder();
+
   @Test
   public void testSerialization_withVcsState() throws IOException {
     PostQuerySyncData original =
@@ -138,4 +146,71 @@ public class SnapshotSerializationTest {
             new SnapshotDeserializer().readFrom(new ByteArrayInputStream(serialized), NOOP_CONTEXT))
         .isEmpty();
   }
+
+  @Test
+  public void testSerialization_externalQuerySummary() throws IOException {
+    PostQuerySyncData original =
+        PostQuerySyncData.builder()
+            .setProjectDefinition(
+                ProjectDefinition.create(
+                    ImmutableSet.of(Path.of("project/path")),
+                    ImmutableSet.of(),
+                    ImmutableSet.of(QuerySyncLanguage.JAVA),
+                    ImmutableSet.of()))
+            .setVcsState(Optional.empty())
+            .setQuerySummary(QuerySummaryTestUtil.createProtoForPackages("//project/path:path"))
+            .build();
+    byte[] serialized = serializeWithExternalQuerySummary(original, "summary");
+
+    PostQuerySyncData deserialized =
+        new SnapshotDeserializer()
+            .readFrom(
+                new ByteArrayInputStream(serialized), tempDir.getRoot().toPath(), NOOP_CONTEXT)
+            .get()
+            .getSyncData();
+    assertThat(deserialized.querySummary()).isEqualTo(original.querySummary());
+  }
+
+  @Test
+  public void testSerialization_externalQuerySummaryReplaced_isStale() throws IOException {
+    PostQuerySyncData original =
+        PostQuerySyncData.builder()
+            .setProjectDefinition(
+                ProjectDefinition.create(
+                    ImmutableSet.of(), ImmutableSet.of(), ImmutableSet.of(), ImmutableSet.of()))
+            .setVcsState(Optional.empty())
+            .setQuerySummary(QuerySummaryTestUtil.createProtoForPackages("//project/path:path"))
+            .build();
+    byte[] serialized = serializeWithExternalQuerySummary(original, "summary");
+    // A summary of the same size but different content, as left by a later sync.
+    PostQuerySyncData other =
+        original.toBuilder()
+            .setQuerySummary(QuerySummaryTestUtil.createProtoForPackages("//project/path:diff"))
+            .build();
+    Path file = tempDir.getRoot().toPath().resolve("summary");
+    long size = Files.size(file);
+    QuerySummaryFile.write(other.querySummary(), file);
+    assertThat(Files.size(file)).isEqualTo(size);
+
+    Truth8.assertThat(
+            new SnapshotDeserializer()
+                .readFrom(
+                    new ByteArrayInputStream(serialized),
+                    tempDir.getRoot().toPath(),
+                    NOOP_CONTEXT))
+        .isEmpty();
+  }
+
+  private byte[] serializeWithExternalQuerySummary(PostQuerySyncData data, String fileName)
+      throws IOException {
+    Path file = tempDir.getRoot().toPath().resolve(fileName);
+    QuerySummaryFile.write(data.querySummary(), file);
+    ExternalQuerySummary summaryFile =
+        ExternalQuerySummary.create(
+            fileName, Files.size(file), MoreFiles.asByteSource(file).hash(Hashing.sha256()));
+    return new SnapshotSerializer()
+        .visitWithExternalQuerySummary(data, summaryFile)
+        .toProto()
+        .toByteArray();
+  }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2025 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.qsync.query;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.idea.blaze.common.Label;
+import com.google.idea.blaze.qsync.testdata.TestData;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class QuerySummaryFileTest {
+
+  private static QuerySummaryView roundTrip(QuerySummary summary) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    QuerySummaryFile.write(summary, out);
+    return QuerySummaryFile.read(ByteBuffer.wrap(out.toByteArray()));
+  }
+
+  @Test
+  public void testRoundTrip_preservesContent() throws IOException {
+    QuerySummary original =
+        QuerySummary.create(TestData.JAVA_LIBRARY_MULTI_TARGETS.getQueryOutputPath().toFile());
+    QuerySummaryView mapped = roundTrip(original);
+
+    assertThat(mapped.isCompatibleWithCurrentPluginVersion()).isTrue();
+    assertThat(mapped.ruleCount()).isEqualTo(original.getRulesMap().size());
+    assertThat(mapped.rules()).containsExactlyElementsIn(original.getRulesMap().entrySet());
+    assertThat(mapped.sourceFiles())
+        .containsExactlyElementsIn(original.getSourceFilesMap().entrySet());
+    assertThat(mapped.getPackages()).isEqualTo(original.getPackages());
+    assertThat(mapped.toQuerySummary()).isEqualTo(original);
+  }
+
+  @Test
+  public void testLookup_byLabel() throws IOException {
+    QuerySummary original =
+        QuerySummary.create(TestData.JAVA_LIBRARY_MULTI_TARGETS.getQueryOutputPath().toFile());
+    QuerySummaryView mapped = roundTrip(original);
+
+    for (Map.Entry<Label, Query.Rule> rule : original.getRulesMap().entrySet()) {
+      assertThat(mapped.containsRule(rule.getKey())).isTrue();
+      assertThat(mapped.getRule(rule.getKey())).isEqualTo(rule.getValue());
+    }
+    for (Label sourceFile : original.getSourceFilesMap().keySet()) {
+      assertThat(mapped.containsSourceFile(sourceFile)).isTrue();
+    }
+    Label missing = Label.of("//does/not:exist");
+    assertThat(mapped.containsRule(missing)).isFalse();
+    assertThat(mapped.getRule(missing)).isNull();
+    assertThat(mapped.containsSourceFile(missing)).isFalse();
+  }
+
+  @Test
+  public void testLookup_doesNotRetainDecodedEntries() throws IOException {
+    QuerySummary original =
+        QuerySummary.create(TestData.JAVA_LIBRARY_MULTI_TARGETS.getQueryOutputPath().toFile());
+    QuerySummaryView mapped = roundTrip(original);
+
+    Label label = original.getRulesMap().keySet().iterator().next();
+    Query.Rule rule = mapped.getRule(label);
+    Query.Rule again = mapped.getRule(label);
+    assertThat(again).isEqualTo(rule);
+    assertThat(again).isNotSameInstanceAs(rule);
+  }
+
+  @Test
+  public void testRoundTrip_empty() throws IOException {
+    QuerySummaryView mapped = roundTrip(QuerySummary.EMPTY);
+    assertThat(mapped.ruleCount()).isEqualTo(0);
+    assertThat(mapped.rules()).isEmpty();
+    assertThat(mapped.sourceFiles()).isEmpty();
+    assertThat(mapped.toQuerySummary()).isEqualTo(QuerySummary.EMPTY);
+  }
+
+  @Test
+  public void testRead_badMagic_throws() {
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    assertThrows(IOException.class, () -> QuerySummaryFile.read(buffer));
+  }
+
+  @Test
+  public void testRead_truncated_throws() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    QuerySummaryFile.write(
+        QuerySummary.create(TestData.JAVA_LIBRARY_MULTI_TARGETS.getQueryOutputPath().toFile()),
+        out);
+    byte[] bytes = out.toByteArray();
+    ByteBuffer truncated = ByteBuffer.wrap(bytes, 0, 20).slice();
+    assertThrows(IOException.class, () -> QuerySummaryFile.read(truncated));
+  }
+}
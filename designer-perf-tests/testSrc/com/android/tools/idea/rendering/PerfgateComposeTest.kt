@@ -20,6 +20,7 @@ import com.android.tools.idea.editors.fast.FastPreviewManager
 import com.android.tools.perflogger.Benchmark
 import com.android.tools.perflogger.Metric
 import com.android.tools.perflogger.WindowDeviationAnalyzer
+import com.android.tools.rendering.classloading.ClassBinaryCacheManager
 import com.intellij.openapi.application.ApplicationManager
 import com.intellij.openapi.application.WriteAction
 import com.intellij.openapi.application.runReadAction
@@ -101,6 +102,26 @@ class PerfgateComposeTest : ComposeRenderTestBase() {
     }
   }
 
+  /**
+   * Measures the first render after restarting Studio, when the transformed library classes are not in memory and have to be read
+   * from the persistent class cache.
+   */
+  @Test
+  fun coldStartPerf() {
+    composeTimeBenchmark.measureOperation(listOf(
+      // Measures the full rendering time, including ModuleClassLoader instantiation, inflation and render.
+      ElapsedTimeMeasurement(Metric("cold_start_end_to_end_time")),
+      // Measures the class loading time.
+      ClassLoadTimeMeasurment(Metric("cold_start_class_total_load_time")),
+      // Measures the class rewrite time, that should only include the project classes.
+      ClassRewriteTimeMeasurement(Metric("cold_start_class_total_rewrite_time"))),
+                                          printSamples = true,
+                                          samplesCount = NUMBER_OF_SAMPLES) {
+      ClassBinaryCacheManager.getInstance().invalidateInMemoryCache()
+      SimpleComposeProjectScenarios.baselineRenderScenario(projectRule)
+    }
+  }
+
   @Test
   fun complexPerf() {
     composeTimeBenchmark.measureOperation(listOf(
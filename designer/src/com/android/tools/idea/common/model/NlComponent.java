@@ -150,6 +150,7 @@ public class NlComponent implements NlAttributesHolder {
 
   public void setAccessibilityId(long id) {
     myAccessibilityId = id;
+    invalidateModelIndex();
   }
 
   public long getAccessibilityId() {
@@ -213,6 +214,7 @@ public class NlComponent implements NlAttributesHolder {
 
   public void setTag(@NotNull XmlTag tag) {
     myBackend.setTagElement(tag);
+    invalidateModelIndex();
   }
 
   @Nullable
@@ -244,6 +246,7 @@ public class NlComponent implements NlAttributesHolder {
       }
     }
     component.setParent(this);
+    invalidateModelIndex();
   }
 
   public void removeChild(@NotNull NlComponent component) {
@@ -255,22 +258,36 @@ public class NlComponent implements NlAttributesHolder {
       children.remove(component);
     }
     component.setParent(null);
+    invalidateModelIndex();
   }
 
   public void setChildren(@Nullable List<NlComponent> components) {
     synchronized (children) {
       cachedChildrenCopy = null;
       children.clear();
-      if (components == null) {
-        return;
+      if (components != null) {
+        children.addAll(components);
       }
-      children.addAll(components);
     }
-    for (NlComponent component : components) {
-      if (component == this) {
-        throw new IllegalArgumentException();
+    if (components != null) {
+      for (NlComponent component : components) {
+        if (component == this) {
+          throw new IllegalArgumentException();
+        }
+        component.setParent(this);
       }
-      component.setParent(this);
+    }
+    invalidateModelIndex();
+  }
+
+  /**
+   * Tells the model that lookups by tag, accessibility id or view id need to be recomputed.
+   */
+  private void invalidateModelIndex() {
+    // The model is mocked in some tests
+    NlTreeReader treeReader = myModel.getTreeReader();
+    if (treeReader != null) {
+      treeReader.invalidateIndex();
     }
   }
 
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.common.model
+
+import com.google.common.collect.ImmutableList
+import com.intellij.psi.xml.XmlTag
+import java.util.Locale
+import java.util.concurrent.atomic.AtomicLong
+import org.jetbrains.annotations.TestOnly
+
+/**
+ * Lookup tables from XML tag, accessibility id and view id to the [NlComponent]s of a component
+ * tree, so that repeated lookups do not each walk the whole tree.
+ *
+ * [NlComponent] invalidates the index of its model whenever children are added, removed or
+ * replaced, or its tag or accessibility id changes. The tables are rebuilt, in a single walk, on
+ * the first lookup after an invalidation, so a burst of changes while a tree is being built costs a
+ * single rebuild.
+ *
+ * View ids are attributes and can change without any structural change, so id lookups verify the
+ * component they find, and fall back to checking the current ids of the indexed components, which
+ * are up to date since the structure did not change. Tags may be re-resolved from a smart pointer,
+ * so tag lookups are verified too and callers fall back to walking the tree.
+ */
+internal class NlComponentIndex {
+  private val version = AtomicLong()
+
+  @Volatile private var tables: Tables? = null
+
+  @get:TestOnly
+  var buildCount = 0
+    private set
+
+  fun invalidate() {
+    version.incrementAndGet()
+  }
+
+  /** Returns up to date tables for the tree under [root]. */
+  fun tables(root: NlComponent): Tables {
+    tables
+      ?.takeIf { it.root === root && it.version == version.get() }
+      ?.let {
+        return it
+      }
+    synchronized(this) {
+      val currentVersion = version.get()
+      tables
+        ?.takeIf { it.root === root && it.version == currentVersion }
+        ?.let {
+          return it
+        }
+      buildCount++
+      return Tables(root, currentVersion).also { tables = it }
+    }
+  }
+
+  class Tables(val root: NlComponent, val version: Long) {
+    /** Components in depth-first pre-order, the order in which lookups used to find them. */
+    private val components: List<NlComponent> =
+      ArrayList<NlComponent>().also { list ->
+        val stack = ArrayDeque<NlComponent>()
+        stack.addLast(root)
+        while (stack.isNotEmpty()) {
+          val component = stack.removeLast()
+          list.add(component)
+          component.children.asReversed().forEach { stack.addLast(it) }
+        }
+      }
+
+    private val byAccessibilityId: Map<Long, NlComponent> by lazy {
+      HashMap<Long, NlComponent>(components.size * 2).also { map ->
+        components.forEach { map.putIfAbsent(it.accessibilityId, it) }
+      }
+    }
+
+    /** Components by tag, in the post-order returned by [NlComponent.findViewsByTag]. */
+    private val byTag: Map<XmlTag, List<NlComponent>> by lazy {
+      HashMap<XmlTag, MutableList<NlComponent>>(components.size * 2).also { map ->
+        postOrder(root) { map.getOrPut(it.tagDeprecated) { ArrayList(1) }.add(it) }
+      }
+    }
+
+    private val firstByTag: Map<XmlTag, NlComponent> by lazy {
+      HashMap<XmlTag, NlComponent>(components.size * 2).also { map ->
+        components.forEach { map.putIfAbsent(it.tagDeprecated, it) }
+      }
+    }
+
+    private val byId: Map<String, NlComponent> by lazy {
+      HashMap<String, NlComponent>(components.size * 2).also { map ->
+        components.forEach { component -> component.id?.let { map.putIfAbsent(it, component) } }
+      }
+    }
+
+    /** Ids ignoring case, as matched by [String.equals] with `ignoreCase`. */
+    private val byIdIgnoringCase: Map<String, NlComponent> by lazy {
+      HashMap<String, NlComponent>(components.size * 2).also { map ->
+        components.forEach { component ->
+          component.id?.let { map.putIfAbsent(it.lowercase(Locale.ROOT), component) }
+        }
+      }
+    }
+
+    fun findByAccessibilityId(id: Long): NlComponent? = byAccessibilityId[id]
+
+    fun findByTag(tag: XmlTag): NlComponent? = firstByTag[tag]
+
+    fun findAllByTag(tag: XmlTag): ImmutableList<NlComponent> =
+      byTag[tag]?.let { ImmutableList.copyOf(it) } ?: ImmutableList.of()
+
+    fun findById(id: String): NlComponent? = byId[id]
+
+    fun findByIdIgnoringCase(id: String): NlComponent? = byIdIgnoringCase[id.lowercase(Locale.ROOT)]
+
+    /** Returns the first component, in depth-first pre-order, that matches [predicate]. */
+    fun find(predicate: (NlComponent) -> Boolean): NlComponent? = components.firstOrNull(predicate)
+
+    private fun postOrder(component: NlComponent, action: (NlComponent) -> Unit) {
+      component.children.forEach { postOrder(it, action) }
+      action(component)
+    }
+  }
+}
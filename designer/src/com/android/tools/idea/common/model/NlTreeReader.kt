@@ -27,6 +27,7 @@ import com.intellij.psi.xml.XmlTag
 import com.intellij.util.concurrency.annotations.RequiresReadLock
 import java.util.function.Predicate
 import java.util.stream.Stream
+import org.jetbrains.annotations.TestOnly
 
 @RequiresReadLock
 fun findAttributeByPsi(element: PsiElement): ResourceReference? {
@@ -47,15 +48,44 @@ fun findAttributeByPsi(element: PsiElement): ResourceReference? {
 class NlTreeReader(private val file: () -> XmlFile) {
   private var nlRootComponent: NlComponent? = null
 
+  private val index = NlComponentIndex()
+
+  @get:TestOnly
+  internal val indexBuildCount: Int
+    get() = index.buildCount
+
   val components: ImmutableList<NlComponent>
     get() = nlRootComponent?.let { ImmutableList.of(it) } ?: ImmutableList.of()
 
   fun setRootComponent(root: NlComponent?) {
     nlRootComponent = root
+    index.invalidate()
+  }
+
+  /**
+   * Called by [NlComponent] when the structure of the component tree, or a tag or accessibility id
+   * in it, changes.
+   */
+  fun invalidateIndex() {
+    index.invalidate()
   }
 
   fun find(id: String): NlComponent? {
-    return flattenComponents().filter { c: NlComponent? -> id == c!!.id }.findFirst().orElse(null)
+    val root = nlRootComponent ?: return null
+    val tables = index.tables(root)
+    tables.findById(id)?.let { if (id == it.id) return it }
+    return tables.find { id == it.id }
+  }
+
+  /**
+   * Returns the first component whose id matches [id] ignoring case, which is how
+   * [com.android.tools.idea.common.scene.SceneComponent.getSceneComponent] matches ids.
+   */
+  fun findIgnoringCase(id: String): NlComponent? {
+    val root = nlRootComponent ?: return null
+    val tables = index.tables(root)
+    tables.findByIdIgnoringCase(id)?.let { if (id.equals(it.id, ignoreCase = true)) return it }
+    return tables.find { id.equals(it.id, ignoreCase = true) }
   }
 
   fun find(condition: Predicate<NlComponent>): NlComponent? {
@@ -69,11 +99,14 @@ class NlTreeReader(private val file: () -> XmlFile) {
   }
 
   fun findViewByAccessibilityId(id: Long): NlComponent? {
-    return nlRootComponent?.findViewByAccessibilityId(id)
+    val root = nlRootComponent ?: return null
+    return index.tables(root).findByAccessibilityId(id)
   }
 
   fun findViewByTag(tag: XmlTag): NlComponent? {
-    return nlRootComponent?.findViewByTag(tag)
+    val root = nlRootComponent ?: return null
+    index.tables(root).findByTag(tag)?.let { if (it.tagDeprecated === tag) return it }
+    return root.findViewByTag(tag)
   }
 
   fun findByOffset(offset: Int): ImmutableList<NlComponent> {
@@ -82,7 +115,12 @@ class NlTreeReader(private val file: () -> XmlFile) {
   }
 
   private fun findViewsByTag(tag: XmlTag): ImmutableList<NlComponent> {
-    return nlRootComponent?.findViewsByTag(tag) ?: ImmutableList.of()
+    val root = nlRootComponent ?: return ImmutableList.of()
+    val components = index.tables(root).findAllByTag(tag)
+    if (components.isNotEmpty() && components.all { it.tagDeprecated === tag }) {
+      return components
+    }
+    return root.findViewsByTag(tag)
   }
 
   @RequiresReadLock
@@ -30,6 +30,7 @@ public class Display {
 
   public void reLayout() {
     myDisplayListVersion = 0;
+    myDisplayList.clearRetained();
   }
 
   public void draw(@NotNull SceneContext sceneContext, @NotNull Graphics2D g, @NotNull Scene scene) {
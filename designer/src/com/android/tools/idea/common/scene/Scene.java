@@ -110,6 +110,7 @@ public class Scene implements SelectionListener, Disposable {
   public static final int IMMEDIATE_LAYOUT = 1;
   public static final int ANIMATED_LAYOUT = 2;
   private long myDisplayListVersion = 1;
+  private long myComponentDisplayListVersion = 1;
   private Target myOverTarget;
   private Target mySnapTarget;
   private SceneComponent myCurrentComponent;
@@ -274,7 +275,14 @@ public class Scene implements SelectionListener, Disposable {
     if (myRoot == null) {
       return null;
     }
-    return myRoot.getSceneComponent(componentId);
+    // Ids are matched ignoring case, like SceneComponent#getSceneComponent(String) does
+    NlComponent component = mySceneManager.getModel().getTreeReader().findIgnoringCase(componentId);
+    if (component == null) {
+      return null;
+    }
+    SceneComponent sceneComponent = mySceneComponents.get(component);
+    // The scene may not have caught up with the model yet
+    return sceneComponent != null ? sceneComponent : myRoot.getSceneComponent(componentId);
   }
 
   public List<NlComponent> getSelection() {
@@ -500,28 +508,30 @@ public class Scene implements SelectionListener, Disposable {
                          @InputEventMask int modifiersEx) {
     myLastMouseX = x;
     myLastMouseY = y;
+    long displayListVersion = myDisplayListVersion;
+    NlComponent lastHoverConstraintComponent = myLastHoverConstraintComponent;
+    Object lastHoverConstraint = null;
     if (myLastHoverConstraintComponent != null) { // clear hover constraint
+      lastHoverConstraint = myLastHoverConstraintComponent.getClientProperty(ConstraintLayoutDecorator.CONSTRAINT_HOVER);
       myLastHoverConstraintComponent.putClientProperty(ConstraintLayoutDecorator.CONSTRAINT_HOVER, null);
       myLastHoverConstraintComponent = null;
-      needsRebuildList();
     }
     if (myRoot != null) {
       myHoverListener.find(transform, myRoot, x, y, modifiersEx);
       mySnapListener.find(transform, myRoot, x, y, modifiersEx);
     }
-    repaint();
     Target closestTarget = myHoverListener.getClosestTarget(modifiersEx);
     String tooltip = null;
     if (myOverTarget != closestTarget || (closestTarget != null && !closestTarget.isMouseHovered())) {
       if (myOverTarget != null) {
         myOverTarget.setMouseHovered(false);
         myOverTarget = null;
-        needsRebuildList();
+        hoverChanged();
       }
       if (closestTarget != null) {
         closestTarget.setMouseHovered(true);
         myOverTarget = closestTarget;
-        needsRebuildList();
+        hoverChanged();
       }
     }
     if (closestTarget != null) {
@@ -531,12 +541,12 @@ public class Scene implements SelectionListener, Disposable {
         if (mySnapTarget != null) {
           mySnapTarget.setMouseHovered(false);
           mySnapTarget = null;
-          needsRebuildList();
+          hoverChanged();
         }
         if (snapTarget != null) {
           snapTarget.setMouseHovered(true);
           mySnapTarget = closestTarget;
-          needsRebuildList();
+          hoverChanged();
         }
       }
     }
@@ -556,7 +566,7 @@ public class Scene implements SelectionListener, Disposable {
         closestComponent.setDrawState(SceneComponent.DrawState.HOVER);
         myCurrentComponent = closestComponent;
       }
-      needsRebuildList();
+      hoverChanged();
     }
 
     if (closestComponent == null
@@ -568,9 +578,17 @@ public class Scene implements SelectionListener, Disposable {
         myLastHoverConstraintComponent = ss.getComponent();
         tooltip = getConstraintToolTip(ss);
         component.putClientProperty(ConstraintLayoutDecorator.CONSTRAINT_HOVER, ss.getConstraint());
-        needsRebuildList();
       }
     }
+    if (lastHoverConstraintComponent != myLastHoverConstraintComponent ||
+        (myLastHoverConstraintComponent != null &&
+         lastHoverConstraint != myLastHoverConstraintComponent.getClientProperty(ConstraintLayoutDecorator.CONSTRAINT_HOVER))) {
+      hoverChanged();
+    }
+    // Components that did not change keep their retained display list, see SceneDecorator#buildListComponent
+    if (myDisplayListVersion != displayListVersion) {
+      repaint();
+    }
 
     if (getTooltipVisibility()) {
       getDesignSurface().setDesignToolTip(tooltip);
@@ -670,10 +688,10 @@ public class Scene implements SelectionListener, Disposable {
         NlComponent nlComponent = component.getAuthoritativeNlComponent();
         if (DecoratorUtilities.getTryingToConnectState(nlComponent) != null) {
           // Draw as hovered when creating constraints.
-          component.setDrawState(SceneComponent.DrawState.HOVER);
+          setHoverDrawState(component, SceneComponent.DrawState.HOVER);
         }
         else {
-          component.setDrawState(SceneComponent.DrawState.NORMAL);
+          setHoverDrawState(component, SceneComponent.DrawState.NORMAL);
         }
       }
       myHoveredComponents.remove(component);
@@ -683,7 +701,7 @@ public class Scene implements SelectionListener, Disposable {
     // Components not being hovered anymore are set to normal.
     while(iterator.hasNext()) {
       SceneComponent component = iterator.next();
-      component.setDrawState(SceneComponent.DrawState.NORMAL);
+      setHoverDrawState(component, SceneComponent.DrawState.NORMAL);
       iterator.remove();
     }
 
@@ -691,6 +709,14 @@ public class Scene implements SelectionListener, Disposable {
     myHoveredComponents.addAll(hitComponents);
   }
 
+  private void setHoverDrawState(@NotNull SceneComponent component, @NotNull SceneComponent.DrawState drawState) {
+    SceneComponent.DrawState oldState = component.getDrawState();
+    component.setDrawState(drawState);
+    if (component.getDrawState() != oldState) {
+      hoverChanged();
+    }
+  }
+
   private void setCursor(@NotNull SceneContext transform,
                          @AndroidDpCoordinate int x,
                          @AndroidDpCoordinate int y,
@@ -1069,10 +1095,27 @@ public class Scene implements SelectionListener, Disposable {
     return myDisplayListVersion;
   }
 
+  /**
+   * Returns the version of the commands that {@link com.android.tools.idea.common.scene.decorator.SceneDecorator} retains for
+   * each component. Unlike {@link #getDisplayListVersion()}, it does not change when only the hover state changes.
+   */
+  public long getComponentDisplayListVersion() {
+    return myComponentDisplayListVersion;
+  }
+
   // TODO: reduce visibility? Probably the modified SceneComponents should do this rather than
   // requiring it to be done explicitly by the code that's modifying them.
   public void needsRebuildList() {
     myDisplayListVersion++;
+    myComponentDisplayListVersion++;
+  }
+
+  /**
+   * Like {@link #needsRebuildList()}, for changes to the hovered component, target or constraint. The draw state of a
+   * component is part of the key of its retained commands, so those do not need to be invalidated.
+   */
+  private void hoverChanged() {
+    myDisplayListVersion++;
   }
 
   //endregion
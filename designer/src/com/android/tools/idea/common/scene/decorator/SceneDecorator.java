@@ -17,12 +17,14 @@ package com.android.tools.idea.common.scene.decorator;
 
 import com.android.tools.idea.common.scene.SceneComponent;
 import com.android.tools.idea.common.scene.SceneContext;
+import com.android.tools.idea.common.scene.draw.ColorSet;
 import com.android.tools.idea.common.scene.draw.DisplayList;
 import com.android.tools.idea.common.scene.draw.DrawComponentBackground;
 import com.android.tools.idea.common.scene.draw.DrawComponentFrame;
 import com.android.tools.idea.uibuilder.scene.decorator.DecoratorUtilities;
 import java.awt.Rectangle;
 import java.util.List;
+import java.util.Objects;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -69,13 +71,20 @@ public class SceneDecorator {
     buildListChildren(list, time, sceneContext, component);
   }
 
+  /**
+   * Adds the background, content and frame of the component. These commands are retained by the {@link DisplayList} and
+   * only rebuilt when the component's draw state, bounds or content changes, so that hovering over one component does not
+   * rebuild all the others.
+   */
   public void buildListComponent(@NotNull DisplayList list,
                                  long time,
                                  @NotNull SceneContext sceneContext,
                                  @NotNull SceneComponent component) {
-    addBackground(list, sceneContext, component);
-    addContent(list, time, sceneContext, component);
-    addFrame(list, sceneContext, component);
+    list.addRetained(component, new ComponentKey(time, sceneContext, component), retained -> {
+      addBackground(retained, sceneContext, component);
+      addContent(retained, time, sceneContext, component);
+      addFrame(retained, sceneContext, component);
+    });
   }
 
   protected void addContent(@NotNull DisplayList list,
@@ -144,4 +153,65 @@ public class SceneDecorator {
                                   @NotNull SceneComponent component) {
     component.getTargets().forEach(target -> target.render(list, sceneContext));
   }
+
+  /**
+   * Everything the commands added by {@link #buildListComponent} depend on. Changes to the model are covered by
+   * {@link com.android.tools.idea.common.scene.Scene#getComponentDisplayListVersion()}.
+   */
+  private static final class ComponentKey {
+    private final long myVersion;
+    private final SceneComponent.DrawState myDrawState;
+    private final boolean mySelected;
+    private final boolean myHighlighted;
+    private final boolean myDragging;
+    private final boolean myTryingToConnect;
+    private final boolean myShowOnlySelection;
+    private final Rectangle myRect;
+    private final Rectangle myDrawRect;
+    private final ColorSet myColorSet;
+    private final double myScale;
+    private final int mySwingX;
+    private final int mySwingY;
+
+    ComponentKey(long time, @NotNull SceneContext sceneContext, @NotNull SceneComponent component) {
+      myVersion = component.getScene().getComponentDisplayListVersion();
+      myDrawState = component.getDrawState();
+      mySelected = component.isSelected();
+      myHighlighted = component.isHighlighted();
+      myDragging = component.isDragging();
+      myTryingToConnect = DecoratorUtilities.getTryingToConnectState(component.getAuthoritativeNlComponent()) != null;
+      myShowOnlySelection = sceneContext.showOnlySelection();
+      myRect = component.fillRect(null);
+      myDrawRect = component.fillDrawRect(time, null);
+      myColorSet = sceneContext.getColorSet();
+      myScale = sceneContext.getScale();
+      mySwingX = sceneContext.getSwingXDip(0);
+      mySwingY = sceneContext.getSwingYDip(0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof ComponentKey)) return false;
+      ComponentKey key = (ComponentKey)o;
+      return myVersion == key.myVersion &&
+             myDrawState == key.myDrawState &&
+             mySelected == key.mySelected &&
+             myHighlighted == key.myHighlighted &&
+             myDragging == key.myDragging &&
+             myTryingToConnect == key.myTryingToConnect &&
+             myShowOnlySelection == key.myShowOnlySelection &&
+             myRect.equals(key.myRect) &&
+             myDrawRect.equals(key.myDrawRect) &&
+             myColorSet == key.myColorSet &&
+             myScale == key.myScale &&
+             mySwingX == key.mySwingX &&
+             mySwingY == key.mySwingY;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myVersion, myDrawState, myRect, myScale);
+    }
+  }
 }
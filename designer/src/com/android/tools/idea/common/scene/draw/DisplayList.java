@@ -44,10 +44,13 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.EmptyStackException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Stack;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 
 
 /**
@@ -60,11 +63,27 @@ public class DisplayList {
   private ArrayList<DrawCommand> myCommands = new ArrayList<>();
   private Stack<UNClip> myUnClipStack = new Stack<>();
   private CommandSet mySortedCommandSet;
+  /**
+   * Commands retained across {@link #clear()} by {@link #addRetained}. Entries that are not used between two calls to
+   * {@link #clear()} are dropped.
+   */
+  private final HashMap<Object, RetainedCommands> myRetainedCommands = new HashMap<>();
+  private long myGeneration;
+  private int myRetainedBuildCount;
 
   public void clear() {
     mySortedCommandSet = null;
     myCommands.clear();
     myUnClipStack.clear();
+    myRetainedCommands.values().removeIf(retained -> retained.myGeneration != myGeneration);
+    myGeneration++;
+  }
+
+  /**
+   * Drops all the commands retained by {@link #addRetained}.
+   */
+  public void clearRetained() {
+    myRetainedCommands.clear();
   }
 
   public ArrayList<DrawCommand> getCommands() {
@@ -351,6 +370,17 @@ public class DisplayList {
     }
   }
 
+  private static class RetainedCommands {
+    @NotNull final Object myKey;
+    @NotNull final List<DrawCommand> myCommands;
+    long myGeneration;
+
+    RetainedCommands(@NotNull Object key, @NotNull List<DrawCommand> commands) {
+      myKey = key;
+      myCommands = commands;
+    }
+  }
+
   /////////////////////////////////////////////////////////////////////////////
   //region Public methods to add elements to the display list
   /////////////////////////////////////////////////////////////////////////////
@@ -361,6 +391,33 @@ public class DisplayList {
     myCommands.add(cmd);
   }
 
+  /**
+   * Adds the commands that {@code builder} adds for {@code owner}. The commands are retained across {@link #clear()} and
+   * reused, without calling {@code builder}, for as long as the same owner is added with an equal {@code key}. The key
+   * must therefore capture everything the commands depend on.
+   */
+  public void addRetained(@NotNull Object owner, @NotNull Object key, @NotNull Consumer<DisplayList> builder) {
+    RetainedCommands retained = myRetainedCommands.get(owner);
+    if (retained == null || !retained.myKey.equals(key)) {
+      DisplayList list = new DisplayList();
+      builder.accept(list);
+      retained = new RetainedCommands(key, list.myCommands);
+      myRetainedCommands.put(owner, retained);
+      myRetainedBuildCount++;
+    }
+    retained.myGeneration = myGeneration;
+    mySortedCommandSet = null;
+    myCommands.addAll(retained.myCommands);
+  }
+
+  /**
+   * Returns the number of times {@link #addRetained} had to build its commands.
+   */
+  @TestOnly
+  public int getRetainedBuildCount() {
+    return myRetainedBuildCount;
+  }
+
   public void pushClip(@NotNull SceneContext context, @Nullable @AndroidDpCoordinate Rectangle r) {
     if (r == null) {
       myUnClipStack.add(new EmptyUNClip());
@@ -77,6 +77,9 @@ class DiagnosticsLayer(private val diagnosticKey: NlDiagnosticKey, private val p
       | Allocated     ${(poolStats?.totalBytesAllocated() ?: -1) / MiB}MB
       | In use        ${(poolStats?.totalBytesInUse() ?: -1) / MiB}MB
       | Free          ${((poolStats?.totalBytesAllocated() ?: -1) - (poolStats?.totalBytesInUse() ?: 0)) / MiB}MB
+      | Pooled        ${(poolStats?.totalBytesPooled() ?: -1) / MiB}MB
+      | Hits/misses   ${poolStats?.hits() ?: -1}/${poolStats?.misses() ?: -1}
+      | Evictions     ${poolStats?.evictions() ?: -1}
       |
       |Buckets
       |${bucketStats}
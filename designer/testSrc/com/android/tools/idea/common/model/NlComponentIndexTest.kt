@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.common.model
+
+import com.android.testutils.MockitoKt.whenever
+import com.google.common.truth.Truth.assertThat
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Mockito.mock
+
+private const val TREE_SIZE = 5000
+private const val FAN_OUT = 8
+
+/** Tests for [NlComponentIndex] through [NlTreeReader]. */
+class NlComponentIndexTest {
+  private val model = mock(NlModel::class.java)
+  private val treeReader = NlTreeReader { error("unused") }
+  private lateinit var root: NlComponent
+  private lateinit var components: List<TestComponent>
+
+  @Before
+  fun setUp() {
+    whenever(model.treeReader).thenReturn(treeReader)
+    components = List(TREE_SIZE) { TestComponent(model, it.toLong(), "view$it") }
+    for (i in 1 until TREE_SIZE) {
+      components[(i - 1) / FAN_OUT].addChild(components[i])
+    }
+    root = components[0]
+    treeReader.setRootComponent(root)
+  }
+
+  @Test
+  fun findViewByAccessibilityId_buildsIndexOnce() {
+    for (id in 0L until TREE_SIZE) {
+      val component = treeReader.findViewByAccessibilityId(id)
+      assertThat(component).isSameAs(root.findViewByAccessibilityId(id))
+      assertThat(component!!.accessibilityId).isEqualTo(id)
+    }
+    assertThat(treeReader.findViewByAccessibilityId(TREE_SIZE.toLong())).isNull()
+
+    assertThat(treeReader.indexBuildCount).isEqualTo(1)
+  }
+
+  @Test
+  fun findViewByAccessibilityId_afterSetAccessibilityId() {
+    val component = components[1234]
+
+    component.accessibilityId = TREE_SIZE * 2L
+
+    assertThat(treeReader.findViewByAccessibilityId(1234)).isNull()
+    assertThat(root.findViewByAccessibilityId(1234)).isNull()
+    assertThat(treeReader.findViewByAccessibilityId(TREE_SIZE * 2L)).isSameAs(component)
+    assertThat(treeReader.findViewByAccessibilityId(TREE_SIZE * 2L))
+      .isSameAs(root.findViewByAccessibilityId(TREE_SIZE * 2L))
+  }
+
+  @Test
+  fun find_matchesExactId() {
+    components[10].testId = "button"
+    components[20].testId = "Button"
+
+    assertThat(treeReader.find("Button")).isSameAs(components[20])
+    assertThat(treeReader.find("view42")).isSameAs(components[42])
+    assertThat(treeReader.find("missing")).isNull()
+    assertThat(treeReader.indexBuildCount).isEqualTo(1)
+  }
+
+  @Test
+  fun findIgnoringCase_matchesFirstComponentInPreOrder() {
+    components[20].testId = "Button"
+    components[10].testId = "button"
+    // Depth-first pre-order, as SceneComponent.getSceneComponent(String) walks the tree
+    val expected = root.flatten().filter { "BUTTON".equals(it.id, ignoreCase = true) }.findFirst()
+
+    assertThat(treeReader.findIgnoringCase("BUTTON")).isSameAs(expected.get())
+    assertThat(treeReader.findIgnoringCase("VIEW42")).isSameAs(components[42])
+    assertThat(treeReader.findIgnoringCase("missing")).isNull()
+  }
+
+  @Test
+  fun idChange_isFoundWithoutRebuildingIndex() {
+    treeReader.find("view7")
+
+    components[7].testId = "renamed"
+
+    assertThat(treeReader.find("view7")).isNull()
+    assertThat(treeReader.find("renamed")).isSameAs(components[7])
+    assertThat(treeReader.findIgnoringCase("RENAMED")).isSameAs(components[7])
+    assertThat(treeReader.indexBuildCount).isEqualTo(1)
+  }
+
+  @Test
+  fun structuralChange_rebuildsIndex() {
+    treeReader.findViewByAccessibilityId(0)
+    val added = NlComponent(model, TREE_SIZE.toLong())
+
+    root.children.last().addChild(added)
+
+    assertThat(treeReader.findViewByAccessibilityId(TREE_SIZE.toLong())).isSameAs(added)
+    assertThat(treeReader.indexBuildCount).isEqualTo(2)
+
+    root.children.last().removeChild(added)
+
+    assertThat(treeReader.findViewByAccessibilityId(TREE_SIZE.toLong())).isNull()
+    assertThat(treeReader.indexBuildCount).isEqualTo(3)
+  }
+
+  @Test
+  fun setChildren_rebuildsIndex() {
+    val parent = components[1]
+    val replaced = parent.children.first()
+    treeReader.findViewByAccessibilityId(0)
+    val added = NlComponent(model, TREE_SIZE.toLong())
+
+    parent.setChildren(listOf(added))
+
+    assertThat(treeReader.findViewByAccessibilityId(TREE_SIZE.toLong())).isSameAs(added)
+    assertThat(treeReader.findViewByAccessibilityId(replaced.accessibilityId)).isNull()
+    assertThat(treeReader.indexBuildCount).isEqualTo(2)
+
+    parent.setChildren(null)
+
+    assertThat(treeReader.findViewByAccessibilityId(TREE_SIZE.toLong())).isNull()
+    assertThat(treeReader.indexBuildCount).isEqualTo(3)
+  }
+
+  @Test
+  fun invalidateIndex_rebuildsOnNextLookupOnly() {
+    treeReader.findViewByAccessibilityId(0)
+
+    treeReader.invalidateIndex()
+    treeReader.invalidateIndex()
+
+    assertThat(treeReader.indexBuildCount).isEqualTo(1)
+    assertThat(treeReader.findViewByAccessibilityId(42)?.accessibilityId).isEqualTo(42)
+    assertThat(treeReader.findViewByAccessibilityId(43)?.accessibilityId).isEqualTo(43)
+    assertThat(treeReader.indexBuildCount).isEqualTo(2)
+  }
+
+  /** A component whose id is not read from XML. */
+  class TestComponent(model: NlModel, accessibilityId: Long, var testId: String?) :
+    NlComponent(model, accessibilityId) {
+    override fun getId(): String? = testId
+  }
+}
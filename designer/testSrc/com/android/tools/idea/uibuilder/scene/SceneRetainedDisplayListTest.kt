@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene
+
+import com.android.AndroidXConstants.CONSTRAINT_LAYOUT
+import com.android.SdkConstants.TEXT_VIEW
+import com.android.tools.idea.common.fixtures.ModelBuilder
+import com.android.tools.idea.common.scene.SceneContext
+import com.android.tools.idea.common.scene.draw.DisplayList
+import junit.framework.TestCase
+
+/** Checks that hovering only rebuilds the display list commands of the components it changes. */
+class SceneRetainedDisplayListTest : SceneTest() {
+
+  override fun createModel(): ModelBuilder =
+    model(
+      "constraint.xml",
+      component(CONSTRAINT_LAYOUT.defaultName())
+        .id("@id/root")
+        .withBounds(0, 0, 2000, 2000)
+        .width("1000dp")
+        .height("1000dp")
+        .children(
+          component(TEXT_VIEW)
+            .id("@id/button")
+            .withBounds(200, 400, 200, 40)
+            .width("100dp")
+            .height("20dp")
+            .withAttribute("tools:layout_editor_absoluteX", "100dp")
+            .withAttribute("tools:layout_editor_absoluteY", "200dp"),
+          component(TEXT_VIEW)
+            .id("@id/button2")
+            .withBounds(200, 1000, 200, 40)
+            .width("100dp")
+            .height("20dp")
+            .withAttribute("tools:layout_editor_absoluteX", "100dp")
+            .withAttribute("tools:layout_editor_absoluteY", "500dp"),
+        ),
+    )
+
+  fun testRepaintWithoutChangesReusesCommands() {
+    myInteraction.repaint()
+    val buildCount = myInteraction.displayList.retainedBuildCount
+
+    myInteraction.repaint()
+
+    TestCase.assertEquals(buildCount, myInteraction.displayList.retainedBuildCount)
+    assertSameAsFreshDisplayList()
+  }
+
+  fun testHoverRebuildsOnlyHoveredComponents() {
+    myInteraction.repaint()
+    val buildCount = myInteraction.displayList.retainedBuildCount
+
+    myScene.mouseHover(SceneContext.get(), 150, 210, 0)
+    myInteraction.repaint()
+
+    // Only @id/button changed to the hover state
+    TestCase.assertEquals(buildCount + 1, myInteraction.displayList.retainedBuildCount)
+    assertSameAsFreshDisplayList()
+
+    myScene.mouseHover(SceneContext.get(), 150, 510, 0)
+    myInteraction.repaint()
+
+    // @id/button is back to normal and @id/button2 is hovered
+    TestCase.assertEquals(buildCount + 3, myInteraction.displayList.retainedBuildCount)
+    assertSameAsFreshDisplayList()
+  }
+
+  fun testHoverWithinComponentDoesNotInvalidateDisplayList() {
+    myScene.mouseHover(SceneContext.get(), 150, 210, 0)
+    val version = myScene.displayListVersion
+
+    myScene.mouseHover(SceneContext.get(), 160, 212, 0)
+
+    TestCase.assertEquals(version, myScene.displayListVersion)
+  }
+
+  fun testModelChangeRebuildsAllComponents() {
+    myInteraction.repaint()
+    val buildCount = myInteraction.displayList.retainedBuildCount
+
+    myScene.needsRebuildList()
+    myInteraction.repaint()
+
+    TestCase.assertEquals(buildCount + 3, myInteraction.displayList.retainedBuildCount)
+  }
+
+  private fun assertSameAsFreshDisplayList() {
+    val freshList = DisplayList()
+    myScene.buildDisplayList(freshList, System.currentTimeMillis())
+    TestCase.assertEquals(freshList.serialize(), myInteraction.displayList.serialize())
+  }
+}
@@ -37,6 +37,7 @@ import com.android.tools.idea.device.explorer.files.fs.DownloadProgress
 import com.android.tools.idea.device.explorer.files.fs.FileTransferProgress
 import com.android.tools.idea.device.explorer.files.ui.TreeUtil
 import com.android.tools.idea.device.explorer.files.ui.TreeUtil.UpdateChildrenOps
+import com.android.tools.idea.flags.StudioFlags
 import com.android.tools.idea.projectsystem.ProjectApplicationIdsProvider
 import com.android.tools.idea.projectsystem.ProjectApplicationIdsProvider.Companion.PROJECT_APPLICATION_IDS_CHANGED_TOPIC
 import com.android.utils.FileUtils
@@ -70,9 +71,13 @@ import com.intellij.util.ExceptionUtil
 import com.intellij.util.concurrency.EdtExecutorService
 import kotlinx.coroutines.CancellationException
 import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
 import kotlinx.coroutines.time.withTimeout
 import kotlinx.coroutines.withContext
 import org.jetbrains.annotations.TestOnly
@@ -114,6 +119,7 @@ class DeviceFileExplorerControllerImpl(
     @TestOnly set
 
   private val workEstimator = FileTransferWorkEstimator()
+  private val fileTransferSemaphore = Semaphore(StudioFlags.DEVICE_EXPLORER_TRANSFER_CONCURRENCY.get().coerceAtLeast(1))
   private val transferringNodes: MutableSet<DeviceFileEntryNode> = HashSet()
   private val loadingChildren: MutableSet<DeviceFileEntryNode> = HashSet()
   private val loadingNodesAlarms = Alarm()
@@ -581,15 +587,31 @@ class DeviceFileExplorerControllerImpl(
       tracker.summary.addDirectoryCount(1)
       try {
         loadNodeChildren(treeNode)
-        for (node in treeNode.childEntryNodes) {
-          val nodePath = localDirectoryPath.resolve(node.entry.name)
-          downloadSingleNode(node, nodePath, tracker)
+        coroutineScope {
+          for (node in treeNode.childEntryNodes) {
+            val nodePath = localDirectoryPath.resolve(node.entry.name)
+            if (node.entry.isDirectory) {
+              downloadSingleDirectory(node, nodePath, tracker)
+            } else {
+              launchFileTransfer { downloadSingleFile(node, nodePath, tracker) }
+            }
+          }
         }
       } catch (t: Throwable) {
         tracker.addProblem(t)
       }
     }
 
+    /**
+     * Runs the transfer of a single file concurrently with the other transfers of the operation,
+     * up to [StudioFlags.DEVICE_EXPLORER_TRANSFER_CONCURRENCY] at a time. Each transfer has its own
+     * sync connection to the device, so the round-trips that dominate the transfer of small files
+     * overlap, as does the listing of the next directories.
+     */
+    private fun CoroutineScope.launchFileTransfer(transfer: suspend () -> Unit) {
+      launch { fileTransferSemaphore.withPermit { transfer() } }
+    }
+
     override fun copyNodePathsInvoked(treeNodes: List<DeviceFileEntryNode>) {
       val text = treeNodes.map { it.entry.fullPath }.joinToString("\n")
       CopyPasteManager.getInstance().setContents(StringSelection(text))
@@ -884,25 +906,24 @@ class DeviceFileExplorerControllerImpl(
       tracker: FileTransferOperationTracker
     ) {
       // Upload each file
-      files.forEach { uploadVirtualFile(parentNode, it, tracker) }
+      coroutineScope {
+        for (file in files) {
+          if (file.isDirectory) {
+            uploadDirectory(parentNode, file, tracker)
+          } else {
+            launchFileTransfer { uploadFile(parentNode, file, tracker) }
+          }
+        }
+      }
+      if (tracker.isCancelled) {
+        cancelAndThrow()
+      }
 
       // Refresh children nodes
       parentNode.isLoaded = false
       loadNodeChildren(parentNode)
     }
 
-    private suspend fun uploadVirtualFile(
-      treeNode: DeviceFileEntryNode,
-      file: VirtualFile,
-      tracker: FileTransferOperationTracker
-    ) {
-      if (file.isDirectory) {
-        uploadDirectory(treeNode, file, tracker)
-      } else {
-        uploadFile(treeNode, file, tracker)
-      }
-    }
-
     private suspend fun uploadDirectory(
       parentNode: DeviceFileEntryNode,
       file: VirtualFile,
@@ -1063,7 +1084,7 @@ class DeviceFileExplorerControllerImpl(
         val successMessage = if (summary.directoryCount > 0) {
           String.format(
             Locale.getDefault(),
-            "Successfully %s %,d %s and %,d %s for a total size of %,d %s in %s.",
+            "Successfully %s %,d %s and %,d %s for a total size of %,d %s in %s (%s/s).",
             pastParticiple,
             summary.fileCount,
             fileString,
@@ -1071,18 +1092,20 @@ class DeviceFileExplorerControllerImpl(
             directoryString,
             summary.byteCount,
             byteCountString,
-            StringUtil.formatDuration(summary.durationMillis)
+            StringUtil.formatDuration(summary.durationMillis),
+            StringUtil.formatFileSize(summary.bytesPerSecond)
           )
         } else {
           String.format(
             Locale.getDefault(),
-            "Successfully %s %,d %s for a total of size of %,d %s in %s.",
+            "Successfully %s %,d %s for a total of size of %,d %s in %s (%s/s).",
             pastParticiple,
             summary.fileCount,
             fileString,
             summary.byteCount,
             byteCountString,
-            StringUtil.formatDuration(summary.durationMillis)
+            StringUtil.formatDuration(summary.durationMillis),
+            StringUtil.formatFileSize(summary.bytesPerSecond)
           )
         }
         view.reportMessageRelatedToNode(node, successMessage)
@@ -65,6 +65,13 @@ public class FileTransferSummary {
     myDurationMillis = durationMillis;
   }
 
+  /**
+   * Returns the average throughput of the transfer, in bytes per second, or 0 if the duration is not known.
+   */
+  public long getBytesPerSecond() {
+    return myDurationMillis <= 0 ? 0 : myByteCount * 1000 / myDurationMillis;
+  }
+
   void setAction(DeviceExplorerEvent.Action action) {
     myAction = action;
   }
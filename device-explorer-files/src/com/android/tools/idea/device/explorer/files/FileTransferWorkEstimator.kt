@@ -79,13 +79,16 @@ class FileTransferWorkEstimator {
     progress: FileTransferWorkEstimatorProgress
   ): FileTransferWorkEstimate {
     val workEstimate = FileTransferWorkEstimate()
-    estimateDownloadWorkWorker(entry, isLinkToDirectory, workEstimate, progress)
+    // List the whole tree at once, instead of going back to the device for each directory
+    val descendants = if (entry.isDirectory || isLinkToDirectory) entry.descendants() else emptyMap()
+    estimateDownloadWorkWorker(entry, isLinkToDirectory, descendants, workEstimate, progress)
     return workEstimate
   }
 
-  suspend fun estimateDownloadWorkWorker(
+  private suspend fun estimateDownloadWorkWorker(
     entry: DeviceFileEntry,
     isLinkToDirectory: Boolean,
+    descendants: Map<String, List<DeviceFileEntry>>,
     estimate: FileTransferWorkEstimate,
     progress: FileTransferWorkEstimatorProgress
   ) {
@@ -94,11 +97,11 @@ class FileTransferWorkEstimator {
     }
     reportProgress(estimate, progress)
     if (entry.isDirectory || isLinkToDirectory) {
-      val children = entry.entries()
+      val children = descendants[entry.fullPath].orEmpty()
       estimate.addDirectoryCount(1)
       estimate.addWorkUnits(directoryWorkUnits)
       for (child in children) {
-        estimateDownloadWorkWorker(child, false, estimate, progress)
+        estimateDownloadWorkWorker(child, false, descendants, estimate, progress)
       }
     } else {
       estimate.addFileCount(1)
@@ -31,6 +31,9 @@ class AdbDeviceDefaultFileEntry(
   override suspend fun entries(): List<DeviceFileEntry> =
     fileSystem.resolveMountPoint(this).entries()
 
+  override suspend fun descendants(): Map<String, List<DeviceFileEntry>> =
+    fileSystem.resolveMountPoint(this).descendants()
+
   override suspend fun delete() =
     fileSystem.resolveMountPoint(this).delete()
 
@@ -40,6 +40,24 @@ class AdbDeviceDirectFileEntry(
   override suspend fun entries(): List<DeviceFileEntry> =
     fileSystem.adbFileListing.getChildrenRunAs(myEntry, myRunAs).map { AdbDeviceDefaultFileEntry(fileSystem, it, this) }
 
+  override suspend fun descendants(): Map<String, List<DeviceFileEntry>> {
+    val listing = fileSystem.adbFileListing.getDescendantsRunAs(myEntry, myRunAs)
+    // "ls -R" lists a directory before its subdirectories, so the parent of each entry has been created already
+    val directories = mutableMapOf<String, AdbDeviceFileEntry>(fullPath to this)
+    val result = LinkedHashMap<String, List<DeviceFileEntry>>()
+    for ((directoryPath, entries) in listing) {
+      val directory = directories[directoryPath] ?: continue
+      result[directoryPath] = entries.map { entry ->
+        AdbDeviceDefaultFileEntry(fileSystem, entry, directory).also {
+          if (it.isDirectory) {
+            directories[it.fullPath] = it
+          }
+        }
+      }
+    }
+    return result
+  }
+
   override suspend fun delete() =
     if (isDirectory) {
       fileSystem.adbFileOperations.deleteRecursiveRunAs(fullPath, myRunAs)
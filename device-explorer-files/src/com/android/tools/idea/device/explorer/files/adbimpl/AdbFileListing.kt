@@ -46,7 +46,7 @@ class AdbFileListing(
       val commandResult = myShellCommandsUtil.executeCommand(command)
       val escaping = myDeviceCapabilities.hasEscapingLs()
       val entries = commandResult.output
-        .mapNotNull { line -> processLsOutputLine(line, escaping, parentEntry) }
+        .mapNotNull { line -> processLsOutputLine(line, escaping, parentEntry.fullPath) }
       if (entries.isEmpty() && commandResult.isError) {
         commandResult.throwIfError()
       }
@@ -54,6 +54,42 @@ class AdbFileListing(
     }
   }
 
+  /**
+   * Lists [parentEntry] and, recursively, all its subdirectories with a single "ls -alR" command,
+   * instead of one command per directory. Returns the entries of each directory keyed by the full
+   * path of the directory, [parentEntry] first. Symbolic links are not followed.
+   *
+   * Directories that cannot be listed, e.g. because of permissions, are omitted.
+   */
+  suspend fun getDescendantsRunAs(
+    parentEntry: AdbFileListingEntry,
+    runAs: String?
+  ): Map<String, List<AdbFileListingEntry>> {
+    return withContext(dispatcher) {
+      val command = getCommand(runAs, "ls -alR ").withDirectoryEscapedPath(parentEntry.fullPath).build() //$NON-NLS-1$
+      val commandResult = myShellCommandsUtil.executeCommand(command)
+      val escaping = myDeviceCapabilities.hasEscapingLs()
+      val rootPath = normalizePath(parentEntry.fullPath)
+      val result = LinkedHashMap<String, MutableList<AdbFileListingEntry>>()
+      var directoryPath = parentEntry.fullPath
+      var entries = result.getOrPut(directoryPath) { mutableListOf() }
+      for (line in commandResult.output) {
+        // Each directory starts with a "path:" header, followed by the "ls -al" output for that directory
+        if (line.startsWith(AdbPathUtil.FILE_SEPARATOR) && line.endsWith(":")) {
+          val headerPath = line.substring(0, line.length - 1).let { if (escaping) it.replace("\\", "") else it }
+          directoryPath = normalizePath(headerPath).takeIf { it != rootPath } ?: parentEntry.fullPath
+          entries = result.getOrPut(directoryPath) { mutableListOf() }
+          continue
+        }
+        processLsOutputLine(line, escaping, directoryPath)?.let { entries.add(it) }
+      }
+      if (result.values.all { it.isEmpty() } && commandResult.isError) {
+        commandResult.throwIfError()
+      }
+      result
+    }
+  }
+
   suspend fun getRoot(): AdbFileListingEntry {
     return withContext(dispatcher) {
       try {
@@ -176,7 +212,7 @@ class AdbFileListing(
   }
 }
 
-private fun processLsOutputLine(line: String, escaping: Boolean, parentEntry: AdbFileListingEntry): AdbFileListingEntry? {
+private fun processLsOutputLine(line: String, escaping: Boolean, parentPath: String): AdbFileListingEntry? {
   // no need to handle empty lines.
   if (line.isEmpty()) {
     return null
@@ -220,7 +256,7 @@ private fun processLsOutputLine(line: String, escaping: Boolean, parentEntry: Ad
     // add an arrow in front to specify it's a link.
     info = "-> $info" //$NON-NLS-1$;
   }
-  val path = AdbPathUtil.resolve(parentEntry.fullPath, name)
+  val path = AdbPathUtil.resolve(parentPath, name)
 
   // Create entry and add it to result
   return AdbFileListingEntry(
@@ -236,6 +272,12 @@ private fun processLsOutputLine(line: String, escaping: Boolean, parentEntry: Ad
   )
 }
 
+/**
+ * Returns [path] without empty segments, so that "/sdcard/dir/" and "/sdcard//dir" both become "/sdcard/dir".
+ */
+private fun normalizePath(path: String): String =
+  AdbPathUtil.getSegments(path).joinToString(AdbPathUtil.FILE_SEPARATOR, prefix = AdbPathUtil.FILE_SEPARATOR)
+
 private fun getObjectType(permissions: String): EntryKind {
   var objectType = EntryKind.OTHER
   when (permissions[0]) {
@@ -27,12 +27,14 @@ import com.android.tools.idea.device.explorer.files.fs.ThrottledProgress
 import com.android.tools.idea.flags.StudioFlags
 import com.google.common.base.Stopwatch
 import com.intellij.openapi.diagnostic.logger
+import com.intellij.openapi.util.text.StringUtil
 import kotlinx.coroutines.CoroutineDispatcher
 import kotlinx.coroutines.asCoroutineDispatcher
 import kotlinx.coroutines.withContext
 import java.io.IOException
 import java.nio.file.Path
 import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
 
 private val LOGGER = logger<AdbFileTransfer>()
 
@@ -119,7 +121,7 @@ class AdbFileTransfer(
         device.session.channelFactory.createFile(localPath).use { fileChannel ->
           device.session.deviceServices.syncRecv(device.selector, remotePath, fileChannel, monitor)
         }
-        LOGGER.info("Pull file took $stopwatch to execute: \"$remotePath\" -> \"$localPath\"")
+        LOGGER.info("Pull file took $stopwatch to execute (${throughput(remotePathSize, stopwatch)}): \"$remotePath\" -> \"$localPath\"")
       }
     } catch (e: IOException) {
       LOGGER.info("Error pulling file from \"$remotePath\" to \"$localPath\"", e)
@@ -146,7 +148,7 @@ class AdbFileTransfer(
             monitor)
         }
 
-        LOGGER.info( "Push file took $stopwatch to execute: \"$localPath\" -> \"$remotePath\"")
+        LOGGER.info( "Push file took $stopwatch to execute (${throughput(fileLength, stopwatch)}): \"$localPath\" -> \"$remotePath\"")
       }
     } catch (e: IOException) {
       LOGGER.info("Error pushing file from \"$localPath\" to \"$remotePath\"", e)
@@ -155,6 +157,11 @@ class AdbFileTransfer(
   }
 }
 
+private fun throughput(byteCount: Long, stopwatch: Stopwatch): String {
+  val millis = stopwatch.elapsed(TimeUnit.MILLISECONDS).coerceAtLeast(1)
+  return "${StringUtil.formatFileSize(byteCount * 1000 / millis)}/s"
+}
+
 /**
  * Forward callbacks from a [SyncProgress], running on a pooled thread,
  * to a [FileTransferProgress], using the provided [CoroutineDispatcher],
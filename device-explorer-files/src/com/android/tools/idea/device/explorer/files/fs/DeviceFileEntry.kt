@@ -46,6 +46,24 @@ interface DeviceFileEntry {
    */
   suspend fun entries(): List<DeviceFileEntry>
 
+  /**
+   * The entries contained in this directory and, recursively, in all its subdirectories, keyed by
+   * the [fullPath] of the directory containing them. Symbolic links are not followed.
+   *
+   * The default implementation calls [entries] for each directory. File systems that can list
+   * a whole tree in one request should override it.
+   */
+  suspend fun descendants(): Map<String, List<DeviceFileEntry>> {
+    val result = LinkedHashMap<String, List<DeviceFileEntry>>()
+    suspend fun addEntries(directory: DeviceFileEntry) {
+      val entries = directory.entries()
+      result[directory.fullPath] = entries
+      entries.filter { it.isDirectory }.forEach { addEntries(it) }
+    }
+    addEntries(this)
+    return result
+  }
+
   /**
    * Deletes the entry from the device file system.
    */
@@ -336,6 +336,30 @@ class AdbFileListingTest {
     assertThat(listing.getChildrenRunAs(dir, null)[0].name).isEqualTo("dir with spaces")
   }
 
+  @Test
+  fun getDescendantsListsTreeInOneCommand(): Unit = runBlocking {
+    TestDevices.addRecursiveLsCommands(commands)
+    val listing = AdbFileListing(device, AdbDeviceCapabilities(scope, deviceName, device), dispatcher)
+    val dir = AdbFileListingEntry(
+      "/sdcard/dir",
+      EntryKind.DIRECTORY,
+      "drwxr-xr-x",
+      "root",
+      "root",
+      "2016-08-26",
+      "12:12",
+      "4096",
+      null
+    )
+
+    val descendants = listing.getDescendantsRunAs(dir, null)
+
+    assertThat(descendants.keys).containsExactly("/sdcard/dir", "/sdcard/dir/sub").inOrder()
+    assertThat(descendants.getValue("/sdcard/dir").map { it.fullPath }).containsExactly("/sdcard/dir/a.txt", "/sdcard/dir/sub")
+    assertThat(descendants.getValue("/sdcard/dir/sub").map { it.fullPath }).containsExactly("/sdcard/dir/sub/b.txt")
+    assertThat(descendants.getValue("/sdcard/dir/sub").single().size).isEqualTo(20)
+  }
+
   @Test
   fun test_EmulatorApi25_IsDirectoryLink(): Unit = runBlocking {
     // Prepare
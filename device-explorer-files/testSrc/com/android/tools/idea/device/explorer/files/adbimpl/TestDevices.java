@@ -698,6 +698,34 @@ public enum TestDevices {
     addCommand(commands, "rm /data/local/tmp/oyX2HCKL\\ acuauQGJ", "");
   }
 
+  static void addRecursiveLsCommands(@NotNull TestShellCommands commands) {
+    addCommand(
+      commands,
+      "su 0 sh -c 'id'",
+      "uid=0(root) gid=0(root) groups=0(root),1004(input),1007(log),1011(adb),1015(sdcard_rw),1028(sdcard_r),3001(net_bt_admin)," +
+      "3002(net_bt),3003(inet),3006(net_bw_stats),3009(readproc) context=u:r:su:s0");
+
+    addCommand(
+      commands,
+      "su 0 sh -c 'ls -alR /sdcard/dir/'",
+      "/sdcard/dir/:\n" +
+      "total 12\n" +
+      "drwxr-xr-x 3 root root      4096 2016-08-26 12:12 .\n" +
+      "drwxr-xr-x 1 root root      4096 2016-08-26 12:12 ..\n" +
+      "-rw-rw---- 1 root sdcard_rw   10 2018-01-10 15:00 a.txt\n" +
+      "drwxrwx--x 2 root sdcard_rw 4096 2018-01-10 15:00 sub\n" +
+      "\n" +
+      "/sdcard/dir/sub:\n" +
+      "total 4\n" +
+      "drwxrwx--x 2 root sdcard_rw 4096 2018-01-10 15:00 .\n" +
+      "drwxr-xr-x 3 root root      4096 2016-08-26 12:12 ..\n" +
+      "-rw-rw---- 1 root sdcard_rw   20 2018-01-10 15:01 b.txt");
+
+    addCommand(commands, "touch /data/local/tmp/oyX2HCKL\\ acuauQGJ", "");
+    addCommand(commands, "ls /data/local/tmp/oyX2HCKL\\ acuauQGJ", "/data/local/tmp/oyX2HCKL acuauQGJ");
+    addCommand(commands, "rm /data/local/tmp/oyX2HCKL\\ acuauQGJ", "");
+  }
+
   private static void addCommand(@NotNull TestShellCommands commands, @NotNull String command, @NotNull String result) {
     commands.add(command + COMMAND_ERROR_CHECK_SUFFIX, result);
   }
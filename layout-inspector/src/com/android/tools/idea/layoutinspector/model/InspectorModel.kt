@@ -110,6 +110,9 @@ class InspectorModel(
 
   private val idLookup = ConcurrentHashMap<Long, ViewNode>()
 
+  /** The max recomposition values of the nodes in each window, combined into [maxRecomposition] */
+  private val windowRecompositions = mutableMapOf<Any, RecompositionData>()
+
   private data class Selection(val selection: ViewNode?, val origin: SelectionOrigin)
 
   private var lastSelection: Selection? = null
@@ -286,6 +289,7 @@ class InspectorModel(
 
   private fun resetRecompositionCounters() {
     maxRecomposition.reset()
+    windowRecompositions.values.forEach { it.reset() }
     maxHighlight = 0f
     updateAll { node -> (node as? ComposeViewNode)?.resetRecomposeCounts() }
   }
@@ -314,8 +318,11 @@ class InspectorModel(
       // Reset the recomposition counters if this is a new connection:
       resetRecompositionCounters()
     }
-    var structuralChange: Boolean = windows.keys.retainAll(allIds)
+    val windowsRemoved = windows.keys.retainAll(allIds)
+    var structuralChange: Boolean = windowsRemoved
     val oldWindow = if (newWindow != null) windows[newWindow.id] else null
+    var updater: Updater? = null
+    var boundsCalculated = false
     updating = true
     try {
       ViewNode.writeAccess {
@@ -340,8 +347,9 @@ class InspectorModel(
             }
           } else {
             oldWindow.copyFrom(newWindow)
-            val updater = Updater(oldWindow.root, newWindow.root, this)
-            structuralChange = updater.update() || structuralChange
+            val windowUpdater = Updater(oldWindow.root, newWindow.root, this)
+            updater = windowUpdater
+            structuralChange = windowUpdater.update() || structuralChange
           }
         }
 
@@ -353,11 +361,15 @@ class InspectorModel(
           hoveredNode = null
         }
         lastGeneration = generation
-        idLookup.clear()
-        val allNodes = root.flatten().toSet()
-        hiddenNodes.removeIf { !allNodes.contains(it) }
+        val windowUpdater = updater
+        if (windowUpdater != null && newWindow != null && !windowsRemoved) {
+          applyChanges(newWindow.id, windowUpdater)
+        } else {
+          recalculateAll()
+        }
+        boundsCalculated = true
         maxRecomposition.reset()
-        root.flatten().forEach { maxRecomposition.maxOf(it) }
+        windowRecompositions.values.forEach { maxRecomposition.maxOf(it) }
         if (scheduler != null && maxHighlight < maxRecomposition.highlightCount) {
           if (maxHighlight == 0f) {
             scheduler.schedule(::decreaseHighlights, DECREASE_DELAY, DECREASE_TIMEUNIT)
@@ -365,7 +377,9 @@ class InspectorModel(
           maxHighlight = maxRecomposition.highlightCount
         }
       }
-      root.calculateTransitiveBounds()
+      if (!boundsCalculated) {
+        root.calculateTransitiveBounds()
+      }
     } finally {
       updating = false
     }
@@ -375,6 +389,37 @@ class InspectorModel(
     modificationListeners.forEach { it.onModification(oldWindow, window, structuralChange) }
   }
 
+  /**
+   * Update the lookup tables and bounds from the nodes the [updater] added and removed, rather than
+   * from the whole tree. The [updater] already recalculated the bounds and recomposition counts of
+   * the window it updated.
+   */
+  private fun ViewNode.WriteAccess.applyChanges(windowId: Any, updater: Updater) {
+    if (idLookup.isNotEmpty()) {
+      updater.removed.forEach { idLookup.remove(it.drawId, it) }
+      updater.added.forEach { idLookup[it.drawId] = it }
+    }
+    if (hiddenNodes.isNotEmpty()) {
+      updater.removed.forEach { hiddenNodes.remove(it) }
+    }
+    windowRecompositions[windowId] = updater.recompositions
+    root.updateTransitiveBounds()
+  }
+
+  /** Update the lookup tables and bounds after the set of windows changed. */
+  private fun ViewNode.WriteAccess.recalculateAll() {
+    idLookup.clear()
+    val allNodes = root.flatten().toSet()
+    hiddenNodes.removeIf { !allNodes.contains(it) }
+    windowRecompositions.clear()
+    windows.forEach { (id, window) ->
+      val recompositions = RecompositionData(0, 0)
+      window.root.flatten().forEach { recompositions.maxOf(it) }
+      windowRecompositions[id] = recompositions
+    }
+    root.calculateTransitiveBounds()
+  }
+
   fun addSelectionListener(listener: SelectionListener) {
     lastSelection?.let { listener.onSelection(it.selection, it.selection, it.origin) }
     selectionListeners.add(listener)
@@ -422,7 +467,19 @@ class InspectorModel(
 
   private fun decreaseHighlights() {
     ViewNode.writeAccess {
-      val max = root.flatten().maxOfOrNull { it.recompositions.decreaseHighlights() } ?: 0f
+      // Recompute the maxima of each window from the decayed counts, so the next update combines
+      // current values into maxRecomposition
+      maxRecomposition.reset()
+      windows.forEach { (id, window) ->
+        val recompositions = RecompositionData(0, 0)
+        window.root.flatten().forEach { node ->
+          node.recompositions.decreaseHighlights()
+          recompositions.maxOf(node)
+        }
+        windowRecompositions[id] = recompositions
+        maxRecomposition.maxOf(recompositions)
+      }
+      val max = maxRecomposition.highlightCount
       if (max != 0f) {
         scheduler?.schedule(::decreaseHighlights, DECREASE_DELAY, DECREASE_TIMEUNIT)
       } else {
@@ -500,15 +557,36 @@ class InspectorModel(
     private val newRoot: ViewNode,
     private val access: ViewNode.WriteAccess,
   ) {
-    private val oldNodes =
+    private val oldNodes = mutableMapOf<Long, ViewNode>()
+    // Nodes without a drawId are never matched with a new node
+    private val oldNodesWithoutId = mutableListOf<ViewNode>()
+
+    init {
       access.run {
-        oldRoot.flatten().filter { it.drawId != 0L }.associateByTo(mutableMapOf()) { it.drawId }
+        oldRoot.flatten().forEach {
+          when {
+            it.drawId != 0L -> oldNodes[it.drawId] = it
+            it !== oldRoot -> oldNodesWithoutId.add(it)
+          }
+        }
       }
+    }
+
+    /** The nodes from the new tree that were added to the old tree, including their subtrees */
+    val added = mutableListOf<ViewNode>()
+
+    /** The nodes of the old tree that are no longer in the tree after [update] */
+    val removed = mutableListOf<ViewNode>()
+
+    /** The max recomposition values of all the nodes in the tree after [update] */
+    val recompositions = RecompositionData(0, 0)
 
     fun update(): Boolean {
       return access.run {
         val modified = update(oldRoot, oldRoot.parent, newRoot)
         oldNodes.values.forEach { it.parent = null }
+        oldNodes.values.filterTo(removed) { it !== oldRoot }
+        removed.addAll(oldNodesWithoutId)
         modified
       }
     }
@@ -555,8 +633,16 @@ class InspectorModel(
           modified = true
           oldNode.children.add(newChild)
           newChild.parent = oldNode
+          // Post-order, so the children bounds are calculated before the bounds of their parent
+          newChild.flattenedList().forEach {
+            it.updateTransitiveBounds()
+            recompositions.maxOf(it)
+            added.add(it)
+          }
         }
       }
+      oldNode.updateTransitiveBounds()
+      recompositions.maxOf(oldNode)
       return modified
     }
 
@@ -220,15 +220,21 @@ open class ViewNode(
    * once after the ViewNode tree is built.
    */
   fun calculateTransitiveBounds() {
-    readAccess {
-      flatten().forEach {
-        it.transitiveBounds =
-          it.children.map(ViewNode::transitiveBounds).plus(it.renderBounds.bounds).reduce { r1, r2
-            ->
-            r1.union(r2)
-          }
-      }
-    }
+    readAccess { flatten().forEach { it.computeTransitiveBounds() } }
+  }
+
+  /**
+   * Calculate the transitive bounds of this node only, assuming the transitive bounds of its
+   * children are up to date. Used to update the bounds of the nodes that changed instead of the
+   * whole tree.
+   */
+  fun updateTransitiveBounds() {
+    readAccess { computeTransitiveBounds() }
+  }
+
+  private fun computeTransitiveBounds() {
+    transitiveBounds =
+      children.fold(renderBounds.bounds) { bounds, child -> bounds.union(child.transitiveBounds) }
   }
 
   /**
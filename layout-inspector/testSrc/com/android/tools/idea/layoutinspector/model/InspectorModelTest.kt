@@ -35,6 +35,7 @@ import com.google.common.util.concurrent.MoreExecutors
 import com.google.wireless.android.sdk.stats.DynamicLayoutInspectorErrorInfo
 import com.intellij.testFramework.ApplicationRule
 import com.intellij.testFramework.DisposableRule
+import java.awt.Rectangle
 import java.util.concurrent.CountDownLatch
 import java.util.concurrent.TimeUnit
 import kotlin.test.fail
@@ -222,6 +223,39 @@ class InspectorModelTest {
     assertSingleRoot(model, FakeTreeSettings())
   }
 
+  @Test
+  fun testUpdateMaintainsLookupsIncrementally() {
+    val model =
+      model(disposable) {
+        view(ROOT, 0, 0, 100, 200, qualifiedName = "rootType") {
+          view(VIEW1, 0, 0, 50, 50, qualifiedName = "v1Type") {
+            view(VIEW3, 10, 10, 20, 20, qualifiedName = "v3Type")
+          }
+          view(VIEW2, 50, 50, 50, 50, qualifiedName = "v2Type")
+        }
+      }
+    val oldView3 = model[VIEW3]!!
+    model.hideSubtree(model[VIEW1]!!)
+
+    val newWindow =
+      window(ROOT, ROOT, 0, 0, 100, 200, rootViewQualifiedName = "rootType") {
+        view(VIEW1, 0, 0, 50, 50, qualifiedName = "v1Type")
+        view(VIEW2, 50, 50, 300, 50, qualifiedName = "v2Type") {
+          view(VIEW4, 60, 60, 10, 400, qualifiedName = "v4Type")
+        }
+      }
+    model.update(newWindow, listOf(ROOT), 1)
+
+    assertThat(model[VIEW3]).isNull()
+    assertThat(model[VIEW4]?.qualifiedName).isEqualTo("v4Type")
+    assertThat(model.isVisible(model[VIEW1]!!)).isFalse()
+    assertThat(model.isVisible(oldView3)).isTrue()
+    assertThat(model.root.transitiveBounds).isEqualTo(Rectangle(0, 0, 350, 460))
+    val bounds = model.root.flattenedList().associateWith { it.transitiveBounds }
+    model.root.calculateTransitiveBounds()
+    model.root.flattenedList().forEach { assertThat(it.transitiveBounds).isEqualTo(bounds[it]) }
+  }
+
   @Test
   fun testWindows() {
     val model = InspectorModel(mock(), AndroidCoroutineScope(disposable))
@@ -493,6 +527,32 @@ class InspectorModelTest {
     assertThat(compose2.recompositions.highlightCount).isEqualTo(0f)
   }
 
+  @Test
+  fun testMaxRecompositionFollowsDecreasedHighlights() {
+    val virtualTimeScheduler = VirtualTimeScheduler()
+    val scheduler = MoreExecutors.listeningDecorator(virtualTimeScheduler)
+
+    val model =
+      model(disposable, scheduler = scheduler) {
+        view(ROOT, 2, 4, 6, 8, qualifiedName = "rootType") {
+          compose(COMPOSE1, "Button", "button.kt", 123, composeCount = 0, composeSkips = 0)
+        }
+      }
+    val window1 =
+      window(ROOT, ROOT, 2, 4, 6, 8, rootViewQualifiedName = "rootType") {
+        compose(COMPOSE1, "Button", "button.kt", 123, composeCount = 4, composeSkips = 0)
+      }
+    model.update(window1, listOf(ROOT), 0)
+    assertThat(model.maxRecomposition.highlightCount).isEqualTo(4.0f)
+
+    virtualTimeScheduler.advanceBy(DECREASE_DELAY, DECREASE_TIMEUNIT)
+    assertThat(model.maxRecomposition.highlightCount).isWithin(0.01f).of(3.36f)
+
+    // An update without new recompositions combines the decreased counts, not the earlier ones
+    model.update(window1, listOf(ROOT), 1)
+    assertThat(model.maxRecomposition.highlightCount).isWithin(0.01f).of(3.36f)
+  }
+
   @Test
   fun testHighlightCountDownDoNotStop() {
     val virtualTimeScheduler = VirtualTimeScheduler()
@@ -17,15 +17,20 @@ package com.android.tools.idea.lint.common;
 
 import com.android.annotations.NonNull;
 import com.android.ide.common.blame.SourcePosition;
+import com.android.tools.idea.flags.StudioFlags;
 import com.android.utils.PositionXmlParser;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.XmlRecursiveElementVisitor;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.xml.XmlAttribute;
 import com.intellij.psi.xml.XmlAttributeValue;
@@ -71,8 +76,15 @@ import org.w3c.dom.UserDataHandler;
  * converter only attempts to make the DOM correct as far as Lint cares (meaning that it
  * only worries about the details Lint cares about; currently this means it only wraps elements,
  * text and comment nodes.)
+ * <p>
+ * The DOM nodes are created lazily, the first time lint visits them, and the DOM tree of a
+ * file is cached until the file changes, so that lint passes over an unchanged layout or
+ * manifest do not wrap the PSI tree again. Since the nodes are created lazily, a DOM tree
+ * may be shared by several lint threads.
  */
 public class DomPsiConverter {
+  private static final Key<CachedValue<Document>> CACHED_DOCUMENT = Key.create("DomPsiConverter.document");
+
   private DomPsiConverter() {
   }
 
@@ -85,12 +97,12 @@ public class DomPsiConverter {
   @Nullable
   public static Document convert(@NotNull XmlFile xmlFile) {
     try {
-      XmlDocument xmlDocument = xmlFile.getDocument();
-      if (xmlDocument == null) {
-        return null;
+      if (StudioFlags.LINT_CACHED_XML_DOM.get()) {
+        // Depending on the file invalidates the tree whenever the file's modification stamp changes
+        return CachedValuesManager.getManager(xmlFile.getProject()).getCachedValue(
+          xmlFile, CACHED_DOCUMENT, () -> CachedValueProvider.Result.create(convertDocument(xmlFile), xmlFile), false);
       }
-
-      return convert(xmlDocument, xmlFile);
+      return convertDocument(xmlFile);
     }
     catch (ProcessCanceledException e) {
       // Ignore: common occurrence, e.g. we're running lint as part of an editor background
@@ -109,6 +121,16 @@ public class DomPsiConverter {
     }
   }
 
+  @Nullable
+  private static Document convertDocument(@NotNull XmlFile xmlFile) {
+    XmlDocument xmlDocument = xmlFile.getDocument();
+    if (xmlDocument == null) {
+      return null;
+    }
+
+    return convert(xmlDocument, xmlFile);
+  }
+
   /**
    * Convert the given {@link XmlDocument} to a DOM tree
    *
@@ -494,7 +516,8 @@ public class DomPsiConverter {
     @Nullable protected final Document myOwner;
     @Nullable protected final DomNode myParent;
     @NotNull protected final XmlElement myElement;
-    @Nullable protected DomNodeList myChildren;
+    /** The child nodes, created on first access. Only assigned once fully populated, since trees are shared. */
+    @Nullable protected volatile DomNodeList myChildren;
     @Nullable protected DomNode myNext;
     @Nullable protected DomNode myPrevious;
 
@@ -513,35 +536,48 @@ public class DomPsiConverter {
     @NotNull
     @Override
     public DomNodeList getChildNodes() {
-      if (myChildren == null) {
-        PsiElement[] children = myElement.getChildren();
-        if (children.length > 0) {
-          DomNodeList list = new DomNodeList();
-          myChildren = list;
-          // True except for in DomDocument, which has custom getChildNodes
-          assert myOwner != null;
-
-          for (PsiElement child : children) {
-            if (child instanceof XmlTag) {
-              list.add(new DomElement(myOwner, this, (XmlTag)child), true);
-            }
-            else if (child instanceof XmlText) {
-              list.add(new DomText(myOwner, this, (XmlText)child), true);
-            }
-            else if (child instanceof XmlComment) {
-              list.add(new DomComment(myOwner, this, (XmlComment)child), true);
-            }
-            else {
-              // Skipping other types for now; lint doesn't care about them.
-              // TODO: Consider whether we need CDATA.
-            }
+      DomNodeList children = myChildren;
+      if (children == null) {
+        // Several threads may visit the same cached tree; make sure they all see the same nodes
+        synchronized (this) {
+          children = myChildren;
+          if (children == null) {
+            children = createChildNodes();
+            myChildren = children;
           }
         }
+      }
+      return children;
+    }
+
+    @NotNull
+    protected DomNodeList createChildNodes() {
+      // Walk the siblings rather than calling getChildren(), which allocates an array of
+      // all the PSI children including the attributes and whitespace tokens
+      PsiElement child = myElement.getFirstChild();
+      if (child == null) {
+        return EMPTY;
+      }
+      DomNodeList list = new DomNodeList();
+      // True except for in DomDocument, which has custom createChildNodes
+      assert myOwner != null;
+
+      for (; child != null; child = child.getNextSibling()) {
+        if (child instanceof XmlTag) {
+          list.add(new DomElement(myOwner, this, (XmlTag)child), true);
+        }
+        else if (child instanceof XmlText) {
+          list.add(new DomText(myOwner, this, (XmlText)child), true);
+        }
+        else if (child instanceof XmlComment) {
+          list.add(new DomComment(myOwner, this, (XmlComment)child), true);
+        }
         else {
-          myChildren = EMPTY;
+          // Skipping other types for now; lint doesn't care about them.
+          // TODO: Consider whether we need CDATA.
         }
       }
-      return myChildren;
+      return list.getLength() > 0 ? list : EMPTY;
     }
 
     @Nullable
@@ -770,7 +806,7 @@ public class DomPsiConverter {
   private static class DomDocument extends DomNode implements Document {
     @NotNull private final XmlDocument myPsiDocument;
     private final XmlFile myFile;
-    @Nullable private DomElement myRoot;
+    @Nullable private DomElement myRoot; // Guarded by this
 
     private DomDocument(@NotNull XmlDocument document, @NotNull XmlFile file) {
       super(null, null, document);
@@ -810,36 +846,33 @@ public class DomPsiConverter {
 
     @NotNull
     @Override
-    public DomNodeList getChildNodes() {
-      if (myChildren == null) {
-        DomNodeList list = new DomNodeList();
-        myChildren = list;
-        // Include siblings as well such as the root comment
-        PsiElement element = myPsiDocument.getFirstChild();
-        while (element != null) {
-          if (element instanceof XmlTag) {
-            if (myRoot != null && myRoot.myTag == element) {
-              list.add(myRoot, true);
-            } else {
-              DomElement node = new DomElement(this, this, (XmlTag)element);
-              if (myRoot == null) {
-                myRoot = node;
-              }
-              list.add(node, true);
+    protected synchronized DomNodeList createChildNodes() {
+      DomNodeList list = new DomNodeList();
+      // Include siblings as well such as the root comment
+      PsiElement element = myPsiDocument.getFirstChild();
+      while (element != null) {
+        if (element instanceof XmlTag) {
+          if (myRoot != null && myRoot.myTag == element) {
+            list.add(myRoot, true);
+          } else {
+            DomElement node = new DomElement(this, this, (XmlTag)element);
+            if (myRoot == null) {
+              myRoot = node;
             }
-          } else if (element instanceof XmlComment) {
-            DomNode node = new DomComment(this, this, (XmlComment)element);
-            list.add(node, true);
-          } else if (element instanceof XmlText) {
-            // This is not valid XML but PSI may represent erroneous XML being edited
-            DomNode node = new DomText(this, this, (XmlText)element);
             list.add(node, true);
           }
-          element = element.getNextSibling();
+        } else if (element instanceof XmlComment) {
+          DomNode node = new DomComment(this, this, (XmlComment)element);
+          list.add(node, true);
+        } else if (element instanceof XmlText) {
+          // This is not valid XML but PSI may represent erroneous XML being edited
+          DomNode node = new DomText(this, this, (XmlText)element);
+          list.add(node, true);
         }
+        element = element.getNextSibling();
       }
 
-      return myChildren;
+      return list;
     }
 
     @Nullable
@@ -872,7 +905,7 @@ public class DomPsiConverter {
 
     @Nullable
     @Override
-    public Element getDocumentElement() {
+    public synchronized Element getDocumentElement() {
       if (myRoot == null) {
         XmlTag rootTag = myPsiDocument.getRootTag();
         if (rootTag == null) {
@@ -1051,7 +1084,7 @@ public class DomPsiConverter {
 
   private static class DomElement extends DomNode implements Element {
     private final XmlTag myTag;
-    @Nullable private NamedNodeMap myAttributes;
+    @Nullable private volatile NamedNodeMap myAttributes;
 
     private static class NodeWithIndex {
       public Node node;
@@ -1101,12 +1134,18 @@ public class DomPsiConverter {
     @NotNull
     @Override
     public NamedNodeMap getAttributes() {
+      NamedNodeMap attributes = myAttributes;
+      if (attributes != null) {
+        return attributes;
+      }
       return ApplicationManager.getApplication().runReadAction((Computable<NamedNodeMap>)() -> {
-        if (myAttributes == null) {
-          XmlAttribute[] attributes = myTag.getAttributes();
-          myAttributes = attributes.length == 0 ? EMPTY_ATTRIBUTES : new DomNamedNodeMap(this, attributes);
+        synchronized (this) {
+          if (myAttributes == null) {
+            XmlAttribute[] xmlAttributes = myTag.getAttributes();
+            myAttributes = xmlAttributes.length == 0 ? EMPTY_ATTRIBUTES : new DomNamedNodeMap(this, xmlAttributes);
+          }
+          return myAttributes;
         }
-        return myAttributes;
       });
     }
 
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.lint.common
+
+import com.android.tools.lint.detector.api.Scope
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.module.Module
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.util.Disposer
+import com.intellij.openapi.util.Key
+import java.util.EnumSet
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/** Detectors slower than this in a single pass are logged. */
+private val SLOW_DETECTOR_NANOS = TimeUnit.MILLISECONDS.toNanos(200)
+
+/**
+ * Debugging aid that records how long each lint detector takes on the files of a module.
+ *
+ * A lint driver runs all detectors together, so the detectors are timed by running them again one
+ * at a time, with a driver each, after the regular editor pass. This makes passes much slower and
+ * is only done when [com.android.tools.idea.flags.StudioFlags.LINT_EDITOR_DETECTOR_TIMING] is set.
+ */
+class LintDetectorTiming private constructor() {
+  /** Total time spent in a detector and the number of passes it ran in. */
+  data class DetectorTiming(val detector: String, val totalNanos: Long, val passes: Int)
+
+  private val detectorTimings = ConcurrentHashMap<String, DetectorTiming>()
+
+  /**
+   * Runs the detectors of the issues in [lintResult] that apply to [scope] one at a time and
+   * records how long each one takes. The problems they find are discarded.
+   */
+  fun timeDetectors(lintResult: LintEditorResult, scope: EnumSet<Scope>) {
+    val module = lintResult.getModule()
+    val issuesByDetector =
+      lintResult
+        .getIssues()
+        .filter { it.implementation.isAdequate(scope) }
+        .groupBy { it.implementation.detectorClass }
+    for ((detectorClass, issues) in issuesByDetector) {
+      ProgressManager.checkCanceled()
+      val detectorResult =
+        LintEditorResult(module, lintResult.mainFile, lintResult.mainFileContent, issues.toSet())
+      val client = LintIdeSupport.get().createEditorClient(detectorResult)
+      try {
+        val request =
+          LintIdeRequest(client, module.project, listOf(lintResult.mainFile), listOf(module), true)
+        request.setScope(scope)
+        val startTime = System.nanoTime()
+        client.createDriver(request).analyze()
+        recordDetectorTime(detectorClass.simpleName, System.nanoTime() - startTime)
+      } finally {
+        Disposer.dispose(client)
+      }
+    }
+  }
+
+  /** Records that [detector] took [nanos] in one pass. */
+  fun recordDetectorTime(detector: String, nanos: Long) {
+    detectorTimings.merge(detector, DetectorTiming(detector, nanos, 1)) { old, new ->
+      DetectorTiming(detector, old.totalNanos + new.totalNanos, old.passes + 1)
+    }
+    if (nanos > SLOW_DETECTOR_NANOS) {
+      LOG.info("Lint detector $detector took ${TimeUnit.NANOSECONDS.toMillis(nanos)}ms")
+    }
+  }
+
+  /** Returns the time recorded for each detector, slowest first. */
+  fun getDetectorTimings(): List<DetectorTiming> =
+    detectorTimings.values.sortedByDescending { it.totalNanos }
+
+  companion object {
+    private val LOG = Logger.getInstance(LintDetectorTiming::class.java)
+
+    private val KEY = Key.create<LintDetectorTiming>("LintDetectorTiming")
+
+    @JvmStatic
+    fun getInstance(module: Module): LintDetectorTiming =
+      module.getUserData(KEY) ?: module.putUserDataIfAbsent(KEY, LintDetectorTiming())
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.lint.common
+
+import com.android.tools.lint.detector.api.DefaultPosition
+import com.android.tools.lint.detector.api.Incident
+import com.android.tools.lint.detector.api.Issue
+import com.android.tools.lint.detector.api.LintFix
+import com.android.tools.lint.detector.api.Location
+import com.android.tools.lint.detector.api.Position
+import com.android.tools.lint.detector.api.Severity
+import com.google.common.annotations.VisibleForTesting
+import com.intellij.openapi.module.Module
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ProjectRootModificationTracker
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.TextRange
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.util.PsiModificationTracker
+import java.io.File
+
+/** Number of files whose last editor pass is remembered, per module. */
+private const val MAX_REMEMBERED_FILES = 20
+
+/**
+ * Long-lived state shared by the [LintExternalAnnotator] passes over the files of a module.
+ *
+ * Each pass creates a new [com.android.tools.lint.client.api.LintDriver], which creates its own
+ * detectors, so lint state cannot be kept from one pass to the next. Instead the session remembers
+ * the problems found by the last pass over each file and returns them when the next pass has the
+ * same content, the same enabled issues, and nothing else changed in the project since. This is
+ * common when the daemon restarts highlighting without any edit, for instance when switching
+ * editors or after a settings change.
+ *
+ * Problems are remembered as plain values rather than as [LintProblemData], whose [Incident] can
+ * reference the PSI and UAST of the pass, and passes are dropped as soon as the project changes.
+ */
+class LintEditorSession private constructor() {
+  private class Pass(
+    val content: String,
+    val issues: Set<Issue>,
+    val modificationStamp: Long,
+    val problems: List<Problem>,
+  )
+
+  /** The parts of a [LintProblemData] needed to report it again. */
+  private class Problem(
+    val issue: Issue,
+    val message: String,
+    val startOffset: Int,
+    val endOffset: Int,
+    val configuredSeverity: Severity?,
+    val fix: LintFix?,
+    val file: File,
+    val start: Position,
+    val end: Position,
+    val severity: Severity,
+  ) {
+    fun toProblemData(): LintProblemData {
+      val incident =
+        Incident().location(Location.create(file, start, end)).also {
+          it.issue = issue
+          it.message = message
+          it.fix = fix
+          it.severity = severity
+        }
+      return LintProblemData(
+        incident,
+        issue,
+        message,
+        TextRange(startOffset, endOffset),
+        configuredSeverity,
+        fix,
+      )
+    }
+
+    companion object {
+      fun of(data: LintProblemData): Problem {
+        val location = data.incident.location
+        return Problem(
+          data.issue,
+          data.message,
+          data.textRange.startOffset,
+          data.textRange.endOffset,
+          data.configuredSeverity,
+          data.quickfixData,
+          location.file,
+          location.start.copyPosition(),
+          (location.end ?: location.start).copyPosition(),
+          data.incident.severity,
+        )
+      }
+
+      private fun Position?.copyPosition() =
+        if (this == null) DefaultPosition(-1, -1, -1) else DefaultPosition(line, column, offset)
+    }
+  }
+
+  private val lastPasses =
+    object : LinkedHashMap<VirtualFile, Pass>(MAX_REMEMBERED_FILES, 0.75f, true) {
+      override fun removeEldestEntry(eldest: MutableMap.MutableEntry<VirtualFile, Pass>) =
+        size > MAX_REMEMBERED_FILES
+    }
+
+  /**
+   * Returns the problems found by the last pass over the file of [result] if they are still
+   * valid, or null if lint needs to run again.
+   */
+  fun getReusableProblems(result: LintEditorResult): List<LintProblemData>? {
+    if (result.modificationStamp < 0) {
+      return null
+    }
+    val pass =
+      synchronized(lastPasses) {
+        dropStalePasses(result.modificationStamp)
+        lastPasses[result.mainFile]
+      } ?: return null
+    if (
+      pass.modificationStamp != result.modificationStamp ||
+        pass.issues != result.getIssues() ||
+        pass.content != result.mainFileContent
+    ) {
+      return null
+    }
+    return pass.problems.map { it.toProblemData() }
+  }
+
+  /** Remembers the problems found by a completed pass. */
+  fun recordPass(result: LintEditorResult) {
+    if (result.modificationStamp < 0 || result.isDirty) {
+      return
+    }
+    val pass =
+      Pass(
+        result.mainFileContent,
+        result.getIssues(),
+        result.modificationStamp,
+        result.problems.map(Problem::of),
+      )
+    synchronized(lastPasses) {
+      dropStalePasses(result.modificationStamp)
+      lastPasses[result.mainFile] = pass
+    }
+  }
+
+  @VisibleForTesting
+  fun rememberedFileCount(): Int = synchronized(lastPasses) { lastPasses.size }
+
+  /** Drops the passes from before [modificationStamp], which can never be reused. */
+  private fun dropStalePasses(modificationStamp: Long) {
+    lastPasses.values.removeIf { it.modificationStamp < modificationStamp }
+  }
+
+  companion object {
+    private val KEY = Key.create<LintEditorSession>("LintEditorSession")
+
+    @JvmStatic
+    fun getInstance(module: Module): LintEditorSession =
+      module.getUserData(KEY) ?: module.putUserDataIfAbsent(KEY, LintEditorSession())
+
+    /**
+     * Returns a stamp that changes whenever the PSI or the project structure changes, which
+     * invalidates the results of earlier passes. Must be called in a read action.
+     */
+    @JvmStatic
+    fun modificationStamp(project: Project): Long =
+      PsiModificationTracker.getInstance(project).modificationCount +
+        ProjectRootModificationTracker.getInstance(project).modificationCount
+  }
+}
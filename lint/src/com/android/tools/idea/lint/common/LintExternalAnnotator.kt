@@ -22,6 +22,7 @@ import com.android.SdkConstants.EXT_GRADLE_DECLARATIVE
 import com.android.SdkConstants.FN_ANDROID_PROGUARD_FILE
 import com.android.SdkConstants.FN_PROJECT_PROGUARD_FILE
 import com.android.SdkConstants.OLD_PROGUARD_FILE
+import com.android.tools.idea.flags.StudioFlags
 import com.android.tools.lint.checks.DeprecatedSinceApiDetector
 import com.android.tools.lint.checks.DeprecationDetector
 import com.android.tools.lint.checks.DiscouragedDetector
@@ -169,7 +170,13 @@ class LintExternalAnnotator : ExternalAnnotator<LintEditorResult, LintEditorResu
       return null
     }
     val issues = getIssuesFromInspections(file.project, file)
-    return LintEditorResult(module, vFile, file.text, issues)
+    return LintEditorResult(
+      module,
+      vFile,
+      file.text,
+      issues,
+      LintEditorSession.modificationStamp(file.project),
+    )
   }
 
   override fun doAnnotate(lintResult: LintEditorResult?): LintEditorResult? {
@@ -223,6 +230,14 @@ class LintExternalAnnotator : ExternalAnnotator<LintEditorResult, LintEditorResu
       if (DumbService.isDumb(project)) {
         return lintResult // Lint cannot run without indices.
       }
+      val session =
+        if (StudioFlags.LINT_EDITOR_SESSION.get()) LintEditorSession.getInstance(lintResult.getModule())
+        else null
+      val problems = session?.getReusableProblems(lintResult)
+      if (problems != null) {
+        lintResult.problems.addAll(problems)
+        return lintResult
+      }
       val files = listOf(mainFile)
       val request: LintRequest =
         LintIdeRequest(
@@ -237,6 +252,10 @@ class LintExternalAnnotator : ExternalAnnotator<LintEditorResult, LintEditorResu
       lint.analyze()
       lint.analysisStartTime = startTime
       LintIdeSupport.get().logSession(lint, lintResult)
+      session?.recordPass(lintResult)
+      if (StudioFlags.LINT_EDITOR_DETECTOR_TIMING.get()) {
+        LintDetectorTiming.getInstance(lintResult.getModule()).timeDetectors(lintResult, scope)
+      }
     } finally {
       Disposer.dispose(client)
     }
@@ -54,8 +54,10 @@ constructor(
   val mainFile: VirtualFile,
   val mainFileContent: String,
   private val myIssues: Set<Issue>,
+  /** The [LintEditorSession.modificationStamp] when the content was read, or -1 if unknown. */
+  val modificationStamp: Long = -1,
 ) : LintResult() {
-  val problems: List<LintProblemData> = ArrayList()
+  val problems: MutableList<LintProblemData> = ArrayList()
 
   @Volatile
   var isDirty = false
@@ -25,10 +25,12 @@ import com.android.utils.PositionXmlParser;
 import com.android.utils.XmlUtils;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.xml.XmlFile;
+import com.intellij.psi.xml.XmlTag;
 import com.intellij.testFramework.UsefulTestCase;
 import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
 import com.intellij.testFramework.fixtures.IdeaTestFixtureFactory;
@@ -36,6 +38,7 @@ import com.intellij.testFramework.fixtures.JavaCodeInsightTestFixture;
 import com.intellij.testFramework.fixtures.JavaTestFixtureFactory;
 import com.intellij.testFramework.fixtures.TestFixtureBuilder;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 import org.w3c.dom.Attr;
@@ -396,4 +399,66 @@ public class DomPsiConverterTest extends UsefulTestCase {
     assertEquals(Node.COMMENT_NODE, comment.getNodeType());
     assertEquals(" my comment ", comment.getNodeValue());
   }
+
+  public void testCachedUntilFileChanges() {
+    XmlFile xmlFile = (XmlFile)myFixture.configureByText("AndroidManifest.xml", MANIFEST);
+    Document domDocument = DomPsiConverter.convert(xmlFile);
+    assertNotNull(domDocument);
+    assertSame(domDocument, DomPsiConverter.convert(xmlFile));
+
+    XmlTag application = xmlFile.getRootTag().findFirstSubTag("application");
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> application.setAttribute("icon", ANDROID_URI, "@drawable/other"));
+
+    Document updated = DomPsiConverter.convert(xmlFile);
+    assertNotNull(updated);
+    assertNotSame(domDocument, updated);
+    Node icon = updated.getElementsByTagName("application").item(0).getAttributes().getNamedItemNS(ANDROID_URI, "icon");
+    assertEquals("@drawable/other", icon.getNodeValue());
+  }
+
+  public void testLargeLayoutSharedByThreads() throws InterruptedException {
+    StringBuilder xml = new StringBuilder();
+    xml.append("<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n")
+      .append("    android:layout_width=\"match_parent\"\n")
+      .append("    android:layout_height=\"match_parent\">\n");
+    for (int i = 0; i < 500; i++) {
+      xml.append("    <!-- item ").append(i).append(" -->\n")
+        .append("    <FrameLayout android:id=\"@+id/frame").append(i).append("\">\n")
+        .append("        <TextView android:id=\"@+id/text").append(i).append("\" android:text=\"Text ").append(i).append("\" />\n")
+        .append("    </FrameLayout>\n");
+    }
+    xml.append("</LinearLayout>\n");
+    XmlFile xmlFile = (XmlFile)myFixture.configureByText("large_layout.xml", xml.toString());
+    Document domDocument = DomPsiConverter.convert(xmlFile);
+    assertNotNull(domDocument);
+
+    // Compare to plain DOM implementation pretty printed
+    @SuppressWarnings("ConstantConditions")
+    String expected = XmlPrettyPrinter.prettyPrint(XmlUtils.parseDocumentSilently(xmlFile.getText(), true), true);
+
+    // The nodes are created lazily while the threads iterate over the shared tree
+    List<Thread> threads = new ArrayList<>();
+    List<String> formatted = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread thread = new Thread(() -> {
+        String result = ReadAction.compute(() -> XmlPrettyPrinter.prettyPrint(domDocument, true));
+        synchronized (formatted) {
+          formatted.add(result);
+        }
+      }, "dom psi " + i);
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(4, formatted.size());
+    for (String result : formatted) {
+      assertEquals(expected, result);
+    }
+    NodeList textViews = domDocument.getElementsByTagName("TextView");
+    assertEquals(500, textViews.getLength());
+    assertSame(textViews.item(499), domDocument.getElementsByTagName("TextView").item(499));
+  }
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.lint.common
+
+import com.android.tools.lint.checks.DeprecationDetector
+import com.android.tools.lint.checks.WrongIdDetector
+import com.android.tools.lint.detector.api.DefaultPosition
+import com.android.tools.lint.detector.api.Incident
+import com.android.tools.lint.detector.api.Issue
+import com.android.tools.lint.detector.api.Location
+import com.google.common.truth.Truth.assertThat
+import com.intellij.openapi.application.runReadAction
+import com.intellij.openapi.util.TextRange
+import com.intellij.openapi.vfs.VfsUtilCore
+import org.jetbrains.android.JavaCodeInsightFixtureAdtTestCase
+
+class LintEditorSessionTest : JavaCodeInsightFixtureAdtTestCase() {
+  private val content = "class Test {}"
+
+  private fun createResult(
+    content: String = this.content,
+    issues: Set<Issue> = setOf(DeprecationDetector.ISSUE),
+  ): LintEditorResult {
+    val file = myFixture.addFileToProject("src/Test.java", this.content).virtualFile
+    return LintEditorResult(
+      myFixture.module,
+      file,
+      content,
+      issues,
+      runReadAction { LintEditorSession.modificationStamp(project) },
+    )
+  }
+
+  fun testReusesProblemsWhenNothingChanged() {
+    val session = LintEditorSession.getInstance(myFixture.module)
+    assertThat(LintEditorSession.getInstance(myFixture.module)).isSameAs(session)
+
+    val result = createResult()
+    assertThat(session.getReusableProblems(result)).isNull()
+    session.recordPass(result)
+
+    val nextResult =
+      LintEditorResult(result.getModule(), result.mainFile, content, result.getIssues(), result.modificationStamp)
+    assertThat(session.getReusableProblems(nextResult)).isEmpty()
+  }
+
+  fun testDoesNotReuseProblemsAfterChanges() {
+    val session = LintEditorSession.getInstance(myFixture.module)
+    val result = createResult()
+    session.recordPass(result)
+
+    val otherContent =
+      LintEditorResult(result.getModule(), result.mainFile, "class Test2 {}", result.getIssues(), result.modificationStamp)
+    assertThat(session.getReusableProblems(otherContent)).isNull()
+
+    val otherIssues =
+      LintEditorResult(result.getModule(), result.mainFile, content, setOf(WrongIdDetector.UNKNOWN_ID), result.modificationStamp)
+    assertThat(session.getReusableProblems(otherIssues)).isNull()
+
+    // Any PSI change in the project invalidates the results
+    myFixture.addFileToProject("src/Other.java", "class Other {}")
+    val afterChange =
+      LintEditorResult(
+        result.getModule(),
+        result.mainFile,
+        content,
+        result.getIssues(),
+        runReadAction { LintEditorSession.modificationStamp(project) },
+      )
+    assertThat(afterChange.modificationStamp).isNotEqualTo(result.modificationStamp)
+    assertThat(session.getReusableProblems(afterChange)).isNull()
+  }
+
+  fun testDirtyPassesAreNotRemembered() {
+    val session = LintEditorSession.getInstance(myFixture.module)
+    val result = createResult()
+    result.markDirty()
+    session.recordPass(result)
+
+    assertThat(session.getReusableProblems(result)).isNull()
+  }
+
+  fun testReusedProblemsDoNotShareTheIncident() {
+    val session = LintEditorSession.getInstance(myFixture.module)
+    val result = createResult()
+    val location =
+      Location.create(
+        VfsUtilCore.virtualToIoFile(result.mainFile),
+        DefaultPosition(0, 6, 6),
+        DefaultPosition(0, 10, 10),
+      )
+    val incident =
+      Incident().location(location).also {
+        it.issue = DeprecationDetector.ISSUE
+        it.message = "Problem"
+      }
+    result.problems.add(
+      LintProblemData(incident, DeprecationDetector.ISSUE, "Problem", TextRange(6, 10), null, null)
+    )
+    session.recordPass(result)
+
+    val problems = session.getReusableProblems(result)!!
+    assertThat(problems).hasSize(1)
+    val problem = problems.single()
+    assertThat(problem.incident).isNotSameAs(incident)
+    assertThat(problem.issue).isSameAs(DeprecationDetector.ISSUE)
+    assertThat(problem.message).isEqualTo("Problem")
+    assertThat(problem.textRange).isEqualTo(TextRange(6, 10))
+    assertThat(problem.incident.location.file).isEqualTo(location.file)
+    assertThat(problem.incident.location.start?.offset).isEqualTo(6)
+    assertThat(problem.incident.location.end?.offset).isEqualTo(10)
+  }
+
+  fun testPassesAreDroppedAfterChanges() {
+    val session = LintEditorSession.getInstance(myFixture.module)
+    val result = createResult()
+    session.recordPass(result)
+    assertThat(session.rememberedFileCount()).isEqualTo(1)
+
+    myFixture.addFileToProject("src/Other.java", "class Other {}")
+    val afterChange =
+      LintEditorResult(
+        result.getModule(),
+        result.mainFile,
+        content,
+        result.getIssues(),
+        runReadAction { LintEditorSession.modificationStamp(project) },
+      )
+    assertThat(session.getReusableProblems(afterChange)).isNull()
+    assertThat(session.rememberedFileCount()).isEqualTo(0)
+  }
+
+  fun testDetectorTimings() {
+    val timing = LintDetectorTiming.getInstance(myFixture.module)
+    timing.recordDetectorTime("FastDetector", 10)
+    timing.recordDetectorTime("SlowDetector", 100)
+    timing.recordDetectorTime("FastDetector", 20)
+
+    assertThat(timing.getDetectorTimings())
+      .containsExactly(
+        LintDetectorTiming.DetectorTiming("SlowDetector", 100, 1),
+        LintDetectorTiming.DetectorTiming("FastDetector", 30, 2),
+      )
+      .inOrder()
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.android.tools.idea.logcat
 
+import com.android.annotations.concurrency.GuardedBy
 import com.android.annotations.concurrency.UiThread
 import com.android.processmonitor.monitor.ProcessNameMonitor
 import com.android.tools.adtui.toolwindow.splittingtabs.state.SplittingTabsStateProvider
@@ -53,6 +54,7 @@ import com.android.tools.idea.logcat.devices.Device
 import com.android.tools.idea.logcat.devices.DeviceComboBox.DeviceComboItem
 import com.android.tools.idea.logcat.devices.DeviceComboBox.DeviceComboItem.DeviceItem
 import com.android.tools.idea.logcat.devices.DeviceComboBox.DeviceComboItem.FileItem
+import com.android.tools.idea.logcat.files.CorruptLogcatSegmentException
 import com.android.tools.idea.logcat.files.LogcatFileData
 import com.android.tools.idea.logcat.files.LogcatFileIo
 import com.android.tools.idea.logcat.files.safeGetFilter
@@ -172,12 +174,15 @@ import javax.swing.JComponent
 import javax.swing.JPanel
 import kotlin.io.path.pathString
 import kotlin.math.max
+import kotlin.math.min
 
 // This is probably a massive overkill as we do not expect this many tags/packages in a real Logcat
 private const val MAX_TAGS = 1000
 private const val MAX_PACKAGE_NAMES = 1000
 private const val MAX_PROCESS_NAMES = 1000
 
+private const val FILE_CHUNK_SIZE = 500
+
 private val handCursor = Cursor.getPredefinedCursor(Cursor.HAND_CURSOR)
 private val textCursor = Cursor.getPredefinedCursor(Cursor.TEXT_CURSOR)
 
@@ -291,6 +296,10 @@ constructor(
 
   @VisibleForTesting
   internal val messageBacklog = AtomicReference(MessageBacklog(logcatSettings.bufferSize))
+  private var reloadJob: Job? = null
+  private val reloadLock = Any()
+  // Messages that arrive while a reload filters the backlog, appended once it is done
+  @GuardedBy("reloadLock") private var messagesDuringReload: MutableList<LogcatMessage>? = null
   private val tags = MostRecentlyAddedSet<String>(MAX_TAGS)
   private val packages = MostRecentlyAddedSet<String>(MAX_PACKAGE_NAMES)
   private val processNames = MostRecentlyAddedSet<String>(MAX_PROCESS_NAMES)
@@ -621,14 +630,20 @@ constructor(
   }
 
   override suspend fun processMessages(messages: List<LogcatMessage>) {
-    messageBacklog.get().addAll(messages)
+    val reloading =
+      synchronized(reloadLock) {
+        messageBacklog.get().addAll(messages)
+        messagesDuringReload?.addAll(messages) != null
+      }
     messages.forEach {
       val (_, _, _, applicationId, processName, tag, _) = it.header
       tags.add(tag)
       packages.add(applicationId)
       processNames.add(processName)
     }
-    messageProcessor.appendMessages(messages)
+    if (!reloading) {
+      messageProcessor.appendMessages(messages)
+    }
   }
 
   override fun getState(): String {
@@ -724,10 +739,28 @@ constructor(
   override fun reloadMessages() {
     editor.settings.customSoftWrapIndent = formattingOptions.getHeaderWidth()
     clearDocument()
-    coroutineScope.launch(workerThread) {
-      messageProcessor.appendMessages(messageBacklog.get().messages)
-      withContext(uiThread) { noLogsBanner.isVisible = isLogsMissing() }
-    }
+    reloadJob?.cancel()
+    reloadJob =
+      coroutineScope.launch(workerThread) {
+        // Messages added to the backlog after the snapshot are held back until it is appended, so
+        // they are neither lost nor appended ahead of it
+        val snapshot =
+          synchronized(reloadLock) {
+            messagesDuringReload = ArrayList()
+            messageBacklog.get().snapshot()
+          }
+        messageProcessor.appendMessages(snapshot)
+        while (true) {
+          val messages =
+            synchronized(reloadLock) {
+              val messages = messagesDuringReload ?: return@synchronized null
+              messagesDuringReload = if (messages.isEmpty()) null else ArrayList()
+              messages.ifEmpty { null }
+            } ?: break
+          messageProcessor.appendMessages(messages)
+        }
+        withContext(uiThread) { noLogsBanner.isVisible = isLogsMissing() }
+      }
   }
 
   override fun getConnectedDevice() = connectedDevice.get()
@@ -924,6 +957,10 @@ constructor(
   }
 
   private suspend fun loadLogcatFile(data: LogcatFileData?, loadFilter: Boolean) {
+    data.use { loadLogcatFileData(it, loadFilter) }
+  }
+
+  private suspend fun loadLogcatFileData(data: LogcatFileData?, loadFilter: Boolean) {
     withContext(uiThread) {
       clearDocument()
       messageBacklog.get().clear()
@@ -935,7 +972,39 @@ constructor(
         }
       }
     }
-    data?.logcatMessages?.chunked(500)?.forEach { processMessages(it) }
+    val messages = data?.logcatMessages ?: return
+    try {
+      withContext(Dispatchers.IO) { processFileMessages(messages) }
+    } catch (e: CorruptLogcatSegmentException) {
+      LOGGER.warn("Failed to load Logcat from corrupt file", e)
+      withContext(uiThread) {
+        val item = deviceComboBox.item as? FileItem ?: return@withContext
+        deviceComboBox.handleItemError(
+          item,
+          LogcatBundle.message("logcat.device.combo.error.corrupt.file", item.path),
+        )
+      }
+    }
+  }
+
+  /**
+   * Feeds the messages of a file to the backlog a chunk at a time.
+   *
+   * Messages read from a segment file are decoded on access, so only the tail that fits the backlog
+   * is visited and only one chunk is copied into the heap at a time.
+   */
+  private suspend fun processFileMessages(messages: List<LogcatMessage>) {
+    val maxSize = logcatSettings.bufferSize
+    var start = messages.size
+    var size = 0
+    while (start > 0 && size < maxSize) {
+      size += messages[--start].message.length
+    }
+    while (start < messages.size) {
+      val end = min(start + FILE_CHUNK_SIZE, messages.size)
+      processMessages(messages.subList(start, end).toList())
+      start = end
+    }
   }
 
   @UiThread
@@ -18,7 +18,7 @@ package com.android.tools.idea.logcat.actions
 import com.android.annotations.concurrency.UiThread
 import com.android.tools.idea.logcat.LogcatPresenter
 import com.android.tools.idea.logcat.message.LogcatMessage
-import com.android.tools.idea.logcat.messages.LOGCAT_MESSAGE_KEY
+import com.android.tools.idea.logcat.messages.processLogcatMessagesOverlappingWith
 import com.intellij.openapi.actionSystem.AnActionEvent
 import com.intellij.openapi.editor.SelectionModel
 
@@ -48,13 +48,10 @@ internal fun AnActionEvent.getLogcatMessages(): List<LogcatMessage> {
 private fun AnActionEvent.getLogcatMessages(start: Int, end: Int): List<LogcatMessage> {
   val editor = getEditor() ?: return emptyList()
   return buildList {
-    editor.document.processRangeMarkersOverlappingWith(start, end) {
-      val message = it.getUserData(LOGCAT_MESSAGE_KEY)
-      if (message != null) {
-        add(message)
-      }
+    editor.document.processLogcatMessagesOverlappingWith(start, end) { _, message ->
+      add(message)
       // If searching pos, stop after first message is found, otherwise, keep searching
-      start != end || message == null
+      start != end
     }
   }
 }
@@ -16,13 +16,14 @@
 package com.android.tools.idea.logcat.actions
 
 import com.android.tools.idea.logcat.LogcatBundle
+import com.android.tools.idea.logcat.files.LOGCAT_SEGMENT_EXT
 import com.intellij.icons.AllIcons
 import com.intellij.openapi.actionSystem.AnActionEvent
 import com.intellij.openapi.fileChooser.FileChooserDescriptor
 import com.intellij.openapi.fileChooser.FileChooserFactory
 import com.intellij.openapi.project.DumbAwareAction
 
-private val LOGCAT_FILE_EXTENSIONS = setOf("logcat", "txt", "zip")
+private val LOGCAT_FILE_EXTENSIONS = setOf("logcat", LOGCAT_SEGMENT_EXT, "txt", "zip")
 
 internal class ImportLogcatAction :
   DumbAwareAction(
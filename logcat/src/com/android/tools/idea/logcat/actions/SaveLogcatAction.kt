@@ -18,6 +18,7 @@ package com.android.tools.idea.logcat.actions
 import com.android.tools.idea.concurrency.AndroidCoroutineScope
 import com.android.tools.idea.concurrency.AndroidDispatchers
 import com.android.tools.idea.logcat.LogcatBundle
+import com.android.tools.idea.logcat.files.LOGCAT_SEGMENT_EXT
 import com.android.tools.idea.logcat.files.LogcatFileIo
 import com.android.tools.idea.logcat.util.LOGGER
 import com.android.tools.idea.projectsystem.ProjectApplicationIdsProvider
@@ -71,7 +72,12 @@ internal class SaveLogcatAction :
     val dialog =
       FileChooserFactory.getInstance()
         .createSaveFileDialog(
-          FileSaverDescriptor(LogcatBundle.message("logcat.save.log.dialog.title"), "", LOGCAT_EXT),
+          FileSaverDescriptor(
+            LogcatBundle.message("logcat.save.log.dialog.title"),
+            "",
+            LOGCAT_EXT,
+            LOGCAT_SEGMENT_EXT,
+          ),
           project,
         )
 
@@ -18,15 +18,24 @@ package com.android.tools.idea.logcat.files
 import com.android.tools.idea.logcat.devices.Device
 import com.android.tools.idea.logcat.filters.LogcatFilter.Companion.MY_PACKAGE
 import com.android.tools.idea.logcat.message.LogcatMessage
+import java.io.Closeable
 
 /**
  * Logcat data loaded from file with optional metadata
  *
  * If the file is loaded from an Android Studio Save Logcat action, it will contain metadata. If it
  * was loaded from a device Logcat, metadata is null.
+ *
+ * Messages of a segment file are read from the file as they are accessed, so the data must be
+ * closed once the messages are loaded.
  */
-internal class LogcatFileData(val metadata: Metadata?, val logcatMessages: List<LogcatMessage>) {
+internal class LogcatFileData(val metadata: Metadata?, val logcatMessages: List<LogcatMessage>) :
+  Closeable {
   class Metadata(val device: Device, val filter: String, val projectApplicationIds: Set<String>)
+
+  override fun close() {
+    (logcatMessages as? Closeable)?.close()
+  }
 }
 
 /**
@@ -21,6 +21,7 @@ import com.android.tools.idea.logcat.files.LogcatFileIo.LogcatFileType.BUGREPORT
 import com.android.tools.idea.logcat.files.LogcatFileIo.LogcatFileType.BUGREPORT_ZIP
 import com.android.tools.idea.logcat.files.LogcatFileIo.LogcatFileType.FIREBASE
 import com.android.tools.idea.logcat.files.LogcatFileIo.LogcatFileType.JSON
+import com.android.tools.idea.logcat.files.LogcatFileIo.LogcatFileType.SEGMENT
 import com.android.tools.idea.logcat.files.LogcatFileIo.LogcatFileType.THREADTIME
 import com.android.tools.idea.logcat.files.LogcatFileParser.Companion.SYSTEM_LOG_PREFIX
 import com.android.tools.idea.logcat.message.LogcatMessage
@@ -28,6 +29,8 @@ import com.google.gson.GsonBuilder
 import java.nio.file.Path
 import java.time.ZoneId
 import kotlin.io.path.bufferedReader
+import kotlin.io.path.extension
+import kotlin.io.path.outputStream
 import kotlin.io.path.pathString
 import kotlin.io.path.reader
 import kotlin.io.path.writer
@@ -56,6 +59,9 @@ private val BUGREPORT_FILE_REGEX =
 
 private val gson = GsonBuilder().setPrettyPrinting().create()
 
+/** Extension of files saved in the binary [LogcatSegmentWriter] format */
+internal const val LOGCAT_SEGMENT_EXT = "logcatbin"
+
 /** Contains functions to read and write a Logcat file */
 internal class LogcatFileIo(private val zoneId: ZoneId = ZoneId.systemDefault()) {
   @Suppress("unused") // Used via `values()`
@@ -75,6 +81,9 @@ internal class LogcatFileIo(private val zoneId: ZoneId = ZoneId.systemDefault())
     },
     FIREBASE {
       override fun parse(path: Path, zoneId: ZoneId) = parseLogcat(path, FIREBASE_REGEX, zoneId)
+    },
+    SEGMENT {
+      override fun parse(path: Path, zoneId: ZoneId) = readSegmentFile(path)
     };
 
     abstract fun parse(path: Path, zoneId: ZoneId): LogcatFileData
@@ -87,7 +96,14 @@ internal class LogcatFileIo(private val zoneId: ZoneId = ZoneId.systemDefault())
     filter: String,
     projectApplicationIds: Set<String>,
   ) {
-    val data = LogcatFileData(Metadata(device, filter, projectApplicationIds), logcatMessages)
+    val metadata = Metadata(device, filter, projectApplicationIds)
+    if (path.extension == LOGCAT_SEGMENT_EXT) {
+      LogcatSegmentWriter(path.outputStream(), gson.toJson(metadata)).use {
+        it.appendAll(logcatMessages)
+      }
+      return
+    }
+    val data = LogcatFileData(metadata, logcatMessages)
     path.writer().use { gson.toJson(data, it) }
   }
 
@@ -97,6 +113,9 @@ internal class LogcatFileIo(private val zoneId: ZoneId = ZoneId.systemDefault())
     if (path.pathString.endsWith(".zip")) {
       return BUGREPORT_ZIP
     }
+    if (isLogcatSegmentFile(path)) {
+      return SEGMENT
+    }
     val line =
       path.bufferedReader().lineSequence().take(10).find { !it.startsWith(SYSTEM_LOG_PREFIX) } ?: ""
     return when {
@@ -113,6 +132,20 @@ private fun readJsonFile(path: Path): LogcatFileData {
   return path.reader().use { gson.fromJson(it, LogcatFileData::class.java) }
 }
 
+/**
+ * Messages are decoded lazily, so importing a large file does not parse all of it up front. The file
+ * stays open until the returned data is closed.
+ */
+private fun readSegmentFile(path: Path): LogcatFileData {
+  val reader = LogcatSegmentReader.open(path)
+  try {
+    return LogcatFileData(reader.metadata?.let { gson.fromJson(it, Metadata::class.java) }, reader)
+  } catch (e: Exception) {
+    reader.close()
+    throw e
+  }
+}
+
 private fun parseLogcat(
   path: Path,
   headerRegex: Regex,
@@ -0,0 +1,439 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat.files
+
+import com.android.tools.idea.logcat.message.LogLevel
+import com.android.tools.idea.logcat.message.LogcatHeader
+import com.android.tools.idea.logcat.message.LogcatMessage
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
+import java.io.DataOutputStream
+import java.io.IOException
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption.READ
+import java.time.DateTimeException
+import java.time.Instant
+import java.util.zip.DataFormatException
+import java.util.zip.Deflater
+import java.util.zip.Inflater
+
+/*
+  A Logcat segment file is an append-only binary log:
+
+    int     SEGMENT_MAGIC
+    int     SEGMENT_VERSION
+    int     length of metadata, followed by that many bytes of UTF-8 (may be 0)
+    block*
+
+  block:
+    long    timestamp of the first message in epoch millis
+    int     message count
+    int     uncompressed payload length
+    int     compressed payload length, followed by that many bytes of deflated payload
+
+  payload (integers are unsigned LEB128 varints, signed ones zigzag encoded):
+    long    epoch second the timestamp deltas are relative to
+    varint  string count, followed by that many strings
+    message*
+
+  message:
+    varint  level ordinal
+    varint  pid, tid (signed)
+    varint  tag, applicationId, processName ids in the block string table
+    varint  epoch second delta from the previous message (signed), nanos
+    string  message
+
+  string:
+    varint  UTF-8 length, followed by that many bytes
+
+  Blocks are self contained, so a file is readable up to its last complete block even if the writer
+  was interrupted. The block headers form a sparse offset index that a reader builds by skipping
+  from header to header, without decompressing anything.
+*/
+private const val SEGMENT_MAGIC = 0x4c435347 // "LCSG"
+private const val SEGMENT_VERSION = 1
+private const val BLOCK_HEADER_SIZE = Long.SIZE_BYTES + 3 * Int.SIZE_BYTES
+private const val FILE_HEADER_SIZE = 3 * Int.SIZE_BYTES
+
+/** Upper bound of the deflate compression ratio, used to reject corrupt payload lengths. */
+private const val MAX_DEFLATE_RATIO = 1032
+
+/** Number of messages per block. Bounds the work to decode a single message. */
+internal const val MESSAGES_PER_BLOCK = 4096
+
+/** Returns true if [path] starts like a Logcat segment file. */
+internal fun isLogcatSegmentFile(path: Path): Boolean =
+  FileChannel.open(path, READ).use { channel ->
+    val buffer = ByteBuffer.allocate(Int.SIZE_BYTES)
+    channel.read(buffer) == Int.SIZE_BYTES && buffer.getInt(0) == SEGMENT_MAGIC
+  }
+
+/**
+ * Writes [LogcatMessage]s to a Logcat segment file.
+ *
+ * Messages are buffered and written a block at a time. Tags, application ids and process names are
+ * interned per block, and timestamps are delta encoded before the block is compressed.
+ */
+internal class LogcatSegmentWriter(out: OutputStream, metadata: String? = null) : Closeable {
+  private val out = DataOutputStream(out.buffered())
+  private val pending = ArrayList<LogcatMessage>(MESSAGES_PER_BLOCK)
+  private val deflater = Deflater(Deflater.BEST_SPEED)
+
+  init {
+    val bytes = metadata?.toByteArray() ?: ByteArray(0)
+    this.out.writeInt(SEGMENT_MAGIC)
+    this.out.writeInt(SEGMENT_VERSION)
+    this.out.writeInt(bytes.size)
+    this.out.write(bytes)
+  }
+
+  fun append(message: LogcatMessage) {
+    pending.add(message)
+    if (pending.size == MESSAGES_PER_BLOCK) {
+      writeBlock()
+    }
+  }
+
+  fun appendAll(messages: List<LogcatMessage>) {
+    messages.forEach(::append)
+  }
+
+  override fun close() {
+    try {
+      if (pending.isNotEmpty()) {
+        writeBlock()
+      }
+    } finally {
+      deflater.end()
+      out.close()
+    }
+  }
+
+  private fun writeBlock() {
+    val payload = encodePayload(pending)
+    deflater.reset()
+    deflater.setInput(payload)
+    deflater.finish()
+    val compressed = ByteArrayOutputStream(payload.size / 4)
+    val chunk = ByteArray(64 * 1024)
+    while (!deflater.finished()) {
+      compressed.write(chunk, 0, deflater.deflate(chunk))
+    }
+    out.writeLong(pending.first().header.timestamp.toEpochMilli())
+    out.writeInt(pending.size)
+    out.writeInt(payload.size)
+    out.writeInt(compressed.size())
+    compressed.writeTo(out)
+    pending.clear()
+  }
+
+  private fun encodePayload(messages: List<LogcatMessage>): ByteArray {
+    val strings = LinkedHashMap<String, Int>()
+    fun intern(s: String) = strings.getOrPut(s) { strings.size }
+
+    val body = VarintOutput()
+    val baseSecond = messages.first().header.timestamp.epochSecond
+    var previousSecond = baseSecond
+    for (message in messages) {
+      val header = message.header
+      body.writeVarint(header.logLevel.ordinal.toLong())
+      body.writeSignedVarint(header.pid.toLong())
+      body.writeSignedVarint(header.tid.toLong())
+      body.writeVarint(intern(header.tag).toLong())
+      body.writeVarint(intern(header.applicationId).toLong())
+      body.writeVarint(intern(header.processName).toLong())
+      body.writeSignedVarint(header.timestamp.epochSecond - previousSecond)
+      body.writeVarint(header.timestamp.nano.toLong())
+      body.writeString(message.message)
+      previousSecond = header.timestamp.epochSecond
+    }
+
+    val payload = VarintOutput()
+    DataOutputStream(payload).writeLong(baseSecond)
+    payload.writeVarint(strings.size.toLong())
+    strings.keys.forEach(payload::writeString)
+    body.writeTo(payload)
+    return payload.toByteArray()
+  }
+}
+
+/**
+ * Thrown when a Logcat segment file is not consistent with its format.
+ *
+ * Since blocks are only decoded when accessed, this can be thrown by [LogcatSegmentReader.get].
+ */
+internal class CorruptLogcatSegmentException(message: String, cause: Throwable? = null) :
+  IOException(message, cause)
+
+/**
+ * A read-only list of the messages in a Logcat segment file.
+ *
+ * Opening the file only reads the block headers. Blocks are read and decompressed when a message in
+ * them is accessed and only the most recently used block is retained, so the heap cost does not
+ * depend on the size of the file. The file stays open until the reader is closed.
+ */
+internal class LogcatSegmentReader
+private constructor(
+  private val channel: FileChannel,
+  /** The metadata written with the file, if any. */
+  val metadata: String?,
+  private val blocks: List<Block>,
+) : AbstractList<LogcatMessage>(), Closeable {
+  override val size: Int = blocks.lastOrNull()?.let { it.firstIndex + it.count } ?: 0
+
+  @Volatile private var cache: DecodedBlock? = null
+
+  override fun get(index: Int): LogcatMessage {
+    if (index < 0 || index >= size) {
+      throw IndexOutOfBoundsException("Index: $index, Size: $size")
+    }
+    var low = 0
+    var high = blocks.size - 1
+    while (low < high) {
+      val mid = (low + high + 1) ushr 1
+      if (blocks[mid].firstIndex <= index) low = mid else high = mid - 1
+    }
+    val block = blocks[low]
+    return decode(block).messages[index - block.firstIndex]
+  }
+
+  private fun decode(block: Block): DecodedBlock {
+    cache?.let {
+      if (it.block === block) {
+        return it
+      }
+    }
+    val compressed = channel.readFully(block.offset, block.compressedLength)
+    val payload = ByteBuffer.allocate(block.uncompressedLength)
+    val inflater = Inflater()
+    try {
+      inflater.setInput(compressed)
+      while (payload.hasRemaining() && !inflater.finished()) {
+        if (inflater.inflate(payload) == 0 && inflater.needsInput()) {
+          break
+        }
+      }
+    } catch (e: DataFormatException) {
+      throw CorruptLogcatSegmentException("Corrupt block at offset ${block.offset}", e)
+    } finally {
+      inflater.end()
+    }
+    if (payload.hasRemaining()) {
+      throw CorruptLogcatSegmentException("Truncated block at offset ${block.offset}")
+    }
+    payload.flip()
+    val messages =
+      try {
+        decodePayload(VarintInput(payload), block.count)
+      } catch (e: CorruptLogcatSegmentException) {
+        throw CorruptLogcatSegmentException("${e.message} in block at offset ${block.offset}", e)
+      }
+    return DecodedBlock(block, messages).also { cache = it }
+  }
+
+  private fun decodePayload(input: VarintInput, count: Int): List<LogcatMessage> {
+    var second = input.readLong()
+    // Each message references at most 3 strings
+    val strings = Array(input.readIndex(3 * count + 1)) { input.readString() }
+    val levels = LogLevel.entries
+    return List(count) {
+      val level = levels[input.readIndex(levels.size)]
+      val pid = input.readSignedVarint().toInt()
+      val tid = input.readSignedVarint().toInt()
+      val tag = strings[input.readIndex(strings.size)]
+      val applicationId = strings[input.readIndex(strings.size)]
+      val processName = strings[input.readIndex(strings.size)]
+      second += input.readSignedVarint()
+      val nanos = input.readVarint()
+      val timestamp =
+        try {
+          Instant.ofEpochSecond(second, nanos)
+        } catch (e: DateTimeException) {
+          throw CorruptLogcatSegmentException("Invalid timestamp", e)
+        }
+      val header = LogcatHeader(level, pid, tid, applicationId, processName, tag, timestamp)
+      LogcatMessage(header, input.readString())
+    }
+  }
+
+  override fun close() {
+    channel.close()
+  }
+
+  private class Block(
+    val offset: Long,
+    val firstIndex: Int,
+    val count: Int,
+    val uncompressedLength: Int,
+    val compressedLength: Int,
+  )
+
+  private class DecodedBlock(val block: Block, val messages: List<LogcatMessage>)
+
+  companion object {
+    /**
+     * Opens the segment file at [path] and reads its block index. Blocks are read from the file when
+     * they are accessed.
+     */
+    fun open(path: Path): LogcatSegmentReader {
+      val channel = FileChannel.open(path, READ)
+      try {
+        return read(channel)
+      } catch (e: Throwable) {
+        channel.close()
+        throw e
+      }
+    }
+
+    private fun read(channel: FileChannel): LogcatSegmentReader {
+      val size = channel.size()
+      if (size < FILE_HEADER_SIZE) {
+        throw IOException("Not a Logcat segment file")
+      }
+      val header = channel.readFully(0, FILE_HEADER_SIZE)
+      if (header.getInt() != SEGMENT_MAGIC) {
+        throw IOException("Not a Logcat segment file")
+      }
+      if (header.getInt() != SEGMENT_VERSION) {
+        throw IOException("Unsupported Logcat segment file version")
+      }
+      val metadataLength = header.getInt()
+      if (metadataLength < 0 || metadataLength > size - FILE_HEADER_SIZE) {
+        throw CorruptLogcatSegmentException("Invalid metadata length $metadataLength")
+      }
+      var offset = FILE_HEADER_SIZE.toLong()
+      val metadata =
+        if (metadataLength > 0) {
+          val bytes = ByteArray(metadataLength)
+          channel.readFully(offset, metadataLength).get(bytes)
+          String(bytes)
+        } else null
+      offset += metadataLength
+
+      val blocks = ArrayList<Block>()
+      var firstIndex = 0
+      // Stop at the first incomplete block, which is left by an interrupted writer
+      while (offset + BLOCK_HEADER_SIZE <= size) {
+        val blockHeader = channel.readFully(offset, BLOCK_HEADER_SIZE)
+        blockHeader.getLong() // The timestamp of the first message is not needed to read the block
+        val count = blockHeader.getInt()
+        val uncompressedLength = blockHeader.getInt()
+        val compressedLength = blockHeader.getInt()
+        if (
+          count <= 0 ||
+            count > MESSAGES_PER_BLOCK ||
+            firstIndex > Int.MAX_VALUE - count ||
+            compressedLength < 0 ||
+            uncompressedLength < 0 ||
+            uncompressedLength.toLong() > compressedLength.toLong() * MAX_DEFLATE_RATIO
+        ) {
+          throw CorruptLogcatSegmentException("Invalid block header at offset $offset")
+        }
+        val payloadOffset = offset + BLOCK_HEADER_SIZE
+        if (payloadOffset + compressedLength > size) {
+          break
+        }
+        blocks.add(
+          Block(payloadOffset, firstIndex, count, uncompressedLength, compressedLength)
+        )
+        firstIndex += count
+        offset = payloadOffset + compressedLength
+      }
+      return LogcatSegmentReader(channel, metadata, blocks)
+    }
+  }
+}
+
+/** Returns [length] bytes starting at [offset], which are known to be within the file. */
+private fun FileChannel.readFully(offset: Long, length: Int): ByteBuffer {
+  val buffer = ByteBuffer.allocate(length)
+  while (buffer.hasRemaining()) {
+    if (read(buffer, offset + buffer.position()) < 0) {
+      throw CorruptLogcatSegmentException("Unexpected end of file at offset $offset")
+    }
+  }
+  return buffer.flip()
+}
+
+private class VarintOutput : ByteArrayOutputStream() {
+  fun writeVarint(value: Long) {
+    var v = value
+    while (v and 0x7fL.inv() != 0L) {
+      write(((v and 0x7f) or 0x80).toInt())
+      v = v ushr 7
+    }
+    write(v.toInt())
+  }
+
+  fun writeSignedVarint(value: Long) = writeVarint((value shl 1) xor (value shr 63))
+
+  fun writeString(s: String) {
+    val bytes = s.toByteArray()
+    writeVarint(bytes.size.toLong())
+    write(bytes)
+  }
+}
+
+/** Reads a payload, throwing [CorruptLogcatSegmentException] if it is not well formed. */
+private class VarintInput(private val buffer: ByteBuffer) {
+  fun readLong(): Long {
+    if (buffer.remaining() < Long.SIZE_BYTES) {
+      throw CorruptLogcatSegmentException("Unexpected end of payload")
+    }
+    return buffer.getLong()
+  }
+
+  fun readVarint(): Long {
+    var result = 0L
+    var shift = 0
+    while (shift < Long.SIZE_BITS) {
+      if (!buffer.hasRemaining()) {
+        throw CorruptLogcatSegmentException("Unexpected end of payload")
+      }
+      val b = buffer.get().toInt()
+      result = result or ((b and 0x7f).toLong() shl shift)
+      if (b and 0x80 == 0) {
+        return result
+      }
+      shift += 7
+    }
+    throw CorruptLogcatSegmentException("Invalid varint")
+  }
+
+  /** Reads a varint that must be a valid index into a collection of [size] elements. */
+  fun readIndex(size: Int): Int {
+    val value = readVarint()
+    if (value < 0 || value >= size) {
+      throw CorruptLogcatSegmentException("Invalid index $value")
+    }
+    return value.toInt()
+  }
+
+  fun readSignedVarint(): Long {
+    val v = readVarint()
+    return (v ushr 1) xor -(v and 1)
+  }
+
+  fun readString(): String {
+    val length = readIndex(buffer.remaining() + 1)
+    val bytes = ByteArray(length)
+    buffer.get(bytes)
+    return String(bytes)
+  }
+}
@@ -23,45 +23,97 @@ import com.android.tools.idea.logcat.message.LogLevel
 import com.android.tools.idea.logcat.message.LogLevel.ASSERT
 import com.android.tools.idea.logcat.message.LogLevel.ERROR
 import com.android.tools.idea.logcat.message.LogcatMessage
+import com.android.tools.idea.logcat.messages.BacklogSnapshot
 import com.android.tools.idea.logcat.settings.AndroidLogcatSettings
 import com.android.tools.idea.projectsystem.ProjectApplicationIdsProvider
 import com.intellij.openapi.util.TextRange
 import com.intellij.openapi.util.TextRange.EMPTY_RANGE
 import com.intellij.openapi.util.text.Strings
 import com.intellij.psi.impl.source.tree.PsiErrorElementImpl
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.ensureActive
 import org.jetbrains.annotations.PropertyKey
 import org.jetbrains.annotations.VisibleForTesting
 import java.time.Clock
 import java.time.Duration
 import java.time.ZoneId
+import java.util.BitSet
 import java.util.concurrent.TimeUnit
 import java.util.regex.PatternSyntaxException
 import kotlin.text.RegexOption.IGNORE_CASE
 
 private const val STUDIO_SPAM_PREFIX = "studio."
 
+/** Number of messages filtered by each coroutine when filtering a [BacklogSnapshot] */
+private const val FILTER_CHUNK_SIZE = 8192
+
 /** The top level filter that prepares and executes a [LogcatFilter] */
 internal class LogcatMasterFilter(private val logcatFilter: LogcatFilter?) {
   private val settings = AndroidLogcatSettings.getInstance()
   private val ignoreSpam = StudioFlags.LOGCAT_IGNORE_STUDIO_TAGS.get()
+  private val program = logcatFilter?.let { LogcatFilterProgram(it) }
 
   fun filter(
     messages: List<LogcatMessage>,
     zoneId: ZoneId = ZoneId.systemDefault(),
   ): List<LogcatMessage> {
-    if (logcatFilter == null) {
+    if (program == null) {
       return messages.filter { !it.isSpam() }
     }
-    logcatFilter.prepare()
+    logcatFilter?.prepare()
     return messages.filter {
       it.header === SYSTEM_HEADER ||
-        (logcatFilter.matches(LogcatMessageWrapper(it, zoneId)) && !it.isSpam())
+        (program.matches(LogcatMessageWrapper(it, zoneId)) && !it.isSpam())
     }
   }
 
-  private fun LogcatMessage.isSpam() =
-    settings.ignoredTags.contains(header.tag) ||
-      (ignoreSpam && header.tag.startsWith(STUDIO_SPAM_PREFIX))
+  /**
+   * Filters a whole backlog, typically after the filter has changed.
+   *
+   * Conjuncts on indexed header fields are answered from the snapshot index first, so that the
+   * remaining conjuncts only run on candidate messages. The candidates are then filtered in
+   * parallel chunks on the dispatcher of the caller. Cancelling the caller abandons the work
+   * between messages.
+   */
+  suspend fun filter(
+    snapshot: BacklogSnapshot,
+    zoneId: ZoneId = ZoneId.systemDefault(),
+  ): List<LogcatMessage> = coroutineScope {
+    val messages = snapshot.messages
+    logcatFilter?.prepare()
+    val candidates = program?.select(snapshot) ?: BitSet().apply { set(0, messages.size) }
+    candidates.and(snapshot.tags.select { !isSpamTag(it) })
+    (messages.indices step FILTER_CHUNK_SIZE)
+      .map { start ->
+        async {
+          val end = minOf(start + FILTER_CHUNK_SIZE, messages.size)
+          val result = ArrayList<LogcatMessage>()
+          for (i in start until end) {
+            if (i % 1024 == 0) {
+              ensureActive()
+            }
+            val message = messages[i]
+            if (
+              message.header === SYSTEM_HEADER ||
+                (candidates.get(i) &&
+                  program?.matchesResidual(LogcatMessageWrapper(message, zoneId)) != false)
+            ) {
+              result.add(message)
+            }
+          }
+          result
+        }
+      }
+      .awaitAll()
+      .flatten()
+  }
+
+  private fun LogcatMessage.isSpam() = isSpamTag(header.tag)
+
+  private fun isSpamTag(tag: String) =
+    settings.ignoredTags.contains(tag) || (ignoreSpam && tag.startsWith(STUDIO_SPAM_PREFIX))
 }
 
 /** Matches a [LogcatMessage] */
@@ -154,52 +206,58 @@ internal abstract class FieldFilter(
   override val textRange: TextRange,
   @PropertyKey(resourceBundle = BUNDLE_NAME) stringResource: String,
 ) : LogcatFilter(textRange) {
+  abstract val field: LogcatFilterField
+
   override val displayText: String = message(stringResource, field.displayName, "'${string}'")
+
+  /**
+   * Matches the value of [field] alone, so the filter can be evaluated once per distinct value of
+   * an indexed field rather than once per message.
+   */
+  abstract fun matchesValue(value: String): Boolean
+
+  override fun matches(message: LogcatMessageWrapper) = matchesValue(field.getValue(message))
 }
 
 internal data class StringFilter(
   val string: String,
-  val field: LogcatFilterField,
+  override val field: LogcatFilterField,
   val matchCase: Boolean,
   override val textRange: TextRange,
 ) : FieldFilter(string, field, textRange, "logcat.filter.completion.hint.key") {
-  override fun matches(message: LogcatMessageWrapper) =
-    field.getValue(message).contains(string, ignoreCase = !matchCase)
+  override fun matchesValue(value: String) = value.contains(string, ignoreCase = !matchCase)
 }
 
 internal data class NegatedStringFilter(
   val string: String,
-  val field: LogcatFilterField,
+  override val field: LogcatFilterField,
   val matchCase: Boolean,
   override val textRange: TextRange,
 ) : FieldFilter(string, field, textRange, "logcat.filter.completion.hint.key.negated") {
-  override fun matches(message: LogcatMessageWrapper) =
-    !field.getValue(message).contains(string, ignoreCase = !matchCase)
+  override fun matchesValue(value: String) = !value.contains(string, ignoreCase = !matchCase)
 }
 
 internal data class ExactStringFilter(
   val string: String,
-  val field: LogcatFilterField,
+  override val field: LogcatFilterField,
   val matchCase: Boolean,
   override val textRange: TextRange,
 ) : FieldFilter(string, field, textRange, "logcat.filter.completion.hint.key.exact") {
-  override fun matches(message: LogcatMessageWrapper) =
-    field.getValue(message).equals(string, !matchCase)
+  override fun matchesValue(value: String) = value.equals(string, !matchCase)
 }
 
 internal data class NegatedExactStringFilter(
   val string: String,
-  val field: LogcatFilterField,
+  override val field: LogcatFilterField,
   val matchCase: Boolean,
   override val textRange: TextRange,
 ) : FieldFilter(string, field, textRange, "logcat.filter.completion.hint.key.exact.negated") {
-  override fun matches(message: LogcatMessageWrapper) =
-    !field.getValue(message).equals(string, !matchCase)
+  override fun matchesValue(value: String) = !value.equals(string, !matchCase)
 }
 
 internal data class RegexFilter(
   val string: String,
-  val field: LogcatFilterField,
+  override val field: LogcatFilterField,
   val matchCase: Boolean,
   override val textRange: TextRange,
 ) : FieldFilter(string, field, textRange, "logcat.filter.completion.hint.key.regex") {
@@ -210,13 +268,12 @@ internal data class RegexFilter(
       throw LogcatFilterParseException(PsiErrorElementImpl("Invalid regular expression: $string"))
     }
 
-  override fun matches(message: LogcatMessageWrapper) =
-    regex.containsMatchIn(field.getValue(message))
+  override fun matchesValue(value: String) = regex.containsMatchIn(value)
 }
 
 internal data class NegatedRegexFilter(
   val string: String,
-  val field: LogcatFilterField,
+  override val field: LogcatFilterField,
   val matchCase: Boolean,
   override val textRange: TextRange,
 ) : FieldFilter(string, field, textRange, "logcat.filter.completion.hint.key.regex.negated") {
@@ -227,8 +284,7 @@ internal data class NegatedRegexFilter(
       throw LogcatFilterParseException(PsiErrorElementImpl("Invalid regular expression: $string"))
     }
 
-  override fun matches(message: LogcatMessageWrapper) =
-    !regex.containsMatchIn(field.getValue(message))
+  override fun matchesValue(value: String) = !regex.containsMatchIn(value)
 }
 
 internal data class LevelFilter(val level: LogLevel, override val textRange: TextRange) :
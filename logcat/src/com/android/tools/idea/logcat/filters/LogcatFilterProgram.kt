@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat.filters
+
+import com.android.tools.idea.logcat.filters.LogcatFilterField.APP
+import com.android.tools.idea.logcat.filters.LogcatFilterField.IMPLICIT_LINE
+import com.android.tools.idea.logcat.filters.LogcatFilterField.LINE
+import com.android.tools.idea.logcat.filters.LogcatFilterField.MESSAGE
+import com.android.tools.idea.logcat.filters.LogcatFilterField.PROCESS
+import com.android.tools.idea.logcat.filters.LogcatFilterField.TAG
+import com.android.tools.idea.logcat.messages.BacklogSnapshot
+import java.util.BitSet
+
+/**
+ * A [LogcatFilter] compiled for evaluation over many messages.
+ *
+ * Nested [AndLogcatFilter]s and [OrLogcatFilter]s are flattened and their operands ordered by
+ * estimated cost, so that cheap header checks short-circuit before the message text is scanned or
+ * the log line is formatted. All filters are side effect free, so the order does not change the
+ * result.
+ *
+ * The top level conjuncts that only depend on the tag, package, process or level of a message are
+ * answered from the index of a [BacklogSnapshot] by [select]. The remaining conjuncts are evaluated
+ * per message by [matchesResidual].
+ */
+internal class LogcatFilterProgram(filter: LogcatFilter) {
+  private val root = compile(filter)
+  private val conjuncts = if (root is AllOf) root.operands else listOf(root)
+  private val indexed = conjuncts.filter { it.isIndexed }
+  private val residual = conjuncts.filter { !it.isIndexed }
+
+  /** Evaluates the whole program. */
+  fun matches(message: LogcatMessageWrapper): Boolean = root.matches(message)
+
+  /**
+   * Returns the positions of the messages in [snapshot] that satisfy the indexed conjuncts, or null
+   * if there are none.
+   */
+  fun select(snapshot: BacklogSnapshot): BitSet? {
+    if (indexed.isEmpty()) {
+      return null
+    }
+    val result = indexed.first().select(snapshot)
+    indexed.drop(1).forEach { result.and(it.select(snapshot)) }
+    return result
+  }
+
+  /** Evaluates the conjuncts that are not answered by [select]. */
+  fun matchesResidual(message: LogcatMessageWrapper): Boolean =
+    residual.all { it.matches(message) }
+
+  private sealed class Node {
+    abstract val cost: Int
+
+    abstract val isIndexed: Boolean
+
+    abstract fun matches(message: LogcatMessageWrapper): Boolean
+
+    /** Only valid if [isIndexed]. */
+    abstract fun select(snapshot: BacklogSnapshot): BitSet
+  }
+
+  private class AllOf(val operands: List<Node>) : Node() {
+    override val cost = operands.sumOf { it.cost }
+
+    override val isIndexed = operands.all { it.isIndexed }
+
+    override fun matches(message: LogcatMessageWrapper) = operands.all { it.matches(message) }
+
+    override fun select(snapshot: BacklogSnapshot): BitSet {
+      val result = operands.first().select(snapshot)
+      operands.drop(1).forEach { result.and(it.select(snapshot)) }
+      return result
+    }
+  }
+
+  private class AnyOf(val operands: List<Node>) : Node() {
+    override val cost = operands.sumOf { it.cost }
+
+    override val isIndexed = operands.all { it.isIndexed }
+
+    override fun matches(message: LogcatMessageWrapper) = operands.any { it.matches(message) }
+
+    override fun select(snapshot: BacklogSnapshot): BitSet {
+      val result = operands.first().select(snapshot)
+      operands.drop(1).forEach { result.or(it.select(snapshot)) }
+      return result
+    }
+  }
+
+  private class Leaf(
+    val filter: LogcatFilter,
+    override val cost: Int,
+    private val selector: ((BacklogSnapshot) -> BitSet)?,
+  ) : Node() {
+    override val isIndexed = selector != null
+
+    override fun matches(message: LogcatMessageWrapper) = filter.matches(message)
+
+    override fun select(snapshot: BacklogSnapshot) = selector!!(snapshot)
+  }
+
+  private companion object {
+    fun compile(filter: LogcatFilter): Node =
+      when (filter) {
+        is AndLogcatFilter ->
+          AllOf(
+            filter.filters
+              .map(::compile)
+              .flatMap { if (it is AllOf) it.operands else listOf(it) }
+              .sortedBy { it.cost }
+          )
+        is OrLogcatFilter ->
+          AnyOf(
+            filter.filters
+              .map(::compile)
+              .flatMap { if (it is AnyOf) it.operands else listOf(it) }
+              .sortedBy { it.cost }
+          )
+        else -> Leaf(filter, costOf(filter), selectorOf(filter))
+      }
+
+    /**
+     * A rough relative cost of evaluating a filter on one message: header checks are cheapest,
+     * followed by scans of the message text and, most expensive, formatting the whole log line.
+     */
+    fun costOf(filter: LogcatFilter): Int =
+      when (filter) {
+        is NameFilter,
+        is EmptyFilter -> 0
+        is LevelFilter,
+        is ExactLevelFilter -> 1
+        is AgeFilter,
+        is CrashFilter -> 2
+        is FieldFilter -> fieldCost(filter.field) + comparisonCost(filter)
+        is ProjectAppFilter -> 5
+        is StackTraceFilter -> 8
+        else -> 10
+      }
+
+    private fun fieldCost(field: LogcatFilterField) =
+      when (field) {
+        TAG,
+        APP,
+        PROCESS -> 1
+        MESSAGE -> 3
+        LINE,
+        IMPLICIT_LINE -> 6
+      }
+
+    private fun comparisonCost(filter: FieldFilter) =
+      when (filter) {
+        is ExactStringFilter,
+        is NegatedExactStringFilter -> 1
+        is RegexFilter,
+        is NegatedRegexFilter -> 4
+        else -> 2
+      }
+
+    fun selectorOf(filter: LogcatFilter): ((BacklogSnapshot) -> BitSet)? =
+      when (filter) {
+        is LevelFilter -> { snapshot -> snapshot.levels.select { it >= filter.level } }
+        is ExactLevelFilter -> { snapshot -> snapshot.levels.select { it == filter.level } }
+        is FieldFilter ->
+          when (filter.field) {
+            TAG -> { snapshot -> snapshot.tags.select(filter::matchesValue) }
+            APP -> { snapshot -> snapshot.applicationIds.select(filter::matchesValue) }
+            PROCESS -> { snapshot -> snapshot.processNames.select(filter::matchesValue) }
+            MESSAGE,
+            LINE,
+            IMPLICIT_LINE -> null
+          }
+        else -> null
+      }
+  }
+}
@@ -16,7 +16,7 @@
 package com.android.tools.idea.logcat.hyperlinks
 
 import com.android.tools.idea.logcat.LogcatBundle
-import com.android.tools.idea.logcat.messages.LOGCAT_MESSAGE_KEY
+import com.android.tools.idea.logcat.messages.processLogcatMessagesOverlappingWith
 import com.android.tools.idea.logcat.util.extractStudioBotContent
 import com.android.tools.idea.studiobot.StudioBot
 import com.android.tools.idea.studiobot.prompts.buildPrompt
@@ -53,10 +53,7 @@ internal class StudioBotFilter(private val editor: EditorEx) : Filter {
       if (!studioBot.isAvailable()) return
 
       val offset = editor.caretModel.offset
-      editor.document.processRangeMarkersOverlappingWith(offset, offset) {
-        val message =
-          it.getUserData(LOGCAT_MESSAGE_KEY) ?: return@processRangeMarkersOverlappingWith true
-
+      editor.document.processLogcatMessagesOverlappingWith(offset, offset) { _, message ->
         val content = message.extractStudioBotContent()
         val query = LogcatBundle.message("logcat.studio.bot.action.query.basic", content)
 
@@ -16,21 +16,15 @@
 package com.android.tools.idea.logcat.messages
 
 import com.android.annotations.concurrency.UiThread
-import com.android.tools.idea.logcat.message.LogcatMessage
 import com.android.tools.idea.logcat.util.LOGGER
 import com.intellij.openapi.diagnostic.debug
-import com.intellij.openapi.editor.RangeMarker
 import com.intellij.openapi.editor.ex.DocumentEx
 import com.intellij.openapi.editor.impl.DocumentMarkupModel
 import com.intellij.openapi.editor.markup.HighlighterLayer
 import com.intellij.openapi.editor.markup.HighlighterTargetArea
 import com.intellij.openapi.project.Project
-import com.intellij.openapi.util.Key
-import org.jetbrains.annotations.VisibleForTesting
 import kotlin.math.max
 
-internal val LOGCAT_MESSAGE_KEY = Key.create<LogcatMessage>("LogcatMessage")
-
 internal class DocumentAppender(
   project: Project,
   private val document: DocumentEx,
@@ -38,14 +32,10 @@ internal class DocumentAppender(
 ) {
   private val markupModel = DocumentMarkupModel.forDocument(document, project, true)
 
-  /**
-   * RangeMarker's are kept in the Document as weak reference (see IntervalTreeImpl#createGetter) so
-   * we need to keep them alive as long as they are valid.
-   */
-  @VisibleForTesting internal val ranges = ArrayDeque<RangeMarker>()
+  private val messageIndex = MessageOffsetIndex.getOrCreate(document)
 
   fun reset() {
-    ranges.clear()
+    messageIndex.clear()
   }
 
   @UiThread
@@ -94,15 +84,7 @@ internal class DocumentAppender(
     }
 
     for (range in buffer.messageRanges) {
-      range.applyRange(offset) { start, end, message ->
-        ranges.add(
-          document.createRangeMarker(start, end).apply { putUserData(LOGCAT_MESSAGE_KEY, message) }
-        )
-      }
-    }
-
-    while (!ranges.isEmpty() && !ranges.first().isReallyValid()) {
-      ranges.removeFirst()
+      range.applyRange(offset) { start, end, message -> messageIndex.add(start, end, message) }
     }
   }
 
@@ -120,10 +102,6 @@ internal class DocumentAppender(
   }
 }
 
-// There seems to be a bug where a range that is exactly the same as a portion that's deleted
-// remains valid but has a 0 size
-private fun RangeMarker.isReallyValid() = isValid && startOffset < endOffset
-
 private fun <T> TextAccumulator.Range<T>.applyRange(
   offset: Int,
   apply: (start: Int, end: Int, data: T) -> Unit,
@@ -42,12 +42,15 @@ internal class MessageBacklog(private var maxSize: Int) {
   val messages: List<LogcatMessage>
     get() = Collections.unmodifiableList(_messages)
 
+  private val index = MessageFieldIndex()
+
   private var size = 0
 
   init {
     assert(maxSize > 0)
   }
 
+  @Synchronized
   fun addAll(collection: List<LogcatMessage>) {
     val addedSize = collection.sumOf { it.message.length }
 
@@ -60,33 +63,53 @@ internal class MessageBacklog(private var maxSize: Int) {
     // memory thrashing.
     if (addedSize >= maxSize) {
       _messages.clear()
+      index.clear()
       size = addedSize
       val i =
         collection.indexOfFirst {
           size -= it.message.length
           size <= maxSize
         }
-      _messages.addAll(collection.subList(i + 1, collection.size))
+      addLast(collection.subList(i + 1, collection.size))
     } else {
       size += addedSize
       while (size > maxSize) {
-        size -= _messages.removeFirst().message.length
+        removeFirst()
       }
-      _messages.addAll(collection)
+      addLast(collection)
     }
   }
 
+  @Synchronized
   fun setMaxSize(newSize: Int) {
     if (newSize < maxSize) {
       while (size > newSize) {
-        size -= _messages.removeFirst().message.length
+        removeFirst()
       }
     }
     maxSize = newSize
   }
 
+  @Synchronized
   fun clear() {
     _messages.clear()
+    index.clear()
     size = 0
   }
+
+  /**
+   * Returns a copy of the backlog and its field index that can be filtered on other threads while
+   * new messages keep arriving.
+   */
+  @Synchronized fun snapshot(): BacklogSnapshot = index.snapshot(_messages.toList())
+
+  private fun addLast(messages: List<LogcatMessage>) {
+    _messages.addAll(messages)
+    messages.forEach(index::addLast)
+  }
+
+  private fun removeFirst() {
+    size -= _messages.removeFirst().message.length
+    index.removeFirst()
+  }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat.messages
+
+import com.android.tools.idea.logcat.message.LogLevel
+import com.android.tools.idea.logcat.message.LogcatMessage
+import java.util.BitSet
+
+/**
+ * Dictionary encoded columns of the header fields of the messages in a [MessageBacklog], kept in
+ * the same order as the backlog.
+ *
+ * Each column maps a message position to the id of its value. A filter on a single field can then
+ * be evaluated once per distinct value and applied to all messages with a scan of an [IntArray],
+ * instead of evaluating it on every message.
+ *
+ * A value is dropped from its dictionary once the last message with that value is evicted, and its
+ * id is reused, so the dictionaries only hold the values of the messages in the backlog.
+ */
+internal class MessageFieldIndex {
+  private val tags = IndexedColumn<String>()
+  private val applicationIds = IndexedColumn<String>()
+  private val processNames = IndexedColumn<String>()
+  private val levels = IndexedColumn<LogLevel>()
+
+  fun addLast(message: LogcatMessage) {
+    val header = message.header
+    tags.addLast(header.tag)
+    applicationIds.addLast(header.applicationId)
+    processNames.addLast(header.processName)
+    levels.addLast(header.logLevel)
+  }
+
+  fun removeFirst() {
+    tags.removeFirst()
+    applicationIds.removeFirst()
+    processNames.removeFirst()
+    levels.removeFirst()
+  }
+
+  fun clear() {
+    tags.clear()
+    applicationIds.clear()
+    processNames.clear()
+    levels.clear()
+  }
+
+  fun snapshot(messages: List<LogcatMessage>) =
+    BacklogSnapshot(
+      messages,
+      tags.snapshot(),
+      applicationIds.snapshot(),
+      processNames.snapshot(),
+      levels.snapshot(),
+    )
+}
+
+/** An immutable copy of a [MessageBacklog] together with its [MessageFieldIndex]. */
+internal class BacklogSnapshot(
+  val messages: List<LogcatMessage>,
+  val tags: ColumnSnapshot<String>,
+  val applicationIds: ColumnSnapshot<String>,
+  val processNames: ColumnSnapshot<String>,
+  val levels: ColumnSnapshot<LogLevel>,
+)
+
+/** An immutable copy of one column of a [MessageFieldIndex]. Unused ids have a null value. */
+internal class ColumnSnapshot<T>(private val ids: IntArray, private val values: List<T?>) {
+  /**
+   * Returns the positions of the messages whose value satisfies [predicate]. The predicate is
+   * evaluated once per distinct value.
+   */
+  fun select(predicate: (T) -> Boolean): BitSet {
+    val matchingIds = BitSet(values.size)
+    values.forEachIndexed { id, value -> if (value != null && predicate(value)) matchingIds.set(id) }
+    val result = BitSet(ids.size)
+    if (matchingIds.isEmpty) {
+      return result
+    }
+    for (i in ids.indices) {
+      if (matchingIds.get(ids[i])) {
+        result.set(i)
+      }
+    }
+    return result
+  }
+}
+
+private class IndexedColumn<T : Any> {
+  private val dictionary = HashMap<T, Int>()
+  // The value of each id, or null if the id is free
+  private val values = ArrayList<T?>()
+  // The number of messages with each id
+  private var counts = IntArray(INITIAL_DICTIONARY_CAPACITY)
+  private val freeIds = ArrayDeque<Int>()
+
+  // A ring buffer of value ids
+  private var ids = IntArray(INITIAL_CAPACITY)
+  private var head = 0
+  private var size = 0
+
+  fun addLast(value: T) {
+    val id = dictionary.getOrPut(value) { newId(value) }
+    counts[id]++
+    if (size == ids.size) {
+      ids = toIdArray(ids.size * 2)
+      head = 0
+    }
+    ids[(head + size) % ids.size] = id
+    size++
+  }
+
+  fun removeFirst() {
+    check(size > 0)
+    val id = ids[head]
+    head = (head + 1) % ids.size
+    size--
+    if (--counts[id] == 0) {
+      dictionary.remove(values[id])
+      values[id] = null
+      freeIds.addLast(id)
+    }
+  }
+
+  fun clear() {
+    dictionary.clear()
+    values.clear()
+    counts = IntArray(INITIAL_DICTIONARY_CAPACITY)
+    freeIds.clear()
+    ids = IntArray(INITIAL_CAPACITY)
+    head = 0
+    size = 0
+  }
+
+  private fun newId(value: T): Int {
+    freeIds.removeFirstOrNull()?.let {
+      values[it] = value
+      return it
+    }
+    if (values.size == counts.size) {
+      counts = counts.copyOf(counts.size * 2)
+    }
+    values.add(value)
+    return values.size - 1
+  }
+
+  fun snapshot() = ColumnSnapshot(toIdArray(size), values.toList())
+
+  private fun toIdArray(capacity: Int): IntArray {
+    val result = IntArray(capacity)
+    val firstPart = minOf(size, ids.size - head)
+    ids.copyInto(result, 0, head, head + firstPart)
+    ids.copyInto(result, firstPart, 0, size - firstPart)
+    return result
+  }
+}
+
+private const val INITIAL_CAPACITY = 1024
+private const val INITIAL_DICTIONARY_CAPACITY = 64
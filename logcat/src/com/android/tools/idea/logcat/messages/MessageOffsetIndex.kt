@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat.messages
+
+import com.android.annotations.concurrency.UiThread
+import com.android.tools.idea.logcat.message.LogcatMessage
+import com.intellij.openapi.editor.Document
+import com.intellij.openapi.editor.event.DocumentEvent
+import com.intellij.openapi.editor.event.DocumentListener
+import com.intellij.openapi.util.Key
+
+private val MESSAGE_OFFSET_INDEX_KEY = Key.create<MessageOffsetIndex>("MessageOffsetIndex")
+
+/**
+ * Maps ranges of a Logcat [Document] to the [LogcatMessage]s rendered there.
+ *
+ * This replaces a `RangeMarker` per message. Range markers live in the interval tree of the
+ * document, which is updated on every change and had become the main EDT cost at high log rates.
+ *
+ * The Logcat document only grows at the end and shrinks from the front, so ranges are stored in
+ * order as offsets into the stream of text appended since the document was created. Text removed
+ * from the front only moves [removedLength], and lookups are a binary search. Any other kind of
+ * change clears the index.
+ */
+internal class MessageOffsetIndex private constructor(private val document: Document) :
+  DocumentListener {
+  private val entries = ArrayDeque<Entry>()
+
+  /** Number of characters removed from the front of the document since the index was created. */
+  private var removedLength = 0L
+
+  /** Registers [message] as rendered in the document range `[start, end)`. */
+  @UiThread
+  fun add(start: Int, end: Int, message: LogcatMessage) {
+    entries.add(Entry(start + removedLength, end + removedLength, message))
+  }
+
+  /**
+   * Calls [processor] with the start offset of every message whose range overlaps `[start, end]`,
+   * in document order, until it returns false.
+   *
+   * Overlap is inclusive of the boundaries, like [Document.processRangeMarkersOverlappingWith].
+   */
+  @UiThread
+  fun processMessagesOverlappingWith(
+    start: Int,
+    end: Int,
+    processor: (startOffset: Int, message: LogcatMessage) -> Boolean,
+  ) {
+    val absoluteStart = start + removedLength
+    val absoluteEnd = end + removedLength
+    var low = 0
+    var high = entries.size
+    while (low < high) {
+      val mid = (low + high) ushr 1
+      if (entries[mid].end < absoluteStart) low = mid + 1 else high = mid
+    }
+    for (i in low until entries.size) {
+      val entry = entries[i]
+      if (entry.start > absoluteEnd) {
+        return
+      }
+      // A message that was partly trimmed starts at the beginning of the document
+      val startOffset = maxOf(entry.start - removedLength, 0L).toInt()
+      if (!processor(startOffset, entry.message)) {
+        return
+      }
+    }
+  }
+
+  @UiThread
+  fun clear() {
+    entries.clear()
+  }
+
+  @UiThread
+  override fun documentChanged(event: DocumentEvent) {
+    when {
+      event.oldLength == 0 && event.offset + event.newLength == document.textLength -> Unit
+      event.newLength == 0 && event.offset == 0 -> {
+        removedLength += event.oldLength
+        while (entries.isNotEmpty() && entries.first().end <= removedLength) {
+          entries.removeFirst()
+        }
+      }
+      else -> entries.clear()
+    }
+  }
+
+  private class Entry(val start: Long, val end: Long, val message: LogcatMessage)
+
+  companion object {
+    /** Returns the index of [document], creating it if needed. */
+    @UiThread
+    fun getOrCreate(document: Document): MessageOffsetIndex =
+      document.getUserData(MESSAGE_OFFSET_INDEX_KEY)
+        ?: MessageOffsetIndex(document).also {
+          document.addDocumentListener(it)
+          document.putUserData(MESSAGE_OFFSET_INDEX_KEY, it)
+        }
+  }
+}
+
+/** See [MessageOffsetIndex.processMessagesOverlappingWith]. */
+@UiThread
+internal fun Document.processLogcatMessagesOverlappingWith(
+  start: Int,
+  end: Int,
+  processor: (startOffset: Int, message: LogcatMessage) -> Boolean,
+) {
+  getUserData(MESSAGE_OFFSET_INDEX_KEY)?.processMessagesOverlappingWith(start, end, processor)
+}
@@ -82,7 +82,20 @@ constructor(
   }
 
   internal suspend fun appendMessages(messages: List<LogcatMessage>): List<LogcatMessage> {
-    val filteredMessages = LogcatMasterFilter(logcatFilter).filter(messages)
+    return sendMessages(LogcatMasterFilter(logcatFilter).filter(messages))
+  }
+
+  /**
+   * Filters and appends a whole backlog using its index.
+   *
+   * Nothing is sent until the whole backlog is filtered, so cancelling the caller, for example
+   * because the filter changed again, does not leave partial results in the document.
+   */
+  internal suspend fun appendMessages(snapshot: BacklogSnapshot): List<LogcatMessage> {
+    return sendMessages(LogcatMasterFilter(logcatFilter).filter(snapshot))
+  }
+
+  private suspend fun sendMessages(filteredMessages: List<LogcatMessage>): List<LogcatMessage> {
     if (filteredMessages.isNotEmpty()) {
       LOGGER.debug { "Sending ${filteredMessages.size} messages to messageChannel" }
       messageChannel.send(filteredMessages)
@@ -17,7 +17,7 @@ package com.android.tools.idea.logcat.util
 
 import com.android.annotations.concurrency.UiThread
 import com.android.tools.idea.logcat.messages.FormattingOptions
-import com.android.tools.idea.logcat.messages.LOGCAT_MESSAGE_KEY
+import com.android.tools.idea.logcat.messages.processLogcatMessagesOverlappingWith
 import com.android.tools.idea.logcat.util.FilterHint.AppName
 import com.android.tools.idea.logcat.util.FilterHint.Level
 import com.android.tools.idea.logcat.util.FilterHint.Tag
@@ -82,10 +82,9 @@ internal fun EditorEx.getFilterHint(
   formattingOptions: FormattingOptions,
 ): FilterHint? {
   var result: FilterHint? = null
-  document.processRangeMarkersOverlappingWith(offset, offset) {
-    val header =
-      it.getUserData(LOGCAT_MESSAGE_KEY)?.header ?: return@processRangeMarkersOverlappingWith true
-    val pos = offset - it.startOffset
+  document.processLogcatMessagesOverlappingWith(offset, offset) { startOffset, message ->
+    val header = message.header
+    val pos = offset - startOffset
     result =
       when {
         formattingOptions.getTagRange().isWithin(pos) ->
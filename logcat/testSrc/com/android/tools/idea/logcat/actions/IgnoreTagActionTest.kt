@@ -63,7 +63,6 @@ class IgnoreTagActionTest {
     get() = logcatEditorRule.editor
 
   private val logcatSettings = AndroidLogcatSettings()
-  // We need to retain a reference to documentAppender so that ranges don't get GC'ed
   private val documentAppender by lazy {
     DocumentAppender(projectRule.project, editor.document, 1_000_000)
   }
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat.files
+
+import com.android.tools.idea.logcat.message.LogLevel
+import com.android.tools.idea.logcat.message.LogcatMessage
+import com.android.tools.idea.logcat.util.logcatMessage
+import com.google.common.truth.Truth.assertThat
+import com.intellij.testFramework.UsefulTestCase.assertThrows
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.ClosedChannelException
+import java.time.Instant
+
+/** Offset of the first block header in a file without metadata */
+private const val FIRST_BLOCK_OFFSET = 3 * Int.SIZE_BYTES
+
+/** Tests for [LogcatSegmentWriter] and [LogcatSegmentReader] */
+class LogcatSegmentFileTest {
+  @get:Rule val temporaryFolder = TemporaryFolder()
+
+  private val messages =
+    List(MESSAGES_PER_BLOCK * 2 + 10) {
+      logcatMessage(
+        logLevel = LogLevel.entries[it % LogLevel.entries.size],
+        pid = it % 7,
+        tid = -it,
+        appId = "com.example.app${it % 3}",
+        processName = "process${it % 5}",
+        tag = "Tag${it % 11}",
+        // Mostly increasing, with some going back in time
+        timestamp = Instant.ofEpochSecond(1_700_000_000L + it - (it % 3) * 2, it * 1000L),
+        message = "Message $it é",
+      )
+    }
+
+  @Test
+  fun roundTrip() {
+    open(write(messages, metadata = "{}")).use { reader ->
+      assertThat(reader).containsExactlyElementsIn(messages).inOrder()
+      assertThat(reader.metadata).isEqualTo("{}")
+    }
+  }
+
+  @Test
+  fun randomAccess() {
+    open(write(messages)).use { reader ->
+      for (i in listOf(messages.size - 1, 0, MESSAGES_PER_BLOCK, MESSAGES_PER_BLOCK - 1, 5)) {
+        assertThat(reader[i]).isEqualTo(messages[i])
+      }
+    }
+  }
+
+  @Test
+  fun noMessages() {
+    open(write(emptyList())).use { reader ->
+      assertThat(reader).isEmpty()
+      assertThat(reader.metadata).isNull()
+    }
+  }
+
+  @Test
+  fun truncatedFile_readsCompleteBlocks() {
+    val buffer = write(messages)
+
+    open(buffer.limit(buffer.limit() - 1)).use { reader ->
+      assertThat(reader).containsExactlyElementsIn(messages.take(MESSAGES_PER_BLOCK * 2)).inOrder()
+    }
+  }
+
+  @Test
+  fun close_closesFile() {
+    val reader = open(write(messages))
+
+    reader.close()
+
+    assertThrows(ClosedChannelException::class.java) { reader[0] }
+  }
+
+  @Test
+  fun corruptMetadataLength() {
+    val buffer = write(messages).putInt(2 * Int.SIZE_BYTES, Int.MAX_VALUE)
+
+    assertThrows(CorruptLogcatSegmentException::class.java) { open(buffer) }
+  }
+
+  @Test
+  fun corruptBlockHeader() {
+    val buffer = write(messages).putInt(FIRST_BLOCK_OFFSET + Long.SIZE_BYTES, -1)
+
+    assertThrows(CorruptLogcatSegmentException::class.java) { open(buffer) }
+  }
+
+  @Test
+  fun corruptPayload_throwsOnAccess() {
+    val buffer = write(messages)
+    buffer.putInt(FIRST_BLOCK_OFFSET + Long.SIZE_BYTES + Int.SIZE_BYTES, 1)
+
+    open(buffer).use { reader ->
+      assertThrows(CorruptLogcatSegmentException::class.java) { reader[0] }
+      assertThat(reader[MESSAGES_PER_BLOCK]).isEqualTo(messages[MESSAGES_PER_BLOCK])
+    }
+  }
+
+  private fun write(messages: List<LogcatMessage>, metadata: String? = null): ByteBuffer {
+    val out = ByteArrayOutputStream()
+    LogcatSegmentWriter(out, metadata).use { it.appendAll(messages) }
+    return ByteBuffer.wrap(out.toByteArray())
+  }
+
+  /** Opens a segment file with the bytes of [buffer] up to its limit. */
+  private fun open(buffer: ByteBuffer): LogcatSegmentReader {
+    val file = temporaryFolder.newFile()
+    file.writeBytes(buffer.array().copyOf(buffer.limit()))
+    return LogcatSegmentReader.open(file.toPath())
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat.filters
+
+import com.android.tools.idea.logcat.filters.LogcatFilterField.APP
+import com.android.tools.idea.logcat.filters.LogcatFilterField.MESSAGE
+import com.android.tools.idea.logcat.filters.LogcatFilterField.TAG
+import com.android.tools.idea.logcat.message.LogLevel.DEBUG
+import com.android.tools.idea.logcat.message.LogLevel.ERROR
+import com.android.tools.idea.logcat.message.LogLevel.INFO
+import com.android.tools.idea.logcat.message.LogLevel.WARN
+import com.android.tools.idea.logcat.messages.MessageBacklog
+import com.android.tools.idea.logcat.util.logcatMessage
+import com.google.common.truth.Truth.assertThat
+import com.intellij.openapi.util.TextRange.EMPTY_RANGE
+import org.junit.Test
+
+private val MESSAGES =
+  listOf(
+    logcatMessage(DEBUG, appId = "app1", tag = "Tag1", message = "foo"),
+    logcatMessage(INFO, appId = "app1", tag = "Tag2", message = "bar"),
+    logcatMessage(WARN, appId = "app2", tag = "Tag1", message = "foobar"),
+    logcatMessage(ERROR, appId = "app2", tag = "tag1", message = "baz"),
+  )
+
+/** Tests for [LogcatFilterProgram] */
+class LogcatFilterProgramTest {
+  private val snapshot = MessageBacklog(1000).apply { addAll(MESSAGES) }.snapshot()
+
+  @Test
+  fun matches_sameAsFilter() {
+    val filters =
+      listOf(
+        AndLogcatFilter(
+          RegexFilter("o+", MESSAGE, matchCase = true, EMPTY_RANGE),
+          AndLogcatFilter(
+            LevelFilter(INFO, EMPTY_RANGE),
+            OrLogcatFilter(
+              ExactStringFilter("tag1", TAG, matchCase = false, EMPTY_RANGE),
+              NegatedStringFilter("2", APP, matchCase = true, EMPTY_RANGE),
+            ),
+          ),
+        ),
+        OrLogcatFilter(
+          StringFilter("baz", MESSAGE, matchCase = true, EMPTY_RANGE),
+          OrLogcatFilter(ExactLevelFilter(DEBUG, EMPTY_RANGE), EmptyFilter),
+        ),
+      )
+
+    for (filter in filters) {
+      val program = LogcatFilterProgram(filter)
+      for (message in MESSAGES) {
+        val wrapper = LogcatMessageWrapper(message)
+        assertThat(program.matches(wrapper)).isEqualTo(filter.matches(wrapper))
+      }
+    }
+  }
+
+  @Test
+  fun select_answersHeaderConjunctsFromIndex() {
+    val program =
+      LogcatFilterProgram(
+        AndLogcatFilter(
+          StringFilter("foo", MESSAGE, matchCase = true, EMPTY_RANGE),
+          ExactStringFilter("tag1", TAG, matchCase = false, EMPTY_RANGE),
+          LevelFilter(INFO, EMPTY_RANGE),
+        )
+      )
+
+    val candidates = program.select(snapshot)
+
+    assertThat(candidates!!.stream().toArray()).asList().containsExactly(2, 3).inOrder()
+    assertThat(program.matchesResidual(LogcatMessageWrapper(MESSAGES[2]))).isTrue()
+    assertThat(program.matchesResidual(LogcatMessageWrapper(MESSAGES[3]))).isFalse()
+  }
+
+  @Test
+  fun select_orOfIndexedFilters() {
+    val program =
+      LogcatFilterProgram(
+        OrLogcatFilter(
+          ExactStringFilter("Tag2", TAG, matchCase = true, EMPTY_RANGE),
+          ExactStringFilter("app2", APP, matchCase = true, EMPTY_RANGE),
+        )
+      )
+
+    assertThat(program.select(snapshot)!!.stream().toArray()).asList().containsExactly(1, 2, 3)
+  }
+
+  @Test
+  fun select_nothingIndexed() {
+    val program = LogcatFilterProgram(StringFilter("foo", MESSAGE, matchCase = true, EMPTY_RANGE))
+
+    assertThat(program.select(snapshot)).isNull()
+  }
+}
@@ -91,6 +91,47 @@ class MessageBacklogTest {
     assertThat(messageBacklog.messages).containsExactly(message2, message3)
   }
 
+  @Test
+  fun snapshot_indexFollowsEvictions() {
+    val messageBacklog = MessageBacklog(20)
+    messageBacklog.addAll(listOf(logcatMessage(tag = "Tag1", message = "Message 1")))
+    messageBacklog.addAll(listOf(logcatMessage(tag = "Tag2", message = "Message 2")))
+    messageBacklog.addAll(listOf(logcatMessage(tag = "Tag1", message = "Message 3")))
+
+    val snapshot = messageBacklog.snapshot()
+
+    assertThat(snapshot.messages.map { it.message }).containsExactly("Message 2", "Message 3")
+    assertThat(snapshot.tags.select { it == "Tag1" }.stream().toArray()).asList().containsExactly(1)
+    assertThat(snapshot.tags.select { it == "Tag2" }.stream().toArray()).asList().containsExactly(0)
+  }
+
+  @Test
+  fun snapshot_indexDropsEvictedValues() {
+    val messageBacklog = MessageBacklog(20)
+    messageBacklog.addAll(listOf(logcatMessage(tag = "Tag1", message = "Message 1")))
+    messageBacklog.addAll(listOf(logcatMessage(tag = "Tag2", message = "Message 2")))
+    messageBacklog.addAll(listOf(logcatMessage(tag = "Tag3", message = "Message 3")))
+    messageBacklog.addAll(listOf(logcatMessage(tag = "Tag4", message = "Message 4")))
+
+    val tags = mutableListOf<String>()
+    val selected = messageBacklog.snapshot().tags.select { tags.add(it) }
+
+    assertThat(tags).containsExactly("Tag3", "Tag4")
+    assertThat(selected.stream().toArray()).asList().containsExactly(0, 1)
+  }
+
+  @Test
+  fun snapshot_isNotAffectedByLaterMessages() {
+    val messageBacklog = MessageBacklog(20)
+    messageBacklog.addAll(listOf(message1))
+    val snapshot = messageBacklog.snapshot()
+
+    messageBacklog.addAll(listOf(message2, message3))
+
+    assertThat(snapshot.messages).containsExactly(message1)
+    assertThat(snapshot.tags.select { true }.cardinality()).isEqualTo(1)
+  }
+
   @Test
   fun messages_isUnmodifiable() {
     val mutableList = MessageBacklog(20).messages as MutableList<LogcatMessage>
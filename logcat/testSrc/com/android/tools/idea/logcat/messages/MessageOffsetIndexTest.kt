@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.logcat.messages
+
+import com.android.tools.idea.logcat.message.LogcatMessage
+import com.android.tools.idea.logcat.util.logcatMessage
+import com.google.common.truth.Truth.assertThat
+import com.intellij.openapi.editor.impl.DocumentImpl
+import com.intellij.testFramework.EdtRule
+import com.intellij.testFramework.ProjectRule
+import com.intellij.testFramework.RuleChain
+import com.intellij.testFramework.RunsInEdt
+import org.junit.Rule
+import org.junit.Test
+
+private val message1 = logcatMessage(message = "Message 1")
+private val message2 = logcatMessage(message = "Message 2")
+private val message3 = logcatMessage(message = "Message 3")
+
+/** Tests for [MessageOffsetIndex] */
+@RunsInEdt
+class MessageOffsetIndexTest {
+  private val projectRule = ProjectRule()
+
+  @get:Rule val rule = RuleChain(projectRule, EdtRule())
+
+  private val document = DocumentImpl("", true)
+  private val documentAppender by lazy { DocumentAppender(projectRule.project, document, 30) }
+
+  @Test
+  fun processMessagesOverlappingWith_findsMessages() {
+    append(message1, message2, message3)
+
+    assertThat(messagesAt(0, 0)).containsExactly(0 to message1)
+    assertThat(messagesAt(12, 12)).containsExactly(10 to message2)
+    assertThat(messagesAt(5, 25)).containsExactly(0 to message1, 10 to message2, 20 to message3)
+  }
+
+  @Test
+  fun processMessagesOverlappingWith_stopsWhenProcessorReturnsFalse() {
+    append(message1, message2, message3)
+    val messages = mutableListOf<LogcatMessage>()
+
+    document.processLogcatMessagesOverlappingWith(0, document.textLength) { _, message ->
+      messages.add(message)
+      false
+    }
+
+    assertThat(messages).containsExactly(message1)
+  }
+
+  @Test
+  fun trimmedMessages_areRemoved() {
+    append(message1, message2, message3)
+
+    append(logcatMessage(message = "Message 4"))
+
+    assertThat(messagesAt(0, document.textLength).map { it.second.message })
+      .containsExactly("Message 2", "Message 3", "Message 4")
+      .inOrder()
+    assertThat(messagesAt(12, 12).single().first).isEqualTo(10)
+  }
+
+  @Test
+  fun setText_clearsIndex() {
+    append(message1, message2)
+
+    document.setText("")
+
+    assertThat(messagesAt(0, document.textLength)).isEmpty()
+  }
+
+  private fun append(vararg messages: LogcatMessage) {
+    val textAccumulator = TextAccumulator()
+    for (message in messages) {
+      val start = textAccumulator.getTextLength()
+      textAccumulator.accumulate("${message.message}\n")
+      textAccumulator.addMessageRange(start, start + message.message.length, message)
+    }
+    documentAppender.appendToDocument(textAccumulator)
+  }
+
+  private fun messagesAt(start: Int, end: Int): List<Pair<Int, LogcatMessage>> = buildList {
+    document.processLogcatMessagesOverlappingWith(start, end) { startOffset, message ->
+      add(startOffset to message)
+      true
+    }
+  }
+}
@@ -16,10 +16,9 @@
 package com.android.tools.idea.logcat.testing
 
 import com.android.tools.idea.logcat.message.LogcatMessage
-import com.android.tools.idea.logcat.messages.LOGCAT_MESSAGE_KEY
+import com.android.tools.idea.logcat.messages.MessageOffsetIndex
 import com.android.tools.idea.logcat.util.createLogcatEditor
 import com.intellij.openapi.editor.EditorFactory
-import com.intellij.openapi.editor.RangeMarker
 import com.intellij.openapi.editor.ex.EditorEx
 import com.intellij.testFramework.ProjectRule
 import com.intellij.testFramework.runInEdtAndGet
@@ -31,12 +30,6 @@ internal class LogcatEditorRule(private val projectRule: ProjectRule) : External
   lateinit var editor: EditorEx
     private set
 
-  /**
-   * RangeMarker's are kept in the Document as weak reference (see IntervalTreeImpl#createGetter) so
-   * we need to keep them alive as long as they are valid.
-   */
-  private val markers = mutableListOf<RangeMarker>()
-
   override fun before() {
     editor = runInEdtAndGet { createLogcatEditor(projectRule.project) }
   }
@@ -50,14 +43,12 @@ internal class LogcatEditorRule(private val projectRule: ProjectRule) : External
     formatMessage: LogcatMessage.() -> String = LogcatMessage::toString,
   ) {
     val document = editor.document
+    val messageIndex = MessageOffsetIndex.getOrCreate(document)
     messages.forEach {
       val start = document.textLength
       val text = it.formatMessage()
       document.insertString(start, "$text\n")
-      document.createRangeMarker(start, start + text.length).apply {
-        putUserData(LOGCAT_MESSAGE_KEY, it)
-        markers.add(this)
-      }
+      messageIndex.add(start, start + text.length, it)
     }
   }
 }
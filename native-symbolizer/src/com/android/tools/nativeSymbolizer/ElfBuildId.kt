@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+private const val SHT_NOTE = 7
+private const val NT_GNU_BUILD_ID = 3
+private const val MAX_NOTE_SECTION_SIZE = 64 * 1024
+
+/**
+ * Reads the GNU build ID of an ELF file, i.e. the content of its `NT_GNU_BUILD_ID` note, as a hex
+ * string. Returns null if the file is not an ELF file or has no build ID.
+ */
+internal fun readElfBuildId(file: File): String? {
+  return try {
+    RandomAccessFile(file, "r").use { readElfBuildId(it) }
+  }
+  catch (e: IOException) {
+    getLogger().debug("Unable to read the build ID of $file", e)
+    null
+  }
+}
+
+private fun readElfBuildId(file: RandomAccessFile): String? {
+  val header = file.read(0, 64) ?: return null
+  if (header.getInt(0) != 0x7f454c46) { // "\u007fELF"
+    return null
+  }
+  val is64Bit = when (header.get(4).toInt()) {
+    1 -> false
+    2 -> true
+    else -> return null
+  }
+  header.order(if (header.get(5).toInt() == 2) ByteOrder.BIG_ENDIAN else ByteOrder.LITTLE_ENDIAN)
+
+  val sectionHeadersOffset = if (is64Bit) header.getLong(0x28) else header.getInt(0x20).toUnsignedLong()
+  val sectionHeaderSize = header.getShort(if (is64Bit) 0x3A else 0x2E).toUnsignedInt()
+  val sectionCount = header.getShort(if (is64Bit) 0x3C else 0x30).toUnsignedInt()
+  if (sectionHeadersOffset <= 0 || sectionHeaderSize == 0) {
+    return null
+  }
+  val sectionHeaders = file.read(sectionHeadersOffset, sectionCount * sectionHeaderSize)?.order(header.order()) ?: return null
+
+  for (section in 0 until sectionCount) {
+    val base = section * sectionHeaderSize
+    if (sectionHeaders.getInt(base + 4) != SHT_NOTE) {
+      continue
+    }
+    val offset = if (is64Bit) sectionHeaders.getLong(base + 0x18) else sectionHeaders.getInt(base + 0x10).toUnsignedLong()
+    val size = if (is64Bit) sectionHeaders.getLong(base + 0x20) else sectionHeaders.getInt(base + 0x14).toUnsignedLong()
+    if (size > MAX_NOTE_SECTION_SIZE) {
+      continue
+    }
+    val notes = file.read(offset, size.toInt())?.order(header.order()) ?: continue
+    findBuildIdNote(notes)?.let { return it }
+  }
+  return null
+}
+
+/** Looks for a "GNU" note of type [NT_GNU_BUILD_ID] in the content of a note section. */
+private fun findBuildIdNote(notes: ByteBuffer): String? {
+  var position = 0
+  while (position + 12 <= notes.limit()) {
+    val nameSize = notes.getInt(position)
+    val descriptorSize = notes.getInt(position + 4)
+    val type = notes.getInt(position + 8)
+    val nameStart = position + 12
+    val descriptorStart = nameStart + nameSize.alignTo4()
+    val end = descriptorStart + descriptorSize.alignTo4()
+    if (nameSize < 0 || descriptorSize < 0 || end > notes.limit() || end <= position) {
+      return null
+    }
+    if (type == NT_GNU_BUILD_ID && nameSize == 4 && GNU_NOTE_NAME.indices.all { notes.get(nameStart + it) == GNU_NOTE_NAME[it] }) {
+      return (descriptorStart until descriptorStart + descriptorSize).joinToString("") { "%02x".format(notes.get(it)) }
+    }
+    position = end
+  }
+  return null
+}
+
+private val GNU_NOTE_NAME = byteArrayOf('G'.code.toByte(), 'N'.code.toByte(), 'U'.code.toByte(), 0)
+
+/** Reads [length] bytes at [offset], or returns null if the file is too short. */
+private fun RandomAccessFile.read(offset: Long, length: Int): ByteBuffer? {
+  if (offset < 0 || offset + length > length()) {
+    return null
+  }
+  val bytes = ByteArray(length)
+  seek(offset)
+  readFully(bytes)
+  return ByteBuffer.wrap(bytes)
+}
+
+private fun Int.alignTo4() = (this + 3) and 3.inv()
+
+private fun Int.toUnsignedLong() = toLong() and 0xffffffffL
+
+private fun Short.toUnsignedInt() = toInt() and 0xffff
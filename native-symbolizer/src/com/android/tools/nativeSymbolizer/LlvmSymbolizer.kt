@@ -25,9 +25,15 @@ import java.util.concurrent.Callable
 import java.util.concurrent.ExecutionException
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
+import java.util.concurrent.Future
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.TimeoutException
 
+/** Number of requests sent to one llvm-symbolizer process before waiting for its responses. */
+private const val BATCH_SIZE = 256
+
+private val DEFAULT_PROCESS_COUNT = (Runtime.getRuntime().availableProcessors() / 2).coerceIn(1, 4)
+
 /**
  * Implementation of NativeSymbolizer that uses llvm-symbolizer.
  *
@@ -42,68 +48,118 @@ import java.util.concurrent.TimeoutException
  * TestSimpleMethodCall(_JNIEnv*, _jobject*)
  * /usr/local/google/home/ezemtsov/projects/android-apps/sum/app/src/main/cpp/native-lib.cpp:36:7
  *
+ * Requests are answered in order, so they are pipelined: a batch of requests is written before the
+ * responses are read. Batches are spread over up to [processCount] llvm-symbolizer processes, and
+ * responses are kept in [symbolCache], so each (symbol file, offset) pair is only looked up once.
+ *
  * More info about llvm-symbolizer: https://llvm.org/docs/CommandGuide/llvm-symbolizer.html
+ *
+ * @param timeoutMsc - How long to wait for the responses to a batch of requests.
  */
 class LlvmSymbolizer(private val symbolizerExe: String,
                      private val symLocator: SymbolFilesLocator,
-                     private val timeoutMsc: Long = 5000) : NativeSymbolizer {
+                     private val timeoutMsc: Long = 5000,
+                     private val processCount: Int = DEFAULT_PROCESS_COUNT,
+                     private val symbolCache: SymbolCache = SymbolCache(null)) : NativeSymbolizer {
 
-  private var procHolder : ProcessHolder? = null
-  private val executor : ExecutorService = Executors.newSingleThreadExecutor()
+  private val procHolders = arrayOfNulls<ProcessHolder>(processCount)
+  private val executor : ExecutorService = Executors.newCachedThreadPool { runnable ->
+    Thread(runnable, "llvm-symbolizer").apply { isDaemon = true }
+  }
 
   /**
    * @param abiArch - The cpu architecture of the symbol.
    * @param module - The file path to the module.
    * @param offset - The starting byte address in the module of the symbol.
    */
-  override fun symbolize(abiArch: String, module: File, offset: Long): Symbol? {
-    val symFiles = symLocator.getFiles(abiArch)
-
-    for (symFile in symFiles.filter { it.nameWithoutExtension == module.nameWithoutExtension }) {
-      val request = formatRequest(symFile, offset)
-
-      val holder = getProcHolder()
-      val future = executor.submit( Callable<List<String>> {
-        holder.stdin.write(request)
-        holder.stdin.flush()
-
-        val response: MutableList<String> = mutableListOf()
-        var responseLine: String?
-        while (true) {
-          responseLine = holder.stdout.readLine()
-          if (responseLine.isNullOrEmpty()) {
-            break
-          }
-          response.add(responseLine)
+  override fun symbolize(abiArch: String, module: File, offset: Long): Symbol? =
+    symbolize(abiArch, listOf(SymbolRequest(module, offset))).first()
+
+  @Synchronized
+  override fun symbolize(abiArch: String, requests: List<SymbolRequest>): List<Symbol?> {
+    val symFilesByName = symLocator.getFiles(abiArch).groupBy { it.nameWithoutExtension }
+    val symbols = HashMap<SymbolRequest, Symbol>()
+
+    // Like with a single request, look the offsets up in each symbol file with the name of the
+    // module, until one of them knows the symbol.
+    var unresolved = requests.distinct()
+    var candidate = 0
+    while (unresolved.isNotEmpty()) {
+      val lookups = unresolved.mapNotNull { request ->
+        symFilesByName[request.module.nameWithoutExtension]?.getOrNull(candidate)?.let { request to Lookup(it, request.offset) }
+      }
+      if (lookups.isEmpty()) {
+        break
+      }
+      val responses = lookUp(lookups.map { it.second })
+      unresolved = lookups.zip(responses).mapNotNull { (lookup, response) ->
+        val request = lookup.first
+        val symbol = response?.let { parseResponse(it, request.module) }
+        if (symbol != null) {
+          symbols[request] = symbol
+          null
+        }
+        else {
+          request
         }
-        response
-      })
-      val response : List<String>
-      try {
-        response = future.get(timeoutMsc, TimeUnit.MILLISECONDS)
-      } catch (e: TimeoutException) {
-        getLogger().warn("llvm-symbolizer timed out", e)
-        stop()
-        continue
-      } catch (e: ExecutionException) {
-        getLogger().warn("llvm-symbolizer communication failed", e)
-        stop()
-        continue
       }
+      candidate++
+    }
+    symbolCache.flush()
+
+    return requests.map { symbols[it] }
+  }
+
+  /**
+   * Returns the llvm-symbolizer responses of [lookups], in order, or null for the lookups that failed.
+   */
+  private fun lookUp(lookups: List<Lookup>): List<List<String>?> {
+    val responses = arrayOfNulls<List<String>>(lookups.size)
+    val misses = lookups.indices.filter { index ->
+      val lookup = lookups[index]
+      responses[index] = symbolCache.get(lookup.symFile, lookup.offset)
+      responses[index] == null
+    }
 
-      val result = parseResponse(response, module)
-      if (result != null)
-        return result
+    // Each round sends one batch to each process, and waits for all of them
+    for (round in misses.chunked(BATCH_SIZE * processCount)) {
+      val batches = round.chunked(BATCH_SIZE)
+      val futures = batches.mapIndexed { processIndex, batch ->
+        val holder = getProcHolder(processIndex)
+        holder to executor.submit(Callable { holder.send(batch.map { formatRequest(lookups[it].symFile, lookups[it].offset) }) })
+      }
+      for ((batch, holderAndFuture) in batches.zip(futures)) {
+        val (holder, future) = holderAndFuture
+        val batchResponses = awaitResponses(holder, future) ?: continue
+        for ((index, response) in batch.zip(batchResponses)) {
+          responses[index] = response
+          symbolCache.put(lookups[index].symFile, lookups[index].offset, response)
+        }
+      }
     }
+    return responses.asList()
+  }
 
-    return null
+  private fun awaitResponses(holder: ProcessHolder, future: Future<List<List<String>>>): List<List<String>>? {
+    return try {
+      future.get(timeoutMsc, TimeUnit.MILLISECONDS)
+    } catch (e: TimeoutException) {
+      getLogger().warn("llvm-symbolizer timed out", e)
+      stop(holder)
+      null
+    } catch (e: ExecutionException) {
+      getLogger().warn("llvm-symbolizer communication failed", e)
+      stop(holder)
+      null
+    }
   }
 
-  private fun getProcHolder() : ProcessHolder {
-    var holder = procHolder
+  private fun getProcHolder(index: Int) : ProcessHolder {
+    var holder = procHolders[index]
     if (holder == null || !holder.process.isAlive) {
-      start()
-      holder = procHolder!! // procHolder must't be null after start()
+      holder?.dispose()
+      holder = start()
+      procHolders[index] = holder
     }
     return holder
   }
@@ -140,10 +196,7 @@ class LlvmSymbolizer(private val symbolizerExe: String,
     return Symbol(name, module.absolutePath, sourceFile, lineNumber)
   }
 
-  private fun start() {
-    if (procHolder != null)
-      stop()
-
+  private fun start(): ProcessHolder {
     val builder = ProcessBuilder(symbolizerExe)
     val process = builder.start()
     if (!process.isAlive) {
@@ -152,19 +205,57 @@ class LlvmSymbolizer(private val symbolizerExe: String,
 
     val stdin = OutputStreamWriter(process.outputStream, Charsets.UTF_8)
     val stdout = BufferedReader(InputStreamReader(process.inputStream, Charsets.UTF_8))
-    procHolder = ProcessHolder(process, stdout, stdin)
+    return ProcessHolder(process, stdout, stdin)
+  }
+
+  private fun stop(holder: ProcessHolder) {
+    holder.dispose()
+    val index = procHolders.indexOf(holder)
+    if (index >= 0) {
+      procHolders[index] = null
+    }
   }
 
+  @Synchronized
   override fun stop() {
-    procHolder?.dispose()
-    procHolder = null
+    procHolders.forEach { it?.dispose() }
+    procHolders.fill(null)
   }
 
-  private class ProcessHolder(val process: Process,
-                              val stdout: BufferedReader,
-                              val stdin: OutputStreamWriter) : Disposable {
+  /** A symbol file and an offset to look up in it. */
+  private data class Lookup(val symFile: File, val offset: Long)
+
+  private inner class ProcessHolder(val process: Process,
+                                    val stdout: BufferedReader,
+                                    val stdin: OutputStreamWriter) : Disposable {
+    /**
+     * Sends [requests] and returns their responses. The requests are written from another thread,
+     * so that llvm-symbolizer never blocks on a full output pipe while this is still writing.
+     */
+    fun send(requests: List<String>): List<List<String>> {
+      val writer = executor.submit {
+        requests.forEach { stdin.write(it) }
+        stdin.flush()
+      }
+      val responses = requests.map { readResponse() }
+      writer.get()
+      return responses
+    }
+
+    private fun readResponse(): List<String> {
+      val response: MutableList<String> = mutableListOf()
+      while (true) {
+        val responseLine = stdout.readLine() ?: throw IOException("llvm-symbolizer exited")
+        if (responseLine.isEmpty()) {
+          break
+        }
+        response.add(responseLine)
+      }
+      return response
+    }
+
     override fun dispose() {
       process.destroy()
     }
   }
-}
\ No newline at end of file
+}
@@ -33,6 +33,12 @@ import java.nio.file.Paths
  */
 data class Symbol(val name: String, val module: String, val sourceFile: String = "", val lineNumber: Int = 0)
 
+/**
+ * @param module - The file path to the module to look [offset] up in.
+ * @param offset - The offset in [module] to symbolize.
+ */
+data class SymbolRequest(val module: File, val offset: Long)
+
 /**
  * Components that can fetch information about native symbols by a module and an offset.
  */
@@ -47,13 +53,23 @@ interface NativeSymbolizer {
    */
   @Throws(IOException::class)
   fun symbolize(abiArch: String, module: File, offset: Long): Symbol?
+
+  /**
+   * Obtains information about the functions located at the given offsets, in the order of [requests]
+   * @param abiArch - CPU architecture of the modules (e.g x86, arm, arm64 and so on)
+   * @return symbols info, or null for the symbols that cannot be found
+   */
+  @Throws(IOException::class)
+  fun symbolize(abiArch: String, requests: List<SymbolRequest>): List<Symbol?> =
+    requests.map { symbolize(abiArch, it.module, it.offset) }
+
   fun stop()
 }
 
 fun createNativeSymbolizer(locator:SymbolFilesLocator): NativeSymbolizer {
   val symbolizerPath = getLlvmSymbolizerPath()
   getLogger().info("Creating a native symbolizer. Executable path: $symbolizerPath")
-  return LlvmSymbolizer(symbolizerPath, locator)
+  return LlvmSymbolizer(symbolizerPath, locator, symbolCache = SymbolCache(Paths.get(PathManager.getSystemPath(), "native-symbols")))
 }
 
 /**
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import java.io.File
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption.APPEND
+import java.nio.file.StandardOpenOption.CREATE
+import java.nio.file.attribute.BasicFileAttributes
+import java.nio.file.attribute.FileTime
+
+/** The default limit of the total size of the files in the cache directory. */
+private const val DEFAULT_MAX_DIRECTORY_SIZE = 32L * 1024 * 1024
+
+/**
+ * Caches llvm-symbolizer responses by symbol file and offset.
+ *
+ * Symbol files with a GNU build ID are cached in [directory], one file per build ID, size and
+ * modification time, so reopening a capture or restarting Studio does not symbolize the same frames
+ * again. A rebuilt library, which gets a new build ID, never gets stale symbols, and a stripped and an
+ * unstripped copy of the same library, which share their build ID, do not share their responses. Only
+ * the responses with a function name and a source location are saved, so a lookup that failed is tried
+ * again once better symbols are available. The least recently used files are deleted once the directory
+ * exceeds [maxDirectorySize]. Symbol files without a build ID are cached in memory only, keyed by their
+ * path, size and modification time.
+ *
+ * A symbol file is checked for changes the first time it is used after a [flush], rather than on every
+ * lookup, so the responses of a batch of lookups all come from the same version of the file.
+ */
+class SymbolCache(private val directory: Path?, private val maxDirectorySize: Long = DEFAULT_MAX_DIRECTORY_SIZE) {
+  private val modules = HashMap<ModuleKey, ModuleSymbols>()
+  // The modules checked for changes since the last flush, by symbol file path
+  private val checkedModules = HashMap<String, ModuleSymbols>()
+
+  /** Returns the cached response for [offset] in [symFile], or null if it is not cached. */
+  @Synchronized
+  fun get(symFile: File, offset: Long): List<String>? =
+    getModule(symFile).responses[offset]
+
+  /** Caches the [response] of llvm-symbolizer for [offset] in [symFile]. */
+  @Synchronized
+  fun put(symFile: File, offset: Long, response: List<String>) {
+    val module = getModule(symFile)
+    // Only the function name and its location are used, inlined frames are not
+    val cached = response.take(2)
+    if (module.responses.put(offset, cached) == null && module.file != null && isComplete(cached)) {
+      module.unsaved[offset] = cached
+    }
+  }
+
+  /** Writes the responses cached since the last call to disk. Symbol files are checked for changes again after this. */
+  @Synchronized
+  fun flush() {
+    checkedModules.clear()
+    var saved = false
+    for (module in modules.values) {
+      val file = module.file ?: continue
+      if (module.unsaved.isEmpty()) {
+        continue
+      }
+      try {
+        Files.createDirectories(file.parent)
+        Files.newBufferedWriter(file, CREATE, APPEND).use { writer ->
+          for ((offset, response) in module.unsaved) {
+            // Names and paths never contain tabs or new lines in practice, skip the responses that do
+            if (response.any { line -> line.any { it == '\t' || it == '\n' } }) {
+              continue
+            }
+            writer.write((listOf(java.lang.Long.toHexString(offset)) + response).joinToString("\t"))
+            writer.newLine()
+          }
+        }
+      }
+      catch (e: IOException) {
+        getLogger().warn("Unable to save native symbols to $file", e)
+      }
+      module.unsaved.clear()
+      saved = true
+    }
+    if (saved) {
+      pruneDirectory()
+    }
+  }
+
+  private fun getModule(symFile: File): ModuleSymbols = checkedModules.getOrPut(symFile.path) {
+    val key = ModuleKey(symFile.path, symFile.length(), symFile.lastModified())
+    modules.getOrPut(key) {
+      // The build ID alone is shared by the stripped and unstripped copies of a library
+      val file = directory?.let { directory ->
+        readElfBuildId(symFile)?.let { directory.resolve("$it-${key.size}-${key.lastModified}.txt") }
+      }
+      ModuleSymbols(file).also { if (file != null) load(it, file) }
+    }
+  }
+
+  /** Deletes the least recently used files once the files in [directory] exceed [maxDirectorySize]. */
+  private fun pruneDirectory() {
+    val directory = directory ?: return
+    try {
+      val files = Files.newDirectoryStream(directory).use { stream ->
+        stream.map { it to Files.readAttributes(it, BasicFileAttributes::class.java) }.filter { it.second.isRegularFile }
+      }
+      var totalSize = files.sumOf { it.second.size() }
+      for ((file, attributes) in files.sortedBy { it.second.lastModifiedTime() }) {
+        if (totalSize <= maxDirectorySize) {
+          break
+        }
+        Files.deleteIfExists(file)
+        totalSize -= attributes.size()
+      }
+    }
+    catch (e: IOException) {
+      getLogger().warn("Unable to prune native symbols in $directory", e)
+    }
+  }
+
+  private fun load(module: ModuleSymbols, file: Path) {
+    if (!Files.exists(file)) {
+      return
+    }
+    try {
+      Files.newBufferedReader(file).useLines { lines ->
+        for (line in lines) {
+          val parts = line.split('\t')
+          val offset = parts[0].toLongOrNull(16) ?: continue
+          val response = parts.drop(1)
+          if (isComplete(response)) {
+            module.responses[offset] = response
+          }
+        }
+      }
+      // Mark the file as recently used so it is pruned last
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()))
+    }
+    catch (e: IOException) {
+      getLogger().warn("Unable to load native symbols from $file", e)
+    }
+  }
+
+  /** Whether [response] has a function name and a source location, as opposed to a failed or partial lookup. */
+  private fun isComplete(response: List<String>): Boolean {
+    val name = response.firstOrNull()?.trim() ?: return false
+    val location = response.getOrNull(1)?.trim() ?: return false
+    return name.isNotEmpty() && name != "??" && location.isNotEmpty() && !location.startsWith("??")
+  }
+
+  private data class ModuleKey(val path: String, val size: Long, val lastModified: Long)
+
+  /** The responses of a symbol file, and where they are saved if the file has a build ID. */
+  private class ModuleSymbols(val file: Path?) {
+    val responses = HashMap<Long, List<String>>()
+    val unsaved = LinkedHashMap<Long, List<String>>()
+  }
+}
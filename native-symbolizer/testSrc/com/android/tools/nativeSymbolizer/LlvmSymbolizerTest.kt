@@ -64,6 +64,25 @@ class LlvmSymbolizerTest {
     }
   }
 
+  @Test
+  fun testSymbolizeBatch() {
+    val symbolizer = createSymbolizer()
+    for (arch in architectures) {
+      val offsets = getTestPath(arch, EXPECTED_SYMBOLS_FILE_NAME).readLines().map { it.split('|')[0].toLong(16) + 1 }
+      // Duplicates and unknown modules are answered too, in order
+      val requests = (offsets + offsets).map { SymbolRequest(modulePath, it) } + SymbolRequest(File("/p/libnotexists.so"), 12345)
+
+      val symbols = symbolizer.symbolize(arch, requests)
+
+      Assert.assertEquals(requests.size, symbols.size)
+      Assert.assertNull(symbols.last())
+      for ((request, symbol) in requests.zip(symbols).dropLast(1)) {
+        Assert.assertEquals(symbolizer.symbolize(arch, request.module, request.offset), symbol)
+        Assert.assertNotNull(symbol)
+      }
+    }
+  }
+
   @Test
   fun testSymbolizeBinariesBuiltOnWindows() {
     val arch = "arm64"
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.nativeSymbolizer
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+class SymbolCacheTest {
+  @get:Rule
+  val temporaryFolder = TemporaryFolder()
+
+  private val response = listOf("TestSimpleMethodCall(_JNIEnv*, _jobject*)", "/path/to/native-lib.cpp:36:7")
+
+  @Test
+  fun responsesOfFilesWithBuildIdArePersisted() {
+    val cacheDir = temporaryFolder.newFolder("cache").toPath()
+    val library = createElfFile("libnative-lib.so", byteArrayOf(0x01, 0x23, 0x45, 0x67, 0x89.toByte(), 0xab.toByte()))
+
+    SymbolCache(cacheDir).apply {
+      put(library, 0x909c, response)
+      flush()
+    }
+
+    assertThat(cacheDir.toFile().list()!!.single()).startsWith("0123456789ab-")
+    val cache = SymbolCache(cacheDir)
+    assertThat(cache.get(library, 0x909c)).isEqualTo(response)
+    assertThat(cache.get(library, 0x909d)).isNull()
+  }
+
+  @Test
+  fun responsesOfFilesWithoutBuildIdAreKeptInMemory() {
+    val cacheDir = temporaryFolder.newFolder("cache").toPath()
+    val library = temporaryFolder.newFile("libnative-lib.so").apply { writeText("not an ELF file") }
+    val cache = SymbolCache(cacheDir)
+
+    cache.put(library, 0x909c, response)
+    cache.flush()
+
+    assertThat(cache.get(library, 0x909c)).isEqualTo(response)
+    assertThat(cacheDir.toFile().list()).isEmpty()
+    assertThat(SymbolCache(cacheDir).get(library, 0x909c)).isNull()
+  }
+
+  @Test
+  fun onlyFunctionAndLocationAreCached() {
+    val library = createElfFile("libnative-lib.so", byteArrayOf(1, 2, 3, 4))
+    val cache = SymbolCache(null)
+
+    cache.put(library, 0x10, response + listOf("inlinedFunction()", "/path/to/inlined.h:1:1"))
+
+    assertThat(cache.get(library, 0x10)).isEqualTo(response)
+  }
+
+  @Test
+  fun failedLookupsAreNotPersisted() {
+    val cacheDir = temporaryFolder.newFolder("cache").toPath()
+    val library = createElfFile("libnative-lib.so", byteArrayOf(1, 2, 3, 4))
+
+    SymbolCache(cacheDir).apply {
+      put(library, 0x10, listOf("??", "??:0:0"))
+      put(library, 0x20, listOf("nameOnly()"))
+      put(library, 0x30, listOf("nameOnly()", "??:0:0"))
+      put(library, 0x40, response)
+      flush()
+      // Failed lookups are still cached for this session
+      assertThat(get(library, 0x10)).isEqualTo(listOf("??", "??:0:0"))
+    }
+
+    val cache = SymbolCache(cacheDir)
+    assertThat(cache.get(library, 0x10)).isNull()
+    assertThat(cache.get(library, 0x20)).isNull()
+    assertThat(cache.get(library, 0x30)).isNull()
+    assertThat(cache.get(library, 0x40)).isEqualTo(response)
+  }
+
+  @Test
+  fun copiesWithSameBuildIdDoNotShareResponses() {
+    val cacheDir = temporaryFolder.newFolder("cache").toPath()
+    val buildId = byteArrayOf(1, 2, 3, 4)
+    val stripped = createElfFile("stripped.so", buildId)
+    val unstripped = createElfFile("unstripped.so", buildId, extraSize = 128)
+
+    SymbolCache(cacheDir).apply {
+      put(stripped, 0x10, listOf("strippedName()", "/path/to/native-lib.cpp:1:1"))
+      flush()
+    }
+
+    assertThat(SymbolCache(cacheDir).get(unstripped, 0x10)).isNull()
+  }
+
+  @Test
+  fun rebuiltFilesAreCheckedAfterFlush() {
+    val library = createElfFile("libnative-lib.so", byteArrayOf(1, 2, 3, 4))
+    val cache = SymbolCache(null)
+    cache.put(library, 0x10, response)
+
+    library.appendBytes(ByteArray(16))
+    // Until the batch of lookups is flushed, the file is not checked again
+    assertThat(cache.get(library, 0x10)).isEqualTo(response)
+    cache.flush()
+
+    assertThat(cache.get(library, 0x10)).isNull()
+  }
+
+  @Test
+  fun leastRecentlyUsedFilesArePruned() {
+    val cacheDir = temporaryFolder.newFolder("cache").toPath()
+    val libraries = (1..3).map { createElfFile("lib$it.so", byteArrayOf(it.toByte(), 2, 3, 4)) }
+    // Each file holds one response of about 70 bytes
+    val cache = SymbolCache(cacheDir, maxDirectorySize = 150)
+
+    for ((index, library) in libraries.withIndex()) {
+      cache.put(library, 0x10, response)
+      cache.flush()
+      // Make the files of the first libraries the least recently used
+      cacheDir.toFile().listFiles()!!.single { it.name.startsWith("0${index + 1}020304-") }
+        .setLastModified(System.currentTimeMillis() - 10_000L * (3 - index))
+    }
+
+    assertThat(cacheDir.toFile().list()!!.map { it.substringBefore('-') }).containsExactly("02020304", "03020304")
+  }
+
+  /** Creates a 64-bit little endian ELF file with only a ".note.gnu.build-id" section. */
+  private fun createElfFile(name: String, buildId: ByteArray, extraSize: Int = 0): File {
+    val descriptorSize = (buildId.size + 3) and 3.inv()
+    val notesSize = 16 + descriptorSize
+    val notesOffset = 64
+    val sectionHeadersOffset = notesOffset + notesSize
+    val buffer = ByteBuffer.allocate(sectionHeadersOffset + 2 * 64 + extraSize).order(ByteOrder.LITTLE_ENDIAN)
+    buffer.put(byteArrayOf(0x7f, 'E'.code.toByte(), 'L'.code.toByte(), 'F'.code.toByte(), 2, 1, 1))
+    buffer.putLong(0x28, sectionHeadersOffset.toLong())
+    buffer.putShort(0x3A, 64) // Section header size
+    buffer.putShort(0x3C, 2) // Section count, including the null section
+
+    buffer.putInt(notesOffset, 4) // Name size
+    buffer.putInt(notesOffset + 4, buildId.size)
+    buffer.putInt(notesOffset + 8, 3) // NT_GNU_BUILD_ID
+    buffer.put(notesOffset + 12, byteArrayOf('G'.code.toByte(), 'N'.code.toByte(), 'U'.code.toByte(), 0))
+    buffer.put(notesOffset + 16, buildId)
+
+    val noteSection = sectionHeadersOffset + 64
+    buffer.putInt(noteSection + 4, 7) // SHT_NOTE
+    buffer.putLong(noteSection + 0x18, notesOffset.toLong())
+    buffer.putLong(noteSection + 0x20, notesSize.toLong())
+
+    return temporaryFolder.newFile(name).apply { writeBytes(buffer.array()) }
+  }
+}
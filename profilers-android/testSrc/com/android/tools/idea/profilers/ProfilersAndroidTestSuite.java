@@ -17,6 +17,7 @@ package com.android.tools.idea.profilers;
 
 import com.android.testutils.JarTestSuiteRunner;
 import com.android.tools.idea.profilers.performance.CaptureDetailsTest;
+import com.android.tools.idea.profilers.performance.CaptureNodeMemoryTest;
 import com.android.tools.idea.profilers.performance.CpuProfilerAtraceCaptureTest;
 import com.android.tools.idea.profilers.performance.CpuProfilerEmptyCaptureTest;
 import com.android.tools.idea.profilers.performance.CpuProfilerPerfettoCaptureTest;
@@ -39,6 +40,7 @@ import org.junit.runner.RunWith;
   MemoryClassifierViewFindSuperSetNodeTest.class,
   TraceProcessorDaemonBenchmarkTest.class,
   CaptureDetailsTest.class,
+  CaptureNodeMemoryTest.class,
 })
 public class ProfilersAndroidTestSuite extends IdeaTestSuiteBase {
 }
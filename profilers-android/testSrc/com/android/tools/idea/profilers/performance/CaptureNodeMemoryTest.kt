@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.profilers.performance
+
+import com.android.tools.perflogger.Benchmark
+import com.android.tools.profilers.cpu.CaptureNode
+import com.android.tools.profilers.cpu.CpuProfilerTestUtils.getTraceFile
+import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel
+import com.android.tools.profilers.cpu.nodemodel.SingleNameModel
+import com.android.tools.profilers.cpu.simpleperf.SimpleperfTraceParser
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.lang.ref.Reference
+
+private const val SYNTHETIC_CALL_COUNT = 500_000
+private const val SYNTHETIC_METHOD_COUNT = 2_000
+private const val SYNTHETIC_FAN_OUT = 4
+
+/**
+ * Perfgate test for the heap cost of a call in a CPU capture, in bytes per [CaptureNode] including its model.
+ * Note: This test is in its own class so that other tests don't leave garbage that skews the heap measurements.
+ */
+class CaptureNodeMemoryTest {
+  private val memoryBenchmark = Benchmark.Builder("CpuProfiler Capture Node Memory (bytes per call)")
+    .setProject("Android Studio Profilers")
+    .build()
+
+  @Test
+  fun measureBytesPerCallOfSimpleperfCapture() {
+    val traceFile = getTraceFile("simpleperf.trace")
+    val before = getMemoryUsed()
+    val capture = SimpleperfTraceParser().parse(traceFile, 0)
+    val after = getMemoryUsed()
+    val callCount = capture.captureNodes.sumOf { it.descendantsStream.count() }
+    Reference.reachabilityFence(capture)
+
+    assertThat(callCount).isGreaterThan(0)
+    memoryBenchmark.log("Simpleperf-Capture", (after - before) / callCount)
+  }
+
+  /** A tree where calls of the same method share one model, as parsers build them for each method, or each call site for simpleperf. */
+  @Test
+  fun measureBytesPerCallWithSharedModels() {
+    val models = HashMap<Int, CaptureNodeModel>()
+    measureSyntheticTree("Synthetic-Shared-Models") {
+      models.getOrPut(it % SYNTHETIC_METHOD_COUNT) { SingleNameModel("method${it % SYNTHETIC_METHOD_COUNT}") }
+    }
+  }
+
+  /** The same tree with a model and name per call, as simpleperf parsing used to build them, for comparison. */
+  @Test
+  fun measureBytesPerCallWithModelPerCall() {
+    measureSyntheticTree("Synthetic-Model-Per-Call") { SingleNameModel("method${it % SYNTHETIC_METHOD_COUNT}") }
+  }
+
+  private fun measureSyntheticTree(name: String, model: (Int) -> CaptureNodeModel) {
+    val before = getMemoryUsed()
+    val root = buildSyntheticTree(model)
+    val after = getMemoryUsed()
+    Reference.reachabilityFence(root)
+
+    memoryBenchmark.log(name, (after - before) / SYNTHETIC_CALL_COUNT)
+  }
+
+  /** Returns the root of a tree of [SYNTHETIC_CALL_COUNT] calls, keeping nothing else alive. */
+  private fun buildSyntheticTree(model: (Int) -> CaptureNodeModel): CaptureNode {
+    val nodes = arrayOfNulls<CaptureNode>(SYNTHETIC_CALL_COUNT)
+    for (i in 0 until SYNTHETIC_CALL_COUNT) {
+      val node = CaptureNode(model(i))
+      nodes[i] = node
+      if (i > 0) {
+        nodes[(i - 1) / SYNTHETIC_FAN_OUT]!!.addChild(node)
+      }
+    }
+    return nodes[0]!!
+  }
+}
@@ -242,9 +242,8 @@ public class CpuThreadTrackRenderer implements TrackRenderer<CpuThreadTrackModel
         .installNavigationContextMenu(chart, navigator, handler::getCodeLocation);
     }
     if (node != null) {
-      // Force the call chart to update when a filter is applied to the root node. By setting the root to the same node we're not changing
-      // the tree model but just triggering a model-changed event.
-      node.getAspectModel().addDependency(myObserver).onChange(CaptureNode.Aspect.FILTER_APPLIED, () -> chart.setHTree(node));
+      // Force the call chart to update when a filter is applied to the root node, rebuilding its index of the tree.
+      node.getAspectModel().addDependency(myObserver).onChange(CaptureNode.Aspect.FILTER_APPLIED, chart::treeChanged);
     }
     return chart;
   }
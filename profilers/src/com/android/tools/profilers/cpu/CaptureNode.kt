@@ -52,8 +52,12 @@ open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : H
    * End time with THREAD clock.
    */
   var endThread = 0L
-  @JvmField
-  protected val childrenList = mutableListOf<CaptureNode>()
+
+  /**
+   * Allocated when the first child is added. Most nodes of a large capture are leaves or have a single child, so neither an empty list
+   * per leaf nor the default capacity of ten per parent is worth paying for.
+   */
+  private var childrenList: ArrayList<CaptureNode>? = null
 
   /**
    * The parent of its child is set to it when it is added [.addChild]
@@ -77,7 +81,7 @@ open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : H
   private var aspectModelPlaceHolder: AspectModel<Aspect>? = null
 
   val children: List<CaptureNode>
-    get() = childrenList
+    get() = childrenList ?: emptyList()
 
   val isUnmatched: Boolean
     get() = filterType == FilterType.UNMATCH
@@ -89,15 +93,25 @@ open class CaptureNode(val data: CaptureNodeModel, var clockType: ClockType) : H
     get() = Stream.concat(Stream.of(this), children.stream().flatMap { it.descendantsStream })
 
   open fun addChild(node: CaptureNode) {
-    childrenList.add(node)
+    appendChild(node)
     node.parent = this
   }
 
+  /**
+   * Adds [node] to this node's children without changing its parent.
+   */
+  protected fun appendChild(node: CaptureNode) {
+    val list = childrenList ?: ArrayList<CaptureNode>(1).also { childrenList = it }
+    list.add(node)
+  }
+
   fun addChildren(nodes: Collection<CaptureNode>) = nodes.forEach(::addChild)
-  fun clearChildren() = childrenList.clear()
+  fun clearChildren() {
+    childrenList?.clear()
+  }
 
-  override fun getChildCount() = childrenList.size
-  override fun getChildAt(index: Int) = childrenList[index]
+  override fun getChildCount() = childrenList?.size ?: 0
+  override fun getChildAt(index: Int) = childrenList?.get(index) ?: throw IndexOutOfBoundsException("Index: $index, Size: 0")
   override fun getParent() = parent
 
   /**
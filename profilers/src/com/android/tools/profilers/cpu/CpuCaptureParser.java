@@ -617,7 +617,7 @@ public class CpuCaptureParser {
         var node = queue.removeFirst();
         var data = node.getData();
         if (data instanceof SystemTraceNodeModel && pattern.matcher(data.getFullName()).find()) return true;
-        for (CaptureNode child : node.childrenList) if (seen.add(child)) queue.addLast(child);
+        for (CaptureNode child : node.getChildren()) if (seen.add(child)) queue.addLast(child);
       }
 
       return false;
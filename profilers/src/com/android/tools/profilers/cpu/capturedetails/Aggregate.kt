@@ -20,6 +20,7 @@ import com.android.tools.perflib.vmtrace.ClockType
 import com.android.tools.profilers.cpu.CaptureNode
 import com.android.tools.profilers.cpu.nodemodel.CaptureNodeModel
 import com.android.tools.profilers.cpu.nodemodel.SingleNameModel
+import java.util.EnumMap
 import java.util.IdentityHashMap
 import java.util.Stack
 
@@ -35,9 +36,26 @@ abstract class Aggregate<T: Aggregate<T>> {
   abstract val filterType: CaptureNode.FilterType
   val isUnmatched get() = filterType == CaptureNode.FilterType.UNMATCH
   abstract fun totalOver(clockType: ClockType, range: Range): Summary
-  fun overlapsWith(range: Range) = nodes.any { it.start < range.max && range.min < it.end }
+  fun overlapsWith(range: Range) = nodes.isNotEmpty() && nodeIntervals[nodes[0].clockType].overlaps(range)
   data class Summary(val total: Double, val childrenTotal: Double)
 
+  /** Intervals of [nodes], so range queries don't have to visit every node. */
+  internal val nodeIntervals = ClockIntervals { nodes }
+
+  /** Intervals of the children of [nodes]. */
+  internal val childIntervals = ClockIntervals { nodes.flatMap(CaptureNode::children) }
+
+  /**
+   * The [IntervalSums] of a list of nodes for each [ClockType], built the first time they're needed. The nodes of an aggregate don't
+   * change, so this is done at most once per clock type however often the selected range changes.
+   */
+  internal class ClockIntervals(private val getNodes: () -> List<CaptureNode>) {
+    private val byClock = EnumMap<ClockType, IntervalSums>(ClockType::class.java)
+
+    @Synchronized
+    operator fun get(clockType: ClockType): IntervalSums = byClock.getOrPut(clockType) { IntervalSums.of(getNodes(), clockType) }
+  }
+
   class TopDown private constructor(override val id: String, override val nodes: List<CaptureNode>): Aggregate<TopDown>() {
     override val methodModel: CaptureNodeModel get() = nodes[0].data
     override val filterType: CaptureNode.FilterType get() = nodes[0].filterType
@@ -50,17 +68,8 @@ abstract class Aggregate<T: Aggregate<T>> {
       { nodes.all { it.childCount == 0 } }
     )
 
-    override fun totalOver(clockType: ClockType, range: Range): Summary {
-      var total = 0.0
-      var childrenTotal = 0.0
-      for (node in nodes) {
-        total += getIntersection(range, node, clockType)
-        for (child in node.children) {
-          childrenTotal += getIntersection(range, child, clockType)
-        }
-      }
-      return Summary(total, childrenTotal)
-    }
+    override fun totalOver(clockType: ClockType, range: Range): Summary =
+      Summary(nodeIntervals[clockType].intersectionLength(range), childIntervals[clockType].intersectionLength(range))
 
     companion object {
       @JvmStatic fun rootAt(node: CaptureNode) = TopDown(node.data.id, listOf(node))
@@ -89,42 +98,39 @@ abstract class Aggregate<T: Aggregate<T>> {
       )
     }
 
-    override fun totalOver(clockType: ClockType, range: Range): Summary {
-      // how much time was spent in this call stack path, and in the functions it called
-      var total = 0.0
-
-      // The node that is at the top of the call stack, e.g if the call stack looks like B [0..30] -> B [1..20],
-      // then the second method can't be outerSoFarByParent.
-      // It's used to exclude nodes which aren't at the top of the
-      // call stack from the total time calculation.
+    /**
+     * The nodes that are at the top of the call stack, e.g if the call stack looks like B [0..30] -> B [1..20], then only the first.
+     * Time spent in this call stack path is the time spent in these nodes; counting nested ones too would count the same time twice.
+     * This doesn't depend on the range, so it's only worked out once.
+     */
+    private val outerIntervals = ClockIntervals {
       // When multiple threads with the same ID are selected, the nodes are merged. When this happens nodes may be interlaced between
-      // each of the threads. As such we keep a mapping of outer so far by parents to keep the book keeping done properly.
-      val outerSoFarByParent = IdentityHashMap<CaptureNode, CaptureNode>()
-
-      // how much time was spent doing work directly in this call stack path
-      var self = 0.0
-      // myNodes is sorted by CaptureNode#getStart() in increasing order,
+      // each of the threads. As such we keep a mapping of outer so far by root to keep the book keeping done properly.
+      val outerSoFarByRoot = IdentityHashMap<CaptureNode, CaptureNode>()
+      val outerNodes = ArrayList<CaptureNode>()
+      // nodes is sorted by CaptureNode#getStart() in increasing order,
       // if they are equal then ancestor comes first
       for (node in nodes) {
         // We use the root node to distinguish if two nodes share the same tree. In the event of multi-select we want to compute the bottom
         // up calculation independently for each tree then sum them after the fact.
-        // TODO(153306735): Cache the root calculation, otherwise our update algorithm is going to be O(n*depth) instead of O(n)
         val root = node.findRootNode()
-        val outerSoFar = outerSoFarByParent[root]
+        val outerSoFar = outerSoFarByRoot[root]
         if (outerSoFar == null || node.end > outerSoFar.end) {
           if (outerSoFar != null) {
-            // |outerSoFarByParent| is at the top of the call stack
-            total += getIntersection(range, outerSoFar, clockType)
+            outerNodes.add(outerSoFar)
           }
-          outerSoFarByParent[root] = node
+          outerSoFarByRoot[root] = node
         }
-        self += getIntersection(range, node, clockType) -
-                node.children.sumOf { getIntersection(range, it, clockType) }
-      }
-      for (outerSoFar in outerSoFarByParent.values) {
-        // |outerSoFarByParent| is at the top of the call stack
-        total += getIntersection(range, outerSoFar, clockType)
       }
+      outerNodes.addAll(outerSoFarByRoot.values)
+      outerNodes
+    }
+
+    override fun totalOver(clockType: ClockType, range: Range): Summary {
+      // how much time was spent in this call stack path, and in the functions it called
+      val total = outerIntervals[clockType].intersectionLength(range)
+      // how much time was spent doing work directly in this call stack path
+      val self = nodeIntervals[clockType].intersectionLength(range) - childIntervals[clockType].intersectionLength(range)
       val childrenTotal = total - self
       return Summary(total, childrenTotal)
     }
@@ -154,13 +160,6 @@ abstract class Aggregate<T: Aggregate<T>> {
       }
     }
   }
-
-  companion object {
-    internal fun getIntersection(range: Range, node: CaptureNode, type: ClockType): Double = when (type) {
-      ClockType.GLOBAL -> range.getIntersectionLength(node.startGlobal.toDouble(), node.endGlobal.toDouble())
-      ClockType.THREAD -> range.getIntersectionLength(node.startThread.toDouble(), node.endThread.toDouble())
-    }
-  }
 }
 
 /**
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.capturedetails
+
+import com.android.tools.adtui.model.Range
+import com.android.tools.perflib.vmtrace.ClockType
+import com.android.tools.profilers.cpu.CaptureNode
+
+/**
+ * A fixed set of intervals, stored as columnar arrays, that answers range queries by binary search rather than by visiting each interval.
+ *
+ * Total intersection length is computed from prefix sums: for a single interval `[s, e]`, the length of its intersection with
+ * `(-inf, x]` is `min(e, x) - min(s, x)`, so its intersection with `[a, b]` is that evaluated at `b` minus at `a`. Summed over all
+ * intervals, `sum(min(v, x))` for a sorted column `v` is its prefix sum up to the first value `>= x`, plus `x` for each value after.
+ * This holds even when intervals overlap, e.g. when several threads are merged into one tree.
+ */
+internal class IntervalSums(starts: LongArray, ends: LongArray) {
+  private val size = starts.size
+
+  /**
+   * Values are stored relative to the earliest start, so that the prefix sums stay small enough to be exact as doubles for timestamps
+   * far from zero.
+   */
+  private val origin = starts.minOrNull() ?: 0L
+
+  /**
+   * `startPrefix[i]` is the sum of the `i` smallest interval starts, and `endPrefix[i]` of the `i` smallest ends. The sorted values
+   * themselves are not kept: the `i`th one is `prefix[i + 1] - prefix[i]`.
+   */
+  private val startPrefix: LongArray
+  private val endPrefix: LongArray
+
+  /** `maxEndByStart[i]` is the largest end of the `i + 1` intervals that start first. */
+  private val maxEndByStart: LongArray
+
+  init {
+    require(starts.size == ends.size)
+    val sortedStarts = LongArray(size) { starts[it] - origin }
+    // Treat inverted intervals as empty, as Range.getIntersectionLength does.
+    val endsByStart = LongArray(size) { maxOf(starts[it], ends[it]) - origin }
+    sortByKey(sortedStarts, endsByStart)
+    val sortedEnds = endsByStart.sortedArray()
+    for (i in 1 until size) {
+      endsByStart[i] = maxOf(endsByStart[i - 1], endsByStart[i])
+    }
+    maxEndByStart = endsByStart
+    startPrefix = prefixSums(sortedStarts)
+    endPrefix = prefixSums(sortedEnds)
+  }
+
+  /** Returns the sum of the lengths of the intersections of every interval with [range]. */
+  fun intersectionLength(range: Range): Double {
+    if (size == 0 || range.max <= range.min) {
+      return 0.0
+    }
+    return lengthUpTo(range.max - origin) - lengthUpTo(range.min - origin)
+  }
+
+  /** Returns true if any interval overlaps [range], using the same strict comparisons as [Aggregate.overlapsWith]. */
+  fun overlaps(range: Range): Boolean {
+    val startingBefore = countLessThan(startPrefix, range.max - origin)
+    return startingBefore > 0 && maxEndByStart[startingBefore - 1] > range.min - origin
+  }
+
+  /** Sum over all intervals of the length of their intersection with `(-inf, x]`. */
+  private fun lengthUpTo(x: Double) = sumOfMin(endPrefix, x) - sumOfMin(startPrefix, x)
+
+  private fun sumOfMin(prefix: LongArray, x: Double): Double {
+    val below = countLessThan(prefix, x)
+    return prefix[below] + (size - below) * x
+  }
+
+  companion object {
+    /** Returns the intervals of [nodes] for [clockType]. */
+    fun of(nodes: Collection<CaptureNode>, clockType: ClockType): IntervalSums = when (clockType) {
+      ClockType.GLOBAL -> IntervalSums(nodes.mapToLongArray { it.startGlobal }, nodes.mapToLongArray { it.endGlobal })
+      ClockType.THREAD -> IntervalSums(nodes.mapToLongArray { it.startThread }, nodes.mapToLongArray { it.endThread })
+    }
+
+    private inline fun Collection<CaptureNode>.mapToLongArray(f: (CaptureNode) -> Long): LongArray {
+      val array = LongArray(size)
+      forEachIndexed { i, node -> array[i] = f(node) }
+      return array
+    }
+
+    private fun prefixSums(sorted: LongArray) = LongArray(sorted.size + 1).also {
+      for (i in sorted.indices) {
+        it[i + 1] = it[i] + sorted[i]
+      }
+    }
+
+    /** Returns the number of sorted values below [x], given their [prefix] sums. */
+    private fun countLessThan(prefix: LongArray, x: Double): Int {
+      var low = 0
+      var high = prefix.size - 1
+      while (low < high) {
+        val mid = (low + high) ushr 1
+        if (prefix[mid + 1] - prefix[mid] < x) low = mid + 1 else high = mid
+      }
+      return low
+    }
+
+    /** Sorts [keys] in place, moving [values] along with them, without boxing. This is a heap sort, so it needs no extra memory. */
+    private fun sortByKey(keys: LongArray, values: LongArray) {
+      for (i in keys.size / 2 - 1 downTo 0) {
+        siftDown(keys, values, i, keys.size)
+      }
+      for (end in keys.size - 1 downTo 1) {
+        swap(keys, values, 0, end)
+        siftDown(keys, values, 0, end)
+      }
+    }
+
+    private fun siftDown(keys: LongArray, values: LongArray, start: Int, end: Int) {
+      var root = start
+      while (true) {
+        var child = 2 * root + 1
+        if (child >= end) {
+          return
+        }
+        if (child + 1 < end && keys[child + 1] > keys[child]) {
+          child++
+        }
+        if (keys[root] >= keys[child]) {
+          return
+        }
+        swap(keys, values, root, child)
+        root = child
+      }
+    }
+
+    private fun swap(keys: LongArray, values: LongArray, i: Int, j: Int) {
+      val key = keys[i]
+      keys[i] = keys[j]
+      keys[j] = key
+      val value = values[i]
+      values[i] = values[j]
+      values[j] = value
+    }
+  }
+}
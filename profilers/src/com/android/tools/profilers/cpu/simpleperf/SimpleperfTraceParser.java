@@ -149,6 +149,13 @@ public class SimpleperfTraceParser implements TraceParser {
 
   private Set<String> myTags = new TreeSet<>(TAG_COMPARATOR);
 
+  /**
+   * Models already created for a call chain entry, so that calls share one {@link CaptureNodeModel} (and its strings) instead of parsing
+   * the symbol name again for each node. A resolved symbol's model records the address it was called from, so its calls share a model
+   * per call site rather than per function.
+   */
+  private final Map<ModelKey, CaptureNodeModel> myMethodModels = new HashMap<>();
+
   public SimpleperfTraceParser() {
     myFiles = new HashMap<>();
     mySamples = new ArrayList<>();
@@ -516,6 +523,19 @@ public class SimpleperfTraceParser implements TraceParser {
   }
 
   private CaptureNodeModel methodModelFromCallchainEntry(SimpleperfReport.Sample.CallChainEntry callChainEntry, long parentVAddress) {
+    int symbolId = callChainEntry.getSymbolId();
+    // The model of a resolved symbol also records the address it was called from; an unresolved one is named after its own address.
+    long vAddress = symbolId == INVALID_SYMBOL_ID ? callChainEntry.getVaddrInFile() : parentVAddress;
+    ModelKey key = new ModelKey(callChainEntry.getFileId(), symbolId, vAddress);
+    CaptureNodeModel model = myMethodModels.get(key);
+    if (model == null) {
+      model = createMethodModel(callChainEntry, parentVAddress);
+      myMethodModels.put(key, model);
+    }
+    return model;
+  }
+
+  private CaptureNodeModel createMethodModel(SimpleperfReport.Sample.CallChainEntry callChainEntry, long parentVAddress) {
     int symbolId = callChainEntry.getSymbolId();
     SimpleperfReport.File symbolFile = myFiles.get(callChainEntry.getFileId());
     if (symbolFile == null) {
@@ -552,6 +572,36 @@ public class SimpleperfTraceParser implements TraceParser {
     EXACT_PATH, DESCRIPTION, PREFIXED_PATH
   }
 
+  /**
+   * Identifies the {@link CaptureNodeModel} created for a call chain entry: its file and symbol, and the address of its call site, or of
+   * the entry itself if the symbol is unresolved.
+   */
+  private static final class ModelKey {
+    private final int myFileId;
+    private final int mySymbolId;
+    private final long myVAddress;
+
+    ModelKey(int fileId, int symbolId, long vAddress) {
+      myFileId = fileId;
+      mySymbolId = symbolId;
+      myVAddress = vAddress;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof ModelKey)) {
+        return false;
+      }
+      ModelKey other = (ModelKey)o;
+      return myFileId == other.myFileId && mySymbolId == other.mySymbolId && myVAddress == other.myVAddress;
+    }
+
+    @Override
+    public int hashCode() {
+      return (31 * myFileId + mySymbolId) * 31 + Long.hashCode(myVAddress);
+    }
+  }
+
   @VisibleForTesting
   static Comparator<String> TAG_COMPARATOR =
     Comparator.comparing(SimpleperfTraceParser::tagClass).thenComparing(String::compareTo);
@@ -68,8 +68,10 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
   private val instanceMap = TIntObjectHashMap<LiveAllocationInstanceObject>()
   private val callstackMap = TIntObjectHashMap<AllocationStack>()
 
-  // Mapping from unsymbolized addresses to symbolized native frames
+  // Mapping from unsymbolized addresses to symbolized native frames, guarded by itself since it is read from the UI thread
   private val nativeFrameMap = TLongObjectHashMap<NativeFrame>()
+  // Backtraces of the JNI references loaded by the current load task, symbolized together when it is done
+  private val loadedBacktraces = mutableListOf<NativeBacktrace>()
   private val methodIdMap = TLongObjectHashMap<AllocationStack.StackFrame>()
   private val threadIdMap = TIntObjectHashMap<ThreadId>()
   private val jniMemoryRegionMap = TreeMap<Long, Memory.MemoryMap.MemoryRegion>()
@@ -274,6 +276,8 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
         // last sample we have seen. Set the last query timestamp to the last sample's timestmap, so that next time we will requery
         // the range between (last-seen sample, newEndTimeNs).
         previousQueryEndTimeNs = min(newEndTimeNs, lastSeenTimestampNs)
+        symbolizeBacktraces(loadedBacktraces)
+        loadedBacktraces.clear()
         val selection = stage.captureSelection
         joiner.execute {
           selection.aspect.changed(CaptureSelectionAspect.CURRENT_HEAP_UPDATED)
@@ -445,6 +449,7 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
               refObject.deallocTime = event.timestamp
               if (event.hasBacktrace()) {
                 refObject.setDeallocationBacktrace(event.backtrace)
+                loadedBacktraces.add(event.backtrace)
               }
               refObject.setDeallocThreadId(lookupThreadId(event.threadId))
             }
@@ -471,8 +476,10 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
   private fun JniReferenceInstanceObject.setAllocEvent(event: JNIGlobalReferenceEvent) {
     setAllocThreadId(lookupThreadId(event.threadId))
     setAllocationTime(event.timestamp)
-    if (event.hasBacktrace())
+    if (event.hasBacktrace()) {
       setAllocationBacktrace(event.backtrace)
+      loadedBacktraces.add(event.backtrace)
+    }
   }
 
   private fun lookupThreadId(threadId: Int): ThreadId = if (threadId != 0) threadIdMap[threadId]!! else ThreadId.INVALID_THREAD_ID
@@ -480,22 +487,41 @@ class LiveAllocationCaptureObject(private val client: ProfilerClient,
   fun resolveNativeBacktrace(backtrace: NativeBacktrace?): NativeCallStack = when {
     backtrace == null || backtrace.addressesCount == 0 -> NativeCallStack.getDefaultInstance()
     else -> NativeCallStack.newBuilder().let { builder ->
-      for (address in backtrace.addressesList) {
-        if (!nativeFrameMap.containsKey(address)) {
-          val (module, offset) = getRegionByAddress(address)?.let {
-            Pair(it.name, it.fileOffset + (address - it.startAddress)) // Adjust address to represent module offset.
-          } ?: Pair("", 0L)
-          val unsymbolizedFrame = NativeFrame.newBuilder().setAddress(address).setModuleName(module).setModuleOffset(offset).build()
-          val symbolizedFrame = stage.studioProfilers.ideServices.nativeFrameSymbolizer
-            .symbolize(stage.studioProfilers.sessionsManager.selectedSessionMetaData.processAbi, unsymbolizedFrame)
-          nativeFrameMap.put(address, symbolizedFrame)
+      // The frames are usually symbolized already, with the other backtraces loaded with this one
+      symbolizeBacktraces(listOf(backtrace))
+      synchronized(nativeFrameMap) {
+        for (address in backtrace.addressesList) {
+          builder.addFrames(nativeFrameMap[address])
         }
-        builder.addFrames(nativeFrameMap[address])
       }
       builder.build()
     }
   }
 
+  /**
+   * Symbolizes the frames of [backtraces] that are not symbolized yet in one batch, so that the symbolizer can pipeline
+   * them and resolve the frames shared by several backtraces once.
+   */
+  private fun symbolizeBacktraces(backtraces: List<NativeBacktrace>) {
+    val unsymbolizedFrames = synchronized(nativeFrameMap) {
+      backtraces.asSequence().flatMap { it.addressesList }.distinct().filter { !nativeFrameMap.containsKey(it) }.map { address ->
+        val (module, offset) = getRegionByAddress(address)?.let {
+          Pair(it.name, it.fileOffset + (address - it.startAddress)) // Adjust address to represent module offset.
+        } ?: Pair("", 0L)
+        NativeFrame.newBuilder().setAddress(address).setModuleName(module).setModuleOffset(offset).build()
+      }.toList()
+    }
+    if (unsymbolizedFrames.isEmpty()) {
+      return
+    }
+    // Symbolize without holding the lock, which the UI thread may be waiting for
+    val symbolizedFrames = stage.studioProfilers.ideServices.nativeFrameSymbolizer
+      .symbolize(stage.studioProfilers.sessionsManager.selectedSessionMetaData.processAbi, unsymbolizedFrames)
+    synchronized(nativeFrameMap) {
+      symbolizedFrames.forEachIndexed { i, frame -> nativeFrameMap.put(unsymbolizedFrames[i].address, frame) }
+    }
+  }
+
   private fun getRegionByAddress(address: Long) = jniMemoryRegionMap.floorEntry(address)?.let { entry ->
     val region = entry.value
     if (address in region.startAddress until region.endAddress) region else null
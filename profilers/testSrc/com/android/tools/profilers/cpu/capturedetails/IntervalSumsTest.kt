@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.capturedetails
+
+import com.android.tools.adtui.model.Range
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import kotlin.random.Random
+
+class IntervalSumsTest {
+  @Test
+  fun `intersection length of disjoint intervals`() {
+    val sums = IntervalSums(longArrayOf(0, 20, 50), longArrayOf(10, 30, 100))
+    assertThat(sums.intersectionLength(Range(0.0, 100.0))).isWithin(EPSILON).of(70.0)
+    assertThat(sums.intersectionLength(Range(5.0, 25.0))).isWithin(EPSILON).of(10.0)
+    assertThat(sums.intersectionLength(Range(10.0, 20.0))).isWithin(EPSILON).of(0.0)
+    assertThat(sums.intersectionLength(Range(60.0, 60.0))).isWithin(EPSILON).of(0.0)
+    assertThat(sums.intersectionLength(Range(-50.0, 500.0))).isWithin(EPSILON).of(70.0)
+  }
+
+  @Test
+  fun `intersection length of overlapping intervals counts each interval`() {
+    val sums = IntervalSums(longArrayOf(0, 5), longArrayOf(10, 15))
+    assertThat(sums.intersectionLength(Range(0.0, 20.0))).isWithin(EPSILON).of(20.0)
+    assertThat(sums.intersectionLength(Range(5.0, 10.0))).isWithin(EPSILON).of(10.0)
+  }
+
+  @Test
+  fun `matches per-interval intersection for random intervals far from zero`() {
+    val random = Random(42)
+    val origin = 1_700_000_000_000L
+    val starts = LongArray(500) { origin + random.nextLong(0, 1_000_000) }
+    val ends = LongArray(500) { starts[it] + random.nextLong(0, 10_000) }
+    val sums = IntervalSums(starts, ends)
+    repeat(100) {
+      val a = origin + random.nextLong(-1000, 1_010_000)
+      val range = Range(a.toDouble(), (a + random.nextLong(0, 200_000)).toDouble())
+      val expected = starts.indices.sumOf { range.getIntersectionLength(starts[it].toDouble(), ends[it].toDouble()) }
+      assertThat(sums.intersectionLength(range)).isWithin(1e-3).of(expected)
+      val overlaps = starts.indices.any { starts[it] < range.max && range.min < ends[it] }
+      assertThat(sums.overlaps(range)).isEqualTo(overlaps)
+    }
+  }
+
+  @Test
+  fun `overlaps uses strict bounds`() {
+    val sums = IntervalSums(longArrayOf(10), longArrayOf(20))
+    assertThat(sums.overlaps(Range(0.0, 10.0))).isFalse()
+    assertThat(sums.overlaps(Range(20.0, 30.0))).isFalse()
+    assertThat(sums.overlaps(Range(19.0, 30.0))).isTrue()
+    assertThat(IntervalSums(LongArray(0), LongArray(0)).overlaps(Range(0.0, 10.0))).isFalse()
+  }
+
+  @Test
+  fun `intervals sharing a start keep their own ends`() {
+    val sums = IntervalSums(longArrayOf(30, 10, 10, 10), longArrayOf(40, 50, 15, 12))
+    assertThat(sums.intersectionLength(Range(0.0, 100.0))).isWithin(EPSILON).of(57.0)
+    assertThat(sums.intersectionLength(Range(14.0, 35.0))).isWithin(EPSILON).of(27.0)
+    assertThat(sums.overlaps(Range(45.0, 60.0))).isTrue()
+    assertThat(sums.overlaps(Range(50.0, 60.0))).isFalse()
+  }
+
+  companion object {
+    private const val EPSILON = 1e-9
+  }
+}
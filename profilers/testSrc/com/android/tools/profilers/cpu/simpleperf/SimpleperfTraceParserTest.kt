@@ -322,6 +322,20 @@ class SimpleperfTraceParserTest {
     Truth.assertThat(capture.mainThreadId).isEqualTo(BaseCpuCapture.NO_THREAD_ID)
   }
 
+  @Test
+  @Throws(IOException::class)
+  fun callsOfTheSameFunctionShareOneModel() {
+    val capture = myParser.parse(myTraceFile, 0)
+    val cppModels = capture.captureNodes
+      .flatMap { root -> root.descendantsStream.map { it.data }.toList() }
+      .filterIsInstance<CppFunctionModel>()
+    Truth.assertThat(cppModels).isNotEmpty()
+
+    cppModels.groupBy { Triple(it.id, it.fileName, it.vAddress) }.values.forEach { models ->
+      Truth.assertThat(models.distinctBy { System.identityHashCode(it) }).hasSize(1)
+    }
+  }
+
   @Test
   fun tagsSortedByExpectedOrder() {
     val shuffledTags = listOf("/a/b/c", "/c/d/e", "[java]", "/a/*").shuffled()
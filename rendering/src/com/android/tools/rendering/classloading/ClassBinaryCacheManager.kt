@@ -19,7 +19,10 @@ import com.android.annotations.concurrency.AnyThread
 import com.android.annotations.concurrency.GuardedBy
 import com.google.common.base.Ticker
 import com.google.common.cache.CacheBuilder
+import com.intellij.openapi.application.PathManager
 import org.jetbrains.annotations.TestOnly
+import java.nio.file.Path
+import java.nio.file.Paths
 import java.time.Duration
 import java.util.WeakHashMap
 import java.util.concurrent.locks.ReentrantLock
@@ -29,15 +32,27 @@ private const val MAX_WEIGHT_BYTES =
   100_000_000L // We will store no more than 100Mb of cached classes
 private const val EXPIRE_MINUTES = 30L // We will store cached classes for no longer than 30 minutes
 
-/** A class binary representation cache. */
+/**
+ * A class binary representation cache.
+ *
+ * Classes are kept in memory and, for the scopes that request it, also stored on disk in
+ * [persistentCacheDirectory] so they survive restarts, see [PersistentClassBinaryCache]. Classes
+ * kept in memory are tagged with the content hash of their library, as the ones on disk are, so a
+ * library rebuilt in place never returns stale classes.
+ */
 class ClassBinaryCacheManager
-private constructor(ticker: Ticker, maxWeight: Long, expireMinutes: Long) {
+private constructor(
+  ticker: Ticker,
+  maxWeight: Long,
+  expireMinutes: Long,
+  private val persistentCacheDirectory: Path?,
+) {
   @GuardedBy("this") private val scopeCaches = WeakHashMap<Any, ModuleClassCache>()
   private var lock = ReentrantLock()
   /** A mapping from a library path to all the classes (fqcn) cached from this library. */
   @GuardedBy("lock") private val libraryPath2ClassFqns = mutableMapOf<String, MutableSet<String>>()
-  /** A mapping from a fqcn to a library (path) that contains the class. */
-  @GuardedBy("lock") private val classFqn2LibraryPath = mutableMapOf<String, String>()
+  /** A mapping from a fqcn to the library that contains the class. */
+  @GuardedBy("lock") private val classFqn2Library = mutableMapOf<String, CachedLibrary>()
 
   /** A binary representation class cache (fqcn -> bytes). */
   private val globalCache =
@@ -49,8 +64,8 @@ private constructor(ticker: Ticker, maxWeight: Long, expireMinutes: Long) {
       .expireAfterAccess(Duration.ofMinutes(expireMinutes))
       .removalListener<String, ByteArray> {
         lock.withLock {
-          classFqn2LibraryPath.remove(it.key)?.let { url ->
-            libraryPath2ClassFqns[url]?.remove(it.key)
+          classFqn2Library.remove(it.key)?.let { library ->
+            libraryPath2ClassFqns[library.path]?.remove(it.key)
           }
         }
       }
@@ -58,48 +73,69 @@ private constructor(ticker: Ticker, maxWeight: Long, expireMinutes: Long) {
 
   /**
    * Returns a scope specific cache that will only return classes if they belong to the scope, the
-   * cache will also invalidate cache for dated classes.
+   * cache will also invalidate cache for dated classes. If [persistent] is true, the classes of the
+   * scope are also stored on disk.
    */
   @Synchronized
   @AnyThread
-  fun getCache(scope: Any): ClassBinaryCache {
-    return scopeCaches.computeIfAbsent(scope) { ModuleClassCache() }
+  @JvmOverloads
+  fun getCache(scope: Any, persistent: Boolean = false): ClassBinaryCache {
+    return scopeCaches.computeIfAbsent(scope) {
+      ModuleClassCache(
+        persistentCacheDirectory?.takeIf { persistent }?.let { PersistentClassBinaryCache(it) }
+      )
+    }
   }
 
-  private inner class ModuleClassCache : ClassBinaryCache {
-    @GuardedBy("this") private var libraryPaths = setOf<String>()
+  /** Drops the classes kept in memory, so they are loaded from disk or transformed again. */
+  @TestOnly
+  fun invalidateInMemoryCache() {
+    globalCache.invalidateAll()
+  }
 
+  /** A library classes were cached from, and its content hash at the time. */
+  private data class CachedLibrary(val path: String, val hash: String)
+
+  private inner class ModuleClassCache(private val persistentCache: ClassBinaryCache?) :
+    ClassBinaryCache {
     /**
-     * Synchronously checks if there a library with [path] among the current module dependencies.
+     * The current module dependencies, by library path. Libraries that can't be hashed, e.g.
+     * directories, are tracked by path only.
      */
-    @Synchronized private fun notCurrentDependency(path: String?) = path !in libraryPaths
+    @GuardedBy("this") private var libraries = mapOf<String, CachedLibrary>()
+
+    /** Synchronously returns the library with [path] among the current module dependencies. */
+    @Synchronized private fun currentDependency(path: String) = libraries[path]
 
     // @LayoutlibRenderThread
     override fun get(fqcn: String, transformationId: String): ByteArray? {
       val key = getCachingKey(fqcn, transformationId)
-      // If the url for the class is not in this module dependencies we should invalidate the whole
-      // library (url) and make
-      val libraryPath = lock.withLock { classFqn2LibraryPath[key] }
-      if (notCurrentDependency(libraryPath)) {
-        libraryPath?.let {
+      // If the library of the class is not in this module dependencies, or has changed since, we
+      // should invalidate the whole library
+      val library = lock.withLock { classFqn2Library[key] }
+      if (library == null || currentDependency(library.path) != library) {
+        library?.let {
           lock
-            .withLock { libraryPath2ClassFqns.remove(libraryPath) }
+            .withLock { libraryPath2ClassFqns.remove(library.path) }
             ?.forEach { globalCache.invalidate(it) }
         }
-        return null
+        return persistentCache?.get(fqcn, transformationId)
       }
 
-      return globalCache.getIfPresent(key)
+      return globalCache.getIfPresent(key) ?: persistentCache?.get(fqcn, transformationId)
     }
 
     private fun getCachingKey(fqcn: String, transformationId: String) = "$transformationId:$fqcn"
 
     // @LayoutlibRenderThread
     override fun put(fqcn: String, transformationId: String, libraryPath: String, data: ByteArray) {
+      persistentCache?.put(fqcn, transformationId, libraryPath, data)
+      // Classes of libraries that are not current dependencies would never be returned
+      val library = currentDependency(libraryPath) ?: return
       val key = getCachingKey(fqcn, transformationId)
       lock.withLock {
-        classFqn2LibraryPath[key] = libraryPath
-        libraryPath2ClassFqns.computeIfAbsent(libraryPath) { mutableSetOf() }.add(fqcn)
+        classFqn2Library[key] = library
+        libraryPath2ClassFqns.computeIfAbsent(libraryPath) { mutableSetOf() }.add(key)
       }
       globalCache.put(key, data)
     }
@@ -107,18 +143,33 @@ private constructor(ticker: Ticker, maxWeight: Long, expireMinutes: Long) {
     @AnyThread
     @Synchronized
     override fun setDependencies(paths: Collection<String>) {
-      libraryPaths = paths.toSet()
+      // The hashes are cached by file size and modification time, so only new or rebuilt libraries
+      // are hashed again
+      libraries =
+        paths.associateWith {
+          CachedLibrary(it, PersistentClassBinaryCache.getLibraryHash(Paths.get(it)) ?: "")
+        }
+      persistentCache?.setDependencies(paths)
     }
   }
 
   companion object {
     private val globalManager =
-      ClassBinaryCacheManager(Ticker.systemTicker(), MAX_WEIGHT_BYTES, EXPIRE_MINUTES)
+      ClassBinaryCacheManager(
+        Ticker.systemTicker(),
+        MAX_WEIGHT_BYTES,
+        EXPIRE_MINUTES,
+        Paths.get(PathManager.getSystemPath(), "layoutlib-classes"),
+      )
 
     @JvmStatic fun getInstance() = globalManager
 
     @TestOnly
-    fun getTestInstance(ticker: Ticker, maxWeight: Long, expireMinutes: Long) =
-      ClassBinaryCacheManager(ticker, maxWeight, expireMinutes)
+    fun getTestInstance(
+      ticker: Ticker,
+      maxWeight: Long,
+      expireMinutes: Long,
+      persistentCacheDirectory: Path? = null,
+    ) = ClassBinaryCacheManager(ticker, maxWeight, expireMinutes, persistentCacheDirectory)
   }
 }
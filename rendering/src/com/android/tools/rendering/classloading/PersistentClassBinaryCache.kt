@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.rendering.classloading
+
+import com.android.SdkConstants.DOT_CLASS
+import com.android.annotations.concurrency.AnyThread
+import com.android.annotations.concurrency.GuardedBy
+import com.google.common.hash.Hashing
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.util.concurrency.AppExecutorUtil
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.StandardCopyOption
+import java.nio.file.attribute.FileTime
+import java.time.Duration
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
+
+/** Libraries and transformations whose classes have not been used for this long are removed from the disk. */
+private val EXPIRE_AFTER_UNUSED = Duration.ofDays(30)
+/** Signature of the zip "end of central directory" record. */
+private const val END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50
+private const val END_OF_CENTRAL_DIRECTORY_SIZE = 22
+private const val MAX_ZIP_COMMENT_SIZE = 0xffff
+
+/**
+ * A [ClassBinaryCache] that stores the classes on disk, so they can be reused after restarting
+ * Studio instead of reading and transforming every library class again before the first render.
+ *
+ * Classes are stored in [rootDirectory] as `<library hash>/<transformation hash>/<fqcn>.class`. The
+ * library hash is computed from the content of the library, so a library that is rebuilt or updated
+ * in place never returns stale classes, and a library used by several projects is only transformed
+ * once. Only the classes of the libraries passed to [setDependencies] are returned. When several of
+ * them contain the same class, the one from the library that comes first is returned, as the class
+ * loader would load it.
+ *
+ * The stored classes are indexed, and new classes are written, on [executor] so no directories are
+ * listed or files written on the render thread. Until the index is ready, every lookup is a miss.
+ */
+class PersistentClassBinaryCache(
+  private val rootDirectory: Path,
+  private val executor: Executor = DISK_EXECUTOR,
+) : ClassBinaryCache {
+  /** The index of the classes stored for the current dependencies. */
+  @Volatile private var index: Future<Index>? = null
+  @GuardedBy("this") private var indexedPaths: List<String>? = null
+  /** The transformation directories whose classes were read in this session. */
+  private val usedTransformationDirectories = ConcurrentHashMap.newKeySet<Path>()
+
+  /** A library among the dependencies, and its position in them. */
+  private class IndexedLibrary(val directory: Path, val position: Int)
+
+  /** A stored class, and the position of the library it was read from in the dependencies. */
+  private class StoredClass(val file: Path, val libraryPosition: Int)
+
+  /**
+   * The stored classes of a set of dependencies.
+   *
+   * @param libraries the libraries, by library path
+   * @param classes the stored classes, by transformation hash and fqcn. Each entry is the class
+   *   from the first library that contains it.
+   */
+  private class Index(
+    val libraries: Map<String, IndexedLibrary>,
+    val classes: ConcurrentHashMap<String, ConcurrentHashMap<String, StoredClass>>,
+  ) {
+    fun add(transformationHash: String, fqcn: String, storedClass: StoredClass) {
+      classes
+        .computeIfAbsent(transformationHash) { ConcurrentHashMap() }
+        .merge(fqcn, storedClass) { old, new ->
+          if (new.libraryPosition <= old.libraryPosition) new else old
+        }
+    }
+  }
+
+  // @LayoutlibRenderThread
+  override fun get(fqcn: String, transformationId: String): ByteArray? {
+    val file =
+      currentIndex()?.classes?.get(hashTransformationId(transformationId))?.get(fqcn)?.file
+        ?: return null
+    markUsed(file.parent)
+    return try {
+      // Reading .class files is allowed by the RenderSecurityManager
+      Files.readAllBytes(file)
+    } catch (e: IOException) {
+      LOG.debug("Unable to read $file", e)
+      null
+    }
+  }
+
+  // @LayoutlibRenderThread
+  override fun put(fqcn: String, transformationId: String, libraryPath: String, data: ByteArray) {
+    val index = currentIndex() ?: return
+    val library = index.libraries[libraryPath] ?: return
+    val transformationHash = hashTransformationId(transformationId)
+    val file = library.directory.resolve(transformationHash).resolve(fqcn + DOT_CLASS)
+    executor.execute {
+      if (write(file, data)) {
+        index.add(transformationHash, fqcn, StoredClass(file, library.position))
+      }
+    }
+  }
+
+  @AnyThread
+  @Synchronized
+  override fun setDependencies(paths: Collection<String>) {
+    val pathList = paths.toList()
+    if (pathList == indexedPaths) {
+      return
+    }
+    indexedPaths = pathList
+    val task = FutureTask(Callable { buildIndex(pathList) })
+    index = task
+    executor.execute(task)
+  }
+
+  /** Returns the index, or null if it is not ready yet so the render thread never waits for it. */
+  private fun currentIndex(): Index? {
+    val index = index ?: return null
+    if (!index.isDone) {
+      return null
+    }
+    return try {
+      index.get()
+    } catch (e: ExecutionException) {
+      LOG.warn("Unable to index the classes in $rootDirectory", e.cause)
+      null
+    } catch (e: InterruptedException) {
+      Thread.currentThread().interrupt()
+      null
+    }
+  }
+
+  private fun buildIndex(paths: List<String>): Index {
+    pruneUnusedLibraries()
+    val libraries = HashMap<String, IndexedLibrary>()
+    val index = Index(libraries, ConcurrentHashMap())
+    val now = FileTime.fromMillis(System.currentTimeMillis())
+    for ((position, path) in paths.withIndex()) {
+      val libraryHash = getLibraryHash(Paths.get(path)) ?: continue
+      val libraryDirectory = rootDirectory.resolve(libraryHash)
+      libraries[path] = IndexedLibrary(libraryDirectory, position)
+      if (!Files.isDirectory(libraryDirectory)) {
+        continue
+      }
+      try {
+        // Mark the library as used so it is not pruned
+        Files.setLastModifiedTime(libraryDirectory, now)
+        Files.newDirectoryStream(libraryDirectory).use { transformationDirectories ->
+          for (transformationDirectory in transformationDirectories) {
+            val transformationHash = transformationDirectory.fileName.toString()
+            Files.newDirectoryStream(transformationDirectory, "*$DOT_CLASS").use { files ->
+              for (file in files) {
+                val fqcn = file.fileName.toString().removeSuffix(DOT_CLASS)
+                index.add(transformationHash, fqcn, StoredClass(file, position))
+              }
+            }
+          }
+        }
+      } catch (e: IOException) {
+        LOG.warn("Unable to index the classes in $libraryDirectory", e)
+      }
+    }
+    return index
+  }
+
+  /** Marks, once per session, [transformationDirectory] as used so it is not pruned. */
+  private fun markUsed(transformationDirectory: Path) {
+    if (!usedTransformationDirectories.add(transformationDirectory)) {
+      return
+    }
+    executor.execute {
+      try {
+        Files.setLastModifiedTime(transformationDirectory, FileTime.fromMillis(System.currentTimeMillis()))
+      } catch (e: IOException) {
+        LOG.debug("Unable to mark $transformationDirectory as used", e)
+      }
+    }
+  }
+
+  /** Writes [data] to [file] and returns whether it succeeded. */
+  private fun write(file: Path, data: ByteArray): Boolean {
+    return try {
+      Files.createDirectories(file.parent)
+      // Write to a temporary file first so a class is never read partially written
+      val temporaryFile = Files.createTempFile(file.parent, file.fileName.toString(), ".tmp")
+      Files.write(temporaryFile, data)
+      Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+      true
+    } catch (e: IOException) {
+      LOG.debug("Unable to write $file", e)
+      false
+    }
+  }
+
+  /**
+   * Deletes, once per session, the libraries that have not been used in [EXPIRE_AFTER_UNUSED], and the
+   * transformations of the remaining libraries that have not been used in that time, e.g. those of an
+   * older version of the transformations.
+   */
+  private fun pruneUnusedLibraries() {
+    if (!prunedDirectories.add(rootDirectory) || !Files.isDirectory(rootDirectory)) {
+      return
+    }
+    val expiredTime = System.currentTimeMillis() - EXPIRE_AFTER_UNUSED.toMillis()
+    try {
+      Files.newDirectoryStream(rootDirectory).use { libraryDirectories ->
+        for (libraryDirectory in libraryDirectories) {
+          if (Files.getLastModifiedTime(libraryDirectory).toMillis() < expiredTime) {
+            FileUtil.delete(libraryDirectory.toFile())
+            continue
+          }
+          Files.newDirectoryStream(libraryDirectory).use { transformationDirectories ->
+            for (transformationDirectory in transformationDirectories) {
+              // The library directory is marked as used on every index, so check each transformation
+              if (Files.getLastModifiedTime(transformationDirectory).toMillis() < expiredTime) {
+                FileUtil.delete(transformationDirectory.toFile())
+              }
+            }
+          }
+        }
+      }
+    } catch (e: IOException) {
+      LOG.warn("Unable to prune $rootDirectory", e)
+    }
+  }
+
+  private data class LibraryKey(val path: Path, val size: Long, val lastModified: Long)
+
+  companion object {
+    private val LOG = Logger.getInstance(PersistentClassBinaryCache::class.java)
+
+    private val DISK_EXECUTOR =
+      AppExecutorUtil.createBoundedApplicationPoolExecutor("PersistentClassBinaryCache", 1)
+
+    private val prunedDirectories = ConcurrentHashMap.newKeySet<Path>()
+
+    /** Library hashes, by library file, size and modification time, to avoid hashing them again. */
+    private val libraryHashes = ConcurrentHashMap<LibraryKey, String>()
+
+    private val transformationIdHashes = ConcurrentHashMap<String, String>()
+
+    private fun hashTransformationId(transformationId: String): String =
+      transformationIdHashes.computeIfAbsent(transformationId) {
+        Hashing.murmur3_128().hashString(it, Charsets.UTF_8).toString()
+      }
+
+    /** Returns the content hash of the library at [path], or null if it is not a file. */
+    internal fun getLibraryHash(path: Path): String? {
+      return try {
+        if (!Files.isRegularFile(path)) {
+          return null
+        }
+        val key = LibraryKey(path, Files.size(path), Files.getLastModifiedTime(path).toMillis())
+        libraryHashes[key] ?: hashLibrary(path).also { libraryHashes[key] = it }
+      } catch (e: IOException) {
+        LOG.debug("Unable to hash $path", e)
+        null
+      }
+    }
+
+    /**
+     * Hashes the central directory of a jar, which contains the name, size and CRC of every entry,
+     * instead of the whole jar. Files that are not zip files are hashed entirely.
+     */
+    private fun hashLibrary(path: Path): String {
+      FileChannel.open(path).use { channel ->
+        val size = channel.size()
+        val tailSize = minOf(size, (END_OF_CENTRAL_DIRECTORY_SIZE + MAX_ZIP_COMMENT_SIZE).toLong()).toInt()
+        val tail = channel.readFully(size - tailSize, tailSize).order(ByteOrder.LITTLE_ENDIAN)
+        for (position in tailSize - END_OF_CENTRAL_DIRECTORY_SIZE downTo 0) {
+          if (tail.getInt(position) != END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+            continue
+          }
+          val centralDirectorySize = tail.getInt(position + 12).toLong() and 0xffffffffL
+          val centralDirectoryOffset = tail.getInt(position + 16).toLong() and 0xffffffffL
+          if (centralDirectoryOffset + centralDirectorySize <= size - tailSize + position) {
+            val centralDirectory = channel.readFully(centralDirectoryOffset, centralDirectorySize.toInt())
+            return Hashing.sha256().hashBytes(centralDirectory.array()).toString()
+          }
+        }
+      }
+      return com.google.common.io.Files.asByteSource(path.toFile()).hash(Hashing.sha256()).toString()
+    }
+
+    private fun FileChannel.readFully(position: Long, length: Int): ByteBuffer {
+      val buffer = ByteBuffer.allocate(length)
+      while (buffer.hasRemaining()) {
+        if (read(buffer, position + buffer.position()) < 0) {
+          throw IOException("Unexpected end of file")
+        }
+      }
+      return buffer
+    }
+  }
+}
@@ -121,6 +121,27 @@ public interface ImagePool {
 
     long totalBytesInUse();
 
+    /**
+     * Returns the estimated size of the images waiting in the pool to be reused.
+     */
+    long totalBytesPooled();
+
+    /**
+     * Returns the number of times a pooled image was reused.
+     */
+    long hits();
+
+    /**
+     * Returns the number of times a pooled image was needed but none was available, not counting the images too small to be pooled.
+     */
+    long misses();
+
+    /**
+     * Returns the number of images dropped from the pool, either because their bucket was full when they were freed or because they
+     * were garbage collected while waiting in the pool.
+     */
+    long evictions();
+
     BucketStats[] getBucketStats();
   }
 
@@ -21,8 +21,6 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.FinalizablePhantomReference;
 import com.google.common.base.FinalizableReferenceQueue;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.EvictingQueue;
-import com.google.common.collect.ForwardingQueue;
 import com.google.common.collect.Sets;
 import com.intellij.openapi.diagnostic.Logger;
 import java.awt.AlphaComposite;
@@ -35,12 +33,11 @@ import java.awt.image.WritableRaster;
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.IdentityHashMap;
-import java.util.NoSuchElementException;
-import java.util.Queue;
+import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -62,8 +59,11 @@ class ImagePoolImpl implements ImagePool {
 
   private static final Bucket NULL_BUCKET = new Bucket();
   private final int[] myBucketSizes;
-  private final HashMap<String, Bucket> myPool = new HashMap<>();
-  private final IdentityHashMap<Bucket, BucketStatsImpl> myBucketStats = new IdentityHashMap<>();
+  /**
+   * The buckets by key, see {@link #getPoolKey(int, int, int)}. Images are created and freed from multiple threads concurrently, each
+   * bucket is a lock-free queue so threads using different buckets, or the same one, do not block each other.
+   */
+  private final ConcurrentHashMap<Long, Bucket> myPool = new ConcurrentHashMap<>();
   private final BiFunction<Integer, Integer, Function<Integer, Integer>> myBucketSizingPolicy;
   @SuppressWarnings("IOResourceOpenedButNotSafelyClosed")
   private final FinalizableReferenceQueue myFinalizableReferenceQueue = new FinalizableReferenceQueue();
@@ -74,6 +74,10 @@ class ImagePoolImpl implements ImagePool {
 
   private final LongAdder myTotalAllocatedBytes = new LongAdder();
   private final LongAdder myTotalInUseBytes = new LongAdder();
+  private final LongAdder myTotalPooledBytes = new LongAdder();
+  private final LongAdder myHits = new LongAdder();
+  private final LongAdder myMisses = new LongAdder();
+  private final LongAdder myEvictions = new LongAdder();
 
   private final Stats myStats = new Stats() {
     @Override
@@ -86,9 +90,31 @@ class ImagePoolImpl implements ImagePool {
       return myTotalInUseBytes.sum();
     }
 
+    @Override
+    public long totalBytesPooled() {
+      return myTotalPooledBytes.sum();
+    }
+
+    @Override
+    public long hits() {
+      return myHits.sum();
+    }
+
+    @Override
+    public long misses() {
+      return myMisses.sum();
+    }
+
+    @Override
+    public long evictions() {
+      return myEvictions.sum();
+    }
+
     @Override
     public BucketStats[] getBucketStats() {
-      return myBucketStats.values().stream()
+      return myPool.values().stream()
+        .map(bucket -> bucket.myStats)
+        .filter(Objects::nonNull)
         .toArray(BucketStats[]::new);
     }
   };
@@ -96,7 +122,7 @@ class ImagePoolImpl implements ImagePool {
   /**
    * Constructs a new {@link ImagePoolImpl} with a custom queue sizing policy. The passed bucketSizingPolicy will be called
    * every time that a new cache is needed for a given (width, height) -> (imageType).
-   * The return value from calling that function will be the size of the EvictingQueue used for caching the pooled
+   * The return value from calling that function will be the maximum size of the queue used for caching the pooled
    * images.
    *
    * @param bucketSizes        Array containing a list of the allowed bucket sizes. The images will be allocated into a bucket that fits its two
@@ -117,17 +143,10 @@ class ImagePoolImpl implements ImagePool {
   private boolean isDisposed = false;
 
   /**
-   * Returns the key to be used for indexing the {@link EvictingQueue}.
+   * Returns the key to be used for indexing the {@link Bucket}s. Bucket sizes use less than 24 bits and image types less than 8 bits.
    */
-  @NotNull
-  private static String getPoolKey(int w, int h, int type) {
-    return new StringBuilder()
-      .append(w)
-      .append('x')
-      .append(h)
-      .append('-')
-      .append(type)
-      .toString();
+  private static long getPoolKey(int w, int h, int type) {
+    return ((long)w << 32) | ((long)h << 8) | (type & 0xff);
   }
 
   /**
@@ -167,7 +186,7 @@ class ImagePoolImpl implements ImagePool {
       return NULL_BUCKET;
     }
 
-    String poolKey = getPoolKey(widthBucket, heightBucket, type);
+    long poolKey = getPoolKey(widthBucket, heightBucket, type);
 
     int finalWidthBucket = widthBucket;
     int finalHeightBucket = heightBucket;
@@ -175,14 +194,11 @@ class ImagePoolImpl implements ImagePool {
       int size = myBucketSizingPolicy.apply(finalWidthBucket, finalHeightBucket).apply(type);
 
       if (size == 0) {
-        // For size 0, do not allocate extra memory for a new EvictingQueue.
+        // For size 0, do not allocate extra memory for a new queue.
         return NULL_BUCKET;
       }
 
-      Bucket newBucket = new Bucket(finalWidthBucket, finalHeightBucket, size);
-      myBucketStats.put(newBucket, new BucketStatsImpl(newBucket));
-
-      return newBucket;
+      return new Bucket(finalWidthBucket, finalHeightBucket, size);
     });
   }
 
@@ -191,26 +207,31 @@ class ImagePoolImpl implements ImagePool {
   ImageImpl create(final int w, final int h, final int type, @Nullable Consumer<BufferedImage> freedCallback) {
     assert !isDisposed : "ImagePool already disposed";
 
-    // To avoid creating a large number of EvictingQueues, we distribute the images in buckets and use that
+    // To avoid creating a large number of queues, we distribute the images in buckets and use that
     Bucket bucket = getTypeBucket(w, h, type);
-    BucketStatsImpl bucketStats = myBucketStats.get(bucket);
+    BucketStatsImpl bucketStats = bucket.myStats;
     if (LOG.isDebugEnabled()) {
       LOG.debug(String.format("create(%dx%d-%d) in bucket (%dx%d) hasStats=%b\n", w, h, type, bucket.myMinWidth, bucket.myMinHeight,
                               bucketStats != null));
     }
 
-    BufferedImage image;
+    BufferedImage image = null;
     Bucket.Element element;
-    try {
-      element = bucket.remove();
-      while ((image = element.get()) == null) {
-        myTotalAllocatedBytes.add(-element.getImageEstimatedSize());
-        element = bucket.remove();
+    while ((element = bucket.poll()) != null) {
+      myTotalPooledBytes.add(-element.getImageEstimatedSize());
+      if ((image = element.get()) != null) {
+        break;
       }
+      // The image was collected while in the pool
+      myTotalAllocatedBytes.add(-element.getImageEstimatedSize());
+      myEvictions.increment();
+    }
 
+    if (image != null) {
       long totalSize = image.getWidth() * image.getHeight();
       if (bucketStats != null) {
         bucketStats.bucketHit();
+        myHits.increment();
       }
       if (LOG.isDebugEnabled()) {
         double wasted = (totalSize - w * h);
@@ -231,12 +252,13 @@ class ImagePoolImpl implements ImagePool {
         g.dispose();
       }
     }
-    catch (NoSuchElementException e) {
+    else {
       if (LOG.isDebugEnabled()) {
         LOG.debug(String.format("  New image %dx%d - %d\n", w, h, type));
       }
       if (bucketStats != null) {
         bucketStats.bucketMiss();
+        myMisses.increment();
       }
       int newImageWidth = Math.max(bucket.myMinWidth, w);
       int newImageHeight = Math.max(bucket.myMinHeight, h);
@@ -275,8 +297,12 @@ class ImagePoolImpl implements ImagePool {
                                     w, h, type, bucket.myMinWidth, bucket.myMinHeight));
           }
 
-          if (!accepted) {
+          if (accepted) {
+            myTotalPooledBytes.add(imageElement.getImageEstimatedSize());
+          }
+          else {
             myTotalAllocatedBytes.add(-imageElement.getImageEstimatedSize());
+            myEvictions.increment();
           }
           myTotalInUseBytes.add(-imageElement.getImageEstimatedSize());
           if (freedCallback != null) {
@@ -362,7 +388,11 @@ class ImagePoolImpl implements ImagePool {
     }
   }
 
-  private static class Bucket extends ForwardingQueue<Bucket.Element> {
+  /**
+   * A bounded LIFO queue of pooled images. The most recently returned image is reused first, as it is the least likely to have been
+   * collected.
+   */
+  private static class Bucket {
     /**
      * A wrapper for a soft-referenced {@link BufferedImage}.
      */
@@ -389,29 +419,50 @@ class ImagePoolImpl implements ImagePool {
       }
     }
 
-    private final Queue<Element> myDelegate;
+    private final ConcurrentLinkedDeque<Element> myElements = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger mySize = new AtomicInteger();
     private final int myMinWidth;
     private final int myMinHeight;
     private final int myMaxSize;
+    @Nullable private final BucketStatsImpl myStats;
 
     Bucket(int minWidth, int minHeight, int maxSize) {
       Preconditions.checkArgument(maxSize > 0);
       myMinWidth = minWidth;
       myMinHeight = minHeight;
       myMaxSize = maxSize;
-      myDelegate = new ArrayBlockingQueue<>(maxSize);
+      myStats = new BucketStatsImpl(this);
     }
 
     Bucket() {
       myMinWidth = 0;
       myMinHeight = 0;
       myMaxSize = 0;
-      myDelegate = EvictingQueue.create(0);
+      myStats = null;
     }
 
-    @Override
-    protected Queue<Element> delegate() {
-      return myDelegate;
+    /**
+     * Adds the element to the bucket, unless it is full. Returns whether the element was added.
+     */
+    boolean offer(@NotNull Element element) {
+      if (mySize.incrementAndGet() > myMaxSize) {
+        mySize.decrementAndGet();
+        return false;
+      }
+      myElements.offerFirst(element);
+      return true;
+    }
+
+    /**
+     * Removes and returns the most recently added element, or null if the bucket is empty.
+     */
+    @Nullable
+    Element poll() {
+      Element element = myElements.pollFirst();
+      if (element != null) {
+        mySize.decrementAndGet();
+      }
+      return element;
     }
 
     int getMaxSize() {
@@ -16,12 +16,19 @@
 package com.android.tools.rendering.classloading
 
 import com.google.common.base.Ticker
+import java.io.File
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+import org.junit.Rule
 import org.junit.Test
+import org.junit.rules.TemporaryFolder
 import kotlin.test.assertEquals
 import kotlin.test.assertNotNull
 import kotlin.test.assertNull
 
 class ClassBinaryCacheManagerTest {
+  @get:Rule val temporaryFolder = TemporaryFolder()
+
   private class ManualTicker : Ticker() {
     var timeNanos = 0L
 
@@ -98,4 +105,32 @@ class ClassBinaryCacheManagerTest {
 
     assertNull(moduleCache.get("a.b.c"))
   }
+
+  @Test
+  fun testInvalidateWhenLibraryRebuiltInPlace() {
+    val cacheKey = Any()
+    val manager = ClassBinaryCacheManager.getTestInstance(ManualTicker(), 100, 1)
+    val jar = File(temporaryFolder.root, "a.jar")
+    writeJar(jar, "a.b.C")
+
+    val moduleCache = manager.getCache(cacheKey)
+    moduleCache.setDependencies(listOf(jar.path))
+    moduleCache.put("a.b.C", jar.path, "hello".toByteArray())
+    assertNotNull(moduleCache.get("a.b.C"))
+
+    writeJar(jar, "a.b.C", "a.b.D")
+    moduleCache.setDependencies(listOf(jar.path))
+
+    assertNull(moduleCache.get("a.b.C"))
+  }
+
+  private fun writeJar(file: File, vararg classes: String) {
+    JarOutputStream(file.outputStream()).use { jar ->
+      classes.forEach {
+        jar.putNextEntry(JarEntry(it.replace('.', '/') + ".class"))
+        jar.write(it.toByteArray())
+        jar.closeEntry()
+      }
+    }
+  }
 }
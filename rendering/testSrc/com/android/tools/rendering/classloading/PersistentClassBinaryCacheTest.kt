@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.rendering.classloading
+
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.time.Duration
+import java.util.concurrent.Executor
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class PersistentClassBinaryCacheTest {
+  @get:Rule val temporaryFolder = TemporaryFolder()
+
+  private val directExecutor = Executor { it.run() }
+
+  private fun createCache(rootDirectory: Path) =
+    PersistentClassBinaryCache(rootDirectory, directExecutor)
+
+  private fun createJar(name: String, vararg classes: String): File =
+    temporaryFolder.newFile(name).also { file ->
+      JarOutputStream(file.outputStream()).use { jar ->
+        classes.forEach {
+          jar.putNextEntry(JarEntry(it.replace('.', '/') + ".class"))
+          jar.write(it.toByteArray())
+          jar.closeEntry()
+        }
+      }
+    }
+
+  @Test
+  fun testClassesAreReusedByNewInstances() {
+    val rootDirectory = temporaryFolder.newFolder("cache").toPath()
+    val jar = createJar("a.jar", "a.b.C")
+
+    createCache(rootDirectory).apply {
+      setDependencies(listOf(jar.path))
+      put("a.b.C", "transform", jar.path, "transformed".toByteArray())
+    }
+
+    val cache = createCache(rootDirectory)
+    cache.setDependencies(listOf(jar.path))
+    assertEquals("transformed", cache.get("a.b.C", "transform")?.toString(Charsets.UTF_8))
+    assertNull(cache.get("a.b.C", "otherTransform"))
+    assertNull(cache.get("a.b.D", "transform"))
+  }
+
+  @Test
+  fun testClassesAreSharedByLibrariesWithTheSameContent() {
+    val rootDirectory = temporaryFolder.newFolder("cache").toPath()
+    val jar = createJar("a.jar", "a.b.C")
+    val copy = temporaryFolder.newFolder("copy").resolve("a.jar").also { jar.copyTo(it) }
+
+    createCache(rootDirectory).apply {
+      setDependencies(listOf(jar.path))
+      put("a.b.C", "transform", jar.path, "transformed".toByteArray())
+    }
+
+    val cache = createCache(rootDirectory)
+    cache.setDependencies(listOf(copy.path))
+    assertEquals("transformed", cache.get("a.b.C", "transform")?.toString(Charsets.UTF_8))
+  }
+
+  @Test
+  fun testInvalidateWhenLibraryChanged() {
+    val rootDirectory = temporaryFolder.newFolder("cache").toPath()
+    val jar = createJar("a.jar", "a.b.C")
+
+    createCache(rootDirectory).apply {
+      setDependencies(listOf(jar.path))
+      put("a.b.C", "transform", jar.path, "transformed".toByteArray())
+    }
+    jar.delete()
+    createJar("a.jar", "a.b.C", "a.b.D")
+
+    val cache = createCache(rootDirectory)
+    cache.setDependencies(listOf(jar.path))
+    assertNull(cache.get("a.b.C", "transform"))
+  }
+
+  @Test
+  fun testInvalidateWhenDependenciesChanged() {
+    val rootDirectory = temporaryFolder.newFolder("cache").toPath()
+    val jarA = createJar("a.jar", "a.b.C")
+    val jarB = createJar("b.jar", "d.e.F")
+
+    val cache = createCache(rootDirectory)
+    cache.setDependencies(listOf(jarA.path, jarB.path))
+    cache.put("a.b.C", "transform", jarA.path, "transformed".toByteArray())
+    assertEquals("transformed", cache.get("a.b.C", "transform")?.toString(Charsets.UTF_8))
+
+    cache.setDependencies(listOf(jarB.path))
+    assertNull(cache.get("a.b.C", "transform"))
+  }
+
+  @Test
+  fun testClassInSeveralLibrariesIsReadFromTheFirst() {
+    val rootDirectory = temporaryFolder.newFolder("cache").toPath()
+    val jarA = createJar("a.jar", "a.b.C")
+    val jarB = createJar("b.jar", "a.b.C", "d.e.F")
+
+    createCache(rootDirectory).apply {
+      setDependencies(listOf(jarB.path))
+      put("a.b.C", "transform", jarB.path, "fromB".toByteArray())
+    }
+    createCache(rootDirectory).apply {
+      setDependencies(listOf(jarA.path))
+      put("a.b.C", "transform", jarA.path, "fromA".toByteArray())
+    }
+
+    val cache = createCache(rootDirectory)
+    cache.setDependencies(listOf(jarA.path, jarB.path))
+    assertEquals("fromA", cache.get("a.b.C", "transform")?.toString(Charsets.UTF_8))
+    cache.setDependencies(listOf(jarB.path, jarA.path))
+    assertEquals("fromB", cache.get("a.b.C", "transform")?.toString(Charsets.UTF_8))
+  }
+
+  @Test
+  fun testClassesOfUnknownLibrariesAreNotStored() {
+    val rootDirectory = temporaryFolder.newFolder("cache").toPath()
+    val jar = createJar("a.jar", "a.b.C")
+
+    val cache = createCache(rootDirectory)
+    cache.setDependencies(listOf(jar.path))
+    cache.put("d.e.F", "transform", "/unknown.jar", "transformed".toByteArray())
+
+    assertNull(cache.get("d.e.F", "transform"))
+    assertEquals(emptyList(), rootDirectory.toFile().list()!!.toList())
+  }
+
+  @Test
+  fun testPendingIndexIsAMiss() {
+    val rootDirectory = temporaryFolder.newFolder("cache").toPath()
+    val jar = createJar("a.jar", "a.b.C")
+    createCache(rootDirectory).apply {
+      setDependencies(listOf(jar.path))
+      put("a.b.C", "transform", jar.path, "transformed".toByteArray())
+    }
+
+    val pendingTasks = ArrayDeque<Runnable>()
+    val cache = PersistentClassBinaryCache(rootDirectory) { pendingTasks.add(it) }
+    cache.setDependencies(listOf(jar.path))
+    assertNull(cache.get("a.b.C", "transform"))
+
+    while (pendingTasks.isNotEmpty()) {
+      pendingTasks.removeFirst().run()
+    }
+    assertEquals("transformed", cache.get("a.b.C", "transform")?.toString(Charsets.UTF_8))
+  }
+
+  @Test
+  fun testUnusedTransformationsArePruned() {
+    val rootDirectory = temporaryFolder.newFolder("cache").toPath()
+    val libraryDirectory = rootDirectory.resolve("library")
+    val unused = Files.createDirectories(libraryDirectory.resolve("unused"))
+    val used = Files.createDirectories(libraryDirectory.resolve("used"))
+    Files.write(unused.resolve("a.b.C.class"), "old".toByteArray())
+    Files.write(used.resolve("a.b.C.class"), "new".toByteArray())
+    Files.setLastModifiedTime(unused, FileTime.fromMillis(System.currentTimeMillis() - Duration.ofDays(31).toMillis()))
+
+    createCache(rootDirectory).setDependencies(listOf(createJar("a.jar", "a.b.C").path))
+
+    assertFalse(Files.exists(unused))
+    assertTrue(Files.exists(used))
+  }
+}
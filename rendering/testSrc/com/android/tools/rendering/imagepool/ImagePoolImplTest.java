@@ -29,7 +29,14 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.After;
@@ -159,6 +166,93 @@ public class ImagePoolImplTest {
     gc();
   }
 
+  @Test
+  public void testPoolStats() {
+    ImagePool.Stats stats = myPool.getStats();
+    assertNotNull(stats);
+    ImagePoolImpl.ImageImpl image = myPool.create(50, 50, BufferedImage.TYPE_INT_ARGB, null);
+    assertEquals(0, stats.hits());
+    assertEquals(1, stats.misses());
+    assertEquals(0, stats.totalBytesPooled());
+
+    ImagePoolImageDisposer.disposeImage(image);
+    assertEquals(1_000_000, stats.totalBytesPooled());
+
+    image = myPool.create(60, 40, BufferedImage.TYPE_INT_ARGB, null);
+    assertEquals(1, stats.hits());
+    assertEquals(1, stats.misses());
+    assertEquals(0, stats.totalBytesPooled());
+    assertEquals(0, stats.evictions());
+
+    // Images too small to be pooled are not counted
+    myPool.create(10, 10, BufferedImage.TYPE_INT_ARGB, null);
+    assertEquals(1, stats.misses());
+
+    //noinspection UnusedAssignment
+    image = null;
+    gc();
+  }
+
+  @Test
+  public void testEvictionWhenBucketIsFull() {
+    ImagePoolImpl pool = new ImagePoolImpl(new int[]{50, 500}, (w, h) -> (type) -> 1);
+    try {
+      ImagePool.Stats stats = pool.getStats();
+      assertNotNull(stats);
+      ImagePoolImpl.ImageImpl image1 = pool.create(50, 50, BufferedImage.TYPE_INT_ARGB, null);
+      ImagePoolImpl.ImageImpl image2 = pool.create(50, 50, BufferedImage.TYPE_INT_ARGB, null);
+
+      ImagePoolImageDisposer.disposeImage(image1);
+      ImagePoolImageDisposer.disposeImage(image2);
+      assertEquals(1, stats.evictions());
+      assertEquals(1_000_000, stats.totalBytesPooled());
+      assertEquals(1_000_000, stats.totalBytesAllocated());
+    }
+    finally {
+      pool.dispose();
+    }
+  }
+
+  /**
+   * Replays the image sizes requested by several concurrent renders of previews with close, but different, sizes and checks that an
+   * image is never handed out twice.
+   */
+  @Test
+  public void testConcurrentRenders() throws Exception {
+    int[][] renderSizes = {{411, 891}, {400, 880}, {360, 640}, {1080, 1920}, {411, 891}, {393, 851}, {1280, 800}, {360, 640}};
+    Set<BufferedImage> inUse = ConcurrentHashMap.newKeySet();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> renders = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        renders.add(executor.submit(() -> {
+          for (int i = 0; i < 50; i++) {
+            for (int[] size : renderSizes) {
+              ImagePoolImpl.ImageImpl image = myPool.create(size[0], size[1], BufferedImage.TYPE_INT_ARGB, null);
+              BufferedImage buffer = image.myBuffer;
+              assertTrue("Image handed out twice", inUse.add(buffer));
+              inUse.remove(buffer);
+              ImagePoolImageDisposer.disposeImage(image);
+            }
+          }
+        }));
+      }
+      for (Future<?> render : renders) {
+        render.get(30, TimeUnit.SECONDS);
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    ImagePool.Stats stats = myPool.getStats();
+    assertNotNull(stats);
+    assertEquals(4 * 50 * renderSizes.length, stats.hits() + stats.misses());
+    // Each thread has at most one image in use, so only a few images per bucket are ever allocated
+    assertTrue("Too many allocations: " + stats.misses(), stats.misses() <= 4L * renderSizes.length);
+    assertEquals(0, stats.totalBytesInUse());
+  }
+
   @Test
   public void testDefaultPooling() throws InterruptedException {
     // Small images won't be pooled
@@ -26,6 +26,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.SystemInfo;
 import com.intellij.util.system.CpuArch;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -33,6 +34,10 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.VisibleForTesting;
 
 public class ImageConverter {
+  /** Number of bytes converted at a time by the Java code; a multiple of 3. */
+  private static final int CHUNK_SIZE = 3 * 4096;
+
+  private static boolean nativeLibraryLoaded;
   private static Field bytesField;
   private static Field offsetField;
 
@@ -40,6 +45,7 @@ public class ImageConverter {
     try {
       loadNativeLibrary();
       initNative();
+      nativeLibraryLoaded = true;
       initByteStringFields();
     }
     catch (Throwable e) {
@@ -82,17 +88,49 @@ public class ImageConverter {
    * @param pixels the converted pixel values
    */
   public static void unpackRgb888Slow(@NotNull ByteString imageBytes, int[] pixels) {
-    int length = imageBytes.size();
+    unpackRgb888Java(imageBytes.asReadOnlyByteBuffer(), pixels);
+  }
+
+  /**
+   * Converts pixel values in RGB888 format to the 32-bit integers in the 0xAARRGGBB format. The position
+   * of {@code imageBytes} is not changed.
+   *
+   * @param imageBytes the pixel values to convert, from the position to the limit of the buffer
+   * @param pixels the converted pixel values
+   */
+  public static void unpackRgb888(@NotNull ByteBuffer imageBytes, int[] pixels) {
+    int length = imageBytes.remaining();
+    if (length == 0) {
+      return;
+    }
+    if (imageBytes.hasArray() && nativeLibraryLoaded) {
+      unpackRgb888(imageBytes.array(), imageBytes.arrayOffset() + imageBytes.position(), length, pixels);
+      return;
+    }
+    unpackRgb888Java(imageBytes, pixels);
+  }
+
+  /**
+   * Copies the image bytes to a small array one chunk at a time and converts each chunk in a loop over
+   * the array, which is much faster than reading the bytes one at a time.
+   */
+  private static void unpackRgb888Java(@NotNull ByteBuffer imageBytes, int[] pixels) {
+    int length = imageBytes.remaining();
     if (length % 3 != 0) {
       throw new IllegalArgumentException("Number of bytes (" + length + ") is not a multiple of 3");
     }
-    int i = 0;
+    if (length / 3 > pixels.length) {
+      throw new ArrayIndexOutOfBoundsException("Number of pixels (" + length / 3 + ") exceeds " + pixels.length);
+    }
+    ByteBuffer source = imageBytes.duplicate();
+    byte[] chunk = new byte[Math.min(length, CHUNK_SIZE)];
     int j = 0;
-    while (i < length) {
-      int red = imageBytes.byteAt(i++) & 0xFF;
-      int green = imageBytes.byteAt(i++) & 0xFF;
-      int blue = imageBytes.byteAt(i++) & 0xFF;
-      pixels[j++] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+    while (source.hasRemaining()) {
+      int chunkLength = Math.min(source.remaining(), chunk.length);
+      source.get(chunk, 0, chunkLength);
+      for (int i = 0; i < chunkLength; i += 3) {
+        pixels[j++] = 0xFF000000 | (chunk[i] & 0xFF) << 16 | (chunk[i + 1] & 0xFF) << 8 | chunk[i + 2] & 0xFF;
+      }
     }
   }
 
@@ -64,6 +64,8 @@ import org.bytedeco.ffmpeg.global.avutil.av_frame_alloc
 import org.bytedeco.ffmpeg.global.avutil.av_frame_free
 import org.bytedeco.ffmpeg.global.avutil.av_frame_get_buffer
 import org.bytedeco.ffmpeg.global.avutil.av_frame_make_writable
+import org.bytedeco.ffmpeg.global.avutil.av_frame_move_ref
+import org.bytedeco.ffmpeg.global.avutil.av_frame_unref
 import org.bytedeco.ffmpeg.global.avutil.av_image_get_buffer_size
 import org.bytedeco.ffmpeg.global.avutil.av_log_set_level
 import org.bytedeco.ffmpeg.global.swscale.SWS_BILINEAR
@@ -90,6 +92,7 @@ import java.io.EOFException
 import java.lang.Long.toHexString
 import java.nio.ByteBuffer
 import java.nio.ByteOrder.LITTLE_ENDIAN
+import java.nio.IntBuffer
 import java.nio.channels.ClosedChannelException
 import java.util.concurrent.ConcurrentHashMap
 import java.util.function.Consumer
@@ -261,14 +264,25 @@ internal class VideoDecoder(
 
     @GuardedBy("imageLock") var displayFrame: VideoFrame? = null
       private set
+    /** False if [displayFrame] has not been consumed since it was set. */
+    @GuardedBy("imageLock") private var displayFrameConsumed = true
+    /** True if [pendingFrame] is to be rendered after [displayFrame] is consumed. */
+    @GuardedBy("imageLock") private var hasPendingFrame = false
     private val imageLock = Any()
     @GuardedBy("this") private lateinit var codecContext: AVCodecContext
     @GuardedBy("this") private lateinit var decodingFrame: AVFrame
+    /** A decoded frame that has not been converted to an image because the previous image was not consumed yet. */
+    @GuardedBy("this") private var pendingFrame: AVFrame? = null
+    @GuardedBy("this") private var pendingFrameHeader: VideoPacketHeader? = null
     @GuardedBy("this") private var renderingFrame: AVFrame? = null
+    @GuardedBy("this") private var renderingFramePixels: IntBuffer? = null
+    @GuardedBy("this") private var renderingFramePixelsAddress = 0L
     @GuardedBy("this") private var swsContext: SwsContext? = null
     @GuardedBy("this") private lateinit var parserContext: AVCodecParserContext
     @GuardedBy("this") private val pendingPacket: AVPacket = av_packet_alloc()
     @GuardedBy("this") private var hasPendingPacket = false
+    @GuardedBy("this") private val parserOutData = BytePointer()
+    @GuardedBy("this") private val parserOutLength = IntPointer(1L)
     @GuardedBy("this") private var framesAtBitRate: Int = 0 // Used for primary display only.
     @GuardedBy("this") private var initialized: Boolean? = false // Set to null by the close method.
     private val frameListeners = ContainerUtil.createLockFreeCopyOnWriteList<FrameListener>()
@@ -324,7 +338,13 @@ internal class VideoDecoder(
 
     fun consumeDisplayFrame(consumer: Consumer<VideoFrame>) {
       synchronized(imageLock) {
-        displayFrame?.let { consumer.accept(it) }
+        val frame = displayFrame ?: return
+        consumer.accept(frame)
+        displayFrameConsumed = true
+        if (hasPendingFrame) {
+          hasPendingFrame = false
+          decoderScope.launch { renderPendingFrame() }
+        }
       }
     }
 
@@ -342,6 +362,7 @@ internal class VideoDecoder(
         avcodec_close(codecContext)
         avcodec_free_context(codecContext)
         av_frame_free(decodingFrame)
+        pendingFrame?.let { av_frame_free(it) }
         renderingFrame?.let { av_frame_free(it) }
         swsContext?.let { sws_freeContext(it) }
         av_packet_free(pendingPacket)
@@ -412,12 +433,10 @@ internal class VideoDecoder(
     }
 
     private fun processDataPacket(packet: AVPacket, header: VideoPacketHeader) {
-      val outData = BytePointer()
-      val outLen = IntPointer(0)
-      val ret =
-          av_parser_parse2(parserContext, codecContext, outData, outLen, packet.data(), packet.size(), AV_NOPTS_VALUE, AV_NOPTS_VALUE, -1)
+      val ret = av_parser_parse2(parserContext, codecContext, parserOutData, parserOutLength, packet.data(), packet.size(),
+                                 AV_NOPTS_VALUE, AV_NOPTS_VALUE, -1)
       assert(ret == packet.size()) // Due to PARSER_FLAG_COMPLETE_FRAMES.
-      assert(outLen.get() == packet.size())
+      assert(parserOutLength.get() == packet.size())
       if (parserContext.key_frame() == 1) {
         packet.flags(packet.flags() or AV_PKT_FLAG_KEY)
       }
@@ -436,12 +455,57 @@ internal class VideoDecoder(
         throw VideoDecoderException("Display $displayId: could not receive video frame")
       }
 
-      val frameWidth = decodingFrame.width()
-      val frameHeight = decodingFrame.height()
+      updateBitRate(header)
+
+      // If the previous image has not been painted yet, keep the decoded frame instead of converting it to an image.
+      // A frame that is followed by another one before the image is painted is dropped without being converted.
+      val postpone = synchronized(imageLock) {
+        (!displayFrameConsumed).also { hasPendingFrame = it }
+      }
+      if (postpone) {
+        val frame = pendingFrame ?: av_frame_alloc().also { pendingFrame = it }
+        av_frame_unref(frame)
+        av_frame_move_ref(frame, decodingFrame)
+        pendingFrameHeader = header
+        return
+      }
+
+      discardPendingFrame()
+      renderFrame(decodingFrame, header)
+    }
+
+    @Synchronized
+    private fun renderPendingFrame() {
+      if (initialized != true) {
+        return
+      }
+      val frame = pendingFrame ?: return
+      val header = pendingFrameHeader ?: return
+      try {
+        renderFrame(frame, header)
+      }
+      catch (e: RuntimeException) {
+        logger.error(e)
+      }
+      finally {
+        discardPendingFrame()
+      }
+    }
+
+    private fun discardPendingFrame() {
+      pendingFrame?.let { av_frame_unref(it) }
+      pendingFrameHeader = null
+    }
+
+    /** Converts the decoded [frame] to an image and makes it available as [displayFrame]. */
+    private fun renderFrame(frame: AVFrame, header: VideoPacketHeader) {
+      val frameWidth = frame.width()
+      val frameHeight = frame.height()
       var renderingFrame = renderingFrame
       if (renderingFrame == null || renderingFrame.width() != frameWidth || renderingFrame.height() != frameHeight) {
         renderingFrame?.let { av_frame_free(it) }
         renderingFrame = createRenderingFrame(frameWidth, frameHeight).also { this.renderingFrame = it }
+        renderingFramePixels = null
         if (av_frame_get_buffer(renderingFrame, 4) < 0) {
           throw RuntimeException("av_frame_get_buffer failed")
         }
@@ -450,11 +514,10 @@ internal class VideoDecoder(
         throw RuntimeException("av_frame_make_writable failed")
       }
 
-      sws_scale(getSwsContext(renderingFrame), decodingFrame.data(), decodingFrame.linesize(), 0, frameHeight,
+      sws_scale(getSwsContext(frame, renderingFrame), frame.data(), frame.linesize(), 0, frameHeight,
                 renderingFrame.data(), renderingFrame.linesize())
 
-      val numBytes = av_image_get_buffer_size(renderingFrame.format(), frameWidth, frameHeight, 1)
-      val framePixels = renderingFrame.data().get().asByteBufferOfSize(numBytes).asIntBuffer()
+      val framePixels = getRenderingFramePixels(renderingFrame)
       // Due to video size alignment requirements, the video frame may contain black strips at the top and at the bottom.
       // These black strips have to be excluded from the rendered image.
       val rotatedDisplaySize = header.displaySize.rotatedByQuadrants(header.displayOrientation - header.displayOrientationCorrection)
@@ -484,10 +547,13 @@ internal class VideoDecoder(
 
         displayFrame = VideoFrame(image, header.displaySize, header.displayOrientation, header.displayOrientationCorrection,
                                   displayIsRound, header.frameNumber, header.originationTimestampUs / 1000)
+        displayFrameConsumed = false
       }
 
       onNewFrameAvailable()
+    }
 
+    private fun updateBitRate(header: VideoPacketHeader) {
       if (displayId == PRIMARY_DISPLAY_ID && deviceProperties.isVirtual == false) {
         if (header.isBitRateReduced) {
           BitRateManager.getInstance().bitRateReduced(header.bitRate, deviceProperties)
@@ -502,8 +568,23 @@ internal class VideoDecoder(
       }
     }
 
-    private fun getSwsContext(renderingFrame: AVFrame): SwsContext {
-      val context = sws_getCachedContext(swsContext, decodingFrame.width(), decodingFrame.height(), decodingFrame.format(),
+    /**
+     * Returns the pixels of [renderingFrame] positioned at the start. The buffer is reused until the frame
+     * buffer is reallocated.
+     */
+    private fun getRenderingFramePixels(renderingFrame: AVFrame): IntBuffer {
+      val data = renderingFrame.data(0)
+      val pixels = renderingFramePixels
+      if (pixels != null && renderingFramePixelsAddress == data.address()) {
+        return pixels.clear()
+      }
+      val numBytes = av_image_get_buffer_size(renderingFrame.format(), renderingFrame.width(), renderingFrame.height(), 1)
+      renderingFramePixelsAddress = data.address()
+      return data.asByteBufferOfSize(numBytes).asIntBuffer().also { renderingFramePixels = it }
+    }
+
+    private fun getSwsContext(frame: AVFrame, renderingFrame: AVFrame): SwsContext {
+      val context = sws_getCachedContext(swsContext, frame.width(), frame.height(), frame.format(),
                                          renderingFrame.width(), renderingFrame.height(), renderingFrame.format(),
                                          SWS_BILINEAR, null, null, null as DoublePointer?) ?:
           throw VideoDecoderException("Display $displayId: could not allocate SwsContext")
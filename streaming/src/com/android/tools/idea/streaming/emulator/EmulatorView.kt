@@ -23,6 +23,7 @@ import com.android.emulator.control.DisplayConfiguration
 import com.android.emulator.control.DisplayConfigurationsChangedNotification
 import com.android.emulator.control.DisplayModeValue
 import com.android.emulator.control.ImageFormat
+import com.android.emulator.control.ImageTransport.TransportChannel
 import com.android.emulator.control.KeyboardEvent.KeyEventType
 import com.android.emulator.control.Posture.PostureValue
 import com.android.emulator.control.Rotation.SkinRotation
@@ -37,6 +38,7 @@ import com.android.tools.adtui.common.AdtUiCursorsProvider
 import com.android.tools.analytics.toProto
 import com.android.tools.idea.concurrency.executeOnPooledThread
 import com.android.tools.idea.flags.StudioFlags
+import com.android.tools.idea.flags.StudioFlags.EMBEDDED_EMULATOR_SHARED_MEMORY_SCREENSHOTS
 import com.android.tools.idea.flags.StudioFlags.EMBEDDED_EMULATOR_TRACE_NOTIFICATIONS
 import com.android.tools.idea.flags.StudioFlags.EMBEDDED_EMULATOR_TRACE_SCREENSHOTS
 import com.android.tools.idea.protobuf.TextFormat.shortDebugString
@@ -162,6 +164,7 @@ import java.awt.image.DataBufferInt
 import java.awt.image.DirectColorModel
 import java.awt.image.Raster
 import java.awt.image.SinglePixelPackedSampleModel
+import java.nio.ByteBuffer
 import java.util.Locale
 import java.util.concurrent.atomic.AtomicReference
 import javax.swing.KeyStroke
@@ -607,10 +610,15 @@ class EmulatorView(
           .setFormat(ImageFormat.ImgFormat.RGB888)
           .setWidth(maxImageSize.width)
           .setHeight(maxImageSize.height)
-          .build()
-      val receiver = ScreenshotReceiver(maxImageSize, orientationQuadrants)
+      // The emulator always runs on the same machine, so it can write screenshots directly to shared memory.
+      val sharedMemory = when {
+        EMBEDDED_EMULATOR_SHARED_MEMORY_SCREENSHOTS.get() -> ScreenshotSharedMemory.create(maxImageSize.width * maxImageSize.height)
+        else -> null
+      }
+      sharedMemory?.let { imageFormat.setTransport(it.transport) }
+      val receiver = ScreenshotReceiver(maxImageSize, orientationQuadrants, sharedMemory)
       screenshotReceiver = receiver
-      screenshotFeed = emulator.streamScreenshot(imageFormat, receiver)
+      screenshotFeed = emulator.streamScreenshot(imageFormat.build(), receiver)
     }
   }
 
@@ -1094,7 +1102,8 @@ class EmulatorView(
 
   private inner class ScreenshotReceiver(
     val maxImageSize: Dimension,
-    val orientationQuadrants: Int
+    val orientationQuadrants: Int,
+    private val sharedMemory: ScreenshotSharedMemory?,
   ) : EmptyStreamObserver<ImageMessage>(), Disposable {
     private val screenshotForProcessing = AtomicReference<Screenshot?>()
     private val screenshotForDisplay = AtomicReference<Screenshot?>()
@@ -1102,6 +1111,12 @@ class EmulatorView(
     private val recycledImage = AtomicReference<SofterReference<BufferedImage>?>()
     private val alarm = Alarm(this)
     private var expectedFrameNumber = -1
+    /** Reused copy of the image in [sharedMemory]. */
+    private var sharedImageCopy = ByteArray(0)
+
+    init {
+      sharedMemory?.let { Disposer.register(this, it) }
+    }
 
     override fun onNext(message: ImageMessage) {
       val arrivalTime = System.currentTimeMillis()
@@ -1129,9 +1144,21 @@ class EmulatorView(
         return // Ignore invalid screenshot.
       }
 
-      if (message.image.size() != imageFormat.width * imageFormat.height * 3) {
+      val imageSize = imageFormat.width * imageFormat.height * 3
+      val sharedImageBytes = if (imageFormat.transport.channel == TransportChannel.MMAP) {
+        if (sharedMemory == null || imageSize > sharedMemory.size) {
+          LOG.error("Inconsistent ImageMessage for display ${imageFormat.display}: ${imageFormat.width}x${imageFormat.height}" +
+                    " image does not fit in ${sharedMemory?.size ?: 0} bytes of shared memory")
+          return
+        }
+        copySharedImage(sharedMemory, imageSize)
+      }
+      else {
+        null
+      }
+      if (sharedImageBytes == null && message.image.size() != imageSize) {
         LOG.error("Inconsistent ImageMessage for display ${imageFormat.display}: ${imageFormat.width}x${imageFormat.height}" +
-                  " image contains ${message.image.size()} bytes instead of ${imageFormat.width * imageFormat.height * 3}")
+                  " image contains ${message.image.size()} bytes instead of $imageSize")
         return
       }
 
@@ -1163,12 +1190,12 @@ class EmulatorView(
       val recycledImage = recycledImage.getAndSet(null)?.get()
       val image = if (recycledImage?.width == imageFormat.width && recycledImage.height == imageFormat.height) {
         val pixels = (recycledImage.raster.dataBuffer as DataBufferInt).data
-        ImageConverter.unpackRgb888(message.image, pixels)
+        unpackImage(message, sharedImageBytes, pixels)
         recycledImage
       }
       else {
         val pixels = IntArray(imageFormat.width * imageFormat.height)
-        ImageConverter.unpackRgb888(message.image, pixels)
+        unpackImage(message, sharedImageBytes, pixels)
         val buffer = DataBufferInt(pixels, pixels.size)
         val sampleModel = SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, imageFormat.width, imageFormat.height, SAMPLE_MODEL_BIT_MASKS)
         val raster = Raster.createWritableRaster(sampleModel, buffer, ZERO_POINT)
@@ -1177,7 +1204,8 @@ class EmulatorView(
       }
 
       val lostFrames = if (expectedFrameNumber > 0) message.seq - expectedFrameNumber else 0
-      stats?.recordFrameArrival(arrivalTime - frameOriginationTime, lostFrames, imageFormat.width * imageFormat.height)
+      stats?.recordFrameArrival(arrivalTime - frameOriginationTime, lostFrames, imageFormat.width * imageFormat.height,
+                                sharedImageBytes != null)
       expectedFrameNumber = message.seq + 1
 
       if (displayMode != null && !checkAspectRatioConsistency(imageFormat, displayMode)) {
@@ -1203,6 +1231,34 @@ class EmulatorView(
       }
     }
 
+    /**
+     * Copies the image out of the shared memory before doing anything else with it.
+     *
+     * The emulator writes the next frame to the shared memory as soon as it is ready, without waiting
+     * for Studio to consume the previous one, and the mapping carries no sequence number that could
+     * detect that. If the next frame is written during the copy, the copied image is torn. Copying
+     * right away, in a single bulk transfer, keeps that window much shorter than converting straight
+     * from the mapping. A torn image is replaced by the next frame, which arrives right after it.
+     */
+    private fun copySharedImage(sharedMemory: ScreenshotSharedMemory, imageSize: Int): ByteBuffer {
+      var copy = sharedImageCopy
+      if (copy.size < imageSize) {
+        copy = ByteArray(imageSize)
+        sharedImageCopy = copy
+      }
+      sharedMemory.imageBytes(imageSize).get(copy, 0, imageSize)
+      return ByteBuffer.wrap(copy, 0, imageSize)
+    }
+
+    private fun unpackImage(message: ImageMessage, sharedImageBytes: ByteBuffer?, pixels: IntArray) {
+      if (sharedImageBytes == null) {
+        ImageConverter.unpackRgb888(message.image, pixels)
+      }
+      else {
+        ImageConverter.unpackRgb888(sharedImageBytes, pixels)
+      }
+    }
+
     private fun checkAspectRatioConsistency(imageFormat: ImageFormat, displayMode: DisplayMode): Boolean {
       val imageAspectRatio = if (imageFormat.rotation.rotationValue % 2 == 0) imageFormat.width.toDouble() / imageFormat.height
                              else imageFormat.height.toDouble() / imageFormat.width
@@ -1354,8 +1410,11 @@ class EmulatorView(
     }
 
     @Synchronized
-    fun recordFrameArrival(latencyOfArrival: Long, numberOfLostFrames: Int, numberOfPixels: Int) {
+    fun recordFrameArrival(latencyOfArrival: Long, numberOfLostFrames: Int, numberOfPixels: Int, throughSharedMemory: Boolean) {
       data.frameCount += 1 + numberOfLostFrames
+      if (throughSharedMemory) {
+        data.sharedMemoryFrameCount++
+      }
       data.pixelCount += (1 + numberOfLostFrames) * numberOfPixels
       data.latencyOfArrival.recordValue(latencyOfArrival)
       if (numberOfLostFrames != 0) {
@@ -1397,6 +1456,7 @@ class EmulatorView(
 
     private class Data {
       var frameCount = 0
+      var sharedMemoryFrameCount = 0
       var droppedFrameCount = 0
       var droppedFrameCountBeforeArrival = 0
       var pixelCount = 0L
@@ -1410,7 +1470,8 @@ class EmulatorView(
           val frameSize = (pixelCount.toDouble() / frameCount).roundToInt()
           val neverArrived = if (droppedFrameCountBeforeArrival != 0) " (${droppedFrameCountBeforeArrival} never arrived)" else ""
           val dropped = if (droppedFrameCount != 0) " dropped frames: $droppedFrameCount$neverArrived" else ""
-          LOG.info("Frames: $frameCount $dropped average frame rate: $frameRate average frame size: $frameSize pixels\n" +
+          val sharedMemory = if (sharedMemoryFrameCount != 0) " ($sharedMemoryFrameCount through shared memory)" else ""
+          LOG.info("Frames: $frameCount$sharedMemory $dropped average frame rate: $frameRate average frame size: $frameSize pixels\n" +
                    "latency: ${shortDebugString(latencyEndToEnd.toProto())}\n" +
                    "latency of arrival: ${shortDebugString(latencyOfArrival.toProto())}")
         }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2025 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.streaming.emulator
+
+import com.android.emulator.control.ImageTransport
+import com.android.emulator.control.ImageTransport.TransportChannel
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.diagnostic.Logger
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption.READ
+import java.nio.file.StandardOpenOption.WRITE
+
+/**
+ * A memory-mapped file the emulator writes screenshots to instead of sending their pixels in
+ * gRPC messages. This avoids serializing, copying and deserializing every frame, which for large
+ * displays amounts to hundreds of megabytes per second.
+ *
+ * The file is mapped by both the emulator and Studio, and the emulator overwrites it with every
+ * frame, so the pixels have to be copied out as soon as the frame arrives.
+ */
+internal class ScreenshotSharedMemory private constructor(private val file: Path, val size: Int) : Disposable {
+
+  private val buffer: MappedByteBuffer = FileChannel.open(file, READ, WRITE).use { it.map(FileChannel.MapMode.READ_WRITE, 0, size.toLong()) }
+
+  /** The transport to set in the [com.android.emulator.control.ImageFormat] of the screenshot request. */
+  val transport: ImageTransport = ImageTransport.newBuilder()
+    .setChannel(TransportChannel.MMAP)
+    .setHandle(file.toUri().toString())
+    .build()
+
+  /** Returns a buffer containing the first [length] bytes of the shared memory. */
+  fun imageBytes(length: Int): ByteBuffer =
+    buffer.slice(0, length)
+
+  override fun dispose() {
+    try {
+      Files.deleteIfExists(file)
+    }
+    catch (e: IOException) {
+      // On Windows a mapped file cannot be deleted until the mapping is garbage collected.
+      file.toFile().deleteOnExit()
+    }
+  }
+
+  companion object {
+    /** Creates shared memory for images of up to [maxImageSize] pixels, or returns null if it cannot be created. */
+    fun create(maxImageSize: Int): ScreenshotSharedMemory? {
+      var file: Path? = null
+      return try {
+        file = Files.createTempFile("emulator_screenshot", ".rgb")
+        ScreenshotSharedMemory(file, maxImageSize * 3)
+      }
+      catch (e: IOException) {
+        LOG.warn("Unable to create shared memory for emulator screenshots", e)
+        file?.toFile()?.delete()
+        null
+      }
+    }
+  }
+}
+
+private val LOG = Logger.getInstance(ScreenshotSharedMemory::class.java)
@@ -17,7 +17,9 @@ package com.android.emulator
 
 import com.android.tools.idea.protobuf.ByteString
 import com.android.tools.idea.protobuf.UnsafeByteOperations
+import com.google.common.truth.Truth.assertThat
 import com.intellij.testFramework.UsefulTestCase.assertThrows
+import java.nio.ByteBuffer
 import org.junit.Assert.fail
 import org.junit.Test
 
@@ -50,6 +52,21 @@ class ImageConverterTest {
     println("unpackRgb888: ${String.format("%.5f", t)} sec")
   }
 
+  @Test
+  fun testUnpackRgb888DirectBuffer() {
+    val buffer = ByteBuffer.allocateDirect(testImage.size() + 6)
+    buffer.position(6)
+    testImage.copyTo(buffer)
+    buffer.position(6)
+    val pixels = IntArray(IMAGE_SIZE)
+    val expectedPixels = IntArray(IMAGE_SIZE)
+    ImageConverter.unpackRgb888Slow(testImage, expectedPixels)
+    val t = runBenchmark { ImageConverter.unpackRgb888(buffer, pixels) }
+    assertThat(buffer.position()).isEqualTo(6)
+    assertThat(pixels).isEqualTo(expectedPixels)
+    println("unpackRgb888 from direct buffer: ${String.format("%.5f", t)} sec")
+  }
+
   @Test
   fun testUnpackRgb888ErrorHandling() {
     val bytes = ByteArray(30)
@@ -211,6 +211,22 @@ internal class DeviceViewTest {
     assertThat(frameListenerCalls).isEqualTo(framesBeforeRemoving)
   }
 
+  @Test
+  fun testFramesArrivingFasterThanPainting() {
+    createDeviceView(200, 300, 2.0)
+    waitForFrame()
+
+    // Frames arriving before the previous one is painted are not converted to images, but the last one is always displayed.
+    runBlocking {
+      for (flavor in 1..5) {
+        agent.renderDisplay(PRIMARY_DISPLAY_ID, flavor)
+      }
+    }
+    waitForFrame()
+
+    assertThat(view.frameNumber).isEqualTo(agent.getFrameNumber(PRIMARY_DISPLAY_ID))
+  }
+
   @Test
   fun testResizingRotationAndMouseInput() {
     createDeviceView(200, 300, 2.0)
@@ -29,6 +29,7 @@ import com.android.tools.adtui.swing.IconLoaderRule
 import com.android.tools.adtui.swing.replaceKeyboardFocusManager
 import com.android.tools.adtui.ui.NotificationHolderPanel
 import com.android.tools.analytics.UsageTrackerRule
+import com.android.tools.idea.flags.StudioFlags
 import com.android.tools.idea.protobuf.TextFormat.shortDebugString
 import com.android.tools.idea.streaming.emulator.EmulatorController.ConnectionState
 import com.android.tools.idea.streaming.emulator.FakeEmulator.GrpcCallRecord
@@ -875,6 +876,25 @@ class EmulatorViewTest {
     assertThat(shortDebugString(call.getNextRequest(1.seconds))).isEqualTo("key_event { eventType: keyup key: \"Control\" }")
   }
 
+  @Test
+  fun testSharedMemoryScreenshots() {
+    StudioFlags.EMBEDDED_EMULATOR_SHARED_MEMORY_SCREENSHOTS.override(true)
+    try {
+      view = emulatorViewRule.newEmulatorView()
+      fakeUi = FakeUi(createScrollPane(view), 2.0)
+
+      fakeUi.root.size = Dimension(200, 300)
+      fakeUi.layoutAndDispatchEvents()
+      val call = getStreamScreenshotCallAndWaitForFrame()
+      assertThat(shortDebugString(call.request)).matches("format: RGB888 width: 363 height: 547 transport \\{ channel: MMAP handle: \"file:.*\" }")
+      // The images arrive through shared memory but look the same as the ones sent in gRPC messages.
+      assertAppearance("EmulatorView1")
+    }
+    finally {
+      StudioFlags.EMBEDDED_EMULATOR_SHARED_MEMORY_SCREENSHOTS.clearOverride()
+    }
+  }
+
   @Test
   fun testMetricsCollection() {
     view = emulatorViewRule.newEmulatorView()